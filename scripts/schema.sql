@@ -8,8 +8,8 @@ CREATE TABLE IF NOT EXISTS moderation_results (
     id INTEGER PRIMARY KEY AUTOINCREMENT,
     request_id VARCHAR(255) NOT NULL UNIQUE,
     run_id VARCHAR(255),
-    payload TEXT,
-    response_body TEXT,
+    payload BLOB,        -- StorageCodec: header 0x01 = Deflate + preset dictionary, 0x00 = UTF-8 không nén
+    response_body BLOB,
     status_code INTEGER NOT NULL,
     latency_ms BIGINT NOT NULL,
     timestamp DATETIME NOT NULL,
@@ -25,6 +25,10 @@ CREATE INDEX IF NOT EXISTS idx_request_id ON moderation_results(request_id);
 CREATE INDEX IF NOT EXISTS idx_run_id ON moderation_results(run_id);
 CREATE INDEX IF NOT EXISTS idx_timestamp ON moderation_results(timestamp);
 CREATE INDEX IF NOT EXISTS idx_success ON moderation_results(success);
+-- Covering index cho report một lượt (percentile theo latency), không đọc payload / response_body
+CREATE INDEX IF NOT EXISTS idx_run_latency ON moderation_results(run_id, latency_ms, success, timestamp);
+-- Keyset pagination (timestamp, id) cho export details của một run
+CREATE INDEX IF NOT EXISTS idx_run_timestamp ON moderation_results(run_id, timestamp, id);
 
 -- Table: test_runs
 -- Lưu trữ thông tin tổng hợp của mỗi test run
@@ -43,6 +47,8 @@ CREATE TABLE IF NOT EXISTS test_runs (
     p95_latency_ms BIGINT,
     p99_latency_ms BIGINT,
     throughput_rps REAL,
+    latency_histogram BLOB,            -- histogram latency (µs), LatencyHistogram.encode()
+    provider_latency_histograms TEXT,  -- JSON: provider -> Base64 histogram
     concurrency INTEGER,
     configuration TEXT,
     status VARCHAR(50) DEFAULT 'RUNNING'
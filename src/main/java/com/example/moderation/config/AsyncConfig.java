@@ -1,10 +1,17 @@
 package com.example.moderation.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Configuration cho async task execution
@@ -22,4 +29,39 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Executor dùng chung cho /moderate/batch (thay vì tạo fixed pool mới mỗi request).
+     * Số thread tối đa = performance.max-concurrency; concurrency của từng batch
+     * được giới hạn bằng semaphore trong BatchModerationExecutor, nên queue không tăng quá
+     * tổng concurrency của các batch đang chạy. Thread idle được thu hồi sau keep-alive.
+     */
+    @Bean(name = "batchExecutor", destroyMethod = "shutdown")
+    public ExecutorService batchExecutor(@Value("${performance.max-concurrency:500}") int maxConcurrency) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                maxConcurrency, maxConcurrency,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("moderation-batch-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Executor bounded cho async adapter của provider blocking (Alibaba SDK, mock đồng bộ).
+     * Queue đầy thì reject ngay để caller nhận lỗi thay vì chờ vô hạn.
+     */
+    @Bean(name = "blockingProviderExecutor", destroyMethod = "shutdown")
+    public ExecutorService blockingProviderExecutor(
+            @Value("${content-moderation.async.blocking-pool-size:64}") int poolSize,
+            @Value("${content-moderation.async.blocking-queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("provider-blocking-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 }
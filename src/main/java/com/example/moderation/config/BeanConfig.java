@@ -36,6 +36,14 @@ public class BeanConfig {
                 .create();
     }
 
+    /**
+     * Gson compact (không pretty print, bỏ null) cho dữ liệu lưu trữ như payload của moderation_results
+     */
+    @Bean("compactGson")
+    public Gson compactGson() {
+        return new Gson();
+    }
+
     /**
      * WebClient.Builder with proper timeout configuration
      * This is used by all providers including DeepCleer
@@ -0,0 +1,72 @@
+package com.example.moderation.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration cho persistence layer (lưu kết quả moderation)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "persistence")
+@Data
+public class PersistenceConfig {
+
+    /**
+     * Backend lưu ModerationResult: jpa | mapped-log
+     */
+    private String store = "jpa";
+
+    private MappedLogConfig mappedLog = new MappedLogConfig();
+
+    private WriteBehindConfig writeBehind = new WriteBehindConfig();
+
+    private SqliteConfig sqlite = new SqliteConfig();
+
+    /**
+     * Backend mapped-log: record nhị phân append vào các segment file memory-mapped
+     */
+    @Data
+    public static class MappedLogConfig {
+        private String directory = "./data/results";
+        /**
+         * Kích thước mỗi segment file (tối đa 1024)
+         */
+        private Integer segmentSizeMb = 64;
+    }
+
+    /**
+     * Write-behind: gom kết quả vào queue và ghi theo batch bằng một writer thread riêng
+     */
+    @Data
+    public static class WriteBehindConfig {
+        private Boolean enabled = false;
+        private Integer queueCapacity = 10000;
+        private Integer batchSize = 100;
+        private Long flushIntervalMs = 200L;
+        private Long offerTimeoutMs = 50L;
+        private Long shutdownTimeoutMs = 30000L;
+    }
+
+    /**
+     * SQLite-optimized mode: WAL, pragma tuning, một connection ghi duy nhất
+     * và pool read-only riêng cho các query report (transaction readOnly)
+     */
+    @Data
+    public static class SqliteConfig {
+        private Boolean enabled = false;
+        /**
+         * OFF | NORMAL | FULL (NORMAL an toàn với WAL, chỉ có thể mất transaction cuối khi mất điện)
+         */
+        private String synchronous = "NORMAL";
+        private Integer cacheSizeKb = 65536;
+        private Long mmapSizeBytes = 268435456L;
+        private Long journalSizeLimitBytes = 67108864L;
+        private Integer busyTimeoutMs = 5000;
+        private Integer readPoolSize = 4;
+        /**
+         * Thời gian tối đa chờ connection ghi (mọi write xếp hàng trên một connection)
+         */
+        private Long writerConnectionTimeoutMs = 30000L;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.moderation.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration cho local pre-filter (Aho-Corasick trên danh sách term HIGH-risk)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "content-moderation.prefilter")
+@Data
+public class PreFilterConfig {
+
+    private Boolean enabled = false;
+
+    /**
+     * Chỉ match term đứng riêng thành từ
+     */
+    private Boolean wholeWords = true;
+
+    /**
+     * Term theo category (label của kết quả), khai báo trực tiếp trong config
+     */
+    private Map<String, List<String>> terms = new LinkedHashMap<>();
+
+    /**
+     * File term bổ sung, mỗi dòng "CATEGORY:term" ('#' là comment); được reload khi file thay đổi
+     */
+    private String termsFile;
+
+    private Long reloadIntervalMs = 5000L;
+
+    /**
+     * Confidence score của quyết định local
+     */
+    private Double confidence = 0.99;
+
+    /**
+     * Gửi thêm text bị chặn local tới provider (bất đồng bộ) để đo độ khớp giữa pre-filter và provider
+     */
+    private Boolean confirmRemote = false;
+}
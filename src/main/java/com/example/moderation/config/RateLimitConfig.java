@@ -0,0 +1,56 @@
+package com.example.moderation.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration cho token-bucket rate limiter của provider calls
+ */
+@Configuration
+@ConfigurationProperties(prefix = "content-moderation.rate-limit")
+@Data
+public class RateLimitConfig {
+
+    /**
+     * QPS mặc định cho mọi provider (0 = không giới hạn); mặc định lấy từ performance.rate-limit
+     */
+    private Double defaultRate = 0.0;
+
+    /**
+     * QPS riêng theo provider (ví dụ QPS trong hợp đồng DeepCleer)
+     */
+    private Map<String, Double> providers = new HashMap<>();
+
+    /**
+     * Số token tối đa tích lũy (burst); 0 = bằng QPS (tối đa 1 giây traffic)
+     */
+    private Integer burst = 0;
+
+    /**
+     * Thời gian chờ token tối đa; lâu hơn thì call bị từ chối ngay
+     */
+    private Long maxWaitMs = 5000L;
+
+    private AdaptiveConfig adaptive = new AdaptiveConfig();
+
+    /**
+     * Tự giảm QPS khi provider báo vượt quota, sau đó tăng dần về QPS cấu hình
+     */
+    @Data
+    public static class AdaptiveConfig {
+        private Boolean enabled = true;
+        /** Error code của provider báo vượt QPS (DeepCleer 1901) */
+        private List<Integer> throttleCodes = List.of(1901);
+        private Double decreaseFactor = 0.5;
+        private Double minRateFactor = 0.05;
+        /** Không giảm tiếp trong khoảng này sau lần giảm trước (các call đang bay cũng sẽ trả 1901) */
+        private Long cooldownMs = 1000L;
+        /** Mỗi giây không bị throttle, QPS tăng thêm tỉ lệ này của QPS trần */
+        private Double recoveryPerSecond = 0.05;
+    }
+}
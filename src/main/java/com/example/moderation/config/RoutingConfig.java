@@ -0,0 +1,39 @@
+package com.example.moderation.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration cho provider router (chọn provider theo từng request)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "content-moderation.routing")
+@Data
+public class RoutingConfig {
+
+    private Boolean enabled = false;
+
+    /**
+     * Trọng số cơ bản theo provider; chỉ các provider có trọng số > 0 được route tới
+     */
+    private Map<String, Double> weights = new LinkedHashMap<>();
+
+    /**
+     * Tần suất tính lại trọng số hiệu dụng từ latency / lỗi / health / rate budget
+     */
+    private Long refreshMs = 1000L;
+
+    /**
+     * Mỗi provider healthy luôn nhận ít nhất % traffic này để số liệu của nó không bị cũ
+     */
+    private Double minWeightPercent = 1.0;
+
+    /**
+     * Số mũ phạt tỉ lệ lỗi: trọng số nhân với (1 - errorRate)^errorPenalty
+     */
+    private Double errorPenalty = 2.0;
+}
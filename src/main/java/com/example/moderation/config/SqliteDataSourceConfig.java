@@ -0,0 +1,119 @@
+package com.example.moderation.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * SQLite-optimized persistence (persistence.sqlite.enabled=true).
+ *
+ * - WAL: reader không chặn writer và ngược lại
+ * - synchronous / cache_size / mmap_size / busy_timeout theo cấu hình, áp dụng cho từng connection
+ * - Writer: pool đúng một connection, mọi transaction ghi xếp hàng trong pool thay vì tranh
+ *   file lock của SQLite (không còn SQLITE_BUSY giữa các writer trong cùng process)
+ * - Reader: pool read-only riêng, dùng cho transaction readOnly (query report, repository find*)
+ *
+ * Routing theo TransactionSynchronizationManager.isCurrentTransactionReadOnly(); connection thật
+ * chỉ được lấy khi có statement đầu tiên (LazyConnectionDataSourceProxy), lúc đó cờ readOnly đã được set.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "persistence.sqlite", name = "enabled", havingValue = "true")
+@Slf4j
+public class SqliteDataSourceConfig {
+
+    private static final String WRITER = "writer";
+    private static final String READER = "reader";
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource sqliteWriterDataSource(DataSourceProperties dataSourceProperties,
+                                                   PersistenceConfig persistenceConfig) {
+        PersistenceConfig.SqliteConfig config = persistenceConfig.getSqlite();
+        HikariConfig hikari = pool("sqlite-writer", sqlite(dataSourceProperties.determineUrl(), config, false),
+                1, config.getWriterConnectionTimeoutMs());
+        // Connection ghi được mở ngay khi khởi động (tạo file database, bật WAL)
+        hikari.setMinimumIdle(1);
+        return new HikariDataSource(hikari);
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource sqliteReaderDataSource(DataSourceProperties dataSourceProperties,
+                                                   PersistenceConfig persistenceConfig) {
+        PersistenceConfig.SqliteConfig config = persistenceConfig.getSqlite();
+        HikariConfig hikari = pool("sqlite-reader", sqlite(dataSourceProperties.determineUrl(), config, true),
+                config.getReadPoolSize(), config.getWriterConnectionTimeoutMs());
+        // Reader mở khi cần: file database / WAL có thể chưa tồn tại lúc khởi động
+        hikari.setMinimumIdle(0);
+        hikari.setInitializationFailTimeout(-1);
+        // Hikari gọi setReadOnly(pool default) trên mỗi connection mới; sqlite-jdbc không cho đổi cờ này
+        // sau khi đã mở, nên default của pool phải khớp với connection read-only
+        hikari.setReadOnly(true);
+        return new HikariDataSource(hikari);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource sqliteWriterDataSource, HikariDataSource sqliteReaderDataSource,
+                                 DataSourceProperties dataSourceProperties, PersistenceConfig persistenceConfig) {
+        PersistenceConfig.SqliteConfig config = persistenceConfig.getSqlite();
+
+        AbstractRoutingDataSource routing = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                // Transaction readOnly dùng pool reader, còn lại dùng writer
+                return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? READER : WRITER;
+            }
+        };
+        routing.setTargetDataSources(Map.of(WRITER, sqliteWriterDataSource, READER, sqliteReaderDataSource));
+        routing.setDefaultTargetDataSource(sqliteWriterDataSource);
+        routing.afterPropertiesSet();
+
+        log.info("SQLite persistence: url={}, journal=WAL, synchronous={}, cacheSizeKb={}, mmapSizeBytes={}, readPoolSize={}",
+                dataSourceProperties.determineUrl(), config.getSynchronous(), config.getCacheSizeKb(),
+                config.getMmapSizeBytes(), config.getReadPoolSize());
+
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    private SQLiteDataSource sqlite(String url, PersistenceConfig.SqliteConfig config, boolean readOnly) {
+        SQLiteConfig sqliteConfig = new SQLiteConfig();
+        sqliteConfig.setSynchronous(SQLiteConfig.SynchronousMode.valueOf(config.getSynchronous().toUpperCase()));
+        // Giá trị âm = KiB
+        sqliteConfig.setCacheSize(-config.getCacheSizeKb());
+        sqliteConfig.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(config.getMmapSizeBytes()));
+        sqliteConfig.setTempStore(SQLiteConfig.TempStore.MEMORY);
+        sqliteConfig.setBusyTimeout(config.getBusyTimeoutMs());
+        if (readOnly) {
+            // WAL là thuộc tính của file (writer đã bật), connection read-only không đổi được journal mode
+            sqliteConfig.setReadOnly(true);
+        } else {
+            sqliteConfig.setJournalMode(SQLiteConfig.JournalMode.WAL);
+            sqliteConfig.setPragma(SQLiteConfig.Pragma.JOURNAL_SIZE_LIMIT, String.valueOf(config.getJournalSizeLimitBytes()));
+        }
+
+        SQLiteDataSource dataSource = new SQLiteDataSource(sqliteConfig);
+        dataSource.setUrl(url);
+        return dataSource;
+    }
+
+    private HikariConfig pool(String name, DataSource target, int size, long connectionTimeoutMs) {
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName(name);
+        hikari.setDataSource(target);
+        hikari.setMaximumPoolSize(size);
+        hikari.setConnectionTimeout(connectionTimeoutMs);
+        return hikari;
+    }
+}
@@ -1,23 +1,37 @@
 package com.example.moderation.controller;
 
+import com.example.moderation.dto.HistogramMergeRequest;
 import com.example.moderation.dto.PerformanceMetrics;
 import com.example.moderation.entity.ModerationResult;
 import com.example.moderation.entity.TestRun;
 import com.example.moderation.exception.EntityNotFoundException;
-import com.example.moderation.repository.ModerationResultRepository;
 import com.example.moderation.repository.TestRunRepository;
 import com.example.moderation.service.MetricsService;
+import com.example.moderation.service.ResultExportService;
+import com.example.moderation.store.ResultStore;
+import com.example.moderation.util.LatencyHistogram;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Controller cho metrics và reporting
@@ -29,9 +43,15 @@ import java.util.Map;
 @Validated // Enable validation for @PathVariable and @RequestParam
 public class MetricsController {
 
+    private static final List<Double> DEFAULT_PERCENTILES = List.of(50.0, 90.0, 95.0, 99.0, 99.9);
+
     private final MetricsService metricsService;
     private final TestRunRepository testRunRepository;
-    private final ModerationResultRepository resultRepository;
+    private final ResultStore resultStore;
+    private final ResultExportService resultExportService;
+
+    @Value("${content-moderation.export.timeout-ms:3600000}")
+    private long exportTimeoutMs;
 
     /**
      * Lấy metrics tổng hợp theo runId
@@ -45,18 +65,16 @@ public class MetricsController {
             throw new EntityNotFoundException("TestRun", runId);
         }
 
-        List<ModerationResult> results = resultRepository.findByRunId(runId);
-
         Map<String, Object> report = new HashMap<>();
         report.put("metrics", metrics);
-        report.put("totalResults", results.size());
+        report.put("totalResults", resultStore.countByRunId(runId));
         report.put("runId", runId);
 
         return ResponseEntity.ok(report);
     }
 
     /**
-     * Lấy metrics chi tiết kèm raw results
+     * Lấy metrics chi tiết kèm raw results (load toàn bộ run vào bộ nhớ; run lớn dùng /details/stream)
      */
     @GetMapping("/report/{runId}/details")
     public ResponseEntity<Map<String, Object>> getDetailedReport(@PathVariable String runId) {
@@ -67,7 +85,7 @@ public class MetricsController {
             throw new EntityNotFoundException("TestRun", runId);
         }
 
-        List<ModerationResult> results = resultRepository.findByRunIdOrderByTimestampAsc(runId);
+        List<ModerationResult> results = resultStore.findByRunIdOrderByTimestampAsc(runId);
 
         Map<String, Object> report = new HashMap<>();
         report.put("metrics", metrics);
@@ -76,6 +94,120 @@ public class MetricsController {
         return ResponseEntity.ok(report);
     }
 
+    /**
+     * Export raw results của run dạng NDJSON theo thứ tự (timestamp, id), bộ nhớ không phụ thuộc số row.
+     * Mặc định không có payload / responseBody (fields=payload,responseBody hoặc fields=all để lấy).
+     * Export tiếp từ dòng cuối đã nhận bằng afterTimestamp + afterId.
+     */
+    @GetMapping(value = "/report/{runId}/details/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamDetails(
+            @PathVariable String runId,
+            @RequestParam(required = false) List<String> fields,
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime afterTimestamp,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false)
+            @Min(value = 1, message = "Limit phải >= 1")
+            Long limit,
+            HttpServletRequest httpRequest) {
+
+        if (resultStore.countByRunId(runId) == 0) {
+            throw new EntityNotFoundException("TestRun", runId);
+        }
+        Set<String> selected = resultExportService.resolveFields(fields);
+        log.info("Streaming details for runId: {}, fields: {}, after: {}/{}", runId, selected, afterTimestamp, afterId);
+
+        StreamingTimeout.apply(httpRequest, exportTimeoutMs);
+        long maxRows = limit != null ? limit : Long.MAX_VALUE;
+        StreamingResponseBody body = output ->
+                resultExportService.exportRun(runId, selected, afterTimestamp, afterId, maxRows, output);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Percentile bất kỳ của latency (µs) theo runId, có thể lọc theo provider
+     */
+    @GetMapping("/report/{runId}/percentiles")
+    public ResponseEntity<Map<String, Object>> getPercentiles(
+            @PathVariable String runId,
+            @RequestParam(name = "p", required = false) List<Double> percentiles,
+            @RequestParam(required = false) String provider) {
+
+        LatencyHistogram histogram = requireHistogram(runId, provider);
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("runId", runId);
+        report.put("provider", provider);
+        report.put("unit", "us");
+        report.put("totalCount", histogram.totalCount());
+        report.put("percentiles", percentiles(histogram, percentiles));
+        return ResponseEntity.ok(report);
+    }
+
+    /**
+     * Toàn bộ phân phối percentile của latency (µs) theo runId
+     */
+    @GetMapping("/report/{runId}/distribution")
+    public ResponseEntity<Map<String, Object>> getDistribution(
+            @PathVariable String runId,
+            @RequestParam(defaultValue = "5")
+            @Min(value = 1, message = "ticksPerHalfDistance phải >= 1")
+            @Max(value = 100, message = "ticksPerHalfDistance không được vượt quá 100")
+            int ticksPerHalfDistance,
+            @RequestParam(required = false) String provider) {
+
+        LatencyHistogram histogram = requireHistogram(runId, provider);
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("runId", runId);
+        report.put("provider", provider);
+        report.put("unit", "us");
+        report.put("totalCount", histogram.totalCount());
+        report.put("distribution", histogram.percentileDistribution(ticksPerHalfDistance));
+        return ResponseEntity.ok(report);
+    }
+
+    /**
+     * Histogram latency (µs) dạng encode (Base64), dùng để merge trên node khác
+     */
+    @GetMapping("/report/{runId}/histogram")
+    public ResponseEntity<Map<String, Object>> getHistogram(
+            @PathVariable String runId,
+            @RequestParam(required = false) String provider) {
+
+        LatencyHistogram histogram = requireHistogram(runId, provider);
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("runId", runId);
+        report.put("provider", provider);
+        report.put("totalCount", histogram.totalCount());
+        report.put("histogram", Base64.getEncoder().encodeToString(histogram.encode()));
+        return ResponseEntity.ok(report);
+    }
+
+    /**
+     * Merge histogram của nhiều run và của các node khác, trả về percentile của tập gộp
+     */
+    @PostMapping("/histograms/merge")
+    public ResponseEntity<Map<String, Object>> mergeHistograms(@Valid @RequestBody HistogramMergeRequest request) {
+        LatencyHistogram merged = metricsService.mergeLatencyHistograms(
+                request.getRunIds(), request.getProvider(), request.getHistograms());
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("unit", "us");
+        report.put("totalCount", merged.totalCount());
+        report.put("percentiles", percentiles(merged, request.getPercentiles()));
+        if (request.getTicksPerHalfDistance() != null) {
+            report.put("distribution", merged.percentileDistribution(request.getTicksPerHalfDistance()));
+        }
+        report.put("histogram", Base64.getEncoder().encodeToString(merged.encode()));
+        return ResponseEntity.ok(report);
+    }
+
     /**
      * Lấy danh sách tất cả test runs
      */
@@ -135,4 +267,24 @@ public class MetricsController {
                 })
                 .orElse(ResponseEntity.ok(new HashMap<>()));
     }
+
+    private LatencyHistogram requireHistogram(String runId, String provider) {
+        LatencyHistogram histogram = metricsService.getLatencyHistogram(runId, provider);
+        if (histogram == null) {
+            throw new EntityNotFoundException("TestRun", provider == null ? runId : runId + "/" + provider);
+        }
+        return histogram;
+    }
+
+    private Map<String, Long> percentiles(LatencyHistogram histogram, List<Double> percentiles) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (double percentile : percentiles == null || percentiles.isEmpty() ? DEFAULT_PERCENTILES : percentiles) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile phải nằm trong [0, 100]: " + percentile);
+            }
+            values.put("p" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString(),
+                    histogram.valueAtPercentile(percentile));
+        }
+        return values;
+    }
 }
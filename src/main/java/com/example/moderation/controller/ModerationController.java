@@ -2,21 +2,24 @@ package com.example.moderation.controller;
 
 import com.example.moderation.dto.ModerationRequest;
 import com.example.moderation.dto.ModerationResponse;
+import com.example.moderation.service.BatchModerationExecutor;
 import com.example.moderation.service.ContentModerationService;
+import com.example.moderation.service.StreamingModerationService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * REST Controller cho content moderation
@@ -29,6 +32,11 @@ import java.util.concurrent.Executors;
 public class ModerationController {
 
     private final ContentModerationService moderationService;
+    private final BatchModerationExecutor batchExecutor;
+    private final StreamingModerationService streamingService;
+
+    @Value("${content-moderation.stream.timeout-ms:3600000}")
+    private long streamTimeoutMs;
 
     /**
      * Endpoint để moderate một text đơn lẻ
@@ -40,6 +48,16 @@ public class ModerationController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Endpoint non-blocking: Tomcat thread được giải phóng trong lúc chờ provider
+     */
+    @PostMapping("/moderate/async")
+    public Mono<ResponseEntity<ModerationResponse>> moderateAsync(@Valid @RequestBody ModerationRequest request) {
+        log.info("Received async moderation request for ID: {}", request.getId());
+        return moderationService.moderateContentReactive(request)
+                .map(ResponseEntity::ok);
+    }
+
     /**
      * Endpoint để moderate batch requests (cho load testing)
      */
@@ -53,26 +71,38 @@ public class ModerationController {
 
         log.info("Received batch moderation request: {} items, concurrency: {}", requests.size(), concurrency);
 
-        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
-        List<CompletableFuture<ModerationResponse>> futures = new ArrayList<>();
+        List<ModerationResponse> responses = batchExecutor.moderateAll(requests, concurrency);
 
-        for (ModerationRequest request : requests) {
-            CompletableFuture<ModerationResponse> future = CompletableFuture.supplyAsync(
-                    () -> moderationService.moderateContent(request),
-                    executor
-            );
-            futures.add(future);
-        }
+        log.info("Batch moderation completed: {} responses", responses.size());
+        return ResponseEntity.ok(responses);
+    }
 
-        // Wait for all to complete
-        List<ModerationResponse> responses = futures.stream()
-                .map(CompletableFuture::join)
-                .toList();
+    /**
+     * Endpoint streaming NDJSON: mỗi dòng input là một ModerationRequest,
+     * mỗi ModerationResponse được ghi ra ngay khi hoàn thành (không theo thứ tự input).
+     * Số item xử lý đồng thời bị giới hạn bởi concurrency; reader chậm lại khi đủ concurrency.
+     */
+    @PostMapping(value = "/moderate/stream",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> moderateStream(
+            HttpServletRequest httpRequest,
+            @RequestParam(defaultValue = "10")
+            @Min(value = 1, message = "Concurrency phải >= 1")
+            @Max(value = 500, message = "Concurrency không được vượt quá 500")
+            int concurrency) {
 
-        executor.shutdown();
+        log.info("Received streaming moderation request, concurrency: {}", concurrency);
+        StreamingTimeout.apply(httpRequest, streamTimeoutMs);
 
-        log.info("Batch moderation completed: {} responses", responses.size());
-        return ResponseEntity.ok(responses);
+        StreamingResponseBody body = output -> {
+            long lines = streamingService.moderateStream(httpRequest.getInputStream(), output, concurrency);
+            log.info("Streaming moderation completed: {} lines", lines);
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     /**
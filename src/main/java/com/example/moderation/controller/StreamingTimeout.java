@@ -0,0 +1,33 @@
+package com.example.moderation.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Timeout async riêng cho một request streaming (StreamingResponseBody).
+ *
+ * StreamingResponseBody luôn dùng timeout mặc định của Spring MVC (spring.mvc.async.request-timeout,
+ * áp dụng cho mọi endpoint async); interceptor này đặt timeout ngay trước khi request chuyển sang async.
+ */
+final class StreamingTimeout {
+
+    private StreamingTimeout() {
+    }
+
+    static void apply(HttpServletRequest request, long timeoutMs) {
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(StreamingTimeout.class.getName(),
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest webRequest, Callable<T> task) {
+                        if (webRequest instanceof AsyncWebRequest asyncWebRequest) {
+                            asyncWebRequest.setTimeout(timeoutMs);
+                        }
+                    }
+                });
+    }
+}
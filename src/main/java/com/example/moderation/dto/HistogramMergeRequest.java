@@ -0,0 +1,32 @@
+package com.example.moderation.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO cho request merge histogram latency giữa các run / node
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistogramMergeRequest {
+
+    private List<String> runIds; // Run có trên node này
+
+    private String provider; // Optional: chỉ merge histogram của provider này
+
+    private List<String> histograms; // Base64 của histogram từ node khác (GET /report/{runId}/histogram)
+
+    private List<Double> percentiles; // Optional: mặc định 50, 90, 95, 99, 99.9
+
+    @Min(value = 1, message = "ticksPerHalfDistance phải >= 1")
+    @Max(value = 100, message = "ticksPerHalfDistance không được vượt quá 100")
+    private Integer ticksPerHalfDistance; // Optional: trả thêm phân phối percentile
+}
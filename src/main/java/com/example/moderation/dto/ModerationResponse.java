@@ -21,4 +21,5 @@ public class ModerationResponse {
     private Long latencyMs;
     private Boolean success;
     private String errorMessage;
+    private Boolean cached; // true nếu kết quả lấy từ cache, không gọi provider
 }
@@ -0,0 +1,32 @@
+package com.example.moderation.entity;
+
+import com.example.moderation.util.StorageCodec;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lưu cột text lớn dưới dạng blob nén (StorageCodec), giải nén tự động khi đọc.
+ * Giá trị TEXT cũ và giá trị ghi khi tắt nén vẫn đọc được như thường.
+ */
+@Component
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+
+    private final boolean compressionEnabled;
+
+    public CompressedTextConverter(@Value("${persistence.compression.enabled:false}") boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(String attribute) {
+        return compressionEnabled ? StorageCodec.encode(attribute) : StorageCodec.stored(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] dbData) {
+        return StorageCodec.decode(dbData);
+    }
+}
@@ -15,7 +15,11 @@ import java.time.LocalDateTime;
 @Table(name = "moderation_results", indexes = {
         @Index(name = "idx_request_id", columnList = "requestId"),
         @Index(name = "idx_run_id", columnList = "runId"),
-        @Index(name = "idx_timestamp", columnList = "timestamp")
+        @Index(name = "idx_timestamp", columnList = "timestamp"),
+        // Covering index cho report (JpaResultStore.RUN_SUMMARY_SQL)
+        @Index(name = "idx_run_latency", columnList = "runId, latencyMs, success, timestamp"),
+        // Keyset pagination (timestamp, id) trong một run cho export details
+        @Index(name = "idx_run_timestamp", columnList = "runId, timestamp, id")
 })
 @Data
 @Builder
@@ -24,7 +28,7 @@ import java.time.LocalDateTime;
 public class ModerationResult {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TimeOrderedId
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -33,10 +37,14 @@ public class ModerationResult {
     @Column(name = "run_id")
     private String runId;
 
-    @Column(columnDefinition = "TEXT")
+    // Request JSON, lưu dạng blob nén (CompressedTextConverter)
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(columnDefinition = "BLOB")
     private String payload;
 
-    @Column(columnDefinition = "TEXT")
+    // Response body gốc của provider, lưu dạng blob nén
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(columnDefinition = "BLOB")
     private String responseBody;
 
     @Column(nullable = false)
@@ -65,4 +73,7 @@ public class ModerationResult {
 
     @Column
     private String providerName; // deepcleer, alibaba, mock
+
+    @Column
+    private Boolean cached; // true nếu kết quả lấy từ result cache
 }
@@ -1,5 +1,6 @@
 package com.example.moderation.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -20,7 +21,7 @@ import java.time.LocalDateTime;
 public class TestRun {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TimeOrderedId
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -62,6 +63,16 @@ public class TestRun {
     @Column
     private Double throughputRps;
 
+    // Histogram latency (µs) của cả run, dạng LatencyHistogram.encode()
+    @JsonIgnore
+    @Column(columnDefinition = "BLOB")
+    private byte[] latencyHistogram;
+
+    // JSON: provider -> Base64 của LatencyHistogram.encode()
+    @JsonIgnore
+    @Column(columnDefinition = "TEXT")
+    private String providerLatencyHistograms;
+
     @Column
     private Integer concurrency;
 
@@ -0,0 +1,33 @@
+package com.example.moderation.entity;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sinh ID tăng dần: (millis từ EPOCH_MS) << 12 | số thứ tự trong millisecond.
+ *
+ * Không cần SELECT / sequence table cho mỗi insert, giữ được JDBC batch insert
+ * (khác IDENTITY) và ID tăng theo thời gian (thứ tự gần với cột timestamp).
+ * Tối đa 4096 ID / ms; vượt quá thì mượn millisecond kế tiếp. Chỉ dành cho
+ * một process ghi (mô hình SQLite của ứng dụng); đồng hồ chạy lùi không làm ID giảm.
+ */
+public class TimeOrderedIdGenerator implements IdentifierGenerator {
+
+    // 2024-01-01T00:00:00Z
+    static final long EPOCH_MS = 1704067200000L;
+    static final int SEQUENCE_BITS = 12;
+
+    private static final AtomicLong LAST_ID = new AtomicLong();
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return nextId();
+    }
+
+    public static long nextId() {
+        long timeBased = (System.currentTimeMillis() - EPOCH_MS) << SEQUENCE_BITS;
+        return LAST_ID.updateAndGet(last -> Math.max(last + 1, timeBased));
+    }
+}
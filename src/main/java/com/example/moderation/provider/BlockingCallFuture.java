@@ -0,0 +1,57 @@
+package com.example.moderation.provider;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Future của một call blocking chạy trên executor (ModerationProvider.moderateTextAsync mặc định).
+ *
+ * cancel() không dừng được thread đang chờ provider, nên future không hoàn thành ngay khi bị cancel:
+ * call chưa chạy thì bị bỏ qua, call đang chạy được chạy hết rồi future mới hoàn thành với CancellationException.
+ * Nhờ vậy các consumer theo dõi lúc call kết thúc (permit của AdaptiveConcurrencyLimiter) không trả slot sớm.
+ */
+final class BlockingCallFuture<T> extends CompletableFuture<T> implements Runnable {
+
+    private final Supplier<T> call;
+    private volatile boolean cancelRequested;
+
+    BlockingCallFuture(Supplier<T> call) {
+        this.call = call;
+    }
+
+    @Override
+    public void run() {
+        if (cancelRequested) {
+            super.cancel(false);
+            return;
+        }
+        try {
+            T value = call.get();
+            if (cancelRequested) {
+                super.cancel(false);
+            } else {
+                complete(value);
+            }
+        } catch (Throwable e) {
+            if (cancelRequested) {
+                super.cancel(false);
+            } else {
+                completeExceptionally(e);
+            }
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (isDone()) {
+            return false;
+        }
+        cancelRequested = true;
+        return true;
+    }
+
+    @Override
+    public <U> CompletableFuture<U> newIncompleteFuture() {
+        return new CompletableFuture<>();
+    }
+}
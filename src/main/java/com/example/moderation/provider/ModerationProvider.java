@@ -1,6 +1,10 @@
 package com.example.moderation.provider;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Interface cho content moderation providers
@@ -23,6 +27,55 @@ public interface ModerationProvider {
      */
     ModerationResult moderateText(String text, Map<String, Object> options) throws ModerationException;
 
+    /**
+     * Moderate text content bất đồng bộ.
+     *
+     * Mặc định (provider blocking, ví dụ Alibaba SDK): chạy {@link #moderateText} trên
+     * {@code blockingExecutor} - executor bounded dành riêng cho provider blocking.
+     * Provider non-blocking override method này và bỏ qua executor.
+     * Future của call blocking bị cancel chỉ hoàn thành khi call thật kết thúc (xem BlockingCallFuture).
+     *
+     * @param text Content cần moderate
+     * @param options Tùy chọn bổ sung
+     * @param blockingExecutor Executor cho provider blocking
+     * @return Future hoàn thành với kết quả, hoặc exceptionally với ModerationException
+     */
+    default CompletableFuture<ModerationResult> moderateTextAsync(String text, Map<String, Object> options,
+                                                                  Executor blockingExecutor) {
+        BlockingCallFuture<ModerationResult> future = new BlockingCallFuture<>(() -> moderateText(text, options));
+        try {
+            blockingExecutor.execute(future);
+            return future;
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new ModerationException(getProviderName(), null,
+                    "Blocking provider executor is saturated", e));
+        }
+    }
+
+    /**
+     * true nếu provider có API batch thật (nhiều text trong một request)
+     */
+    default boolean supportsBatch() {
+        return false;
+    }
+
+    /**
+     * Moderate nhiều text. Provider có API batch gửi một request cho cả batch;
+     * mặc định là các call đơn lẻ song song qua {@link #moderateTextAsync}.
+     *
+     * @param texts Các content cần moderate
+     * @param options Tùy chọn bổ sung (áp dụng cho mọi text)
+     * @param blockingExecutor Executor cho provider blocking
+     * @return Future kết quả theo đúng thứ tự của {@code texts}
+     */
+    default List<CompletableFuture<ModerationResult>> moderateTextBatchAsync(List<String> texts,
+                                                                           Map<String, Object> options,
+                                                                           Executor blockingExecutor) {
+        return texts.stream()
+                .map(text -> moderateTextAsync(text, options, blockingExecutor))
+                .toList();
+    }
+
     /**
      * Health check của provider
      * @return true nếu provider đang hoạt động tốt
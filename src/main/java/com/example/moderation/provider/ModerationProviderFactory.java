@@ -1,10 +1,13 @@
 package com.example.moderation.provider;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -17,8 +20,11 @@ import java.util.stream.Collectors;
 public class ModerationProviderFactory {
 
     private final Map<String, ModerationProvider> providerMap;
+    private final ExecutorService blockingProviderExecutor;
 
-    public ModerationProviderFactory(List<ModerationProvider> providers) {
+    public ModerationProviderFactory(List<ModerationProvider> providers,
+                                     @Qualifier("blockingProviderExecutor") ExecutorService blockingProviderExecutor) {
+        this.blockingProviderExecutor = blockingProviderExecutor;
         this.providerMap = providers.stream()
                 .collect(Collectors.toMap(
                         ModerationProvider::getProviderName,
@@ -61,4 +67,26 @@ public class ModerationProviderFactory {
     public boolean hasProvider(String providerName) {
         return providerMap.containsKey(providerName);
     }
+
+    /**
+     * Gọi provider qua async SPI. Provider blocking chạy trên blockingProviderExecutor (bounded);
+     * provider non-blocking không chiếm thread nào.
+     *
+     * @param providerName Tên provider
+     * @param text Content cần moderate
+     * @param options Tùy chọn bổ sung
+     * @return Future kết quả moderation
+     */
+    public CompletableFuture<ModerationResult> moderateTextAsync(String providerName, String text,
+                                                                 Map<String, Object> options) {
+        return getProvider(providerName).moderateTextAsync(text, options, blockingProviderExecutor);
+    }
+
+    /**
+     * Gọi batch SPI của provider (xem ModerationProvider#moderateTextBatchAsync)
+     */
+    public List<CompletableFuture<ModerationResult>> moderateTextBatchAsync(String providerName, List<String> texts,
+                                                                          Map<String, Object> options) {
+        return getProvider(providerName).moderateTextBatchAsync(texts, options, blockingProviderExecutor);
+    }
 }
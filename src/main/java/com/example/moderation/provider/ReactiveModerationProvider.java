@@ -0,0 +1,32 @@
+package com.example.moderation.provider;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Provider hỗ trợ gọi API non-blocking (không giữ thread trong lúc chờ response)
+ */
+public interface ReactiveModerationProvider extends ModerationProvider {
+
+    /**
+     * Moderate text content không block thread gọi.
+     * Mono chỉ thực hiện call khi được subscribe; lỗi được emit dưới dạng ModerationException.
+     *
+     * @param text Content cần moderate
+     * @param options Tùy chọn bổ sung (language, categories, etc.)
+     * @return Mono kết quả moderation
+     */
+    Mono<ModerationResult> moderateTextReactive(String text, Map<String, Object> options);
+
+    /**
+     * Async SPI dựa trên Mono: không cần blocking executor
+     */
+    @Override
+    default CompletableFuture<ModerationResult> moderateTextAsync(String text, Map<String, Object> options,
+                                                                  Executor blockingExecutor) {
+        return moderateTextReactive(text, options).toFuture();
+    }
+}
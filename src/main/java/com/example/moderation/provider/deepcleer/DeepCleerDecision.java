@@ -0,0 +1,39 @@
+package com.example.moderation.provider.deepcleer;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Các field của response DeepCleer cần cho quyết định moderation,
+ * đọc trực tiếp từ body bởi DeepCleerResponseDecoder (không bind toàn bộ DeepCleerResponse).
+ */
+@Data
+@Builder
+public class DeepCleerDecision {
+
+    private Integer code;
+    private String message;
+    private String requestId;
+    private String riskLevel;
+    private String riskLabel1;
+    private String riskLabel2;
+    private String riskLabel3;
+    private String riskDescription;
+    private Integer finalResult;
+    private Integer resultType;
+
+    /**
+     * Probability lớn nhất trong allLabels (null nếu không có label)
+     */
+    private Double maxProbability;
+
+    /**
+     * Số phần tử allLabels (null nếu response không có allLabels)
+     */
+    private Integer allLabelsCount;
+
+    /**
+     * Body gốc (UTF-8) để lưu trữ và decode chi tiết khi cần
+     */
+    private byte[] rawBody;
+}
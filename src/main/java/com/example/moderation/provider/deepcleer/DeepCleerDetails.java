@@ -0,0 +1,113 @@
+package com.example.moderation.provider.deepcleer;
+
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Details map của kết quả DeepCleer.
+ *
+ * Các field tóm tắt (code, requestId, risk label...) có sẵn từ DeepCleerDecision;
+ * allLabels / auxInfo / riskDetail chỉ được decode từ body gốc khi được đọc lần đầu
+ * (get các key đó, duyệt entrySet, serialize...).
+ */
+public class DeepCleerDetails extends AbstractMap<String, Object> {
+
+    private static final Set<String> LAZY_KEYS = Set.of("allLabels", "auxInfo", "riskDetail");
+
+    private final Map<String, Object> summary = new HashMap<>();
+    private final byte[] rawBody;
+    private final Gson gson;
+
+    private volatile Map<String, Object> full;
+
+    public DeepCleerDetails(DeepCleerDecision decision, Gson gson) {
+        this.rawBody = decision.getRawBody();
+        this.gson = gson;
+
+        summary.put("code", decision.getCode());
+        summary.put("requestId", decision.getRequestId());
+        summary.put("originalRiskLevel", decision.getRiskLevel());
+        summary.put("riskDescription", decision.getRiskDescription());
+        summary.put("riskLabel1", decision.getRiskLabel1());
+        summary.put("riskLabel2", decision.getRiskLabel2());
+        summary.put("riskLabel3", decision.getRiskLabel3());
+        summary.put("finalResult", decision.getFinalResult());
+        summary.put("resultType", decision.getResultType());
+        if (decision.getAllLabelsCount() != null) {
+            summary.put("allLabelsCount", decision.getAllLabelsCount());
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        Map<String, Object> decoded = full;
+        if (decoded == null && !LAZY_KEYS.contains(key)) {
+            return summary.get(key);
+        }
+        return full().get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Map<String, Object> decoded = full;
+        if (decoded == null && !LAZY_KEYS.contains(key)) {
+            return summary.containsKey(key);
+        }
+        return full().containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return full().put(key, value);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return full().entrySet();
+    }
+
+    /**
+     * Đã decode phần chi tiết chưa (dùng cho test / debug)
+     */
+    public boolean isDecoded() {
+        return full != null;
+    }
+
+    private Map<String, Object> full() {
+        Map<String, Object> decoded = full;
+        if (decoded == null) {
+            synchronized (this) {
+                decoded = full;
+                if (decoded == null) {
+                    decoded = decode();
+                    full = decoded;
+                }
+            }
+        }
+        return decoded;
+    }
+
+    private Map<String, Object> decode() {
+        Map<String, Object> decoded = new HashMap<>(summary);
+        DeepCleerResponse response = gson.fromJson(new String(rawBody, StandardCharsets.UTF_8), DeepCleerResponse.class);
+        if (response == null) {
+            return decoded;
+        }
+
+        if (response.getAllLabels() != null) {
+            decoded.put("allLabels", response.getAllLabels());
+        }
+        if (response.getAuxInfo() != null) {
+            decoded.put("auxInfo", response.getAuxInfo());
+        }
+        if (response.getRiskDetail() != null) {
+            decoded.put("riskDetail", response.getRiskDetail());
+        }
+        return decoded;
+    }
+}
@@ -1,13 +1,15 @@
 package com.example.moderation.provider.deepcleer;
 
 import com.example.moderation.provider.ModerationException;
-import com.example.moderation.provider.ModerationProvider;
 import com.example.moderation.provider.ModerationResult;
 import com.example.moderation.provider.ProviderConfig;
+import com.example.moderation.provider.ReactiveModerationProvider;
 import com.google.gson.Gson;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
 import io.github.resilience4j.retry.Retry;
 import io.github.resilience4j.retry.RetryConfig;
 import io.github.resilience4j.retry.RetryRegistry;
@@ -17,6 +19,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -28,12 +32,12 @@ import java.util.stream.Collectors;
 @Component
 @Slf4j
 @ConditionalOnProperty(prefix = "deepcleer.api", name = "enabled", havingValue = "true", matchIfMissing = false)
-public class DeepCleerProvider implements ModerationProvider {
+public class DeepCleerProvider implements ReactiveModerationProvider {
 
     private final DeepCleerConfig config;
     private final WebClient webClient;
     private final Gson gson;
-    private final Gson requestGson;  // For serializing requests (no nulls)
+    private final DeepCleerRequestEncoder requestEncoder;
     private final CircuitBreaker circuitBreaker;
     private final Retry retry;
 
@@ -41,7 +45,9 @@ public class DeepCleerProvider implements ModerationProvider {
                             Gson gson, Gson deepcleerGson) {
         this.config = config;
         this.gson = gson;  // For parsing responses
-        this.requestGson = deepcleerGson;  // For serializing requests (no nulls)
+        // Envelope cố định encode sẵn; deepcleerGson chỉ dùng cho field extra (hiếm)
+        this.requestEncoder = new DeepCleerRequestEncoder(config.getAccessKey(), config.getAppId(),
+                config.getEventId(), deepcleerGson);
 
         // Configure WebClient
         this.webClient = webClientBuilder
@@ -82,12 +88,12 @@ public class DeepCleerProvider implements ModerationProvider {
 
         try {
             // Build request
-            DeepCleerRequest request = buildRequest(text, options);
+            byte[] request = requestEncoder.encode(text, options);
 
             log.debug("Calling DeepCleer API for text length: {}", text.length());
 
             // Call API with Circuit Breaker + Retry
-            DeepCleerResponse response = CircuitBreaker.decorateSupplier(circuitBreaker,
+            DeepCleerDecision response = CircuitBreaker.decorateSupplier(circuitBreaker,
                     () -> Retry.decorateSupplier(retry, () -> callApi(request)).get()
             ).get();
 
@@ -101,10 +107,42 @@ public class DeepCleerProvider implements ModerationProvider {
         } catch (Exception e) {
             long latency = System.currentTimeMillis() - startTime;
             log.error("DeepCleer API call failed after {}ms: {}", latency, e.getMessage(), e);
-            throw new ModerationException("deepcleer", null, "DeepCleer API failed: " + e.getMessage(), e);
+            // Giữ error code của DeepCleer (ví dụ 1901 QPS limit) cho rate limiter
+            Integer errorCode = e instanceof ModerationException moderationException ? moderationException.getErrorCode() : null;
+            throw new ModerationException("deepcleer", errorCode, "DeepCleer API failed: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Non-blocking path: WebClient + Resilience4j reactive operators, không block thread nào
+     * trong lúc chờ DeepCleer. Thứ tự giống path đồng bộ: Circuit Breaker bọc ngoài Retry.
+     */
+    @Override
+    public Mono<ModerationResult> moderateTextReactive(String text, Map<String, Object> options) {
+        return Mono.defer(() -> {
+            long startTime = System.currentTimeMillis();
+            byte[] request = requestEncoder.encode(text, options);
+
+            log.debug("Calling DeepCleer API (reactive) for text length: {}", text.length());
+
+            return exchange(request)
+                    .transformDeferred(RetryOperator.of(retry))
+                    .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                    .map(response -> {
+                        long latency = System.currentTimeMillis() - startTime;
+                        log.debug("DeepCleer API call completed in {}ms, riskLevel: {}", latency, response.getRiskLevel());
+                        return parseResponse(response, latency);
+                    })
+                    .onErrorMap(e -> !(e instanceof ModerationException moderationException
+                                    && "deepcleer".equals(moderationException.getProviderName())),
+                            e -> {
+                                long latency = System.currentTimeMillis() - startTime;
+                                log.error("DeepCleer API call failed after {}ms: {}", latency, e.getMessage());
+                                return new ModerationException("deepcleer", null, "DeepCleer API failed: " + e.getMessage(), e);
+                            });
+        });
+    }
+
     @Override
     public boolean isHealthy() {
         return circuitBreaker.getState() != CircuitBreaker.State.OPEN;
@@ -121,62 +159,31 @@ public class DeepCleerProvider implements ModerationProvider {
     }
 
     /**
-     * Build DeepCleer API request according to official documentation
-     * Note: tokenId is required by the API
+     * Call DeepCleer API (blocking, dùng cho path đồng bộ có Resilience4j decorators)
      */
-    private DeepCleerRequest buildRequest(String text, Map<String, Object> options) {
-        // Extract parameters from options
-        // tokenId is REQUIRED by DeepCleer API
-        String tokenId = options != null ? (String) options.getOrDefault("userId", "anonymous_user") : "anonymous_user";
-        String ip = options != null ? (String) options.get("ip") : null;
-        String deviceId = options != null ? (String) options.get("deviceId") : null;
-        String nickname = options != null ? (String) options.get("nickname") : null;
-
-        // Build extra metadata if provided
-        Map<String, Object> extra = null;
-        if (options != null && options.containsKey("extra")) {
-            extra = (Map<String, Object>) options.get("extra");
+    private DeepCleerDecision callApi(byte[] request) {
+        try {
+            return exchange(request)
+                    .block(Duration.ofMillis(config.getReadTimeoutMs() + 1000)); // Add 1s buffer to WebClient timeout
+        } catch (Exception e) {
+            throw new ModerationException("Failed to call DeepCleer API", e);
         }
-
-        DeepCleerRequest.DataField data = DeepCleerRequest.DataField.builder()
-                .text(text)
-                .tokenId(tokenId)  // Required field
-                .ip(ip)
-                .deviceId(deviceId)
-                .nickname(nickname)
-                .extra(extra)
-                .build();
-
-        // Type should be TEXTRISK according to documentation
-        String type = options != null ? (String) options.getOrDefault("type", "TEXTRISK") : "TEXTRISK";
-
-        return DeepCleerRequest.builder()
-                .accessKey(config.getAccessKey())
-                .appId(config.getAppId())
-                .eventId(config.getEventId())
-                .type(type)
-                .data(data)
-                .build();
     }
 
     /**
-     * Call DeepCleer API
+     * Call DeepCleer API (lazy Mono, mỗi lần subscribe là một HTTP call mới nên retry được)
      * Note: DeepCleer API returns Content-Type: text/plain but body is JSON
      */
-    private DeepCleerResponse callApi(DeepCleerRequest request) {
-        try {
-            // Serialize request using requestGson (which omits null values)
-            String requestBody = requestGson.toJson(request);
-            log.info("=== DeepCleer API Call ===");
-            log.info("Request URL: {}{}", config.getBaseUrl(), config.getTextModerationEndpoint());
-            log.info("Request Body: {}", requestBody);
-            log.info("Request Body Length: {} bytes", requestBody.getBytes().length);
-            log.info("Timeout: {}ms", config.getReadTimeoutMs());
+    private Mono<DeepCleerDecision> exchange(byte[] requestBody) {
+        return Mono.defer(() -> {
+            // Không log body: chứa accessKey và nội dung người dùng
+            log.debug("DeepCleer API call: {}{}, body {} bytes, timeout {}ms", config.getBaseUrl(),
+                    config.getTextModerationEndpoint(), requestBody.length, config.getReadTimeoutMs());
 
             // DeepCleer API returns Content-Type: text/plain but the body is actually JSON
-            // So we need to retrieve as String first, then parse manually
+            // So we retrieve the raw bytes, then decode the decision fields manually
             long apiStartTime = System.currentTimeMillis();
-            String responseBody = webClient.post()
+            return webClient.post()
                     .uri(config.getTextModerationEndpoint())
                     .header("Content-Type", "application/json; charset=UTF-8")
                     .bodyValue(requestBody)
@@ -191,38 +198,34 @@ public class DeepCleerProvider implements ModerationProvider {
                                             return Mono.error(new ModerationException("API Error [" + statusCode + "]: " + body));
                                         });
                             })
-                    .bodyToMono(String.class)
-                    .block(Duration.ofMillis(config.getReadTimeoutMs() + 1000)); // Add 1s buffer to WebClient timeout
-
-            long apiLatency = System.currentTimeMillis() - apiStartTime;
-            log.info("API call completed in {}ms", apiLatency);
-
-            if (responseBody == null || responseBody.isEmpty()) {
-                throw new ModerationException("DeepCleer API returned null or empty response");
-            }
-
-            log.debug("DeepCleer API response body: {}", responseBody);
-
-            // Parse JSON manually since response is text/plain
-            DeepCleerResponse response = gson.fromJson(responseBody, DeepCleerResponse.class);
-
-            if (response == null) {
-                throw new ModerationException("Failed to parse DeepCleer response: " + responseBody);
-            }
-
-            return response;
-
-        } catch (Exception e) {
-            throw new ModerationException("Failed to call DeepCleer API", e);
-        }
+                    .bodyToMono(byte[].class)
+                    .timeout(Duration.ofMillis(config.getReadTimeoutMs() + 1000))
+                    .switchIfEmpty(Mono.error(() -> new ModerationException("DeepCleer API returned null or empty response")))
+                    .map(responseBody -> {
+                        long apiLatency = System.currentTimeMillis() - apiStartTime;
+                        log.debug("API call completed in {}ms", apiLatency);
+
+                        if (responseBody.length == 0) {
+                            throw new ModerationException("DeepCleer API returned null or empty response");
+                        }
+
+                        // Chỉ đọc các field cần cho quyết định; body gốc giữ nguyên để lưu trữ
+                        try {
+                            return DeepCleerResponseDecoder.decode(responseBody);
+                        } catch (IOException e) {
+                            throw new ModerationException("Failed to parse DeepCleer response: "
+                                    + new String(responseBody, StandardCharsets.UTF_8), e);
+                        }
+                    });
+        });
     }
 
     /**
      * Parse DeepCleer response to standard ModerationResult
      * According to official documentation
      */
-    private ModerationResult parseResponse(DeepCleerResponse response, long latency) {
-        if (response.getCode() != 1100) {
+    private ModerationResult parseResponse(DeepCleerDecision response, long latency) {
+        if (response.getCode() == null || response.getCode() != 1100) {
             throw new ModerationException("deepcleer", response.getCode(),
                     "DeepCleer API returned error: " + response.getMessage());
         }
@@ -240,43 +243,11 @@ public class DeepCleerProvider implements ModerationProvider {
             labels.add(response.getRiskLabel3());
         }
 
-        // Calculate confidence score from allLabels
-        Double confidenceScore = null;
-        if (response.getAllLabels() != null && !response.getAllLabels().isEmpty()) {
-            // Use the highest probability from all labels
-            confidenceScore = response.getAllLabels().stream()
-                    .map(DeepCleerResponse.AllLabel::getProbability)
-                    .max(Double::compareTo)
-                    .orElse(null);
-        }
-
-        // Build details map with comprehensive information
-        Map<String, Object> details = new HashMap<>();
-        details.put("code", response.getCode());
-        details.put("requestId", response.getRequestId());
-        details.put("originalRiskLevel", response.getRiskLevel());
-        details.put("riskDescription", response.getRiskDescription());
-        details.put("riskLabel1", response.getRiskLabel1());
-        details.put("riskLabel2", response.getRiskLabel2());
-        details.put("riskLabel3", response.getRiskLabel3());
-        details.put("finalResult", response.getFinalResult());
-        details.put("resultType", response.getResultType());
-
-        // Add allLabels information
-        if (response.getAllLabels() != null) {
-            details.put("allLabelsCount", response.getAllLabels().size());
-            details.put("allLabels", response.getAllLabels());
-        }
-
-        // Add auxiliary information if available
-        if (response.getAuxInfo() != null) {
-            details.put("auxInfo", response.getAuxInfo());
-        }
+        // Confidence = probability cao nhất trong allLabels (decoder đã tính khi đọc body)
+        Double confidenceScore = response.getMaxProbability();
 
-        // Add risk detail if available
-        if (response.getRiskDetail() != null) {
-            details.put("riskDetail", response.getRiskDetail());
-        }
+        // Details: field tóm tắt có sẵn, allLabels / auxInfo / riskDetail decode khi được đọc
+        Map<String, Object> details = new DeepCleerDetails(response, gson);
 
         return ModerationResult.builder()
                 .providerName("deepcleer")
@@ -284,7 +255,7 @@ public class DeepCleerProvider implements ModerationProvider {
                 .confidenceScore(confidenceScore)
                 .labels(labels)
                 .details(details)
-                .rawResponse(gson.toJson(response))
+                .rawResponse(new String(response.getRawBody(), StandardCharsets.UTF_8))
                 .latencyMs(latency)
                 .build();
     }
@@ -0,0 +1,244 @@
+package com.example.moderation.provider.deepcleer;
+
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Encoder JSON cho request DeepCleer, thay cho DeepCleerRequest + Gson reflection.
+ *
+ * Phần envelope cố định (accessKey, appId, eventId, type mặc định) được encode UTF-8 một lần;
+ * mỗi request chỉ escape text và các field riêng vào buffer tái sử dụng theo thread,
+ * rồi copy một lần ra byte[] đúng kích thước để làm body (WebClient wrap, không copy thêm).
+ *
+ * Output tương đương requestGson.toJson(DeepCleerRequest): cùng thứ tự field, bỏ field null.
+ */
+public final class DeepCleerRequestEncoder {
+
+    static final String DEFAULT_TYPE = "TEXTRISK";
+    static final String DEFAULT_TOKEN_ID = "anonymous_user";
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TYPE = ascii("\"type\":\"");
+    private static final byte[] DATA_TEXT = ascii("\"data\":{\"text\":\"");
+    private static final byte[] TOKEN_ID = ascii("\",\"tokenId\":\"");
+    private static final byte[] IP = ascii("\",\"ip\":\"");
+    private static final byte[] DEVICE_ID = ascii("\",\"deviceId\":\"");
+    private static final byte[] NICKNAME = ascii("\",\"nickname\":\"");
+    private static final byte[] EXTRA = ascii("\",\"extra\":");
+    private static final byte[] STRING_END = ascii("\"");
+    private static final byte[] COMMA = ascii(",");
+    private static final byte[] END = ascii("}}");
+
+    private static final int INITIAL_BUFFER = 4096;
+    // Buffer lớn hơn ngưỡng này không giữ lại sau request (tránh giữ text rất dài theo thread)
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(() -> new Buffer(INITIAL_BUFFER));
+
+    // {"accessKey":"...","appId":"...","eventId":"...",
+    private final byte[] envelope;
+    // envelope + "type":"TEXTRISK","data":{"text":"
+    private final byte[] defaultEnvelope;
+    private final Gson extraGson;
+
+    public DeepCleerRequestEncoder(String accessKey, String appId, String eventId, Gson extraGson) {
+        this.extraGson = extraGson;
+
+        Buffer buffer = new Buffer(256);
+        buffer.write(ascii("{"));
+        boolean first = true;
+        first = writeConstantField(buffer, "accessKey", accessKey, first);
+        first = writeConstantField(buffer, "appId", appId, first);
+        first = writeConstantField(buffer, "eventId", eventId, first);
+        if (!first) {
+            buffer.write(COMMA);
+        }
+        this.envelope = buffer.toByteArray();
+
+        writeType(buffer, DEFAULT_TYPE);
+        buffer.write(DATA_TEXT);
+        this.defaultEnvelope = buffer.toByteArray();
+    }
+
+    /**
+     * Encode request body từ text và options (cùng key với buildRequest cũ:
+     * userId, ip, deviceId, nickname, extra, type)
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] encode(String text, Map<String, Object> options) {
+        String tokenId = options != null ? (String) options.getOrDefault("userId", DEFAULT_TOKEN_ID) : DEFAULT_TOKEN_ID;
+        String ip = options != null ? (String) options.get("ip") : null;
+        String deviceId = options != null ? (String) options.get("deviceId") : null;
+        String nickname = options != null ? (String) options.get("nickname") : null;
+        Map<String, Object> extra = options != null ? (Map<String, Object>) options.get("extra") : null;
+        String type = options != null ? (String) options.getOrDefault("type", DEFAULT_TYPE) : DEFAULT_TYPE;
+
+        return encode(text, tokenId, ip, deviceId, nickname, extra, type);
+    }
+
+    byte[] encode(String text, String tokenId, String ip, String deviceId, String nickname,
+                  Map<String, Object> extra, String type) {
+        Buffer buffer = BUFFERS.get();
+        buffer.reset();
+
+        if (DEFAULT_TYPE.equals(type)) {
+            buffer.write(defaultEnvelope);
+        } else {
+            buffer.write(envelope);
+            if (type != null) {
+                writeType(buffer, type);
+            }
+            buffer.write(DATA_TEXT);
+        }
+
+        buffer.writeEscaped(text);
+        writeField(buffer, TOKEN_ID, tokenId);
+        writeField(buffer, IP, ip);
+        writeField(buffer, DEVICE_ID, deviceId);
+        writeField(buffer, NICKNAME, nickname);
+
+        if (extra != null) {
+            buffer.write(EXTRA);
+            buffer.write(extraGson.toJson(extra).getBytes(StandardCharsets.UTF_8));
+        } else {
+            buffer.write(STRING_END);
+        }
+        buffer.write(END);
+
+        byte[] body = buffer.toByteArray();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            BUFFERS.remove();
+        }
+        return body;
+    }
+
+    /**
+     * Field string tùy chọn: đóng string trước đó, mở field mới (bỏ qua nếu null)
+     */
+    private static void writeField(Buffer buffer, byte[] prefix, String value) {
+        if (value != null) {
+            buffer.write(prefix);
+            buffer.writeEscaped(value);
+        }
+    }
+
+    private static void writeType(Buffer buffer, String type) {
+        buffer.write(TYPE);
+        buffer.writeEscaped(type);
+        buffer.write(STRING_END);
+        buffer.write(COMMA);
+    }
+
+    private static boolean writeConstantField(Buffer buffer, String name, String value, boolean first) {
+        if (value == null) {
+            return first;
+        }
+        buffer.write(ascii((first ? "\"" : ",\"") + name + "\":\""));
+        buffer.writeEscaped(value);
+        buffer.write(STRING_END);
+        return false;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Byte buffer tăng dần, ghi UTF-8 + JSON escape trực tiếp từ char (không tạo String trung gian)
+     */
+    private static final class Buffer {
+
+        private byte[] bytes;
+        private int size;
+
+        Buffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        int capacity() {
+            return bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        void write(byte[] source) {
+            ensure(source.length);
+            System.arraycopy(source, 0, bytes, size, source.length);
+            size += source.length;
+        }
+
+        void writeEscaped(String value) {
+            // Mỗi char tối đa 6 byte (escape dạng u-XXXX), 3 byte UTF-8 cho BMP, 4 byte cho một cặp surrogate
+            ensure(value.length() * 6);
+            byte[] out = bytes;
+            int pos = size;
+
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    if (c >= 0x20 && c != '"' && c != '\\') {
+                        out[pos++] = (byte) c;
+                        continue;
+                    }
+                    out[pos++] = '\\';
+                    switch (c) {
+                        case '"' -> out[pos++] = '"';
+                        case '\\' -> out[pos++] = '\\';
+                        case '\n' -> out[pos++] = 'n';
+                        case '\r' -> out[pos++] = 'r';
+                        case '\t' -> out[pos++] = 't';
+                        case '\b' -> out[pos++] = 'b';
+                        case '\f' -> out[pos++] = 'f';
+                        default -> pos = writeUnicodeEscape(out, pos, c);
+                    }
+                } else if (c < 0x800) {
+                    out[pos++] = (byte) (0xC0 | (c >> 6));
+                    out[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else if (c == '\u2028' || c == '\u2029') {
+                    // Hợp lệ trong JSON nhưng không hợp lệ trong JavaScript string (Gson cũng escape)
+                    out[pos++] = '\\';
+                    pos = writeUnicodeEscape(out, pos, c);
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    out[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                    out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    out[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // Surrogate lẻ: thay bằng '?' giống String.getBytes(UTF_8)
+                    out[pos++] = '?';
+                } else {
+                    out[pos++] = (byte) (0xE0 | (c >> 12));
+                    out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    out[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            size = pos;
+        }
+
+        private static int writeUnicodeEscape(byte[] out, int pos, char c) {
+            out[pos++] = 'u';
+            out[pos++] = HEX[(c >> 12) & 0xF];
+            out[pos++] = HEX[(c >> 8) & 0xF];
+            out[pos++] = HEX[(c >> 4) & 0xF];
+            out[pos++] = HEX[c & 0xF];
+            return pos;
+        }
+
+        private void ensure(int additional) {
+            if (size + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.moderation.provider.deepcleer;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming decoder cho response DeepCleer: duyệt body một lần bằng JsonReader,
+ * chỉ lấy code, message, requestId, riskLevel, các risk label, finalResult / resultType
+ * và probability lớn nhất của allLabels; mọi field khác (riskDetail, auxInfo, tokenLabels,
+ * chi tiết từng label...) được skip mà không tạo object.
+ */
+public final class DeepCleerResponseDecoder {
+
+    private DeepCleerResponseDecoder() {
+    }
+
+    /**
+     * @throws IOException body không phải JSON object hợp lệ
+     */
+    public static DeepCleerDecision decode(byte[] body) throws IOException {
+        DeepCleerDecision.DeepCleerDecisionBuilder decision = DeepCleerDecision.builder().rawBody(body);
+
+        try (JsonReader reader = new JsonReader(
+                new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                    case "code" -> decision.code(reader.nextInt());
+                    case "message" -> decision.message(reader.nextString());
+                    case "requestId" -> decision.requestId(reader.nextString());
+                    case "riskLevel" -> decision.riskLevel(reader.nextString());
+                    case "riskLabel1" -> decision.riskLabel1(reader.nextString());
+                    case "riskLabel2" -> decision.riskLabel2(reader.nextString());
+                    case "riskLabel3" -> decision.riskLabel3(reader.nextString());
+                    case "riskDescription" -> decision.riskDescription(reader.nextString());
+                    case "finalResult" -> decision.finalResult(reader.nextInt());
+                    case "resultType" -> decision.resultType(reader.nextInt());
+                    case "allLabels" -> readAllLabels(reader, decision);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed DeepCleer response: " + e.getMessage(), e);
+        }
+
+        return decision.build();
+    }
+
+    /**
+     * allLabels: chỉ đếm phần tử và lấy probability lớn nhất
+     */
+    private static void readAllLabels(JsonReader reader, DeepCleerDecision.DeepCleerDecisionBuilder decision)
+            throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+
+        int count = 0;
+        Double maxProbability = null;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            count++;
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("probability".equals(reader.nextName()) && reader.peek() == JsonToken.NUMBER) {
+                    double probability = reader.nextDouble();
+                    maxProbability = maxProbability == null ? probability : Math.max(maxProbability, probability);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+
+        decision.allLabelsCount(count);
+        decision.maxProbability(maxProbability);
+    }
+}
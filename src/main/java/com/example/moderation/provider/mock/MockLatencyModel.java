@@ -0,0 +1,81 @@
+package com.example.moderation.provider.mock;
+
+import com.example.moderation.store.ResultStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Phân phối latency giả lập của MockProvider.
+ *
+ * - uniform: đều trong [min-latency-ms, max-latency-ms)
+ * - log-normal: exp(ln(median) + sigma * N(0,1)), giới hạn trên max-latency-ms x 10
+ * - replay: lấy mẫu từ latency thật của các run đã lưu (phân phối thực nghiệm);
+ *   được load khi ứng dụng sẵn sàng, trước đó (hoặc nếu không có dữ liệu) dùng uniform
+ */
+@Component
+@Slf4j
+public class MockLatencyModel {
+
+    private final MockSimulationConfig config;
+    private final ResultStore resultStore;
+
+    private volatile long[] replaySamples;
+
+    public MockLatencyModel(MockSimulationConfig config, ResultStore resultStore) {
+        this.config = config;
+        this.resultStore = resultStore;
+
+        log.info("MockLatencyModel initialized: distribution={}", config.getDistribution());
+    }
+
+    /**
+     * Load latency của các run cần replay
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadReplaySamples() {
+        if (!"replay".equalsIgnoreCase(config.getDistribution())) {
+            return;
+        }
+        if (config.getReplayRunIds().isEmpty()) {
+            log.warn("Mock latency distribution is 'replay' but no replay-run-ids configured, using uniform");
+            return;
+        }
+
+        List<Long> latencies = resultStore.findProviderLatenciesByRunIds(config.getReplayRunIds());
+        if (latencies.isEmpty()) {
+            log.warn("No stored latencies for runs {}, using uniform", config.getReplayRunIds());
+            return;
+        }
+
+        replaySamples = latencies.stream().mapToLong(Long::longValue).toArray();
+        log.info("Loaded {} latency samples from runs {} for mock replay", replaySamples.length, config.getReplayRunIds());
+    }
+
+    /**
+     * @return latency giả lập (ms)
+     */
+    public long sampleMs() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        switch (config.getDistribution().toLowerCase()) {
+            case "log-normal" -> {
+                double latency = Math.exp(Math.log(config.getMedianLatencyMs()) + config.getSigma() * random.nextGaussian());
+                return Math.min((long) latency, config.getMaxLatencyMs() * 10);
+            }
+            case "replay" -> {
+                long[] samples = replaySamples;
+                if (samples != null) {
+                    return samples[random.nextInt(samples.length)];
+                }
+            }
+            default -> {
+            }
+        }
+        return random.nextLong(config.getMinLatencyMs(), Math.max(config.getMinLatencyMs() + 1, config.getMaxLatencyMs()));
+    }
+}
@@ -4,23 +4,93 @@ import com.example.moderation.provider.ModerationException;
 import com.example.moderation.provider.ModerationProvider;
 import com.example.moderation.provider.ModerationResult;
 import com.example.moderation.provider.ProviderConfig;
+import com.example.moderation.util.AhoCorasick;
 import com.google.gson.Gson;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.util.HashedWheelTimer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Mock Provider cho testing
  * Không cần API credentials, simulate API behavior
+ *
+ * Mọi call hoàn thành sau latency lấy từ MockLatencyModel qua một timer wheel (tick 1ms),
+ * không thread nào bị giữ trong lúc chờ, nên đủ cho capacity test hàng chục nghìn rps.
+ * Kết quả được dựng trên caller thread; timer thread chỉ chuyển việc complete future (và mọi continuation
+ * của caller) sang completion executor, để một tick không phải chạy hết các callback đến hạn.
+ * Lỗi kiểu DeepCleer (1901 QPS limit, 1903 service failure) được inject theo tỉ lệ cấu hình.
  */
 @Component
 @Slf4j
-@RequiredArgsConstructor
 public class MockProvider implements ModerationProvider {
 
+    /**
+     * Keyword theo category, thứ tự khai báo = thứ tự ưu tiên (match substring, không phân biệt hoa thường)
+     */
+    private static final AhoCorasick KEYWORDS = AhoCorasick.builder()
+            .addAll("SPAM", List.of("spam", "scam", "fraud", "phishing"))
+            .addAll("VIOLENCE", List.of("violence", "kill", "attack", "weapon"))
+            .addAll("SEXUAL", List.of("sex", "porn", "xxx", "adult"))
+            .addAll("ILLEGAL", List.of("illegal", "drug", "smuggle"))
+            .addAll("SUSPICIOUS", List.of("maybe", "suspicious", "unclear"))
+            .build();
+
+    private static final Map<String, Double> CONFIDENCE = Map.of(
+            "SPAM", 0.90,
+            "VIOLENCE", 0.88,
+            "SEXUAL", 0.92,
+            "ILLEGAL", 0.87,
+            "SUSPICIOUS", 0.65,
+            "CLEAN", 0.95);
+
+    private static final Map<Integer, String> ERROR_MESSAGES = Map.of(
+            1901, "QPS limit exceeded (simulated)",
+            1902, "Invalid parameters (simulated)",
+            1903, "Service failure (simulated)");
+
     private final Gson gson;
+    private final MockSimulationConfig simulationConfig;
+    private final MockLatencyModel latencyModel;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Timer wheel giả lập độ trễ (một thread phục vụ mọi call đang chờ)
+     */
+    private final HashedWheelTimer timer = new HashedWheelTimer(
+            new CustomizableThreadFactory("mock-provider-timer-"), 1, TimeUnit.MILLISECONDS, 512);
+
+    /**
+     * Complete future thay cho timer thread
+     */
+    private final ExecutorService completionExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new CustomizableThreadFactory("mock-provider-complete-"));
+
+    private final Map<Integer, Counter> injectedErrors = new ConcurrentHashMap<>();
+
+    public MockProvider(Gson gson, MockSimulationConfig simulationConfig,
+                        MockLatencyModel latencyModel, MeterRegistry meterRegistry) {
+        this.gson = gson;
+        this.simulationConfig = simulationConfig;
+        this.latencyModel = latencyModel;
+        this.meterRegistry = meterRegistry;
+
+        log.info("MockProvider initialized: latency={}, errorRates={}",
+                simulationConfig.getDistribution(), simulationConfig.getErrorRates());
+    }
 
     @Override
     public String getProviderName() {
@@ -29,69 +99,168 @@ public class MockProvider implements ModerationProvider {
 
     @Override
     public ModerationResult moderateText(String text, Map<String, Object> options) throws ModerationException {
+        try {
+            return moderateTextAsync(text, options, null).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ModerationException moderationException) {
+                throw moderationException;
+            }
+            throw new ModerationException("mock", null, "Mock provider failed", e.getCause());
+        }
+    }
+
+    /**
+     * Async: hoàn thành future sau độ trễ giả lập
+     */
+    @Override
+    public CompletableFuture<ModerationResult> moderateTextAsync(String text, Map<String, Object> options,
+                                                                 Executor blockingExecutor) {
         long startTime = System.currentTimeMillis();
+        CompletableFuture<ModerationResult> future = new CompletableFuture<>();
 
+        log.debug("Mock provider (async) processing text length: {}", text.length());
+
+        Integer errorCode = sampleError();
+        ModerationResult result;
         try {
-            log.debug("Mock provider processing text length: {}", text.length());
-
-            // Simulate API latency
-            Thread.sleep((long) (Math.random() * 100 + 50)); // 50-150ms
-
-            // Generate mock response based on content
-            String lowerText = text.toLowerCase();
-            String riskLevel = "LOW";
-            double confidence = 0.95;
-            List<String> labels = new ArrayList<>();
-
-            // Simple keyword detection for demo
-            if (containsAny(lowerText, "spam", "scam", "fraud", "phishing")) {
-                riskLevel = "HIGH";
-                confidence = 0.90;
-                labels.add("SPAM");
-            } else if (containsAny(lowerText, "violence", "kill", "attack", "weapon")) {
-                riskLevel = "HIGH";
-                confidence = 0.88;
-                labels.add("VIOLENCE");
-            } else if (containsAny(lowerText, "sex", "porn", "xxx", "adult")) {
-                riskLevel = "HIGH";
-                confidence = 0.92;
-                labels.add("SEXUAL");
-            } else if (containsAny(lowerText, "illegal", "drug", "smuggle")) {
-                riskLevel = "HIGH";
-                confidence = 0.87;
-                labels.add("ILLEGAL");
-            } else if (containsAny(lowerText, "maybe", "suspicious", "unclear")) {
-                riskLevel = "MEDIUM";
-                confidence = 0.65;
-                labels.add("SUSPICIOUS");
+            result = errorCode == null ? buildResult(text) : null;
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new ModerationException("mock", null, "Mock provider failed", e));
+        }
+
+        timer.newTimeout(timeout -> completionExecutor.execute(() -> {
+            if (errorCode != null) {
+                future.completeExceptionally(injectedError(errorCode));
             } else {
-                labels.add("CLEAN");
+                complete(future, result, System.currentTimeMillis() - startTime);
+            }
+        }), latencyModel.sampleMs(), TimeUnit.MILLISECONDS);
+
+        return future;
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    /**
+     * Batch: một độ trễ giả lập cho cả batch (giống một HTTP request), cộng chi phí nhỏ theo từng item
+     */
+    @Override
+    public List<CompletableFuture<ModerationResult>> moderateTextBatchAsync(List<String> texts,
+                                                                          Map<String, Object> options,
+                                                                          Executor blockingExecutor) {
+        long startTime = System.currentTimeMillis();
+        List<CompletableFuture<ModerationResult>> futures = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            futures.add(new CompletableFuture<>());
+        }
+
+        log.debug("Mock provider (batch) processing {} texts", texts.size());
+
+        // Lỗi inject áp dụng cho cả batch (một HTTP request)
+        Integer errorCode = sampleError();
+        List<ModerationResult> results = new ArrayList<>(texts.size());
+        List<Exception> failures = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            try {
+                results.add(errorCode == null ? buildResult(text) : null);
+                failures.add(null);
+            } catch (Exception e) {
+                results.add(null);
+                failures.add(e);
             }
+        }
 
+        timer.newTimeout(timeout -> completionExecutor.execute(() -> {
             long latency = System.currentTimeMillis() - startTime;
+            for (int i = 0; i < texts.size(); i++) {
+                if (errorCode != null) {
+                    futures.get(i).completeExceptionally(injectedError(errorCode));
+                } else if (failures.get(i) != null) {
+                    futures.get(i).completeExceptionally(
+                            new ModerationException("mock", null, "Mock provider failed", failures.get(i)));
+                } else {
+                    complete(futures.get(i), results.get(i), latency);
+                }
+            }
+        }), latencyModel.sampleMs() + texts.size(), TimeUnit.MILLISECONDS);
+
+        return futures;
+    }
 
-            Map<String, Object> mockData = new HashMap<>();
-            mockData.put("riskLevel", riskLevel);
-            mockData.put("confidence", confidence);
-            mockData.put("labels", labels);
-            mockData.put("mockMode", true);
-
-            log.debug("Mock provider completed in {}ms, riskLevel: {}", latency, riskLevel);
-
-            return ModerationResult.builder()
-                    .providerName("mock")
-                    .riskLevel(riskLevel)
-                    .confidenceScore(confidence)
-                    .labels(labels)
-                    .details(mockData)
-                    .rawResponse(gson.toJson(mockData))
-                    .latencyMs(latency)
-                    .build();
-
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new ModerationException("mock", null, "Mock provider interrupted", e);
+    @PreDestroy
+    public void shutdown() {
+        timer.stop();
+        completionExecutor.shutdown();
+    }
+
+    /**
+     * @return error code cần inject cho call này, hoặc null
+     */
+    private Integer sampleError() {
+        Map<Integer, Double> errorRates = simulationConfig.getErrorRates();
+        if (errorRates.isEmpty()) {
+            return null;
         }
+
+        double point = ThreadLocalRandom.current().nextDouble();
+        double cumulative = 0;
+        for (Map.Entry<Integer, Double> entry : errorRates.entrySet()) {
+            cumulative += entry.getValue();
+            if (point < cumulative) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    private ModerationException injectedError(int code) {
+        injectedErrors.computeIfAbsent(code, c -> Counter.builder("moderation.mock.injected.errors")
+                        .tag("code", String.valueOf(c))
+                        .register(meterRegistry))
+                .increment();
+        return new ModerationException("mock", code, ERROR_MESSAGES.getOrDefault(code, "Simulated error " + code));
+    }
+
+    private static void complete(CompletableFuture<ModerationResult> future, ModerationResult result, long latency) {
+        result.setLatencyMs(latency);
+        log.debug("Mock provider completed in {}ms, riskLevel: {}", latency, result.getRiskLevel());
+        future.complete(result);
+    }
+
+    /**
+     * Generate mock response based on content (latencyMs được gán khi hoàn thành)
+     */
+    private ModerationResult buildResult(String text) {
+        // Simple keyword detection for demo: category đầu tiên (theo thứ tự ưu tiên) có keyword trong text
+        long mask = KEYWORDS.match(text);
+        String category = mask != 0 ? KEYWORDS.categories().get(Long.numberOfTrailingZeros(mask)) : "CLEAN";
+
+        String riskLevel = switch (category) {
+            case "CLEAN" -> "LOW";
+            case "SUSPICIOUS" -> "MEDIUM";
+            default -> "HIGH";
+        };
+        double confidence = CONFIDENCE.get(category);
+        List<String> labels = new ArrayList<>();
+        labels.add(category);
+
+        Map<String, Object> mockData = new HashMap<>();
+        mockData.put("riskLevel", riskLevel);
+        mockData.put("confidence", confidence);
+        mockData.put("labels", labels);
+        mockData.put("mockMode", true);
+
+        return ModerationResult.builder()
+                .providerName("mock")
+                .riskLevel(riskLevel)
+                .confidenceScore(confidence)
+                .labels(labels)
+                .details(mockData)
+                .rawResponse(gson.toJson(mockData))
+                .build();
     }
 
     @Override
@@ -108,16 +277,4 @@ public class MockProvider implements ModerationProvider {
                 .enabled(true)
                 .build();
     }
-
-    /**
-     * Helper method to check if text contains any of the keywords
-     */
-    private boolean containsAny(String text, String... keywords) {
-        for (String keyword : keywords) {
-            if (text.contains(keyword)) {
-                return true;
-            }
-        }
-        return false;
-    }
 }
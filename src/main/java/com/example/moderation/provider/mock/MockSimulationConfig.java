@@ -0,0 +1,43 @@
+package com.example.moderation.provider.mock;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration cho chế độ giả lập của MockProvider (phân phối latency, inject lỗi)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "content-moderation.mock.simulation")
+@Data
+public class MockSimulationConfig {
+
+    /**
+     * uniform | log-normal | replay
+     */
+    private String distribution = "uniform";
+
+    private Long minLatencyMs = 50L;
+    private Long maxLatencyMs = 150L;
+
+    /**
+     * Log-normal: median và độ lệch (sigma của ln latency)
+     */
+    private Double medianLatencyMs = 80.0;
+    private Double sigma = 0.5;
+
+    /**
+     * Replay: latency của các request thành công trong các run đã lưu
+     */
+    private List<String> replayRunIds = new ArrayList<>();
+
+    /**
+     * Tỉ lệ lỗi inject theo error code kiểu DeepCleer (ví dụ 1901 QPS limit, 1903 service failure)
+     */
+    private Map<Integer, Double> errorRates = new LinkedHashMap<>();
+}
@@ -6,8 +6,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ModerationResultRepository extends JpaRepository<ModerationResult, Long> {
@@ -21,6 +23,13 @@ public interface ModerationResultRepository extends JpaRepository<ModerationResu
      */
     boolean existsByRequestId(String requestId);
 
+    /**
+     * Stream toàn bộ request ID (dùng để seed RequestIdIndex lúc startup).
+     * Phải được gọi trong transaction và đóng stream sau khi dùng.
+     */
+    @Query("SELECT r.requestId FROM ModerationResult r")
+    Stream<String> streamAllRequestIds();
+
     /**
      * Tìm ModerationResult theo requestId
      *
@@ -33,18 +42,23 @@ public interface ModerationResultRepository extends JpaRepository<ModerationResu
 
     List<ModerationResult> findByRunIdOrderByTimestampAsc(String runId);
 
-    @Query("SELECT MIN(r.latencyMs) FROM ModerationResult r WHERE r.runId = :runId")
-    Long findMinLatencyByRunId(@Param("runId") String runId);
-
-    @Query("SELECT MAX(r.latencyMs) FROM ModerationResult r WHERE r.runId = :runId")
-    Long findMaxLatencyByRunId(@Param("runId") String runId);
-
-    @Query("SELECT AVG(r.latencyMs) FROM ModerationResult r WHERE r.runId = :runId")
-    Double findAvgLatencyByRunId(@Param("runId") String runId);
+    long countByRunId(String runId);
 
-    @Query("SELECT COUNT(r) FROM ModerationResult r WHERE r.runId = :runId AND r.success = true")
-    Long countSuccessByRunId(@Param("runId") String runId);
+    /**
+     * Các cột nhỏ của một run (không có payload / responseBody), theo thứ tự:
+     * id, requestId, statusCode, latencyMs, timestamp, errorMessage, attempts,
+     * success, riskLevel, confidenceScore, providerName, cached.
+     * Phải được gọi trong transaction và đóng stream sau khi dùng.
+     */
+    @Query("SELECT r.id, r.requestId, r.statusCode, r.latencyMs, r.timestamp, r.errorMessage, r.attempts, " +
+            "r.success, r.riskLevel, r.confidenceScore, r.providerName, r.cached " +
+            "FROM ModerationResult r WHERE r.runId = :runId")
+    Stream<Object[]> streamSummariesByRunId(@Param("runId") String runId);
 
-    @Query("SELECT COUNT(r) FROM ModerationResult r WHERE r.runId = :runId AND r.success = false")
-    Long countFailuresByRunId(@Param("runId") String runId);
+    /**
+     * Latency của các request thành công, không qua cache, trong các run (dùng để replay latency trong mock)
+     */
+    @Query("SELECT r.latencyMs FROM ModerationResult r WHERE r.runId IN :runIds AND r.success = true " +
+            "AND r.latencyMs IS NOT NULL AND (r.cached IS NULL OR r.cached = false)")
+    List<Long> findProviderLatenciesByRunIds(@Param("runIds") Collection<String> runIds);
 }
@@ -0,0 +1,387 @@
+package com.example.moderation.service;
+
+import com.example.moderation.provider.ModerationException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Giới hạn concurrency thích ứng (AIMD) cho từng provider.
+ *
+ * - Call thành công với latency trong ngưỡng (latency-tolerance x min RTT): limit tăng ~1 mỗi "cửa sổ" (+1/limit mỗi call).
+ * - Call lỗi hoặc latency vượt ngưỡng: limit giảm theo backoff-ratio (tối đa một lần mỗi min RTT).
+ *
+ * Call vượt limit được xếp hàng tối đa max-queue-wait-ms; queue đầy hoặc hết thời gian chờ
+ * thì bị từ chối ngay bằng ModerationException (fallback provider có thể xử lý).
+ *
+ * Call bị cancel (call thua của hedging / fan-out) không phải là mẫu AIMD: permit được trả khi call thật
+ * kết thúc, không tăng / giảm limit.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxQueueWaitMs;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+
+    private final Map<String, ProviderLimit> limits = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("concurrency-limit-timer-"));
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${content-moderation.concurrency-limit.enabled:false}") boolean enabled,
+                                      @Value("${content-moderation.concurrency-limit.initial-limit:20}") int initialLimit,
+                                      @Value("${content-moderation.concurrency-limit.min-limit:1}") int minLimit,
+                                      @Value("${content-moderation.concurrency-limit.max-limit:${performance.max-concurrency:500}}") int maxLimit,
+                                      @Value("${content-moderation.concurrency-limit.max-queue:200}") int maxQueue,
+                                      @Value("${content-moderation.concurrency-limit.max-queue-wait-ms:100}") long maxQueueWaitMs,
+                                      @Value("${content-moderation.concurrency-limit.latency-tolerance:2.0}") double latencyTolerance,
+                                      @Value("${content-moderation.concurrency-limit.backoff-ratio:0.9}") double backoffRatio) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxQueueWaitMs = maxQueueWaitMs;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+
+        log.info("AdaptiveConcurrencyLimiter initialized: enabled={}, initialLimit={}, range=[{}, {}], maxQueue={}",
+                enabled, initialLimit, minLimit, maxLimit, maxQueue);
+    }
+
+    /**
+     * Chạy provider call blocking trong giới hạn concurrency của provider
+     */
+    public <T> T execute(String providerName, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        ProviderLimit limit = limitFor(providerName);
+        try {
+            limit.acquire().join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.get();
+            success = true;
+            return result;
+        } finally {
+            limit.release(System.nanoTime() - start, success);
+        }
+    }
+
+    /**
+     * Chạy provider call bất đồng bộ trong giới hạn concurrency; chờ permit cũng không block thread
+     */
+    public <T> CompletableFuture<T> executeAsync(String providerName, Supplier<CompletableFuture<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        ProviderLimit limit = limitFor(providerName);
+        CompletableFuture<Void> permit = limit.acquire();
+        if (permit.isDone() && !permit.isCompletedExceptionally()) {
+            return startCall(limit, call);
+        }
+        return startWhenPermitted(limit, permit, call);
+    }
+
+    /**
+     * Call đang xếp hàng chờ permit. Caller cancel khi còn trong queue: waiter bị bỏ khỏi queue;
+     * nếu permit vừa được trao thì trả lại ngay (không có mẫu AIMD), không chạy call.
+     */
+    private <T> CompletableFuture<T> startWhenPermitted(ProviderLimit limit, CompletableFuture<Void> permit,
+                                                        Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<T>> started = new AtomicReference<>();
+
+        permit.whenComplete((ignored, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            if (result.isDone()) {
+                limit.releaseWithoutSample();
+                return;
+            }
+            CompletableFuture<T> running = startCall(limit, call);
+            started.set(running);
+            running.whenComplete((value, callError) -> {
+                if (callError == null) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(callError);
+                }
+            });
+            // Cancel xảy ra giữa lúc kiểm tra result và lúc call bắt đầu
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+
+        result.whenComplete((value, error) -> {
+            if (!result.isCancelled() || limit.removeWaiter(permit)) {
+                return;
+            }
+            CompletableFuture<T> running = started.get();
+            if (running != null) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Future trả về cho caller tách khỏi future của call thật: cancel() từ caller được chuyển xuống call thật,
+     * còn permit chỉ được trả khi call thật hoàn thành (không phải lúc future của caller bị cancel)
+     */
+    private <T> CompletableFuture<T> startCall(ProviderLimit limit, Supplier<CompletableFuture<T>> call) {
+        long start = System.nanoTime();
+        CompletableFuture<T> underlying;
+        try {
+            underlying = call.get();
+        } catch (RuntimeException e) {
+            limit.release(System.nanoTime() - start, false);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        underlying.whenComplete((value, error) -> {
+            if (isCancellation(error)) {
+                limit.releaseWithoutSample();
+            } else {
+                limit.release(System.nanoTime() - start, error == null);
+            }
+            if (error == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                underlying.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private static boolean isCancellation(Throwable error) {
+        return error instanceof CancellationException
+                || (error instanceof CompletionException && error.getCause() instanceof CancellationException);
+    }
+
+    /**
+     * Limit hiện tại của provider (để quan sát / routing)
+     */
+    public int currentLimit(String providerName) {
+        ProviderLimit limit = limits.get(providerName);
+        return limit != null ? (int) limit.limit : initialLimit;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timeoutScheduler.shutdownNow();
+    }
+
+    private ProviderLimit limitFor(String providerName) {
+        return limits.computeIfAbsent(providerName, this::createLimit);
+    }
+
+    private ProviderLimit createLimit(String providerName) {
+        ProviderLimit limit = new ProviderLimit(providerName);
+        Tags tags = Tags.of("provider", providerName);
+
+        Gauge.builder("moderation.concurrency.limit", limit, l -> l.limit)
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("moderation.concurrency.inflight", limit, l -> l.inFlight)
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("moderation.concurrency.queue", limit, ProviderLimit::queueLength)
+                .tags(tags)
+                .register(meterRegistry);
+        limit.rejections = Counter.builder("moderation.concurrency.rejections")
+                .tags(tags)
+                .register(meterRegistry);
+        return limit;
+    }
+
+    /**
+     * Trạng thái limit của một provider; mọi thay đổi giữ lock
+     */
+    private class ProviderLimit {
+
+        private final String providerName;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+        private volatile double limit = initialLimit;
+        private volatile int inFlight;
+        private long minRttNanos = Long.MAX_VALUE;
+        private long samplesSinceMinReset;
+        private long lastDecreaseNanos = System.nanoTime();
+        private Counter rejections;
+
+        ProviderLimit(String providerName) {
+            this.providerName = providerName;
+        }
+
+        CompletableFuture<Void> acquire() {
+            CompletableFuture<Void> waiter;
+            lock.lock();
+            try {
+                if (inFlight < (int) limit) {
+                    inFlight++;
+                    return CompletableFuture.completedFuture(null);
+                }
+                if (waiters.size() >= maxQueue) {
+                    rejections.increment();
+                    return CompletableFuture.failedFuture(rejected("queue full"));
+                }
+                waiter = new CompletableFuture<>();
+                waiters.addLast(waiter);
+            } finally {
+                lock.unlock();
+            }
+
+            timeoutScheduler.schedule(() -> {
+                boolean removed;
+                lock.lock();
+                try {
+                    removed = waiters.remove(waiter);
+                } finally {
+                    lock.unlock();
+                }
+                if (removed) {
+                    rejections.increment();
+                    waiter.completeExceptionally(rejected("queue wait timeout"));
+                }
+            }, maxQueueWaitMs, TimeUnit.MILLISECONDS);
+
+            return waiter;
+        }
+
+        void release(long latencyNanos, boolean success) {
+            release(latencyNanos, success, true);
+        }
+
+        /**
+         * Trả permit của call bị cancel: không có thông tin về tải của provider
+         */
+        void releaseWithoutSample() {
+            release(0, true, false);
+        }
+
+        private void release(long latencyNanos, boolean success, boolean sample) {
+            CompletableFuture<Void> next = null;
+            lock.lock();
+            try {
+                inFlight--;
+                if (sample) {
+                    adjustLimit(latencyNanos, success);
+                }
+
+                if (inFlight < (int) limit && !waiters.isEmpty()) {
+                    next = waiters.pollFirst();
+                    inFlight++;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // Hoàn thành waiter ngoài lock: callback của caller có thể chạy ngay trên thread này
+            if (next != null) {
+                next.complete(null);
+            }
+        }
+
+        /**
+         * @return true nếu waiter còn trong queue (chưa được trao permit) và đã bị bỏ
+         */
+        boolean removeWaiter(CompletableFuture<Void> waiter) {
+            lock.lock();
+            try {
+                return waiters.remove(waiter);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int queueLength() {
+            lock.lock();
+            try {
+                return waiters.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void adjustLimit(long latencyNanos, boolean success) {
+            // Min RTT chỉ lấy từ call thành công (lỗi / timeout nhanh không phải baseline);
+            // reset định kỳ để theo kịp khi latency nền của provider thay đổi
+            if (success) {
+                if (++samplesSinceMinReset > 1000) {
+                    minRttNanos = latencyNanos;
+                    samplesSinceMinReset = 0;
+                } else {
+                    minRttNanos = Math.min(minRttNanos, latencyNanos);
+                }
+            }
+
+            boolean overloaded = !success || latencyNanos > minRttNanos * latencyTolerance;
+            long now = System.nanoTime();
+
+            if (overloaded) {
+                // Chưa có min RTT (provider lỗi ngay từ đầu): giảm tối đa một lần mỗi latency của call lỗi
+                long decreaseIntervalNanos = minRttNanos != Long.MAX_VALUE ? minRttNanos : latencyNanos;
+                if (now - lastDecreaseNanos >= decreaseIntervalNanos) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                    log.debug("Concurrency limit for {} decreased to {}", providerName, (int) limit);
+                }
+            } else if (inFlight * 2 >= limit) {
+                // Chỉ tăng khi limit thực sự đang được dùng (không tăng khi traffic thấp)
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+
+        private ModerationException rejected(String reason) {
+            return new ModerationException(providerName, null,
+                    "Concurrency limit exceeded for " + providerName + " (" + reason + ", limit=" + (int) limit + ")");
+        }
+    }
+}
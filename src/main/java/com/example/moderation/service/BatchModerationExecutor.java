@@ -0,0 +1,142 @@
+package com.example.moderation.service;
+
+import com.example.moderation.dto.ModerationRequest;
+import com.example.moderation.dto.ModerationResponse;
+import com.example.moderation.exception.BusinessException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Chạy batch moderation trên executor dùng chung của ứng dụng.
+ * Concurrency của mỗi batch được giới hạn bằng semaphore, không phải bằng kích thước pool.
+ */
+@Service
+@Slf4j
+public class BatchModerationExecutor {
+
+    private final ContentModerationService moderationService;
+    private final ExecutorService batchExecutor;
+
+    private final AtomicInteger inFlightItems = new AtomicInteger();
+    private final AtomicInteger activeBatches = new AtomicInteger();
+    private final Timer permitWaitTimer;
+
+    public BatchModerationExecutor(ContentModerationService moderationService,
+                                   @Qualifier("batchExecutor") ExecutorService batchExecutor,
+                                   MeterRegistry meterRegistry) {
+        this.moderationService = moderationService;
+        this.batchExecutor = batchExecutor;
+
+        Gauge.builder("moderation.batch.inflight", inFlightItems, AtomicInteger::get)
+                .description("Batch items currently being moderated across all batch calls")
+                .register(meterRegistry);
+        Gauge.builder("moderation.batch.active", activeBatches, AtomicInteger::get)
+                .description("Batch calls currently running")
+                .register(meterRegistry);
+        this.permitWaitTimer = Timer.builder("moderation.batch.permit.wait")
+                .description("Time a batch waited for a free concurrency slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Moderate toàn bộ requests với tối đa {@code concurrency} item chạy đồng thời.
+     * Thứ tự responses giống thứ tự requests.
+     */
+    public List<ModerationResponse> moderateAll(List<ModerationRequest> requests, int concurrency) {
+        Semaphore permits = new Semaphore(concurrency);
+        List<CompletableFuture<ModerationResponse>> futures = new ArrayList<>(requests.size());
+
+        activeBatches.incrementAndGet();
+        try {
+            for (ModerationRequest request : requests) {
+                futures.add(submit(request, permits));
+            }
+
+            return futures.stream()
+                    .map(CompletableFuture::join)
+                    .toList();
+        } catch (RuntimeException e) {
+            futures.forEach(future -> future.cancel(false));
+            throw e;
+        } finally {
+            activeBatches.decrementAndGet();
+        }
+    }
+
+    /**
+     * Submit một item sau khi lấy được permit; permit được trả lại khi item xong.
+     * Caller bị block khi batch đã đủ concurrency, nên không tạo task dư thừa trong queue.
+     */
+    public CompletableFuture<ModerationResponse> submit(ModerationRequest request, Semaphore permits) {
+        return submit(request, permits, response -> { });
+    }
+
+    /**
+     * Như {@link #submit(ModerationRequest, Semaphore)}, nhưng chạy {@code onComplete} trên worker thread
+     * trước khi trả permit (dùng cho streaming: response được ghi xong trước khi item được tính là hoàn thành).
+     */
+    public CompletableFuture<ModerationResponse> submit(ModerationRequest request, Semaphore permits,
+                                                        Consumer<ModerationResponse> onComplete) {
+        acquire(permits);
+        inFlightItems.incrementAndGet();
+        // Task và cancel tranh nhau claim: task đã chạy thì tự trả permit khi xong,
+        // task bị cancel trước khi chạy (không bao giờ chạy) thì cancel trả permit
+        AtomicBoolean claimed = new AtomicBoolean();
+        CompletableFuture<ModerationResponse> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    ModerationResponse response = moderationService.moderateContent(request);
+                    onComplete.accept(response);
+                    return response;
+                } finally {
+                    release(permits);
+                }
+            }, batchExecutor);
+        } catch (RuntimeException e) {
+            // Executor từ chối (đang shutdown): trả lại permit ngay
+            release(permits);
+            throw e;
+        }
+        future.whenComplete((response, error) -> {
+            if (future.isCancelled() && claimed.compareAndSet(false, true)) {
+                release(permits);
+            }
+        });
+        return future;
+    }
+
+    private void release(Semaphore permits) {
+        inFlightItems.decrementAndGet();
+        permits.release();
+    }
+
+    private void acquire(Semaphore permits) {
+        long start = System.nanoTime();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("Batch moderation bị gián đoạn", "BATCH_INTERRUPTED");
+        } finally {
+            permitWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
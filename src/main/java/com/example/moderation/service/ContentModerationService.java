@@ -6,17 +6,23 @@ import com.example.moderation.entity.ModerationResult;
 import com.example.moderation.exception.DuplicateRequestIdException;
 import com.example.moderation.provider.ModerationProvider;
 import com.example.moderation.provider.ModerationProviderFactory;
-import com.example.moderation.repository.ModerationResultRepository;
 import com.google.gson.Gson;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service xử lý content moderation với multi-provider support
@@ -27,9 +33,26 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class ContentModerationService {
 
+    // Trạng thái của một request reactive: kết quả chỉ được lưu hoặc request chỉ bị cancel, không cả hai
+    private static final int REACTIVE_IN_PROGRESS = 0;
+    private static final int REACTIVE_SAVING = 1;
+    private static final int REACTIVE_CANCELLED = 2;
+
     private final ModerationProviderFactory providerFactory;
-    private final ModerationResultRepository resultRepository;
-    private final Gson gson;
+    private final RequestIdIndex requestIdIndex;
+    private final ResultWriteBehindSink resultSink;
+    private final RunAggregates runAggregates;
+    private final ModerationResultCache resultCache;
+    private final ProviderCallCoalescer callCoalescer;
+    private final ProviderHedger hedger;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final ProviderRateLimiter rateLimiter;
+    private final MicroBatchDispatcher microBatcher;
+    private final ProviderFanOut fanOut;
+    private final ProviderRouter router;
+    private final ProviderLatencyTracker latencyTracker;
+    private final LocalPreFilter preFilter;
+    private final Gson compactGson;  // payload lưu trữ (không pretty print)
 
     @Value("${content-moderation.active-provider:mock}")
     private String activeProviderName;
@@ -47,7 +70,7 @@ public class ContentModerationService {
         String traceId = UUID.randomUUID().toString();
         MDC.put("traceId", traceId);
 
-        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         String requestId = request.getId();
 
         try {
@@ -56,107 +79,377 @@ public class ContentModerationService {
             // Validate: Kiểm tra request ID đã tồn tại chưa
             validateRequestIdNotExists(requestId);
 
-            // Get provider
-            ModerationProvider provider = providerFactory.getProvider(activeProviderName);
-
-            // Call provider with fallback support
-            com.example.moderation.provider.ModerationResult providerResult;
-            try {
-                providerResult = provider.moderateText(request.getText(), new HashMap<>());
-            } catch (Exception e) {
-                log.error("Primary provider {} failed: {}", activeProviderName, e.getMessage());
-
-                // Fallback to secondary provider if enabled
-                if (fallbackEnabled && providerFactory.hasProvider(secondaryProviderName)) {
-                    log.info("Falling back to secondary provider: {}", secondaryProviderName);
-                    provider = providerFactory.getProvider(secondaryProviderName);
-                    providerResult = provider.moderateText(request.getText(), new HashMap<>());
-                } else {
-                    throw e;
-                }
+            // Pre-filter local: text chứa term HIGH-risk rõ ràng được quyết định ngay, không gọi provider
+            com.example.moderation.provider.ModerationResult localResult = preFilter.evaluate(request.getText());
+            if (localResult != null) {
+                confirmRemotely(request.getText());
+                return completeSuccess(request, new ProviderOutcome(LocalPreFilter.PROVIDER_NAME, localResult, false),
+                        startNanos);
             }
 
-            long latency = System.currentTimeMillis() - startTime;
+            // Fan-out: gọi song song nhiều provider thay cho primary + fallback tuần tự
+            if (fanOut.isEnabled()) {
+                return moderateWithFanOut(request, startNanos);
+            }
 
-            // Convert to response DTO
-            ModerationResponse response = ModerationResponse.builder()
-                    .requestId(requestId)
-                    .riskLevel(providerResult.getRiskLevel())
-                    .confidenceScore(providerResult.getConfidenceScore())
-                    .rawResponse(providerResult.getRawResponse())
-                    .latencyMs(latency)
-                    .success(true)
-                    .build();
+            // Get provider (router chọn theo latency / lỗi / health nếu được bật)
+            String primaryProviderName = choosePrimaryProvider();
+            ModerationProvider provider = providerFactory.getProvider(primaryProviderName);
 
-            // Lưu kết quả vào database
-            saveResult(request, response, latency, true, null, provider.getProviderName());
+            // Cache hit: dùng lại kết quả của cùng text, không gọi provider
+            com.example.moderation.provider.ModerationResult providerResult =
+                    resultCache.get(provider.getProviderName(), request.getText());
+            boolean cached = providerResult != null;
 
-            log.debug("Request {} completed in {}ms with provider {}", requestId, latency, provider.getProviderName());
-            return response;
+            if (!cached) {
+                // Call provider with fallback support
+                try {
+                    providerResult = callProvider(provider, request.getText());
+                } catch (Exception e) {
+                    log.error("Primary provider {} failed: {}", primaryProviderName, e.getMessage());
 
-        } catch (DuplicateRequestIdException e) {
-            long latency = System.currentTimeMillis() - startTime;
-            log.error("Duplicate request ID {}: {}", requestId, e.getMessage(), e);
+                    // Fallback to secondary provider if enabled
+                    if (fallbackEnabled && providerFactory.hasProvider(secondaryProviderName)) {
+                        log.info("Falling back to secondary provider: {}", secondaryProviderName);
+                        provider = providerFactory.getProvider(secondaryProviderName);
+                        providerResult = callProvider(provider, request.getText());
+                    } else {
+                        throw e;
+                    }
+                }
+            }
 
-            // Don't save to database again for duplicate requests
-            ModerationResponse errorResponse = ModerationResponse.builder()
-                    .requestId(requestId)
-                    .success(false)
-                    .latencyMs(latency)
-                    .errorMessage(e.getMessage())
-                    .build();
+            return completeSuccess(request, new ProviderOutcome(provider.getProviderName(), providerResult, cached),
+                    startNanos);
 
-            return errorResponse;
+        } catch (DuplicateRequestIdException e) {
+            return handleDuplicate(request, e, startNanos);
         } catch (Exception e) {
-            long latency = System.currentTimeMillis() - startTime;
-            log.error("Error processing request {}: {}", requestId, e.getMessage(), e);
-
-            ModerationResponse errorResponse = ModerationResponse.builder()
-                    .requestId(requestId)
-                    .success(false)
-                    .latencyMs(latency)
-                    .errorMessage(e.getMessage())
-                    .build();
-
-            // Try to save error result (may fail if it's a database error)
-            try {
-                saveResult(request, errorResponse, latency, false, e.getMessage(), activeProviderName);
-            } catch (Exception saveEx) {
-                log.warn("Failed to save error result for request {}: {}", requestId, saveEx.getMessage());
+            return handleFailure(request, e, startNanos);
+        } finally {
+            MDC.remove("traceId");
+        }
+    }
+
+    /**
+     * Reactive entry point: provider call không giữ thread trong lúc chờ response
+     * (với provider non-blocking, ví dụ DeepCleer; xem ModerationProvider#moderateTextAsync).
+     * Các bước có thể chạm database (validate request ID, lưu kết quả) chạy trên boundedElastic.
+     */
+    public Mono<ModerationResponse> moderateContentReactive(ModerationRequest request) {
+        String requestId = request.getId();
+        long startNanos = System.nanoTime();
+        AtomicBoolean accepted = new AtomicBoolean();
+        AtomicBoolean released = new AtomicBoolean();
+        AtomicInteger state = new AtomicInteger(REACTIVE_IN_PROGRESS);
+        // Cancel có thể tới trước hoặc sau khi ID được nhận: bên nào thấy cả hai điều kiện thì release (một lần)
+        Runnable releaseIfCancelled = () -> {
+            if (accepted.get() && state.get() == REACTIVE_CANCELLED && released.compareAndSet(false, true)) {
+                requestIdIndex.release(requestId);
             }
+        };
+
+        return Mono.fromCallable(() -> {
+                    validateRequestIdNotExists(requestId);
+                    accepted.set(true);
+                    releaseIfCancelled.run();
+                    String primaryProviderName = choosePrimaryProvider();
+                    log.debug("Processing reactive moderation request: {} with provider: {}", requestId, primaryProviderName);
+                    return providerFactory.getProvider(primaryProviderName);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(provider -> {
+                    com.example.moderation.provider.ModerationResult localResult = preFilter.evaluate(request.getText());
+                    if (localResult != null) {
+                        confirmRemotely(request.getText());
+                        return Mono.just(new ProviderOutcome(LocalPreFilter.PROVIDER_NAME, localResult, false));
+                    }
+                    if (fanOut.isEnabled()) {
+                        return fanOutReactive(request.getText());
+                    }
+
+                    com.example.moderation.provider.ModerationResult cachedResult =
+                            resultCache.get(provider.getProviderName(), request.getText());
+                    if (cachedResult != null) {
+                        return Mono.just(new ProviderOutcome(provider.getProviderName(), cachedResult, true));
+                    }
+
+                    return callProviderReactive(provider, request.getText())
+                            .map(result -> new ProviderOutcome(provider.getProviderName(), result, false))
+                            .onErrorResume(e -> {
+                                log.error("Primary provider {} failed: {}", provider.getProviderName(), e.getMessage());
+                                if (fallbackEnabled && providerFactory.hasProvider(secondaryProviderName)) {
+                                    log.info("Falling back to secondary provider: {}", secondaryProviderName);
+                                    ModerationProvider secondary = providerFactory.getProvider(secondaryProviderName);
+                                    return callProviderReactive(secondary, request.getText())
+                                            .map(result -> new ProviderOutcome(secondary.getProviderName(), result, false));
+                                }
+                                return Mono.error(e);
+                            });
+                })
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(outcome -> claimSave(state)
+                        ? Mono.just(completeSuccess(request, outcome, startNanos))
+                        : Mono.empty())
+                .onErrorResume(DuplicateRequestIdException.class,
+                        e -> Mono.just(handleDuplicate(request, e, startNanos)))
+                .onErrorResume(e -> Mono.fromCallable(() -> claimSave(state) ? handleFailure(request, e, startNanos) : null)
+                        .subscribeOn(Schedulers.boundedElastic()))
+                // Client ngắt kết nối / async timeout trước khi kết quả được lưu: completeSuccess và handleFailure
+                // không chạy, bỏ ID khỏi set in-flight để client retry được với cùng ID
+                .doOnCancel(() -> {
+                    state.compareAndSet(REACTIVE_IN_PROGRESS, REACTIVE_CANCELLED);
+                    releaseIfCancelled.run();
+                });
+    }
+
+    /**
+     * Giành quyền lưu kết quả của request reactive (không chạy nếu request đã bị cancel)
+     */
+    private static boolean claimSave(AtomicInteger state) {
+        return state.compareAndSet(REACTIVE_IN_PROGRESS, REACTIVE_SAVING) || state.get() == REACTIVE_SAVING;
+    }
+
+    /**
+     * Build response thành công và lưu kết quả
+     */
+    private ModerationResponse completeSuccess(ModerationRequest request, ProviderOutcome outcome, long startNanos) {
+        long latencyUs = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        long latency = latencyUs / 1000;
+
+        // Convert to response DTO
+        ModerationResponse response = ModerationResponse.builder()
+                .requestId(request.getId())
+                .riskLevel(outcome.result().getRiskLevel())
+                .confidenceScore(outcome.result().getConfidenceScore())
+                .rawResponse(outcome.result().getRawResponse())
+                .latencyMs(latency)
+                .success(true)
+                .cached(outcome.cached())
+                .build();
+
+        // Lưu kết quả vào database
+        saveResult(request, response, latencyUs, true, null, outcome.providerName());
+
+        log.debug("Request {} completed in {}ms with provider {} (cached: {})",
+                request.getId(), latency, outcome.providerName(), outcome.cached());
+        return response;
+    }
+
+    /**
+     * Xác nhận bất đồng bộ quyết định của pre-filter bằng active provider (chỉ ghi metrics, không đổi kết quả)
+     */
+    private void confirmRemotely(String text) {
+        if (!preFilter.isConfirmEnabled()) {
+            return;
+        }
+        limitedCallAsync(activeProviderName, text)
+                .whenComplete((remote, error) -> preFilter.recordConfirmation(activeProviderName, remote, error));
+    }
+
+    /**
+     * Fan-out (đồng bộ): kết quả tổng hợp được cache / single-flight dưới tên "fanout"
+     */
+    private ModerationResponse moderateWithFanOut(ModerationRequest request, long startNanos) {
+        String text = request.getText();
+        com.example.moderation.provider.ModerationResult result =
+                resultCache.get(ProviderFanOut.FAN_OUT_PROVIDER, text);
+        boolean cached = result != null;
+
+        if (!cached) {
+            result = callCoalescer.execute(ProviderFanOut.FAN_OUT_PROVIDER, text,
+                    () -> await(fanOutCall(text)));
+        }
+        return completeSuccess(request, new ProviderOutcome(result.getProviderName(), result, cached), startNanos);
+    }
+
+    private Mono<ProviderOutcome> fanOutReactive(String text) {
+        com.example.moderation.provider.ModerationResult cachedResult =
+                resultCache.get(ProviderFanOut.FAN_OUT_PROVIDER, text);
+        if (cachedResult != null) {
+            return Mono.just(new ProviderOutcome(cachedResult.getProviderName(), cachedResult, true));
+        }
+        return Mono.fromFuture(() -> callCoalescer.executeAsync(ProviderFanOut.FAN_OUT_PROVIDER, text,
+                        () -> fanOutCall(text)))
+                .map(result -> new ProviderOutcome(result.getProviderName(), result, false));
+    }
+
+    /**
+     * Mỗi provider trong fan-out vẫn đi qua rate limit và concurrency limit của nó
+     */
+    private CompletableFuture<com.example.moderation.provider.ModerationResult> fanOutCall(String text) {
+        return fanOut.execute(providerName -> limitedCallAsync(providerName, text))
+                .thenApply(result -> {
+                    resultCache.put(ProviderFanOut.FAN_OUT_PROVIDER, text, result);
+                    return result;
+                });
+    }
+
+    /**
+     * Duplicate request ID: trả về error response, không lưu thêm row
+     */
+    private ModerationResponse handleDuplicate(ModerationRequest request, DuplicateRequestIdException e, long startNanos) {
+        long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        log.error("Duplicate request ID {}: {}", request.getId(), e.getMessage(), e);
+
+        // Don't save to database again for duplicate requests
+        return ModerationResponse.builder()
+                .requestId(request.getId())
+                .success(false)
+                .latencyMs(latency)
+                .errorMessage(e.getMessage())
+                .build();
+    }
+
+    /**
+     * Lỗi xử lý: trả về error response và cố gắng lưu error result
+     */
+    private ModerationResponse handleFailure(ModerationRequest request, Throwable e, long startNanos) {
+        String requestId = request.getId();
+        long latencyUs = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        long latency = latencyUs / 1000;
+        log.error("Error processing request {}: {}", requestId, e.getMessage(), e);
 
+        ModerationResponse errorResponse = ModerationResponse.builder()
+                .requestId(requestId)
+                .success(false)
+                .latencyMs(latency)
+                .errorMessage(e.getMessage())
+                .build();
+
+        // Lưu kết quả thất bại: request đã được record vào aggregate, ID đã được release; không ghi lại lần nữa
+        if (e instanceof ResultPersistenceException) {
             return errorResponse;
-        } finally {
-            MDC.remove("traceId");
+        }
+
+        // Try to save error result (may fail if it's a database error)
+        try {
+            saveResult(request, errorResponse, latencyUs, false, e.getMessage(), activeProviderName);
+        } catch (Exception saveEx) {
+            requestIdIndex.release(requestId);
+            log.warn("Failed to save error result for request {}: {}", requestId, saveEx.getMessage());
+        }
+
+        return errorResponse;
+    }
+
+    /**
+     * Gọi provider qua single-flight: các request đồng thời cùng text dùng chung một call.
+     * Mỗi call thật (kể cả hedge) đi qua rate limit rồi concurrency limit của provider.
+     * Provider có micro-batching thì text được gom vào batch thay vì gọi riêng.
+     * Kết quả thành công được đưa vào cache bởi caller thực hiện call.
+     */
+    private com.example.moderation.provider.ModerationResult callProvider(ModerationProvider provider, String text) {
+        String providerName = provider.getProviderName();
+        return callCoalescer.execute(providerName, text, () -> {
+            com.example.moderation.provider.ModerationResult result =
+                    microBatcher.isEnabledFor(providerName) || hedger.isEnabledFor(providerName)
+                    ? await(providerCallAsync(providerName, text))
+                    : rateLimiter.execute(providerName, () -> concurrencyLimiter.execute(providerName,
+                            () -> trackedCall(provider, text)));
+            resultCache.put(providerName, text, result);
+            return result;
+        });
+    }
+
+    /**
+     * Chờ future trên thread hiện tại, trả lại exception gốc (ModerationException) thay vì CompletionException
+     */
+    private com.example.moderation.provider.ModerationResult await(
+            CompletableFuture<com.example.moderation.provider.ModerationResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
         }
     }
 
     /**
-     * Validate request ID chưa tồn tại trong database.
+     * Reactive provider call qua single-flight, dùng async SPI của provider:
+     * provider non-blocking không chiếm thread, provider blocking chạy trên executor bounded riêng.
+     */
+    private Mono<com.example.moderation.provider.ModerationResult> callProviderReactive(ModerationProvider provider,
+                                                                                       String text) {
+        String providerName = provider.getProviderName();
+        return Mono.fromFuture(() -> callCoalescer.executeAsync(providerName, text,
+                () -> providerCallAsync(providerName, text)
+                        .thenApply(result -> {
+                            resultCache.put(providerName, text, result);
+                            return result;
+                        })));
+    }
+
+    private CompletableFuture<com.example.moderation.provider.ModerationResult> providerCallAsync(String providerName,
+                                                                                                String text) {
+        if (microBatcher.isEnabledFor(providerName)) {
+            return microBatcher.submit(providerName, text);
+        }
+        return hedger.execute(providerName, () -> limitedCallAsync(providerName, text));
+    }
+
+    private CompletableFuture<com.example.moderation.provider.ModerationResult> limitedCallAsync(String providerName,
+                                                                                               String text) {
+        return rateLimiter.executeAsync(providerName, () -> concurrencyLimiter.executeAsync(providerName,
+                () -> latencyTracker.track(providerName,
+                        providerFactory.moderateTextAsync(providerName, text, new HashMap<>()))));
+    }
+
+    /**
+     * Gọi provider đồng bộ và ghi latency / lỗi vào ProviderLatencyTracker (dùng cho routing, hedging)
+     */
+    private com.example.moderation.provider.ModerationResult trackedCall(ModerationProvider provider, String text) {
+        long start = System.currentTimeMillis();
+        try {
+            com.example.moderation.provider.ModerationResult result = provider.moderateText(text, new HashMap<>());
+            latencyTracker.record(provider.getProviderName(), System.currentTimeMillis() - start);
+            return result;
+        } catch (RuntimeException e) {
+            latencyTracker.recordFailure(provider.getProviderName(), System.currentTimeMillis() - start);
+            throw e;
+        }
+    }
+
+    private String choosePrimaryProvider() {
+        return router.isEnabled() ? router.choose() : activeProviderName;
+    }
+
+    /**
+     * Kết quả provider kèm tên provider thực sự xử lý (primary hoặc fallback)
+     */
+    private record ProviderOutcome(String providerName,
+                                   com.example.moderation.provider.ModerationResult result,
+                                   boolean cached) {
+    }
+
+    /**
+     * Validate request ID chưa tồn tại (qua RequestIdIndex, chỉ query DB khi Bloom filter positive).
      * Throw DuplicateRequestIdException nếu đã tồn tại.
      *
      * @param requestId Request ID cần validate
      * @throws DuplicateRequestIdException nếu request ID đã tồn tại
      */
     private void validateRequestIdNotExists(String requestId) {
-        if (resultRepository.existsByRequestId(requestId)) {
+        if (!requestIdIndex.tryAccept(requestId)) {
             log.warn("Duplicate request ID detected: {}", requestId);
             throw new DuplicateRequestIdException(requestId);
         }
     }
 
     /**
-     * Lưu kết quả vào database
+     * Lưu kết quả vào database (qua write-behind sink nếu được bật)
      */
     private void saveResult(ModerationRequest request, ModerationResponse response,
-                            long latency, boolean success, String errorMessage, String providerName) {
+                            long latencyUs, boolean success, String errorMessage, String providerName) {
         ModerationResult result = ModerationResult.builder()
                 .requestId(request.getId())
                 .runId(request.getRunId())
-                .payload(gson.toJson(request))
+                .payload(compactGson.toJson(request))
                 .responseBody(response.getRawResponse())
                 .statusCode(success ? 200 : 500)
-                .latencyMs(latency)
+                .latencyMs(latencyUs / 1000)
                 .timestamp(LocalDateTime.now())
                 .errorMessage(errorMessage)
                 .attempts(1)
@@ -164,8 +457,28 @@ public class ContentModerationService {
                 .riskLevel(response.getRiskLevel())
                 .confidenceScore(response.getConfidenceScore())
                 .providerName(providerName)
+                .cached(Boolean.TRUE.equals(response.getCached()))
                 .build();
 
-        resultRepository.save(result);
+        // Aggregate của run được cập nhật trước khi row xuống store (xem RunAggregates)
+        runAggregates.record(result, latencyUs);
+        try {
+            resultSink.submit(result);
+        } catch (RuntimeException e) {
+            // Không có row: bỏ ID khỏi set in-flight để client retry được
+            requestIdIndex.release(request.getId());
+            throw new ResultPersistenceException(request.getId(), e);
+        }
+    }
+
+    /**
+     * Lưu kết quả xuống store thất bại (write-behind tắt hoặc caller-runs).
+     * handleFailure không lưu thêm error result cho request này, để aggregate của run không đếm request hai lần.
+     */
+    private static final class ResultPersistenceException extends RuntimeException {
+
+        ResultPersistenceException(String requestId, Throwable cause) {
+            super("Failed to persist result for request " + requestId + ": " + cause.getMessage(), cause);
+        }
     }
 }
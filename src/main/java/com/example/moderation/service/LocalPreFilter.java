@@ -0,0 +1,191 @@
+package com.example.moderation.service;
+
+import com.example.moderation.config.PreFilterConfig;
+import com.example.moderation.provider.ModerationResult;
+import com.example.moderation.util.AhoCorasick;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pre-filter local: text chứa term HIGH-risk rõ ràng được quyết định ngay (micro giây),
+ * không gọi provider remote.
+ *
+ * Dictionary được compile thành Aho-Corasick automaton; khi terms-file thay đổi, automaton mới được
+ * build trên thread nền rồi thay bằng một lần ghi volatile, nên traffic không bị dừng trong lúc reload.
+ */
+@Component
+@Slf4j
+public class LocalPreFilter {
+
+    public static final String PROVIDER_NAME = "prefilter";
+
+    private final PreFilterConfig config;
+    private final MeterRegistry meterRegistry;
+    private final Gson gson;
+
+    private final Timer matchTimer;
+    private final Counter hits;
+    private final Counter misses;
+
+    private volatile AhoCorasick automaton;
+    private volatile long termsFileModified = -1;
+    private volatile long dictionaryVersion;
+
+    private final ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("prefilter-reload-"));
+
+    public LocalPreFilter(PreFilterConfig config, MeterRegistry meterRegistry, Gson gson) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.gson = gson;
+
+        this.matchTimer = Timer.builder("moderation.prefilter.match").register(meterRegistry);
+        this.hits = Counter.builder("moderation.prefilter.hits").register(meterRegistry);
+        this.misses = Counter.builder("moderation.prefilter.misses").register(meterRegistry);
+
+        if (config.getEnabled()) {
+            reload();
+            if (config.getTermsFile() != null && !config.getTermsFile().isBlank()) {
+                reloader.scheduleWithFixedDelay(this::reloadIfChanged,
+                        config.getReloadIntervalMs(), config.getReloadIntervalMs(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        log.info("LocalPreFilter initialized: enabled={}, terms={}, termsFile={}, confirmRemote={}",
+                config.getEnabled(), automaton != null ? automaton.termCount() : 0,
+                config.getTermsFile(), config.getConfirmRemote());
+    }
+
+    public boolean isEnabled() {
+        return config.getEnabled();
+    }
+
+    public boolean isConfirmEnabled() {
+        return config.getEnabled() && config.getConfirmRemote();
+    }
+
+    /**
+     * @return kết quả HIGH-risk nếu text chứa term trong dictionary, null nếu cần gọi provider
+     */
+    public ModerationResult evaluate(String text) {
+        AhoCorasick current = automaton;
+        if (current == null || text == null) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        long mask = current.match(text);
+        long elapsedNanos = System.nanoTime() - start;
+        matchTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        if (mask == 0) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+
+        List<String> labels = current.categoriesOf(mask);
+
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("source", PROVIDER_NAME);
+        details.put("riskLevel", "HIGH");
+        details.put("labels", labels);
+        details.put("dictionaryVersion", dictionaryVersion);
+
+        return ModerationResult.builder()
+                .providerName(PROVIDER_NAME)
+                .riskLevel("HIGH")
+                .confidenceScore(config.getConfidence())
+                .labels(labels)
+                .details(details)
+                .rawResponse(gson.toJson(details))
+                .latencyMs(TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+                .build();
+    }
+
+    /**
+     * Ghi kết quả xác nhận của provider remote cho một quyết định local
+     */
+    public void recordConfirmation(String providerName, ModerationResult remote, Throwable error) {
+        String outcome = error != null ? "error" : "HIGH".equals(remote.getRiskLevel()) ? "agree" : "disagree";
+        Counter.builder("moderation.prefilter.confirmations")
+                .tag("provider", providerName)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+
+        if ("disagree".equals(outcome)) {
+            log.warn("Pre-filter decided HIGH but {} returned {}", providerName, remote.getRiskLevel());
+        }
+    }
+
+    /**
+     * Build lại automaton từ config + terms-file và thay thế automaton đang dùng
+     */
+    public synchronized void reload() {
+        AhoCorasick.Builder builder = AhoCorasick.builder().wholeWords(config.getWholeWords());
+        config.getTerms().forEach(builder::addAll);
+
+        if (config.getTermsFile() != null && !config.getTermsFile().isBlank()) {
+            Path file = Path.of(config.getTermsFile());
+            try {
+                termsFileModified = Files.getLastModifiedTime(file).toMillis();
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    String trimmed = line.strip();
+                    int separator = trimmed.indexOf(':');
+                    if (trimmed.isEmpty() || trimmed.startsWith("#") || separator <= 0) {
+                        continue;
+                    }
+                    builder.add(trimmed.substring(0, separator).strip().toUpperCase(), trimmed.substring(separator + 1));
+                }
+            } catch (IOException e) {
+                // Giữ automaton cũ nếu file lỗi, tránh mất toàn bộ dictionary
+                log.error("Failed to read pre-filter terms file {}: {}", file, e.getMessage());
+                if (automaton != null) {
+                    return;
+                }
+            }
+        }
+
+        AhoCorasick next = builder.build();
+        automaton = next;
+        dictionaryVersion++;
+        log.info("Pre-filter dictionary loaded: version={}, terms={}, categories={}",
+                dictionaryVersion, next.termCount(), next.categories());
+    }
+
+    private void reloadIfChanged() {
+        try {
+            long modified = Files.getLastModifiedTime(Path.of(config.getTermsFile())).toMillis();
+            if (modified != termsFileModified) {
+                reload();
+            }
+        } catch (IOException e) {
+            log.debug("Pre-filter terms file not readable: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Pre-filter reload failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reloader.shutdownNow();
+    }
+}
@@ -1,122 +1,289 @@
 package com.example.moderation.service;
 
 import com.example.moderation.dto.PerformanceMetrics;
-import com.example.moderation.entity.ModerationResult;
 import com.example.moderation.entity.TestRun;
-import com.example.moderation.repository.ModerationResultRepository;
+import com.example.moderation.exception.EntityNotFoundException;
 import com.example.moderation.repository.TestRunRepository;
+import com.example.moderation.store.ResultStore;
+import com.example.moderation.store.RunSummary;
+import com.example.moderation.util.LatencyHistogram;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service để tính toán và lưu trữ performance metrics
+ *
+ * Metrics lấy từ RunAggregate (cập nhật dần khi ghi kết quả), không đọc lại các row của run.
+ * Aggregate được persist định kỳ vào TestRun (status RUNNING cho tới khi /calculate đánh dấu COMPLETED),
+ * nên report của run không còn trong bộ nhớ đọc thẳng từ TestRun. TestRun RUNNING mà store có thêm kết quả
+ * (process dừng giữa hai lần persist) thì aggregate được dựng lại từ store.
+ * Histogram latency (µs, toàn run và theo provider) được lưu cùng TestRun dạng LatencyHistogram.encode().
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class MetricsService {
 
-    private final ModerationResultRepository resultRepository;
+    private final RunAggregates runAggregates;
     private final TestRunRepository testRunRepository;
+    private final ResultStore resultStore;
+    private final Gson compactGson;
+
+    @Value("${content-moderation.run-aggregates.persist-interval-ms:5000}")
+    private long persistIntervalMs;
+
+    @Value("${content-moderation.run-aggregates.idle-eviction-ms:600000}")
+    private long idleEvictionMs;
+
+    private final ScheduledExecutorService persister = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("run-aggregate-persist-"));
+
+    @PostConstruct
+    public void start() {
+        persister.scheduleWithFixedDelay(this::persistRunAggregates,
+                persistIntervalMs, persistIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Run aggregates persisted every {}ms, evicted after {}ms idle", persistIntervalMs, idleEvictionMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        persister.shutdown();
+        try {
+            persister.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persistRunAggregates();
+    }
 
     /**
-     * Tính toán metrics cho một test run
+     * Tính toán metrics cho một test run: aggregate trong bộ nhớ, hoặc TestRun đã persist,
+     * hoặc (run cũ chưa có aggregate) một lượt tổng hợp trên ResultStore (summarizeRun)
      */
     public PerformanceMetrics calculateMetrics(String runId) {
-        List<ModerationResult> results = resultRepository.findByRunIdOrderByTimestampAsc(runId);
+        RunAggregate aggregate = runAggregates.find(runId);
+        if (aggregate != null) {
+            return aggregate.toMetrics();
+        }
 
-        if (results.isEmpty()) {
-            return null;
+        TestRun testRun = testRunRepository.findByRunId(runId)
+                .filter(run -> run.getTotalRequests() > 0 && run.getP50LatencyMs() != null)
+                .orElse(null);
+        if (testRun != null) {
+            if (isUpToDate(testRun)) {
+                return toMetrics(testRun);
+            }
+            aggregate = runAggregates.load(runId);
+            if (aggregate != null) {
+                return aggregate.toMetrics();
+            }
         }
 
-        // Lấy latencies và sort
-        List<Long> latencies = results.stream()
-                .map(ModerationResult::getLatencyMs)
-                .sorted()
-                .collect(Collectors.toList());
+        RunSummary summary = resultStore.summarizeRun(runId);
+        return summary != null ? toMetrics(runId, summary) : null;
+    }
 
-        int total = results.size();
-        long successCount = results.stream().filter(ModerationResult::getSuccess).count();
-        long failCount = total - successCount;
+    /**
+     * Lưu metrics vào TestRun table
+     */
+    public void saveTestRun(String runId, PerformanceMetrics metrics, int concurrency) {
+        upsertTestRun(runId, metrics, runAggregates.find(runId), concurrency, "COMPLETED");
+        log.info("Saved test run metrics for runId: {}", runId);
+    }
 
-        // Calculate percentiles
-        long p50 = calculatePercentile(latencies, 50);
-        long p95 = calculatePercentile(latencies, 95);
-        long p99 = calculatePercentile(latencies, 99);
+    /**
+     * Persist các aggregate có kết quả mới vào TestRun, rồi bỏ các run đã idle khỏi bộ nhớ
+     */
+    void persistRunAggregates() {
+        for (RunAggregate aggregate : runAggregates.all()) {
+            if (!aggregate.isDirty()) {
+                continue;
+            }
+            try {
+                long count = aggregate.getCount();
+                upsertTestRun(aggregate.getRunId(), aggregate.toMetrics(), aggregate, null, null);
+                aggregate.markPersisted(count);
+            } catch (Exception e) {
+                log.warn("Failed to persist aggregate for run {}: {}", aggregate.getRunId(), e.getMessage());
+            }
+        }
+        runAggregates.evictIdle(idleEvictionMs);
+    }
 
-        // Calculate duration và throughput
-        LocalDateTime startTime = results.get(0).getTimestamp();
-        LocalDateTime endTime = results.get(results.size() - 1).getTimestamp();
-        long durationMs = Duration.between(startTime, endTime).toMillis();
-        double throughput = durationMs > 0 ? (total * 1000.0) / durationMs : 0;
+    /**
+     * Histogram latency (µs) của run, hoặc của một provider trong run
+     *
+     * @return null nếu run (hoặc provider) không có kết quả
+     */
+    public LatencyHistogram getLatencyHistogram(String runId, String provider) {
+        RunAggregate aggregate = runAggregates.find(runId);
+        if (aggregate != null) {
+            return copyOf(aggregate, provider);
+        }
 
-        Long minLatency = resultRepository.findMinLatencyByRunId(runId);
-        Long maxLatency = resultRepository.findMaxLatencyByRunId(runId);
-        Double avgLatency = resultRepository.findAvgLatencyByRunId(runId);
+        TestRun testRun = testRunRepository.findByRunId(runId).orElse(null);
+        if (testRun != null && testRun.getLatencyHistogram() != null && isUpToDate(testRun)) {
+            if (provider == null) {
+                return LatencyHistogram.decode(testRun.getLatencyHistogram());
+            }
+            String encoded = readProviderHistograms(testRun).get(provider);
+            return encoded != null ? LatencyHistogram.decode(Base64.getDecoder().decode(encoded)) : null;
+        }
 
-        return PerformanceMetrics.builder()
-                .runId(runId)
-                .totalRequests(total)
-                .successCount((int) successCount)
-                .failCount((int) failCount)
-                .successRate((double) successCount / total * 100)
-                .minLatency(minLatency)
-                .maxLatency(maxLatency)
-                .avgLatency(avgLatency != null ? avgLatency.longValue() : 0)
-                .p50Latency(p50)
-                .p95Latency(p95)
-                .p99Latency(p99)
-                .throughputRps(throughput)
-                .durationMs(durationMs)
-                .startTime(formatDateTime(startTime))
-                .endTime(formatDateTime(endTime))
-                .build();
+        aggregate = runAggregates.load(runId);
+        return aggregate != null ? copyOf(aggregate, provider) : null;
     }
 
     /**
-     * Lưu metrics vào TestRun table
+     * Merge histogram của nhiều run và histogram (Base64 encode()) gửi từ node khác
      */
-    public void saveTestRun(String runId, PerformanceMetrics metrics, int concurrency) {
-        TestRun testRun = TestRun.builder()
-                .runId(runId)
-                .startTime(LocalDateTime.parse(metrics.getStartTime(), DateTimeFormatter.ISO_LOCAL_DATE_TIME))
-                .endTime(LocalDateTime.parse(metrics.getEndTime(), DateTimeFormatter.ISO_LOCAL_DATE_TIME))
-                .totalRequests(metrics.getTotalRequests())
-                .successCount(metrics.getSuccessCount())
-                .failCount(metrics.getFailCount())
-                .avgLatencyMs(metrics.getAvgLatency())
-                .minLatencyMs(metrics.getMinLatency())
-                .maxLatencyMs(metrics.getMaxLatency())
-                .p50LatencyMs(metrics.getP50Latency())
-                .p95LatencyMs(metrics.getP95Latency())
-                .p99LatencyMs(metrics.getP99Latency())
-                .throughputRps(metrics.getThroughputRps())
-                .concurrency(concurrency)
-                .status("COMPLETED")
-                .build();
+    public LatencyHistogram mergeLatencyHistograms(Collection<String> runIds, String provider,
+                                                   Collection<String> encodedHistograms) {
+        LatencyHistogram merged = RunAggregate.newHistogram();
+        if (runIds != null) {
+            for (String runId : runIds) {
+                LatencyHistogram histogram = getLatencyHistogram(runId, provider);
+                if (histogram == null) {
+                    throw new EntityNotFoundException("TestRun", runId);
+                }
+                merged.merge(histogram);
+            }
+        }
+        if (encodedHistograms != null) {
+            for (String encoded : encodedHistograms) {
+                merged.merge(LatencyHistogram.decode(Base64.getDecoder().decode(encoded)));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Tạo hoặc cập nhật TestRun theo runId (giữ concurrency / status / histogram cũ nếu không truyền)
+     */
+    private synchronized void upsertTestRun(String runId, PerformanceMetrics metrics, RunAggregate aggregate,
+                                            Integer concurrency, String status) {
+        TestRun testRun = testRunRepository.findByRunId(runId)
+                .orElseGet(() -> TestRun.builder().runId(runId).status("RUNNING").build());
+
+        testRun.setStartTime(LocalDateTime.parse(metrics.getStartTime(), DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        testRun.setEndTime(LocalDateTime.parse(metrics.getEndTime(), DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        testRun.setTotalRequests(metrics.getTotalRequests());
+        testRun.setSuccessCount(metrics.getSuccessCount());
+        testRun.setFailCount(metrics.getFailCount());
+        testRun.setAvgLatencyMs(metrics.getAvgLatency());
+        testRun.setMinLatencyMs(metrics.getMinLatency());
+        testRun.setMaxLatencyMs(metrics.getMaxLatency());
+        testRun.setP50LatencyMs(metrics.getP50Latency());
+        testRun.setP95LatencyMs(metrics.getP95Latency());
+        testRun.setP99LatencyMs(metrics.getP99Latency());
+        testRun.setThroughputRps(metrics.getThroughputRps());
+        if (aggregate != null) {
+            testRun.setLatencyHistogram(aggregate.getHistogram().encode());
+            Map<String, String> providerHistograms = new HashMap<>();
+            aggregate.getProviderHistograms().forEach((provider, histogram) ->
+                    providerHistograms.put(provider, Base64.getEncoder().encodeToString(histogram.encode())));
+            testRun.setProviderLatencyHistograms(compactGson.toJson(providerHistograms));
+        }
+        if (concurrency != null) {
+            testRun.setConcurrency(concurrency);
+        }
+        if (status != null) {
+            testRun.setStatus(status);
+        }
 
         testRunRepository.save(testRun);
-        log.info("Saved test run metrics for runId: {}", runId);
     }
 
     /**
-     * Calculate percentile
+     * TestRun đã persist đủ kết quả của run: run không còn RUNNING, hoặc store không có kết quả nào
+     * ghi sau lần persist cuối
      */
-    private long calculatePercentile(List<Long> sortedValues, int percentile) {
-        if (sortedValues.isEmpty()) {
-            return 0;
+    private boolean isUpToDate(TestRun testRun) {
+        return !"RUNNING".equals(testRun.getStatus())
+                || testRun.getTotalRequests() == resultStore.countByRunId(testRun.getRunId());
+    }
+
+    private LatencyHistogram copyOf(RunAggregate aggregate, String provider) {
+        LatencyHistogram histogram = provider == null
+                ? aggregate.getHistogram()
+                : aggregate.getProviderHistograms().get(provider);
+        return histogram != null ? histogram.copy() : null;
+    }
+
+    private Map<String, String> readProviderHistograms(TestRun testRun) {
+        if (testRun.getProviderLatencyHistograms() == null) {
+            return Map.of();
         }
+        Map<String, String> histograms = compactGson.fromJson(testRun.getProviderLatencyHistograms(),
+                new TypeToken<Map<String, String>>() { }.getType());
+        return histograms != null ? histograms : Map.of();
+    }
 
-        int index = (int) Math.ceil(percentile / 100.0 * sortedValues.size()) - 1;
-        index = Math.max(0, Math.min(index, sortedValues.size() - 1));
-        return sortedValues.get(index);
+    private PerformanceMetrics toMetrics(String runId, RunSummary summary) {
+        long total = summary.getTotalRequests();
+        long success = summary.getSuccessCount();
+        long durationMs = Duration.between(summary.getFirstTimestamp(), summary.getLastTimestamp()).toMillis();
+
+        return PerformanceMetrics.builder()
+                .runId(runId)
+                .totalRequests((int) total)
+                .successCount((int) success)
+                .failCount((int) (total - success))
+                .successRate((double) success / total * 100)
+                .minLatency(summary.getMinLatencyMs())
+                .maxLatency(summary.getMaxLatencyMs())
+                .avgLatency((long) summary.getAvgLatencyMs())
+                .p50Latency(summary.getP50LatencyMs())
+                .p95Latency(summary.getP95LatencyMs())
+                .p99Latency(summary.getP99LatencyMs())
+                .throughputRps(durationMs > 0 ? (total * 1000.0) / durationMs : 0)
+                .durationMs(durationMs)
+                .startTime(formatDateTime(summary.getFirstTimestamp()))
+                .endTime(formatDateTime(summary.getLastTimestamp()))
+                .build();
+    }
+
+    private PerformanceMetrics toMetrics(TestRun testRun) {
+        int total = testRun.getTotalRequests();
+        int success = testRun.getSuccessCount() != null ? testRun.getSuccessCount() : 0;
+        LocalDateTime endTime = testRun.getEndTime() != null ? testRun.getEndTime() : testRun.getStartTime();
+        long durationMs = Duration.between(testRun.getStartTime(), endTime).toMillis();
+
+        return PerformanceMetrics.builder()
+                .runId(testRun.getRunId())
+                .totalRequests(total)
+                .successCount(success)
+                .failCount(testRun.getFailCount())
+                .successRate((double) success / total * 100)
+                .minLatency(testRun.getMinLatencyMs())
+                .maxLatency(testRun.getMaxLatencyMs())
+                .avgLatency(testRun.getAvgLatencyMs())
+                .p50Latency(testRun.getP50LatencyMs())
+                .p95Latency(testRun.getP95LatencyMs())
+                .p99Latency(testRun.getP99LatencyMs())
+                .throughputRps(testRun.getThroughputRps())
+                .durationMs(durationMs)
+                .startTime(formatDateTime(testRun.getStartTime()))
+                .endTime(formatDateTime(endTime))
+                .build();
     }
 
     private String formatDateTime(LocalDateTime dateTime) {
@@ -0,0 +1,230 @@
+package com.example.moderation.service;
+
+import com.example.moderation.provider.ModerationProviderFactory;
+import com.example.moderation.provider.ModerationResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-batching cho provider calls: gom text trong tối đa linger-ms hoặc đến max-batch-size
+ * rồi gửi một lần qua batch SPI của provider, sau đó trả từng kết quả về đúng caller.
+ *
+ * Mỗi batch là một provider call đối với rate limit và concurrency limit.
+ * Provider không có API batch không đi qua dispatcher (gọi đơn lẻ như bình thường).
+ */
+@Component
+@Slf4j
+public class MicroBatchDispatcher {
+
+    private final ModerationProviderFactory providerFactory;
+    private final ProviderRateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final ProviderLatencyTracker latencyTracker;
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+    private final Set<String> batchedProviders;
+    private final int maxBatchSize;
+    private final long lingerMs;
+
+    private final Map<String, Batcher> batchers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService lingerScheduler = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("micro-batch-linger-"));
+
+    public MicroBatchDispatcher(ModerationProviderFactory providerFactory,
+                                ProviderRateLimiter rateLimiter,
+                                AdaptiveConcurrencyLimiter concurrencyLimiter,
+                                ProviderLatencyTracker latencyTracker,
+                                MeterRegistry meterRegistry,
+                                @Value("${content-moderation.micro-batching.enabled:false}") boolean enabled,
+                                @Value("${content-moderation.micro-batching.providers:deepcleer,mock}") Set<String> batchedProviders,
+                                @Value("${content-moderation.micro-batching.max-batch-size:20}") int maxBatchSize,
+                                @Value("${content-moderation.micro-batching.linger-ms:10}") long lingerMs) {
+        this.providerFactory = providerFactory;
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.latencyTracker = latencyTracker;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.batchedProviders = batchedProviders;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMs = lingerMs;
+
+        log.info("MicroBatchDispatcher initialized: enabled={}, providers={}, maxBatchSize={}, lingerMs={}",
+                enabled, batchedProviders, maxBatchSize, lingerMs);
+    }
+
+    public boolean isEnabledFor(String providerName) {
+        return enabled
+                && batchedProviders.contains(providerName)
+                && providerFactory.hasProvider(providerName)
+                && providerFactory.getProvider(providerName).supportsBatch();
+    }
+
+    /**
+     * Thêm text vào batch đang gom của provider
+     *
+     * @return Future hoàn thành khi batch chứa text này có kết quả
+     */
+    public CompletableFuture<ModerationResult> submit(String providerName, String text) {
+        return batchers.computeIfAbsent(providerName, Batcher::new).submit(text);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lingerScheduler.shutdownNow();
+    }
+
+    private record Pending(String text, CompletableFuture<ModerationResult> future) {
+    }
+
+    /**
+     * Gom item của một provider. Batch được gửi bởi thread thêm item cuối cùng (khi đầy)
+     * hoặc bởi linger timer (khi hết thời gian chờ).
+     */
+    private class Batcher {
+
+        private final String providerName;
+        private final DistributionSummary fillRatio;
+        private final DistributionSummary batchSize;
+        private final Counter batches;
+
+        private List<Pending> pending = new ArrayList<>();
+        private ScheduledFuture<?> lingerTimer;
+        private long generation;
+
+        Batcher(String providerName) {
+            this.providerName = providerName;
+            this.fillRatio = DistributionSummary.builder("moderation.microbatch.fill.ratio")
+                    .description("Batch size divided by max batch size")
+                    .tag("provider", providerName)
+                    .register(meterRegistry);
+            this.batchSize = DistributionSummary.builder("moderation.microbatch.size")
+                    .tag("provider", providerName)
+                    .register(meterRegistry);
+            this.batches = Counter.builder("moderation.microbatch.batches")
+                    .tag("provider", providerName)
+                    .register(meterRegistry);
+        }
+
+        CompletableFuture<ModerationResult> submit(String text) {
+            Pending item = new Pending(text, new CompletableFuture<>());
+            List<Pending> full = null;
+
+            synchronized (this) {
+                pending.add(item);
+                if (pending.size() >= maxBatchSize) {
+                    full = take();
+                } else if (pending.size() == 1) {
+                    long batchGeneration = generation;
+                    lingerTimer = lingerScheduler.schedule(() -> flushExpired(batchGeneration),
+                            lingerMs, TimeUnit.MILLISECONDS);
+                }
+            }
+
+            if (full != null) {
+                dispatch(full);
+            }
+            return item.future();
+        }
+
+        private void flushExpired(long batchGeneration) {
+            List<Pending> batch;
+            synchronized (this) {
+                // Batch của timer này đã được gửi khi đầy
+                if (batchGeneration != generation || pending.isEmpty()) {
+                    return;
+                }
+                batch = take();
+            }
+            dispatch(batch);
+        }
+
+        private List<Pending> take() {
+            List<Pending> batch = pending;
+            pending = new ArrayList<>(maxBatchSize);
+            generation++;
+            if (lingerTimer != null) {
+                lingerTimer.cancel(false);
+                lingerTimer = null;
+            }
+            return batch;
+        }
+
+        private void dispatch(List<Pending> batch) {
+            batches.increment();
+            batchSize.record(batch.size());
+            fillRatio.record((double) batch.size() / maxBatchSize);
+
+            List<String> texts = batch.stream().map(Pending::text).toList();
+            log.debug("Dispatching micro-batch of {} texts to {}", texts.size(), providerName);
+
+            CompletableFuture<Void> call;
+            try {
+                call = rateLimiter.executeAsync(providerName, () -> concurrencyLimiter.executeAsync(providerName, () -> {
+                    List<CompletableFuture<ModerationResult>> results =
+                            providerFactory.moderateTextBatchAsync(providerName, texts, new HashMap<>());
+                    List<CompletableFuture<ModerationResult>> delivered = new ArrayList<>(results.size());
+                    for (int i = 0; i < results.size(); i++) {
+                        CompletableFuture<ModerationResult> target = batch.get(i).future();
+                        delivered.add(latencyTracker.track(providerName, results.get(i)).whenComplete((value, error) -> {
+                            if (error == null) {
+                                target.complete(value);
+                            } else {
+                                target.completeExceptionally(unwrap(error));
+                            }
+                        }));
+                    }
+                    return batchOutcome(delivered);
+                }));
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+
+            // Lỗi của cả batch (rate limit, concurrency limit, provider): báo cho các item chưa có kết quả
+            call.whenComplete((ignored, error) -> {
+                if (error != null) {
+                    Throwable cause = unwrap(error);
+                    batch.forEach(item -> item.future().completeExceptionally(cause));
+                }
+            });
+        }
+
+        /**
+         * Kết quả của cả batch cho rate limiter / concurrency limiter, hoàn thành sau khi mọi item đã có kết quả.
+         * Lỗi riêng của một text (ví dụ text không hợp lệ) không được lan sang các text khác;
+         * batch chỉ lỗi khi mọi text đều lỗi (request batch thất bại, ví dụ vượt QPS).
+         */
+        private CompletableFuture<Void> batchOutcome(List<CompletableFuture<ModerationResult>> delivered) {
+            return CompletableFuture.allOf(delivered.stream()
+                            .map(future -> future.handle((value, error) -> null))
+                            .toArray(CompletableFuture[]::new))
+                    .thenCompose(ignored -> delivered.stream().allMatch(CompletableFuture::isCompletedExceptionally)
+                            ? delivered.get(0).thenAccept(value -> { })
+                            : CompletableFuture.completedFuture(null));
+        }
+
+        private Throwable unwrap(Throwable error) {
+            return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.moderation.service;
+
+import com.example.moderation.provider.ModerationResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache kết quả moderation theo (provider, hash của text đã chuẩn hóa).
+ *
+ * Chia thành nhiều segment LRU (LinkedHashMap access-order), mỗi segment có lock riêng.
+ * Entry bị loại khi vượt max-size (LRU) hoặc khi quá TTL (kiểm tra lúc đọc).
+ */
+@Component
+@Slf4j
+public class ModerationResultCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final Segment[] segments;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public ModerationResultCache(MeterRegistry meterRegistry,
+                                 @Value("${content-moderation.cache.enabled:false}") boolean enabled,
+                                 @Value("${content-moderation.cache.max-size:10000}") int maxSize,
+                                 @Value("${content-moderation.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.ttlMillis = ttlSeconds * 1000;
+
+        this.hits = Counter.builder("moderation.cache.hits").register(meterRegistry);
+        this.misses = Counter.builder("moderation.cache.misses").register(meterRegistry);
+        this.evictions = Counter.builder("moderation.cache.evictions")
+                .description("Entries removed by size limit or TTL expiry")
+                .register(meterRegistry);
+
+        int segmentCapacity = Math.max(1, maxSize / SEGMENTS);
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+
+        Gauge.builder("moderation.cache.size", this, ModerationResultCache::size)
+                .register(meterRegistry);
+
+        log.info("ModerationResultCache initialized: enabled={}, maxSize={}, ttlSeconds={}",
+                enabled, maxSize, ttlSeconds);
+    }
+
+    /**
+     * Lấy kết quả đã cache
+     *
+     * @return ModerationResult hoặc null nếu miss/hết hạn/cache bị tắt
+     */
+    public ModerationResult get(String providerName, String text) {
+        if (!enabled) {
+            return null;
+        }
+
+        String key = keyOf(providerName, text);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            CacheEntry entry = segment.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            if (System.currentTimeMillis() > entry.expiresAt) {
+                segment.remove(key);
+                evictions.increment();
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.result;
+        }
+    }
+
+    public void put(String providerName, String text, ModerationResult result) {
+        if (!enabled || result == null) {
+            return;
+        }
+
+        String key = keyOf(providerName, text);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, new CacheEntry(result, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                total += segment.size();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Chuẩn hóa text: Unicode NFC, trim, gộp khoảng trắng liên tiếp.
+     * Không lowercase vì provider có thể phân biệt chữ hoa/thường.
+     */
+    static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC).strip();
+        return normalized.replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Key dạng "provider:sha256(normalize(text))", dùng chung cho cache và request coalescing
+     */
+    static String keyOf(String providerName, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(normalize(text).getBytes(StandardCharsets.UTF_8));
+            return providerName + ":" + HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private Segment segmentFor(String key) {
+        return segments[segmentIndex(key)];
+    }
+
+    static int segmentIndex(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % SEGMENTS;
+    }
+
+    private record CacheEntry(ModerationResult result, long expiresAt) {
+    }
+
+    /**
+     * Một segment LRU; truy cập phải giữ lock trên chính segment
+     */
+    private class Segment extends LinkedHashMap<String, CacheEntry> {
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
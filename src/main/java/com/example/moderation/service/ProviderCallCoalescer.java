@@ -0,0 +1,136 @@
+package com.example.moderation.service;
+
+import com.example.moderation.provider.ModerationResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight cho provider calls: các caller đồng thời với cùng (provider, text)
+ * dùng chung một provider call đang chạy thay vì mỗi caller gọi riêng.
+ *
+ * Khác với result cache, không có dữ liệu cũ: future bị xóa ngay khi call kết thúc.
+ */
+@Component
+@Slf4j
+public class ProviderCallCoalescer {
+
+    private final boolean enabled;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, CompletableFuture<ModerationResult>> inFlight = new ConcurrentHashMap<>();
+
+    public ProviderCallCoalescer(MeterRegistry meterRegistry,
+                                 @Value("${content-moderation.coalescing.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("moderation.coalescer.inflight", inFlight, Map::size)
+                .description("Distinct provider calls currently in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Thực thi call, hoặc chờ kết quả của call giống hệt đang chạy.
+     *
+     * @param providerName Tên provider
+     * @param text Content cần moderate
+     * @param call Provider call thực tế (chỉ chạy bởi caller đầu tiên)
+     * @return Kết quả dùng chung giữa các caller
+     */
+    public ModerationResult execute(String providerName, String text, Supplier<ModerationResult> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        String key = ModerationResultCache.keyOf(providerName, text);
+        CompletableFuture<ModerationResult> mine = new CompletableFuture<>();
+        CompletableFuture<ModerationResult> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            counter("moderation.coalescer.coalesced", providerName).increment();
+            return await(existing);
+        }
+
+        counter("moderation.coalescer.leaders", providerName).increment();
+        try {
+            ModerationResult result = call.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Biến thể non-blocking của {@link #execute}: follower nhận future của call đang chạy
+     * thay vì chờ join. Dùng chung bảng in-flight với path đồng bộ.
+     *
+     * @param call Provider call bất đồng bộ (chỉ chạy bởi caller đầu tiên)
+     */
+    public CompletableFuture<ModerationResult> executeAsync(String providerName, String text,
+                                                            Supplier<CompletableFuture<ModerationResult>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        String key = ModerationResultCache.keyOf(providerName, text);
+        CompletableFuture<ModerationResult> mine = new CompletableFuture<>();
+        CompletableFuture<ModerationResult> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            counter("moderation.coalescer.coalesced", providerName).increment();
+            // copy(): một caller cancel không ảnh hưởng các caller khác
+            return existing.copy();
+        }
+
+        counter("moderation.coalescer.leaders", providerName).increment();
+        CompletableFuture<ModerationResult> source;
+        try {
+            source = call.get();
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+
+        source.whenComplete((result, error) -> {
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(result);
+            }
+        });
+        return mine.copy();
+    }
+
+    private ModerationResult await(CompletableFuture<ModerationResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Follower nhận đúng exception của leader (thường là ModerationException)
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Counter counter(String name, String providerName) {
+        return Counter.builder(name)
+                .tag("provider", providerName)
+                .register(meterRegistry);
+    }
+}
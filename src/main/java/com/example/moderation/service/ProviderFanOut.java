@@ -0,0 +1,264 @@
+package com.example.moderation.service;
+
+import com.example.moderation.provider.ModerationException;
+import com.example.moderation.provider.ModerationProvider;
+import com.example.moderation.provider.ModerationProviderFactory;
+import com.example.moderation.provider.ModerationResult;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Gọi song song nhiều provider cho cùng một text.
+ *
+ * - FIRST_WINS: lấy kết quả thành công đầu tiên (giảm tail latency).
+ * - QUORUM: chờ đủ quorum kết quả thành công, chọn risk level nghiêm trọng nhất (tăng độ chính xác).
+ *
+ * Khi đã có quyết định, các call còn lại bị cancel. Kết quả và latency của từng provider
+ * được ghi vào metrics và vào raw response của kết quả tổng hợp.
+ *
+ * Danh sách provider phải được cấu hình tường minh khi bật fan-out: "mọi provider healthy" gồm cả
+ * mock / Alibaba mock-mode, kết quả giả của chúng sẽ thắng FIRST_WINS hoặc được tính vào quorum.
+ */
+@Component
+@Slf4j
+public class ProviderFanOut {
+
+    /**
+     * Tên dùng cho cache / single-flight của kết quả fan-out
+     */
+    public static final String FAN_OUT_PROVIDER = "fanout";
+
+    public enum Mode {
+        NONE, FIRST_WINS, QUORUM
+    }
+
+    private static final Map<String, Integer> SEVERITY = Map.of("HIGH", 3, "MEDIUM", 2, "LOW", 1);
+
+    private final ModerationProviderFactory providerFactory;
+    private final MeterRegistry meterRegistry;
+    private final Gson gson;
+
+    private final Mode mode;
+    private final Set<String> configuredProviders;
+    private final int configuredQuorum;
+
+    public ProviderFanOut(ModerationProviderFactory providerFactory,
+                          MeterRegistry meterRegistry,
+                          Gson gson,
+                          @Value("${content-moderation.fan-out.mode:none}") String mode,
+                          @Value("${content-moderation.fan-out.providers:}") Set<String> configuredProviders,
+                          @Value("${content-moderation.fan-out.quorum:0}") int configuredQuorum) {
+        this.providerFactory = providerFactory;
+        this.meterRegistry = meterRegistry;
+        this.gson = gson;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase().replace('-', '_'));
+        this.configuredProviders = configuredProviders;
+        this.configuredQuorum = configuredQuorum;
+
+        if (this.mode != Mode.NONE && configuredProviders.isEmpty()) {
+            throw new IllegalStateException("content-moderation.fan-out.providers must list the providers to fan out to "
+                    + "when fan-out mode is " + this.mode);
+        }
+
+        log.info("ProviderFanOut initialized: mode={}, providers={}, quorum={}",
+                this.mode, configuredProviders, configuredQuorum > 0 ? configuredQuorum : "majority");
+    }
+
+    public boolean isEnabled() {
+        return mode != Mode.NONE;
+    }
+
+    /**
+     * Fan-out một text tới các provider
+     *
+     * @param call Tạo provider call (đã qua rate / concurrency limit) theo tên provider
+     * @return Kết quả tổng hợp; providerName là provider được chọn (FIRST_WINS) hoặc các provider trong quorum
+     */
+    public CompletableFuture<ModerationResult> execute(Function<String, CompletableFuture<ModerationResult>> call) {
+        List<String> providers = selectProviders();
+        if (providers.isEmpty()) {
+            return CompletableFuture.failedFuture(new ModerationException(FAN_OUT_PROVIDER, null,
+                    "No healthy provider available for fan-out"));
+        }
+
+        int quorum = mode == Mode.FIRST_WINS ? 1
+                : Math.min(providers.size(), configuredQuorum > 0 ? configuredQuorum : providers.size() / 2 + 1);
+        return new FanOutCall(providers, quorum).start(call);
+    }
+
+    private List<String> selectProviders() {
+        return providerFactory.getAllProviders().stream()
+                .filter(provider -> configuredProviders.contains(provider.getProviderName()))
+                .filter(ModerationProvider::isHealthy)
+                .map(ModerationProvider::getProviderName)
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Trạng thái của một lần fan-out; mọi thay đổi đồng bộ trên chính object này
+     */
+    private class FanOutCall {
+
+        private final List<String> providers;
+        private final int quorum;
+        private final long startNanos = System.nanoTime();
+        private final CompletableFuture<ModerationResult> decision = new CompletableFuture<>();
+        private final Map<String, CompletableFuture<ModerationResult>> calls = new LinkedHashMap<>();
+        private final Map<String, ProviderAttempt> attempts = new LinkedHashMap<>();
+        private final List<ModerationResult> successes = new ArrayList<>();
+        private Throwable lastError;
+
+        FanOutCall(List<String> providers, int quorum) {
+            this.providers = providers;
+            this.quorum = quorum;
+        }
+
+        CompletableFuture<ModerationResult> start(Function<String, CompletableFuture<ModerationResult>> call) {
+            for (String providerName : providers) {
+                if (decision.isDone()) {
+                    // Đã có quyết định từ call hoàn thành ngay lập tức: không gọi thêm provider
+                    break;
+                }
+                CompletableFuture<ModerationResult> future;
+                try {
+                    future = call.apply(providerName);
+                } catch (RuntimeException e) {
+                    future = CompletableFuture.failedFuture(e);
+                }
+                synchronized (this) {
+                    calls.put(providerName, future);
+                }
+                future.whenComplete((result, error) -> onComplete(providerName, result, error));
+            }
+            return decision;
+        }
+
+        private void onComplete(String providerName, ModerationResult result, Throwable error) {
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            String status = error == null ? "success" : decision.isDone() ? "cancelled" : "error";
+
+            Timer.builder("moderation.fanout.provider.latency")
+                    .tag("provider", providerName)
+                    .tag("status", status)
+                    .register(meterRegistry)
+                    .record(latencyMs, TimeUnit.MILLISECONDS);
+
+            synchronized (this) {
+                if (decision.isDone()) {
+                    return;
+                }
+                attempts.put(providerName, new ProviderAttempt(providerName, status,
+                        result != null ? result.getRiskLevel() : null,
+                        result != null ? result.getConfidenceScore() : null,
+                        latencyMs,
+                        cause != null ? cause.getMessage() : null,
+                        result != null ? result.getRawResponse() : null));
+
+                if (error == null) {
+                    successes.add(result);
+                } else {
+                    lastError = cause;
+                }
+
+                boolean allDone = attempts.size() == providers.size();
+                if (allDone && successes.isEmpty()) {
+                    decision.completeExceptionally(new ModerationException(FAN_OUT_PROVIDER, null,
+                            "All fan-out providers failed: " + lastError.getMessage(), lastError));
+                    return;
+                }
+                if (successes.size() < quorum && !allDone) {
+                    return;
+                }
+                decision.complete(decide());
+            }
+
+            cancelPending();
+        }
+
+        /**
+         * Gọi khi đã giữ lock và đủ kết quả để quyết định
+         */
+        private ModerationResult decide() {
+            ModerationResult chosen = successes.stream()
+                    .max(Comparator.comparingInt((ModerationResult r) -> SEVERITY.getOrDefault(r.getRiskLevel(), 0))
+                            .thenComparing(r -> r.getConfidenceScore() != null ? r.getConfidenceScore() : 0.0))
+                    .orElseThrow();
+            if (mode == Mode.FIRST_WINS) {
+                chosen = successes.get(0);
+            }
+
+            String decidedBy = mode == Mode.FIRST_WINS
+                    ? chosen.getProviderName()
+                    : successes.stream().map(ModerationResult::getProviderName).sorted().collect(Collectors.joining("+"));
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+            Counter.builder("moderation.fanout.decisions")
+                    .tag("mode", mode.name())
+                    .tag("provider", decidedBy)
+                    .register(meterRegistry)
+                    .increment();
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("mode", mode.name());
+            summary.put("decidedBy", decidedBy);
+            summary.put("quorum", quorum);
+            summary.put("quorumReached", successes.size() >= quorum);
+            summary.put("providers", new ArrayList<>(attempts.values()));
+
+            Map<String, Object> details = new LinkedHashMap<>();
+            if (chosen.getDetails() != null) {
+                details.putAll(chosen.getDetails());
+            }
+            details.put("fanOut", summary);
+
+            log.debug("Fan-out ({}) decided by {} in {}ms: riskLevel={}",
+                    mode, decidedBy, latencyMs, chosen.getRiskLevel());
+
+            return ModerationResult.builder()
+                    .providerName(decidedBy)
+                    .riskLevel(chosen.getRiskLevel())
+                    .confidenceScore(chosen.getConfidenceScore())
+                    .labels(chosen.getLabels())
+                    .details(details)
+                    .rawResponse(gson.toJson(summary))
+                    .latencyMs(latencyMs)
+                    .build();
+        }
+
+        private void cancelPending() {
+            List<CompletableFuture<ModerationResult>> pending;
+            synchronized (this) {
+                pending = new ArrayList<>(calls.values());
+            }
+            pending.stream()
+                    .filter(future -> !future.isDone())
+                    .forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Kết quả của một provider trong fan-out (được lưu trong raw response tổng hợp)
+     */
+    private record ProviderAttempt(String provider, String status, String riskLevel, Double confidenceScore,
+                                   long latencyMs, String error, String rawResponse) {
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.moderation.service;
+
+import com.example.moderation.provider.ModerationResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests cho provider call.
+ *
+ * Nếu call chính chưa trả lời sau hedge delay (mặc định = p95 hiện tại của provider),
+ * gửi thêm một call giống hệt; lấy kết quả nào về trước và cancel call còn lại.
+ * Số hedge bị giới hạn bởi hedge budget (tỉ lệ % số call chính), giống retry throttling:
+ * mỗi call chính nạp thêm credit, mỗi hedge tiêu một credit.
+ */
+@Component
+@Slf4j
+public class ProviderHedger {
+
+    private static final long CREDIT_PER_HEDGE = 100;
+
+    private final ProviderLatencyTracker latencyTracker;
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+    private final Set<String> hedgedProviders;
+    private final long fixedDelayMs;
+    private final long minDelayMs;
+    private final long creditPerCall;
+    private final long maxCredit;
+    private final AtomicLong credit = new AtomicLong();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("provider-hedge-timer-"));
+
+    public ProviderHedger(ProviderLatencyTracker latencyTracker,
+                          MeterRegistry meterRegistry,
+                          @Value("${content-moderation.hedging.enabled:false}") boolean enabled,
+                          @Value("${content-moderation.hedging.providers:deepcleer}") Set<String> hedgedProviders,
+                          @Value("${content-moderation.hedging.delay-ms:0}") long fixedDelayMs,
+                          @Value("${content-moderation.hedging.min-delay-ms:20}") long minDelayMs,
+                          @Value("${content-moderation.hedging.budget-percent:5}") int budgetPercent) {
+        this.latencyTracker = latencyTracker;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.hedgedProviders = hedgedProviders;
+        this.fixedDelayMs = fixedDelayMs;
+        this.minDelayMs = minDelayMs;
+        this.creditPerCall = budgetPercent;
+        // Cho phép dồn tối đa 10 hedge khi traffic thấp
+        this.maxCredit = CREDIT_PER_HEDGE * 10;
+
+        log.info("ProviderHedger initialized: enabled={}, providers={}, delayMs={}, budgetPercent={}",
+                enabled, hedgedProviders, fixedDelayMs > 0 ? fixedDelayMs : "p95", budgetPercent);
+    }
+
+    public boolean isEnabledFor(String providerName) {
+        return enabled && hedgedProviders.contains(providerName);
+    }
+
+    /**
+     * Thực hiện call có hedging. Hedge delay dựa trên p95 mà ProviderLatencyTracker ghi nhận từ các call thật.
+     *
+     * @param providerName Tên provider
+     * @param call Tạo một provider call mới mỗi lần được gọi
+     */
+    public CompletableFuture<ModerationResult> execute(String providerName,
+                                                       Supplier<CompletableFuture<ModerationResult>> call) {
+        if (!isEnabledFor(providerName)) {
+            return call.get();
+        }
+
+        addCredit();
+
+        CompletableFuture<ModerationResult> result = new CompletableFuture<>();
+        CompletableFuture<ModerationResult> primary = call.get();
+        AtomicReference<CompletableFuture<ModerationResult>> hedgeRef = new AtomicReference<>();
+
+        long delayMs = hedgeDelayMs(providerName);
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (!tryConsumeCredit()) {
+                counter("moderation.hedge.budget.exhausted", providerName).increment();
+                return;
+            }
+
+            counter("moderation.hedge.sent", providerName).increment();
+            log.debug("Hedging {} call after {}ms", providerName, delayMs);
+
+            CompletableFuture<ModerationResult> hedge = call.get();
+            hedgeRef.set(hedge);
+            // Call chính có thể đã xong trong lúc tạo hedge mà chưa thấy hedgeRef
+            if (result.isDone()) {
+                hedge.cancel(true);
+                return;
+            }
+            hedge.whenComplete((value, error) -> {
+                if (error == null) {
+                    if (result.complete(value)) {
+                        counter("moderation.hedge.wins", providerName).increment();
+                        primary.cancel(true);
+                    }
+                } else if (primary.isCompletedExceptionally()) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }, delayMs, TimeUnit.MILLISECONDS);
+
+        primary.whenComplete((value, error) -> {
+            if (error == null) {
+                if (result.complete(value)) {
+                    timer.cancel(false);
+                    CompletableFuture<ModerationResult> hedge = hedgeRef.get();
+                    if (hedge != null) {
+                        hedge.cancel(true);
+                    }
+                }
+                return;
+            }
+
+            // Call chính lỗi: nếu chưa hedge thì báo lỗi ngay (fallback xử lý), nếu đã hedge thì chờ hedge
+            CompletableFuture<ModerationResult> hedge = hedgeRef.get();
+            if (hedge == null) {
+                timer.cancel(false);
+                result.completeExceptionally(error);
+            } else if (hedge.isCompletedExceptionally()) {
+                result.completeExceptionally(error);
+            }
+        });
+
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private long hedgeDelayMs(String providerName) {
+        if (fixedDelayMs > 0) {
+            return fixedDelayMs;
+        }
+        long p95 = latencyTracker.p95(providerName);
+        // Chưa đủ mẫu: dùng delay lớn để gần như không hedge
+        return p95 > 0 ? Math.max(minDelayMs, p95) : Math.max(minDelayMs, 1000);
+    }
+
+    private void addCredit() {
+        credit.updateAndGet(current -> Math.min(maxCredit, current + creditPerCall));
+    }
+
+    private boolean tryConsumeCredit() {
+        while (true) {
+            long current = credit.get();
+            if (current < CREDIT_PER_HEDGE) {
+                return false;
+            }
+            if (credit.compareAndSet(current, current - CREDIT_PER_HEDGE)) {
+                return true;
+            }
+        }
+    }
+
+    private Counter counter(String name, String providerName) {
+        return Counter.builder(name)
+                .tag("provider", providerName)
+                .register(meterRegistry);
+    }
+}
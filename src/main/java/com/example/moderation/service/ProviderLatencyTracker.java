@@ -0,0 +1,135 @@
+package com.example.moderation.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Theo dõi latency và tỉ lệ lỗi gần đây của từng provider
+ * (cửa sổ trượt các mẫu mới nhất + EWMA).
+ * Dùng cho các quyết định runtime như hedge delay và routing.
+ */
+@Component
+public class ProviderLatencyTracker {
+
+    private static final int WINDOW_SIZE = 1024;
+    private static final int RECOMPUTE_EVERY = 64;
+    private static final double LATENCY_ALPHA = 0.2;
+    private static final double ERROR_ALPHA = 0.1;
+
+    private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+    private final Map<String, HealthStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Ghi một call thành công
+     */
+    public void record(String providerName, long latencyMs) {
+        windows.computeIfAbsent(providerName, name -> new LatencyWindow()).record(latencyMs);
+        stats.computeIfAbsent(providerName, name -> new HealthStats()).record(latencyMs, false);
+    }
+
+    /**
+     * Ghi một call lỗi (latency của call lỗi không tính vào percentile)
+     */
+    public void recordFailure(String providerName, long latencyMs) {
+        stats.computeIfAbsent(providerName, name -> new HealthStats()).record(latencyMs, true);
+    }
+
+    /**
+     * Theo dõi kết quả của một provider call bất đồng bộ (call bị cancel không được tính)
+     */
+    public <T> CompletableFuture<T> track(String providerName, CompletableFuture<T> call) {
+        long start = System.currentTimeMillis();
+        call.whenComplete((value, error) -> {
+            long latencyMs = System.currentTimeMillis() - start;
+            if (error == null) {
+                record(providerName, latencyMs);
+            } else if (!(error instanceof CancellationException)) {
+                recordFailure(providerName, latencyMs);
+            }
+        });
+        return call;
+    }
+
+    /**
+     * EWMA latency của các call thành công
+     *
+     * @return latency (ms), hoặc -1 nếu chưa có mẫu
+     */
+    public double ewmaLatency(String providerName) {
+        HealthStats s = stats.get(providerName);
+        return s != null ? s.ewmaLatencyMs : -1;
+    }
+
+    /**
+     * EWMA tỉ lệ lỗi (0.0 - 1.0)
+     */
+    public double errorRate(String providerName) {
+        HealthStats s = stats.get(providerName);
+        return s != null ? s.errorRate : 0.0;
+    }
+
+    /**
+     * Percentile p95 của cửa sổ hiện tại
+     *
+     * @return latency (ms), hoặc -1 nếu chưa đủ mẫu
+     */
+    public long p95(String providerName) {
+        LatencyWindow window = windows.get(providerName);
+        return window != null ? window.p95() : -1;
+    }
+
+    /**
+     * EWMA latency (chỉ call thành công) và EWMA tỉ lệ lỗi
+     */
+    private static class HealthStats {
+
+        private volatile double ewmaLatencyMs = -1;
+        private volatile double errorRate;
+
+        synchronized void record(long latencyMs, boolean failed) {
+            errorRate = errorRate + ERROR_ALPHA * ((failed ? 1.0 : 0.0) - errorRate);
+            if (!failed) {
+                ewmaLatencyMs = ewmaLatencyMs < 0
+                        ? latencyMs
+                        : ewmaLatencyMs + LATENCY_ALPHA * (latencyMs - ewmaLatencyMs);
+            }
+        }
+    }
+
+    /**
+     * Ring buffer các latency mới nhất. p95 được tính lại mỗi RECOMPUTE_EVERY mẫu
+     * để không phải sort ở mỗi lần đọc.
+     */
+    private static class LatencyWindow {
+
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count;
+        private int next;
+        private int sinceRecompute;
+        private volatile long cachedP95 = -1;
+
+        synchronized void record(long latencyMs) {
+            samples[next] = latencyMs;
+            next = (next + 1) % WINDOW_SIZE;
+            if (count < WINDOW_SIZE) {
+                count++;
+            }
+            if (++sinceRecompute >= RECOMPUTE_EVERY) {
+                sinceRecompute = 0;
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(0.95 * count) - 1;
+                cachedP95 = sorted[Math.max(0, index)];
+            }
+        }
+
+        long p95() {
+            return cachedP95;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.example.moderation.service;
+
+import com.example.moderation.config.RateLimitConfig;
+import com.example.moderation.provider.ModerationException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Token-bucket rate limiter cho provider calls (QPS + burst theo từng provider).
+ *
+ * Token được "đặt trước": mỗi call nhận ngay thời gian phải chờ, sau đó chờ bằng sleep (path đồng bộ)
+ * hoặc delayed executor (path async, không giữ thread). Chờ lâu hơn max-wait-ms thì bị từ chối ngay.
+ *
+ * Khi provider trả error code vượt quota (DeepCleer 1901), QPS giảm theo decrease-factor rồi tăng dần
+ * lại về QPS cấu hình. Provider không giới hạn QPS sẽ bị giới hạn theo throughput đo được lúc bị throttle.
+ */
+@Component
+@Slf4j
+public class ProviderRateLimiter {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final RateLimitConfig config;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public ProviderRateLimiter(RateLimitConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+
+        log.info("ProviderRateLimiter initialized: defaultRate={}, providers={}, burst={}, adaptive={}",
+                config.getDefaultRate(), config.getProviders(), config.getBurst(), config.getAdaptive().getEnabled());
+    }
+
+    /**
+     * Chờ token (block thread hiện tại) rồi chạy call
+     */
+    public <T> T execute(String providerName, Supplier<T> call) {
+        TokenBucket bucket = bucketFor(providerName);
+        long waitNanos = bucket.reserve();
+
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ModerationException(providerName, null, "Interrupted while waiting for rate limit", e);
+            }
+        }
+
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            onFailure(bucket, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Chờ token bằng delayed executor (không giữ thread) rồi chạy call
+     */
+    public <T> CompletableFuture<T> executeAsync(String providerName, Supplier<CompletableFuture<T>> call) {
+        TokenBucket bucket = bucketFor(providerName);
+        long waitNanos;
+        try {
+            waitNanos = bucket.reserve();
+        } catch (ModerationException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<T> future = waitNanos > 0 ? startDelayed(bucket, waitNanos, call) : start(call);
+
+        future.whenComplete((value, error) -> {
+            if (error != null) {
+                onFailure(bucket, error);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Call chạy sau khi chờ token. Cancel từ caller được chuyển xuống call thật nếu call đã bắt đầu;
+     * cancel trước khi hết thời gian chờ thì call không chạy và token đặt trước được trả lại bucket.
+     */
+    private <T> CompletableFuture<T> startDelayed(TokenBucket bucket, long waitNanos,
+                                                  Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicBoolean claimed = new AtomicBoolean();
+        AtomicReference<CompletableFuture<T>> started = new AtomicReference<>();
+
+        CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            CompletableFuture<T> running = start(call);
+            started.set(running);
+            running.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(error);
+                }
+            });
+            // Cancel xảy ra giữa lúc claim và lúc call bắt đầu
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+
+        result.whenComplete((value, error) -> {
+            if (!result.isCancelled()) {
+                return;
+            }
+            if (claimed.compareAndSet(false, true)) {
+                bucket.refund();
+                return;
+            }
+            CompletableFuture<T> running = started.get();
+            if (running != null) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Supplier có thể throw đồng bộ: trả failed future thay vì ném cho caller
+     */
+    private static <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> call) {
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * QPS hiện tại của provider (0 = không giới hạn)
+     */
+    public double currentRate(String providerName) {
+        TokenBucket bucket = buckets.get(providerName);
+        return bucket != null ? bucket.rateForMetrics() : configuredRate(providerName);
+    }
+
+    /**
+     * Phần rate budget còn lại của provider (token hiện có / burst), 1.0 nếu không giới hạn
+     */
+    public double remainingBudget(String providerName) {
+        TokenBucket bucket = buckets.get(providerName);
+        return bucket != null ? bucket.remainingBudget() : 1.0;
+    }
+
+    private void onFailure(TokenBucket bucket, Throwable error) {
+        if (config.getAdaptive().getEnabled() && isThrottled(error)) {
+            bucket.onThrottled();
+        }
+    }
+
+    private boolean isThrottled(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof ModerationException moderationException
+                    && moderationException.getErrorCode() != null
+                    && config.getAdaptive().getThrottleCodes().contains(moderationException.getErrorCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double configuredRate(String providerName) {
+        Double rate = config.getProviders().getOrDefault(providerName, config.getDefaultRate());
+        return rate != null ? rate : 0.0;
+    }
+
+    private TokenBucket bucketFor(String providerName) {
+        return buckets.computeIfAbsent(providerName, this::createBucket);
+    }
+
+    private TokenBucket createBucket(String providerName) {
+        TokenBucket bucket = new TokenBucket(providerName, configuredRate(providerName));
+        Tags tags = Tags.of("provider", providerName);
+
+        Gauge.builder("moderation.ratelimit.rate", bucket, TokenBucket::rateForMetrics)
+                .description("Current provider QPS limit (0 = unlimited)")
+                .tags(tags)
+                .register(meterRegistry);
+        bucket.waitTimer = Timer.builder("moderation.ratelimit.wait")
+                .tags(tags)
+                .register(meterRegistry);
+        bucket.rejections = Counter.builder("moderation.ratelimit.rejections")
+                .tags(tags)
+                .register(meterRegistry);
+        bucket.throttled = Counter.builder("moderation.ratelimit.throttled")
+                .description("Provider responses signalling QPS quota exceeded")
+                .tags(tags)
+                .register(meterRegistry);
+        return bucket;
+    }
+
+    /**
+     * Token bucket của một provider. Token có thể âm: phần âm là các token đã được đặt trước.
+     */
+    private class TokenBucket {
+
+        private final String providerName;
+        /** QPS cấu hình; Double.POSITIVE_INFINITY = không giới hạn */
+        private final double configuredRate;
+
+        private double rate;
+        private double ceiling;
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+        private long lastThrottleNanos = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+
+        // Throughput đo được theo cửa sổ 1 giây (dùng khi provider không có QPS cấu hình)
+        private long windowStartNanos = System.nanoTime();
+        private long windowCount;
+        private double observedRate;
+
+        private Timer waitTimer;
+        private Counter rejections;
+        private Counter throttled;
+
+        TokenBucket(String providerName, double configuredRate) {
+            this.providerName = providerName;
+            this.configuredRate = configuredRate > 0 ? configuredRate : Double.POSITIVE_INFINITY;
+            this.rate = this.configuredRate;
+            this.ceiling = this.configuredRate;
+            this.tokens = burst();
+        }
+
+        /**
+         * Đặt trước một token
+         *
+         * @return thời gian phải chờ (nanos), 0 nếu có token ngay
+         * @throws ModerationException nếu phải chờ lâu hơn max-wait-ms
+         */
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            refill(now);
+            countThroughput(now);
+
+            if (Double.isInfinite(rate)) {
+                return 0;
+            }
+            if (tokens >= 1) {
+                tokens -= 1;
+                waitTimer.record(0, TimeUnit.NANOSECONDS);
+                return 0;
+            }
+
+            long waitNanos = (long) ((1 - tokens) / rate * NANOS_PER_SECOND);
+            if (waitNanos > TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMs())) {
+                rejections.increment();
+                throw new ModerationException(providerName, null,
+                        "Rate limit exceeded for " + providerName + " (limit=" + String.format("%.1f", rate) + " req/s)");
+            }
+            tokens -= 1;
+            waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+            return waitNanos;
+        }
+
+        /**
+         * Trả lại token đã đặt trước cho call không được chạy
+         */
+        synchronized void refund() {
+            refill(System.nanoTime());
+            if (!Double.isInfinite(rate)) {
+                tokens = Math.min(burst(), tokens + 1);
+            }
+        }
+
+        synchronized void onThrottled() {
+            throttled.increment();
+            long now = System.nanoTime();
+            if (now - lastThrottleNanos < TimeUnit.MILLISECONDS.toNanos(config.getAdaptive().getCooldownMs())) {
+                return;
+            }
+            refill(now);
+            lastThrottleNanos = now;
+
+            if (Double.isInfinite(rate)) {
+                // Chưa có QPS cấu hình: lấy throughput hiện tại làm trần tạm thời
+                ceiling = Math.max(1.0, observedRate);
+                rate = ceiling;
+                tokens = 0;
+            }
+            rate = Math.max(ceiling * config.getAdaptive().getMinRateFactor(),
+                    rate * config.getAdaptive().getDecreaseFactor());
+            tokens = Math.min(tokens, burst());
+
+            log.warn("Provider {} reported QPS limit exceeded, lowering rate to {} req/s",
+                    providerName, String.format("%.1f", rate));
+        }
+
+        synchronized double remainingBudget() {
+            refill(System.nanoTime());
+            if (Double.isInfinite(rate)) {
+                return 1.0;
+            }
+            return Math.max(0.0, tokens) / burst();
+        }
+
+        synchronized double rateForMetrics() {
+            return Double.isInfinite(rate) ? 0 : rate;
+        }
+
+        private void refill(long now) {
+            double elapsedSeconds = (double) (now - lastRefillNanos) / NANOS_PER_SECOND;
+            lastRefillNanos = now;
+
+            if (rate < ceiling && now - lastThrottleNanos
+                    >= TimeUnit.MILLISECONDS.toNanos(config.getAdaptive().getCooldownMs())) {
+                rate = Math.min(ceiling, rate + ceiling * config.getAdaptive().getRecoveryPerSecond() * elapsedSeconds);
+                if (rate >= ceiling && Double.isInfinite(configuredRate)) {
+                    // Đã hồi phục hoàn toàn: bỏ giới hạn tạm thời
+                    rate = Double.POSITIVE_INFINITY;
+                    ceiling = Double.POSITIVE_INFINITY;
+                }
+            }
+
+            if (!Double.isInfinite(rate)) {
+                tokens = Math.min(burst(), tokens + elapsedSeconds * rate);
+            }
+        }
+
+        private void countThroughput(long now) {
+            if (now - windowStartNanos >= NANOS_PER_SECOND) {
+                observedRate = windowCount * (double) NANOS_PER_SECOND / (now - windowStartNanos);
+                windowStartNanos = now;
+                windowCount = 0;
+            }
+            windowCount++;
+        }
+
+        private double burst() {
+            if (Double.isInfinite(rate)) {
+                return 0;
+            }
+            return config.getBurst() > 0 ? config.getBurst() : Math.max(1.0, rate);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.moderation.service;
+
+import com.example.moderation.config.RoutingConfig;
+import com.example.moderation.provider.ModerationProviderFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chọn provider cho từng request theo trọng số tự điều chỉnh.
+ *
+ * Trọng số hiệu dụng = trọng số cấu hình
+ *   x (EWMA latency tốt nhất / EWMA latency của provider)
+ *   x (1 - tỉ lệ lỗi)^error-penalty
+ *   x rate budget còn lại (tối thiểu 0.1)
+ * và bằng 0 khi provider không healthy (circuit breaker OPEN).
+ * Trọng số được tính lại mỗi refresh-ms, nên traffic rời provider chậm / lỗi trong vài giây.
+ */
+@Component
+@Slf4j
+public class ProviderRouter {
+
+    private final RoutingConfig config;
+    private final ModerationProviderFactory providerFactory;
+    private final ProviderLatencyTracker latencyTracker;
+    private final ProviderRateLimiter rateLimiter;
+    private final MeterRegistry meterRegistry;
+    private final String activeProviderName;
+
+    private final Map<String, Double> effectiveWeights = new ConcurrentHashMap<>();
+    private final Map<String, Counter> decisions = new ConcurrentHashMap<>();
+    private volatile List<WeightedProvider> snapshot = List.of();
+    private volatile long computedAtMs;
+
+    public ProviderRouter(RoutingConfig config,
+                          ModerationProviderFactory providerFactory,
+                          ProviderLatencyTracker latencyTracker,
+                          ProviderRateLimiter rateLimiter,
+                          MeterRegistry meterRegistry,
+                          @Value("${content-moderation.active-provider:mock}") String activeProviderName) {
+        this.config = config;
+        this.providerFactory = providerFactory;
+        this.latencyTracker = latencyTracker;
+        this.rateLimiter = rateLimiter;
+        this.meterRegistry = meterRegistry;
+        this.activeProviderName = activeProviderName;
+
+        for (String providerName : baseWeights().keySet()) {
+            Gauge.builder("moderation.routing.weight", effectiveWeights, weights -> weights.getOrDefault(providerName, 0.0))
+                    .description("Effective routing weight")
+                    .tag("provider", providerName)
+                    .register(meterRegistry);
+            Gauge.builder("moderation.routing.latency.ewma", latencyTracker, tracker -> tracker.ewmaLatency(providerName))
+                    .tag("provider", providerName)
+                    .register(meterRegistry);
+            Gauge.builder("moderation.routing.error.rate", latencyTracker, tracker -> tracker.errorRate(providerName))
+                    .tag("provider", providerName)
+                    .register(meterRegistry);
+        }
+
+        log.info("ProviderRouter initialized: enabled={}, weights={}", config.getEnabled(), baseWeights());
+    }
+
+    public boolean isEnabled() {
+        return config.getEnabled();
+    }
+
+    /**
+     * Chọn provider cho một request (weighted random theo trọng số hiệu dụng)
+     */
+    public String choose() {
+        long now = System.currentTimeMillis();
+        if (now - computedAtMs >= config.getRefreshMs()) {
+            refresh(now);
+        }
+
+        List<WeightedProvider> providers = snapshot;
+        String chosen = activeProviderName;
+        if (!providers.isEmpty()) {
+            double total = providers.get(providers.size() - 1).cumulativeWeight();
+            double point = ThreadLocalRandom.current().nextDouble(total);
+            for (WeightedProvider provider : providers) {
+                if (point < provider.cumulativeWeight()) {
+                    chosen = provider.providerName();
+                    break;
+                }
+            }
+        }
+
+        decisions.computeIfAbsent(chosen, name -> Counter.builder("moderation.routing.decisions")
+                        .tag("provider", name)
+                        .register(meterRegistry))
+                .increment();
+        return chosen;
+    }
+
+    private synchronized void refresh(long now) {
+        if (now - computedAtMs < config.getRefreshMs()) {
+            return;
+        }
+
+        Map<String, Double> weights = new LinkedHashMap<>();
+        double bestLatency = Double.MAX_VALUE;
+        for (String providerName : baseWeights().keySet()) {
+            double latency = latencyTracker.ewmaLatency(providerName);
+            if (latency > 0) {
+                bestLatency = Math.min(bestLatency, latency);
+            }
+        }
+
+        double total = 0;
+        for (Map.Entry<String, Double> entry : baseWeights().entrySet()) {
+            String providerName = entry.getKey();
+            if (!isRoutable(providerName)) {
+                weights.put(providerName, 0.0);
+                continue;
+            }
+
+            double latency = latencyTracker.ewmaLatency(providerName);
+            double latencyFactor = latency > 0 && bestLatency < Double.MAX_VALUE ? bestLatency / latency : 1.0;
+            double errorFactor = Math.pow(1.0 - latencyTracker.errorRate(providerName), config.getErrorPenalty());
+            double budgetFactor = Math.max(0.1, rateLimiter.remainingBudget(providerName));
+            double weight = entry.getValue() * latencyFactor * errorFactor * budgetFactor;
+
+            weights.put(providerName, weight);
+            total += weight;
+        }
+
+        // Sàn trọng số: provider đang bị phạt vẫn nhận một ít traffic để số liệu phục hồi được
+        // (mọi provider đều lỗi 100%: chia đều)
+        double floor = total > 0 ? total * config.getMinWeightPercent() / 100.0 : 1.0;
+        double cumulative = 0;
+        List<WeightedProvider> next = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : weights.entrySet()) {
+            String providerName = entry.getKey();
+            double weight = isRoutable(providerName) ? Math.max(entry.getValue(), floor) : 0.0;
+
+            effectiveWeights.put(providerName, weight);
+            if (weight > 0) {
+                cumulative += weight;
+                next.add(new WeightedProvider(providerName, cumulative));
+            }
+        }
+
+        snapshot = next;
+        computedAtMs = now;
+        log.debug("Routing weights refreshed: {}", effectiveWeights);
+    }
+
+    /**
+     * Provider có trọng số cấu hình > 0, tồn tại và healthy (circuit breaker không OPEN)
+     */
+    private boolean isRoutable(String providerName) {
+        return baseWeights().get(providerName) > 0
+                && providerFactory.hasProvider(providerName)
+                && providerFactory.getProvider(providerName).isHealthy();
+    }
+
+    /**
+     * Trọng số cấu hình; mặc định chỉ route tới active provider
+     */
+    private Map<String, Double> baseWeights() {
+        return config.getWeights().isEmpty() ? Map.of(activeProviderName, 100.0) : config.getWeights();
+    }
+
+    private record WeightedProvider(String providerName, double cumulativeWeight) {
+    }
+}
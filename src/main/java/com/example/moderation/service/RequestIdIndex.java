@@ -0,0 +1,132 @@
+package com.example.moderation.service;
+
+import com.example.moderation.store.ResultStore;
+import com.example.moderation.util.BloomFilter;
+import com.example.moderation.util.StripedHashSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index in-memory cho request ID, dùng để phát hiện duplicate mà không query DB mỗi request.
+ *
+ * - Bloom filter chứa mọi request ID đã biết (seed từ moderation_results lúc startup + các ID được accept).
+ * - Striped hash set chứa chính xác các ID đang xử lý hoặc còn nằm trong write-behind queue (chưa xuống DB);
+ *   ID được bỏ khỏi set khi row đã được ghi (ResultWriteBehindSink), nên set chỉ lớn bằng số request đang dở.
+ *
+ * Chỉ khi Bloom filter trả về positive mà set không chứa ID thì mới query DB.
+ * Unique constraint của cột requestId vẫn là chốt chặn cuối cùng.
+ */
+@Component
+@Slf4j
+public class RequestIdIndex {
+
+    private final ResultStore resultStore;
+    private final BloomFilter bloomFilter;
+    private final StripedHashSet<String> acceptedIds;
+
+    private final Counter bloomNegatives;
+    private final Counter databaseLookups;
+    private final Counter duplicates;
+    private final AtomicLong seededCount = new AtomicLong();
+
+    private volatile boolean seeded = false;
+
+    public RequestIdIndex(ResultStore resultStore,
+                          MeterRegistry meterRegistry,
+                          @Value("${content-moderation.request-id-index.expected-insertions:1000000}") long expectedInsertions,
+                          @Value("${content-moderation.request-id-index.false-positive-rate:0.01}") double falsePositiveRate,
+                          @Value("${content-moderation.request-id-index.stripes:64}") int stripes) {
+        this.resultStore = resultStore;
+        this.bloomFilter = new BloomFilter(expectedInsertions, falsePositiveRate);
+        this.acceptedIds = new StripedHashSet<>(stripes);
+
+        this.bloomNegatives = Counter.builder("moderation.request_id_index.bloom.negatives")
+                .description("Request IDs accepted without a database lookup")
+                .register(meterRegistry);
+        this.databaseLookups = Counter.builder("moderation.request_id_index.db.lookups")
+                .description("Bloom filter positives that required a database lookup")
+                .register(meterRegistry);
+        this.duplicates = Counter.builder("moderation.request_id_index.duplicates")
+                .register(meterRegistry);
+        Gauge.builder("moderation.request_id_index.accepted.size", acceptedIds, StripedHashSet::size)
+                .register(meterRegistry);
+        Gauge.builder("moderation.request_id_index.seeded.size", seededCount, AtomicLong::get)
+                .register(meterRegistry);
+
+        log.info("RequestIdIndex initialized: bloomBits={}, hashFunctions={}, stripes={}",
+                bloomFilter.getBitCount(), bloomFilter.getHashFunctions(), stripes);
+    }
+
+    /**
+     * Seed Bloom filter từ các request ID đã có trong database.
+     * Trước khi seed xong, mọi ID đều được coi là "có thể tồn tại" và kiểm tra qua DB.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedFromDatabase() {
+        long start = System.currentTimeMillis();
+        resultStore.forEachRequestId(id -> {
+            bloomFilter.put(id);
+            seededCount.incrementAndGet();
+        });
+        seeded = true;
+        log.info("RequestIdIndex seeded with {} request IDs in {}ms",
+                seededCount.get(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Đăng ký request ID mới.
+     *
+     * @return true nếu ID chưa tồn tại và đã được ghi nhận; false nếu là duplicate
+     */
+    public boolean tryAccept(String requestId) {
+        if (seeded && !bloomFilter.mightContain(requestId)) {
+            // Chắc chắn chưa từng thấy trong DB; set chặn các request trùng ID đang chạy song song
+            if (!acceptedIds.add(requestId)) {
+                duplicates.increment();
+                return false;
+            }
+            bloomFilter.put(requestId);
+            bloomNegatives.increment();
+            return true;
+        }
+
+        if (!acceptedIds.add(requestId)) {
+            duplicates.increment();
+            return false;
+        }
+
+        databaseLookups.increment();
+        if (resultStore.existsByRequestId(requestId)) {
+            // ID đã có trong DB: lần sau Bloom filter positive và DB lookup vẫn phát hiện được
+            acceptedIds.remove(requestId);
+            duplicates.increment();
+            return false;
+        }
+
+        bloomFilter.put(requestId);
+        return true;
+    }
+
+    /**
+     * Bỏ ghi nhận một ID khi kết quả của nó không được lưu (ví dụ lỗi database),
+     * để client có thể retry với cùng ID.
+     */
+    public void release(String requestId) {
+        acceptedIds.remove(requestId);
+    }
+
+    /**
+     * Row của ID đã xuống store: duplicate về sau được phát hiện qua Bloom filter + DB lookup
+     */
+    public void persisted(String requestId) {
+        acceptedIds.remove(requestId);
+    }
+}
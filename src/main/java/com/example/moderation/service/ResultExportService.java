@@ -0,0 +1,179 @@
+package com.example.moderation.service;
+
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.store.ResultStore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Export các kết quả của một run dạng NDJSON (mỗi dòng một ModerationResult), theo thứ tự (timestamp, id).
+ *
+ * Đọc từng trang bằng ResultStore.scanRunPage (keyset pagination, cursor là (timestamp, id) của dòng cuối)
+ * và ghi từng row ra output ngay khi đọc, nên bộ nhớ dùng chỉ phụ thuộc page size, không phụ thuộc số row của run.
+ * Chỉ ghi các field được chọn; payload / responseBody không được đọc trừ khi được chọn.
+ */
+@Service
+@Slf4j
+public class ResultExportService {
+
+    public static final List<String> FIELDS = List.of("id", "requestId", "runId", "statusCode", "latencyMs",
+            "timestamp", "errorMessage", "attempts", "success", "riskLevel", "confidenceScore", "providerName",
+            "cached", "payload", "responseBody");
+
+    private static final Set<String> HEAVY_FIELDS = Set.of("payload", "responseBody");
+
+    private final ResultStore resultStore;
+    private final ObjectMapper objectMapper;
+    private final Counter exportedRows;
+
+    @Value("${content-moderation.export.page-size:1000}")
+    private int pageSize;
+
+    public ResultExportService(ResultStore resultStore, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.resultStore = resultStore;
+        this.objectMapper = objectMapper;
+        this.exportedRows = Counter.builder("moderation.export.rows").register(meterRegistry);
+    }
+
+    /**
+     * Field sẽ được ghi, theo thứ tự của FIELDS. id và timestamp luôn có (dùng làm cursor để export tiếp).
+     *
+     * @param requested null / rỗng = tất cả trừ payload và responseBody; "all" = tất cả
+     */
+    public Set<String> resolveFields(Collection<String> requested) {
+        Set<String> selected = new LinkedHashSet<>();
+        if (requested == null || requested.isEmpty()) {
+            FIELDS.stream().filter(field -> !HEAVY_FIELDS.contains(field)).forEach(selected::add);
+            return selected;
+        }
+
+        for (String field : requested) {
+            if ("all".equals(field)) {
+                selected.addAll(FIELDS);
+            } else if (FIELDS.contains(field)) {
+                selected.add(field);
+            } else {
+                throw new IllegalArgumentException("Unknown field: " + field + ", supported: " + FIELDS);
+            }
+        }
+        selected.add("id");
+        selected.add("timestamp");
+
+        Set<String> ordered = new LinkedHashSet<>();
+        FIELDS.stream().filter(selected::contains).forEach(ordered::add);
+        return ordered;
+    }
+
+    /**
+     * @param afterTimestamp, afterId cursor: chỉ export các row sau (afterTimestamp, afterId); null = từ đầu run
+     * @param limit Số row tối đa
+     * @return Số row đã ghi
+     */
+    public long exportRun(String runId, Set<String> fields, LocalDateTime afterTimestamp, Long afterId,
+                          long limit, OutputStream output) throws IOException {
+        boolean includeBodies = fields.stream().anyMatch(HEAVY_FIELDS::contains);
+        long start = System.currentTimeMillis();
+        long written = 0;
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Mỗi row kết thúc bằng '\n', không dùng separator mặc định (space) giữa các root value
+            generator.setRootValueSeparator(null);
+            ModerationResult[] last = new ModerationResult[1];
+            LocalDateTime cursorTimestamp = afterTimestamp;
+            Long cursorId = afterId;
+
+            while (written < limit) {
+                int pageLimit = (int) Math.min(pageSize, limit - written);
+                long[] rows = new long[1];
+                try {
+                    resultStore.scanRunPage(runId, cursorTimestamp, cursorId, pageLimit, includeBodies, result -> {
+                        writeRow(generator, result, fields);
+                        last[0] = result;
+                        rows[0]++;
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                generator.flush();
+
+                written += rows[0];
+                exportedRows.increment(rows[0]);
+                if (rows[0] < pageLimit) {
+                    break;
+                }
+                cursorTimestamp = last[0].getTimestamp();
+                cursorId = last[0].getId();
+            }
+        }
+
+        log.info("Exported {} results of run {} in {}ms (fields: {})",
+                written, runId, System.currentTimeMillis() - start, fields);
+        return written;
+    }
+
+    private static void writeRow(JsonGenerator generator, ModerationResult result, Set<String> fields) {
+        try {
+            generator.writeStartObject();
+            for (String field : fields) {
+                generator.writeFieldName(field);
+                switch (field) {
+                    case "id" -> writeNumber(generator, result.getId());
+                    case "requestId" -> generator.writeString(result.getRequestId());
+                    case "runId" -> generator.writeString(result.getRunId());
+                    case "statusCode" -> writeNumber(generator, result.getStatusCode());
+                    case "latencyMs" -> writeNumber(generator, result.getLatencyMs());
+                    case "timestamp" -> generator.writeString(result.getTimestamp() != null
+                            ? result.getTimestamp().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) : null);
+                    case "errorMessage" -> generator.writeString(result.getErrorMessage());
+                    case "attempts" -> writeNumber(generator, result.getAttempts());
+                    case "success" -> writeBoolean(generator, result.getSuccess());
+                    case "riskLevel" -> generator.writeString(result.getRiskLevel());
+                    case "confidenceScore" -> writeNumber(generator, result.getConfidenceScore());
+                    case "providerName" -> generator.writeString(result.getProviderName());
+                    case "cached" -> writeBoolean(generator, result.getCached());
+                    case "payload" -> generator.writeString(result.getPayload());
+                    case "responseBody" -> generator.writeString(result.getResponseBody());
+                    default -> generator.writeNull();
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeNumber(JsonGenerator generator, Number value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof Double) {
+            generator.writeNumber(value.doubleValue());
+        } else {
+            generator.writeNumber(value.longValue());
+        }
+    }
+
+    private static void writeBoolean(JsonGenerator generator, Boolean value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeBoolean(value);
+        }
+    }
+}
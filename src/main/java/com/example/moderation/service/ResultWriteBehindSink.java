@@ -0,0 +1,226 @@
+package com.example.moderation.service;
+
+import com.example.moderation.config.PersistenceConfig;
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.store.ResultStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind sink cho ModerationResult.
+ *
+ * Request thread chỉ đẩy kết quả vào một bounded queue; một writer thread riêng
+ * gom các row thành batch (theo size hoặc theo thời gian) và ghi bằng ResultStore.saveAll
+ * (backend JPA: JDBC batch insert trong một transaction cho mỗi lần flush).
+ *
+ * Khi queue đầy quá offer-timeout, row được ghi đồng bộ trên caller thread
+ * (caller-runs) để tạo backpressure thay vì làm mất dữ liệu.
+ * Khi write-behind bị tắt, mọi row được ghi đồng bộ như trước.
+ *
+ * Sau khi row được ghi (hoặc ghi lỗi), request ID được bỏ khỏi set in-flight của RequestIdIndex.
+ */
+@Component
+@Slf4j
+public class ResultWriteBehindSink {
+
+    private final ResultStore resultStore;
+    private final RequestIdIndex requestIdIndex;
+    private final PersistenceConfig.WriteBehindConfig config;
+    private final BlockingQueue<ModerationResult> queue;
+
+    private final Timer flushTimer;
+    private final Counter flushedRows;
+    private final Counter callerRunsCounter;
+    private final Counter failedRows;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public ResultWriteBehindSink(ResultStore resultStore,
+                                 RequestIdIndex requestIdIndex,
+                                 PersistenceConfig persistenceConfig,
+                                 MeterRegistry meterRegistry) {
+        this.resultStore = resultStore;
+        this.requestIdIndex = requestIdIndex;
+        this.config = persistenceConfig.getWriteBehind();
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+
+        Gauge.builder("moderation.persistence.queue.depth", queue, BlockingQueue::size)
+                .description("Number of results waiting to be written")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("moderation.persistence.flush.latency")
+                .description("Latency of one batch flush")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.flushedRows = Counter.builder("moderation.persistence.rows.flushed")
+                .register(meterRegistry);
+        this.callerRunsCounter = Counter.builder("moderation.persistence.caller.runs")
+                .description("Results written synchronously because the queue was full")
+                .register(meterRegistry);
+        this.failedRows = Counter.builder("moderation.persistence.rows.failed")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.getEnabled()) {
+            log.info("Write-behind persistence disabled, results are saved synchronously");
+            return;
+        }
+
+        running = true;
+        writerThread = new Thread(this::runWriter, "moderation-result-writer");
+        writerThread.setDaemon(false);
+        writerThread.start();
+
+        log.info("Write-behind persistence started: queueCapacity={}, batchSize={}, flushIntervalMs={}",
+                config.getQueueCapacity(), config.getBatchSize(), config.getFlushIntervalMs());
+    }
+
+    /**
+     * Ghi một kết quả. Trả về ngay khi row đã nằm trong queue.
+     */
+    public void submit(ModerationResult result) {
+        if (!running) {
+            saveNow(result);
+            return;
+        }
+
+        try {
+            if (queue.offer(result, config.getOfferTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Queue đầy: ghi trên caller thread để giảm tốc producer
+        callerRunsCounter.increment();
+        log.debug("Write-behind queue full, saving result {} synchronously", result.getRequestId());
+        saveNow(result);
+    }
+
+    private void saveNow(ModerationResult result) {
+        resultStore.save(result);
+        requestIdIndex.persisted(result.getRequestId());
+    }
+
+    /**
+     * Số row đang chờ ghi
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writerThread == null) {
+            return;
+        }
+
+        running = false;
+        try {
+            writerThread.join(config.getShutdownTimeoutMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Writer không kịp drain trong timeout: flush nốt phần còn lại trên thread hiện tại
+        if (!queue.isEmpty()) {
+            List<ModerationResult> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            log.warn("Writer did not drain in time, flushing {} remaining results on shutdown", remaining.size());
+            flush(remaining);
+        }
+
+        log.info("Write-behind persistence stopped");
+    }
+
+    private void runWriter() {
+        int batchSize = config.getBatchSize();
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getFlushIntervalMs());
+        List<ModerationResult> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                ModerationResult first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Gom thêm cho tới khi đủ batch hoặc hết flush interval
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    if (batch.size() >= batchSize) {
+                        break;
+                    }
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        break;
+                    }
+                    ModerationResult next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Không dừng giữa chừng: flush nốt batch hiện tại, vòng lặp sẽ thoát khi running=false
+                flush(batch);
+            } catch (Exception e) {
+                log.error("Unexpected error in result writer: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Ghi một batch trong một transaction. Nếu batch lỗi (ví dụ vi phạm unique requestId),
+     * ghi lại từng row để không làm mất các row hợp lệ.
+     */
+    private void flush(List<ModerationResult> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            resultStore.saveAll(batch);
+            flushedRows.increment(batch.size());
+            batch.forEach(result -> requestIdIndex.persisted(result.getRequestId()));
+        } catch (Exception e) {
+            log.warn("Batch flush of {} results failed, retrying row by row: {}", batch.size(), e.getMessage());
+            for (ModerationResult result : batch) {
+                try {
+                    result.setId(null);
+                    resultStore.save(result);
+                    flushedRows.increment();
+                    requestIdIndex.persisted(result.getRequestId());
+                } catch (Exception rowEx) {
+                    failedRows.increment();
+                    requestIdIndex.release(result.getRequestId());
+                    log.error("Failed to save result {}: {}", result.getRequestId(), rowEx.getMessage());
+                }
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.moderation.service;
+
+import com.example.moderation.dto.PerformanceMetrics;
+import com.example.moderation.util.LatencyHistogram;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregate của một run, cập nhật lock-free mỗi khi có kết quả mới:
+ * count / success, min / max / sum latency, histogram latency (toàn run và theo provider)
+ * và timestamp đầu / cuối.
+ *
+ * Latency ghi ở độ phân giải microsecond; metrics dạng ms (PerformanceMetrics, TestRun) được suy ra từ đó.
+ * Snapshot (toMetrics) là O(số bucket histogram), không phụ thuộc số request của run.
+ * Các field được đọc độc lập nên snapshot trong lúc đang ghi có thể lệch nhau vài mẫu.
+ */
+public final class RunAggregate {
+
+    // Latency tối đa phân biệt được: 1 giờ (µs)
+    static final long HIGHEST_TRACKABLE_LATENCY_US = 3_600_000_000L;
+    // Sai số tương đối < 0.2%
+    static final int SUB_BUCKET_BITS = 10;
+
+    private final String runId;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder successCount = new LongAdder();
+    private final LongAdder latencySumUs = new LongAdder();
+    private final LongAccumulator minLatencyUs = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maxLatencyUs = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    // Timestamp dạng nanos từ epoch (LocalDateTime coi như UTC)
+    private final LongAccumulator firstTimestamp = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator lastTimestamp = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    private final LatencyHistogram histogram = newHistogram();
+    private final Map<String, LatencyHistogram> providerHistograms = new ConcurrentHashMap<>();
+
+    private volatile long lastRecordedMs = System.currentTimeMillis();
+    // count tại lần persist gần nhất (-1 = chưa persist)
+    private volatile long persistedCount = -1;
+
+    public RunAggregate(String runId) {
+        this.runId = runId;
+    }
+
+    static LatencyHistogram newHistogram() {
+        return new LatencyHistogram(HIGHEST_TRACKABLE_LATENCY_US, SUB_BUCKET_BITS);
+    }
+
+    public void record(long latencyUs, boolean success, LocalDateTime timestamp, String providerName) {
+        long nanos = timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano();
+
+        if (success) {
+            successCount.increment();
+        }
+        latencySumUs.add(latencyUs);
+        minLatencyUs.accumulate(latencyUs);
+        maxLatencyUs.accumulate(latencyUs);
+        firstTimestamp.accumulate(nanos);
+        lastTimestamp.accumulate(nanos);
+        histogram.record(latencyUs);
+        if (providerName != null) {
+            providerHistograms.computeIfAbsent(providerName, name -> newHistogram()).record(latencyUs);
+        }
+        lastRecordedMs = System.currentTimeMillis();
+        // count tăng sau cùng: persist thấy count mới thì các field khác đã được cập nhật
+        count.increment();
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Histogram latency (µs) toàn run; đang được ghi tiếp, dùng copy() nếu cần giữ lại
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    public Map<String, LatencyHistogram> getProviderHistograms() {
+        return Collections.unmodifiableMap(providerHistograms);
+    }
+
+    long getLastRecordedMs() {
+        return lastRecordedMs;
+    }
+
+    /**
+     * Có kết quả mới kể từ lần persist gần nhất
+     */
+    boolean isDirty() {
+        return getCount() != persistedCount;
+    }
+
+    void markPersisted(long persistedCount) {
+        this.persistedCount = persistedCount;
+    }
+
+    /**
+     * @return null nếu run chưa có kết quả
+     */
+    public PerformanceMetrics toMetrics() {
+        long total = count.sum();
+        if (total == 0) {
+            return null;
+        }
+
+        long success = successCount.sum();
+        long minUs = minLatencyUs.get();
+        long maxUs = maxLatencyUs.get();
+        LocalDateTime startTime = toDateTime(firstTimestamp.get());
+        LocalDateTime endTime = toDateTime(lastTimestamp.get());
+        long durationMs = Duration.between(startTime, endTime).toMillis();
+
+        return PerformanceMetrics.builder()
+                .runId(runId)
+                .totalRequests((int) total)
+                .successCount((int) success)
+                .failCount((int) (total - success))
+                .successRate((double) success / total * 100)
+                .minLatency(minUs / 1000)
+                .maxLatency(maxUs / 1000)
+                .avgLatency(latencySumUs.sum() / total / 1000)
+                .p50Latency(percentileUs(50, minUs, maxUs) / 1000)
+                .p95Latency(percentileUs(95, minUs, maxUs) / 1000)
+                .p99Latency(percentileUs(99, minUs, maxUs) / 1000)
+                .throughputRps(durationMs > 0 ? (total * 1000.0) / durationMs : 0)
+                .durationMs(durationMs)
+                .startTime(startTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                .endTime(endTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                .build();
+    }
+
+    /**
+     * Percentile từ histogram, giới hạn trong [min, max] thực tế (cận trên bucket có thể vượt max)
+     */
+    private long percentileUs(double percentile, long minUs, long maxUs) {
+        return Math.max(minUs, Math.min(histogram.valueAtPercentile(percentile), maxUs));
+    }
+
+    private static LocalDateTime toDateTime(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.moderation.service;
+
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.store.ResultStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aggregate in-memory theo runId, cập nhật khi kết quả được ghi (ContentModerationService.saveResult).
+ *
+ * Run chưa có trong bộ nhớ (sau restart, hoặc đã bị evict) được dựng lại một lần bằng scanRun của
+ * ResultStore. Việc dựng lại giữ lock riêng của run (không chạy trong computeIfAbsent của map, để scan
+ * không khoá các run khác), record của cùng run chờ tới khi dựng xong. Kết quả luôn được record trước khi
+ * submit xuống store, nên các row đang ghi dở không bị đếm hai lần.
+ * Aggregate được persist định kỳ vào TestRun bởi MetricsService.
+ */
+@Component
+@Slf4j
+public class RunAggregates {
+
+    private final ResultStore resultStore;
+    private final Map<String, RunAggregate> runs = new ConcurrentHashMap<>();
+    private final Map<String, Object> rebuildLocks = new ConcurrentHashMap<>();
+
+    public RunAggregates(ResultStore resultStore, MeterRegistry meterRegistry) {
+        this.resultStore = resultStore;
+
+        Gauge.builder("moderation.run_aggregates.size", runs, Map::size)
+                .description("Runs with an in-memory aggregate")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param latencyUs latency đo ở độ phân giải microsecond (latencyMs của entity chỉ có ms)
+     */
+    public void record(ModerationResult result, long latencyUs) {
+        if (result.getRunId() == null) {
+            return;
+        }
+        getOrRebuild(result.getRunId(), true)
+                .record(latencyUs, Boolean.TRUE.equals(result.getSuccess()), result.getTimestamp(), result.getProviderName());
+    }
+
+    /**
+     * @return aggregate đang có trong bộ nhớ, hoặc null
+     */
+    public RunAggregate find(String runId) {
+        return runs.get(runId);
+    }
+
+    /**
+     * Aggregate trong bộ nhớ, dựng lại từ store nếu chưa có
+     *
+     * @return null nếu run không có kết quả nào
+     */
+    public RunAggregate load(String runId) {
+        return getOrRebuild(runId, false);
+    }
+
+    Collection<RunAggregate> all() {
+        return runs.values();
+    }
+
+    /**
+     * Bỏ các aggregate đã persist và không có kết quả mới trong idleMs
+     */
+    void evictIdle(long idleMs) {
+        long now = System.currentTimeMillis();
+        runs.values().removeIf(aggregate -> !aggregate.isDirty() && now - aggregate.getLastRecordedMs() > idleMs);
+    }
+
+    /**
+     * @param keepEmpty giữ aggregate rỗng (run mới, record() sắp ghi kết quả đầu tiên)
+     */
+    private RunAggregate getOrRebuild(String runId, boolean keepEmpty) {
+        RunAggregate aggregate = runs.get(runId);
+        if (aggregate != null) {
+            return aggregate;
+        }
+
+        Object lock = rebuildLocks.computeIfAbsent(runId, id -> new Object());
+        try {
+            synchronized (lock) {
+                aggregate = runs.get(runId);
+                if (aggregate != null) {
+                    return aggregate;
+                }
+                aggregate = rebuild(runId);
+                if (aggregate.getCount() == 0 && !keepEmpty) {
+                    return null;
+                }
+                runs.put(runId, aggregate);
+                return aggregate;
+            }
+        } finally {
+            rebuildLocks.remove(runId, lock);
+        }
+    }
+
+    private RunAggregate rebuild(String runId) {
+        long start = System.currentTimeMillis();
+        RunAggregate aggregate = new RunAggregate(runId);
+        // Store chỉ có latency ms: phần dựng lại có độ phân giải ms
+        resultStore.scanRun(runId, result -> aggregate.record(result.getLatencyMs() * 1000,
+                Boolean.TRUE.equals(result.getSuccess()), result.getTimestamp(), result.getProviderName()));
+
+        if (aggregate.getCount() > 0) {
+            log.info("Rebuilt aggregate for run {} from {} stored results in {}ms",
+                    runId, aggregate.getCount(), System.currentTimeMillis() - start);
+        }
+        return aggregate;
+    }
+}
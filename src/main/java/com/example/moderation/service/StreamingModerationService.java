@@ -0,0 +1,173 @@
+package com.example.moderation.service;
+
+import com.example.moderation.dto.ModerationRequest;
+import com.example.moderation.dto.ModerationResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Moderate một stream NDJSON (mỗi dòng một ModerationRequest) và ghi từng ModerationResponse
+ * ra output ngay khi item đó hoàn thành.
+ *
+ * Reader chỉ đọc dòng tiếp theo khi còn permit, nên provider chậm sẽ làm chậm reader
+ * thay vì làm tăng heap. Bộ nhớ dùng không phụ thuộc số dòng của input.
+ */
+@Service
+@Slf4j
+public class StreamingModerationService {
+
+    private static final byte NEWLINE = '\n';
+
+    private final BatchModerationExecutor batchExecutor;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    private final Counter streamedItems;
+    private final Counter invalidLines;
+    private final Counter serializationErrors;
+
+    public StreamingModerationService(BatchModerationExecutor batchExecutor,
+                                      ObjectMapper objectMapper,
+                                      Validator validator,
+                                      MeterRegistry meterRegistry) {
+        this.batchExecutor = batchExecutor;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+
+        this.streamedItems = Counter.builder("moderation.stream.items").register(meterRegistry);
+        this.invalidLines = Counter.builder("moderation.stream.invalid.lines").register(meterRegistry);
+        this.serializationErrors = Counter.builder("moderation.stream.serialization.errors").register(meterRegistry);
+    }
+
+    /**
+     * @param input NDJSON requests
+     * @param output NDJSON responses (thứ tự theo thời điểm hoàn thành, không theo input)
+     * @param concurrency Số item tối đa đang xử lý đồng thời
+     * @return Số dòng request đã đọc
+     */
+    public long moderateStream(InputStream input, OutputStream output, int concurrency) throws IOException {
+        Semaphore permits = new Semaphore(concurrency);
+        Object writeLock = new Object();
+        AtomicBoolean clientGone = new AtomicBoolean(false);
+        long lines = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while (!clientGone.get() && (line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                lines++;
+
+                ModerationRequest request;
+                try {
+                    request = parseAndValidate(line);
+                } catch (IllegalArgumentException e) {
+                    invalidLines.increment();
+                    writeLine(output, writeLock, clientGone, ModerationResponse.builder()
+                            .success(false)
+                            .errorMessage("Dòng " + lines + ": " + e.getMessage())
+                            .build());
+                    continue;
+                }
+
+                batchExecutor.submit(request, permits, response -> {
+                    streamedItems.increment();
+                    writeLine(output, writeLock, clientGone, response);
+                });
+            }
+
+            // Chờ các item còn đang chạy: lấy lại toàn bộ permit
+            permits.acquireUninterruptibly(concurrency);
+        }
+
+        if (clientGone.get()) {
+            log.warn("Client disconnected during streaming moderation after {} lines", lines);
+        }
+        return lines;
+    }
+
+    private ModerationRequest parseAndValidate(String line) {
+        ModerationRequest request;
+        try {
+            request = objectMapper.readValue(line, ModerationRequest.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("JSON request không hợp lệ hoặc sai định dạng");
+        }
+
+        Set<ConstraintViolation<ModerationRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .collect(Collectors.joining(", ")));
+        }
+        return request;
+    }
+
+    /**
+     * Ghi một response thành một dòng JSON. Output stream không thread-safe nên ghi dưới lock.
+     * Chỉ lỗi I/O khi ghi (client ngắt kết nối) mới dừng stream.
+     */
+    private void writeLine(OutputStream output, Object writeLock, AtomicBoolean clientGone,
+                           ModerationResponse response) {
+        if (clientGone.get()) {
+            return;
+        }
+        byte[] json = toJson(response);
+        if (json == null) {
+            return;
+        }
+        try {
+            synchronized (writeLock) {
+                output.write(json);
+                output.write(NEWLINE);
+                output.flush();
+            }
+        } catch (IOException e) {
+            clientGone.set(true);
+            log.debug("Failed to write streaming response: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lỗi serialize chỉ ảnh hưởng dòng của item đó: ghi dòng lỗi thay cho response
+     *
+     * @return null nếu cả dòng lỗi cũng không serialize được (bỏ qua dòng)
+     */
+    private byte[] toJson(ModerationResponse response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            serializationErrors.increment();
+            log.warn("Failed to serialize streaming response for request {}: {}",
+                    response.getRequestId(), e.getOriginalMessage());
+            try {
+                return objectMapper.writeValueAsBytes(ModerationResponse.builder()
+                        .requestId(response.getRequestId())
+                        .success(false)
+                        .errorMessage("Không serialize được response: " + e.getOriginalMessage())
+                        .build());
+            } catch (JsonProcessingException fallback) {
+                log.error("Failed to serialize error line for request {}", response.getRequestId(), fallback);
+                return null;
+            }
+        }
+    }
+}
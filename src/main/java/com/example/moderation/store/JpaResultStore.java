@@ -0,0 +1,209 @@
+package com.example.moderation.store;
+
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.repository.ModerationResultRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * ResultStore trên Spring Data JPA (bảng moderation_results)
+ */
+@Component
+@ConditionalOnProperty(prefix = "persistence", name = "store", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaResultStore implements ResultStore {
+
+    /**
+     * Report của một run trong một lượt SQL: ROW_NUMBER() theo latency cho percentile exact,
+     * COUNT(*) trên cùng window cho rank ceil(p / 100 * n). Chỉ đọc các cột có trong idx_run_latency
+     * (run_id, latency_ms, success, timestamp) nên SQLite duyệt covering index theo thứ tự latency,
+     * không sort và không đọc row của bảng (payload / response_body).
+     * Hai window cùng ORDER BY để SQLite không phải dựng temp B-tree.
+     */
+    public static final String RUN_SUMMARY_SQL = """
+            SELECT COUNT(*) AS total_requests,
+                   COALESCE(SUM(CASE WHEN success = 1 THEN 1 ELSE 0 END), 0) AS success_count,
+                   MIN(latency_ms) AS min_latency_ms,
+                   MAX(latency_ms) AS max_latency_ms,
+                   AVG(latency_ms) AS avg_latency_ms,
+                   MAX(CASE WHEN rn = (total * 50 + 99) / 100 THEN latency_ms END) AS p50_latency_ms,
+                   MAX(CASE WHEN rn = (total * 95 + 99) / 100 THEN latency_ms END) AS p95_latency_ms,
+                   MAX(CASE WHEN rn = (total * 99 + 99) / 100 THEN latency_ms END) AS p99_latency_ms,
+                   MIN(timestamp) AS first_timestamp,
+                   MAX(timestamp) AS last_timestamp
+            FROM (SELECT latency_ms, success, timestamp,
+                         ROW_NUMBER() OVER (ORDER BY latency_ms) AS rn,
+                         COUNT(*) OVER (ORDER BY latency_ms
+                                        ROWS BETWEEN UNBOUNDED PRECEDING AND UNBOUNDED FOLLOWING) AS total
+                  FROM moderation_results
+                  WHERE run_id = ?)
+            """;
+
+    private static final String PAGE_COLUMNS = "SELECT r.id, r.requestId, r.statusCode, r.latencyMs, r.timestamp, "
+            + "r.errorMessage, r.attempts, r.success, r.riskLevel, r.confidenceScore, r.providerName, r.cached";
+    private static final String PAGE_BODY_COLUMNS = ", r.payload, r.responseBody";
+    private static final String PAGE_FROM = " FROM ModerationResult r WHERE r.runId = :runId";
+    // timestamp >= :afterTimestamp để SQLite seek trên idx_run_timestamp, phần OR chỉ lọc các row cùng timestamp
+    private static final String PAGE_KEYSET = " AND r.timestamp >= :afterTimestamp"
+            + " AND (r.timestamp > :afterTimestamp OR r.id > :afterId)";
+    private static final String PAGE_ORDER = " ORDER BY r.timestamp, r.id";
+
+    private final ModerationResultRepository resultRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void save(ModerationResult result) {
+        resultRepository.save(result);
+    }
+
+    @Override
+    public void saveAll(List<ModerationResult> results) {
+        resultRepository.saveAll(results);
+    }
+
+    @Override
+    public boolean existsByRequestId(String requestId) {
+        return resultRepository.existsByRequestId(requestId);
+    }
+
+    @Override
+    public Optional<ModerationResult> findByRequestId(String requestId) {
+        return resultRepository.findByRequestId(requestId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachRequestId(Consumer<String> action) {
+        try (Stream<String> ids = resultRepository.streamAllRequestIds()) {
+            ids.forEach(action);
+        }
+    }
+
+    @Override
+    public long countByRunId(String runId) {
+        return resultRepository.countByRunId(runId);
+    }
+
+    @Override
+    public List<ModerationResult> findByRunIdOrderByTimestampAsc(String runId) {
+        return resultRepository.findByRunIdOrderByTimestampAsc(runId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void scanRun(String runId, Consumer<ModerationResult> action) {
+        try (Stream<Object[]> rows = resultRepository.streamSummariesByRunId(runId)) {
+            rows.forEach(row -> action.accept(toResult(runId, row)));
+        }
+    }
+
+    /**
+     * Query JPQL với setMaxResults, đọc bằng getResultStream (ResultSet forward-only):
+     * mỗi row được map và đưa cho action ngay, transaction chỉ kéo dài một trang
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void scanRunPage(String runId, LocalDateTime afterTimestamp, Long afterId, int limit,
+                            boolean includeBodies, Consumer<ModerationResult> action) {
+        String jpql = PAGE_COLUMNS + (includeBodies ? PAGE_BODY_COLUMNS : "") + PAGE_FROM
+                + (afterTimestamp != null ? PAGE_KEYSET : "") + PAGE_ORDER;
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class)
+                .setParameter("runId", runId)
+                .setMaxResults(limit)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, Math.min(limit, 1000));
+        if (afterTimestamp != null) {
+            query.setParameter("afterTimestamp", afterTimestamp)
+                    .setParameter("afterId", afterId != null ? afterId : Long.MIN_VALUE);
+        }
+
+        try (Stream<Object[]> rows = query.getResultStream()) {
+            rows.forEach(row -> {
+                ModerationResult result = toResult(runId, row);
+                if (includeBodies) {
+                    result.setPayload((String) row[12]);
+                    result.setResponseBody((String) row[13]);
+                }
+                action.accept(result);
+            });
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public RunSummary summarizeRun(String runId) {
+        Object[] row = (Object[]) entityManager.createNativeQuery(RUN_SUMMARY_SQL)
+                .unwrap(NativeQuery.class)
+                .addScalar("total_requests", StandardBasicTypes.LONG)
+                .addScalar("success_count", StandardBasicTypes.LONG)
+                .addScalar("min_latency_ms", StandardBasicTypes.LONG)
+                .addScalar("max_latency_ms", StandardBasicTypes.LONG)
+                .addScalar("avg_latency_ms", StandardBasicTypes.DOUBLE)
+                .addScalar("p50_latency_ms", StandardBasicTypes.LONG)
+                .addScalar("p95_latency_ms", StandardBasicTypes.LONG)
+                .addScalar("p99_latency_ms", StandardBasicTypes.LONG)
+                .addScalar("first_timestamp", StandardBasicTypes.LOCAL_DATE_TIME)
+                .addScalar("last_timestamp", StandardBasicTypes.LOCAL_DATE_TIME)
+                .setParameter(1, runId)
+                .getSingleResult();
+
+        long total = (Long) row[0];
+        if (total == 0) {
+            return null;
+        }
+        return RunSummary.builder()
+                .totalRequests(total)
+                .successCount((Long) row[1])
+                .minLatencyMs((Long) row[2])
+                .maxLatencyMs((Long) row[3])
+                .avgLatencyMs((Double) row[4])
+                .p50LatencyMs((Long) row[5])
+                .p95LatencyMs((Long) row[6])
+                .p99LatencyMs((Long) row[7])
+                .firstTimestamp((LocalDateTime) row[8])
+                .lastTimestamp((LocalDateTime) row[9])
+                .build();
+    }
+
+    @Override
+    public List<Long> findProviderLatenciesByRunIds(Collection<String> runIds) {
+        return resultRepository.findProviderLatenciesByRunIds(runIds);
+    }
+
+    /**
+     * Map các cột nhỏ (thứ tự của streamSummariesByRunId / PAGE_COLUMNS)
+     */
+    private static ModerationResult toResult(String runId, Object[] row) {
+        return ModerationResult.builder()
+                .id((Long) row[0])
+                .requestId((String) row[1])
+                .runId(runId)
+                .statusCode((Integer) row[2])
+                .latencyMs((Long) row[3])
+                .timestamp((LocalDateTime) row[4])
+                .errorMessage((String) row[5])
+                .attempts((Integer) row[6])
+                .success((Boolean) row[7])
+                .riskLevel((String) row[8])
+                .confidenceScore((Double) row[9])
+                .providerName((String) row[10])
+                .cached((Boolean) row[11])
+                .build();
+    }
+}
@@ -0,0 +1,724 @@
+package com.example.moderation.store;
+
+import com.example.moderation.config.PersistenceConfig;
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.entity.TimeOrderedIdGenerator;
+import com.example.moderation.util.StorageCodec;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * ResultStore append-only trên các segment file memory-mapped (persistence.store=mapped-log).
+ *
+ * Mỗi kết quả là một record nhị phân: header cố định 52 byte rồi các field độ dài thay đổi
+ * (int length, -1 = null, + byte):
+ *
+ *   0  int    recordLength (ghi sau cùng, 0 = hết dữ liệu của segment)
+ *   4  int    runId.hashCode() (lọc nhanh khi scan)
+ *   8  long   id
+ *   16 long   timestamp (nanos từ epoch, UTC)
+ *   24 long   latencyMs
+ *   32 double confidenceScore (NaN = null)
+ *   40 int    statusCode
+ *   44 int    attempts
+ *   48 int    flags (success / cached, kể cả null)
+ *   52 ...    requestId, runId, providerName, riskLevel, errorMessage, payload, responseBody
+ *
+ * payload / responseBody lưu qua StorageCodec giống cột BLOB của backend JPA, đặt cuối record
+ * để scan report bỏ qua mà không cần đọc.
+ *
+ * Index trong bộ nhớ (dựng lại bằng một lần duyệt segment khi khởi động):
+ * requestId -> vị trí record, runId -> vị trí record đầu tiên + segment cuối cùng có run.
+ * Query theo run duyệt tuần tự các segment trong khoảng đó.
+ *
+ * Một writer (synchronized); reader không lock. Dữ liệu đã publish nằm trong page cache của OS,
+ * không mất khi process crash; segment được force() khi đầy và khi shutdown.
+ * Chưa hỗ trợ xoá / compact segment cũ.
+ */
+@Component
+@ConditionalOnProperty(prefix = "persistence", name = "store", havingValue = "mapped-log")
+@Slf4j
+public class MappedLogResultStore implements ResultStore {
+
+    static final int LENGTH = 0;
+    static final int RUN_HASH = 4;
+    static final int ID = 8;
+    static final int TIMESTAMP = 16;
+    static final int LATENCY = 24;
+    static final int CONFIDENCE = 32;
+    static final int STATUS_CODE = 40;
+    static final int ATTEMPTS = 44;
+    static final int FLAGS = 48;
+    static final int HEADER_BYTES = 52;
+
+    private static final int SUCCESS_PRESENT = 1;
+    private static final int SUCCESS = 1 << 1;
+    private static final int CACHED_PRESENT = 1 << 2;
+    private static final int CACHED = 1 << 3;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int MAX_SEGMENT_BYTES = 1 << 30;
+
+    // Số run giữ index keyset của scanRunPage (mỗi record 24 byte)
+    private static final int KEYSET_CACHE_RUNS = 4;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean compressionEnabled;
+
+    private final List<MappedSegment> segments = new CopyOnWriteArrayList<>();
+    private final Map<String, Long> requestIndex = new ConcurrentHashMap<>();
+    private final Map<String, RunSpan> runIndex = new ConcurrentHashMap<>();
+    private final Map<String, RunKeyset> keysetCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RunKeyset> eldest) {
+            return size() > KEYSET_CACHE_RUNS;
+        }
+    };
+
+    // Segment đang ghi, chỉ truy cập dưới lock của store
+    private MappedSegment active;
+
+    public MappedLogResultStore(PersistenceConfig persistenceConfig,
+                                MeterRegistry meterRegistry,
+                                @Value("${persistence.compression.enabled:false}") boolean compressionEnabled) {
+        PersistenceConfig.MappedLogConfig config = persistenceConfig.getMappedLog();
+        this.directory = Paths.get(config.getDirectory());
+        this.segmentBytes = (int) Math.min((long) config.getSegmentSizeMb() << 20, MAX_SEGMENT_BYTES);
+        this.compressionEnabled = compressionEnabled;
+
+        long start = System.currentTimeMillis();
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open result log at " + directory, e);
+        }
+
+        Gauge.builder("moderation.store.segments", segments, List::size)
+                .register(meterRegistry);
+        Gauge.builder("moderation.store.records", requestIndex, Map::size)
+                .register(meterRegistry);
+
+        log.info("Mapped log result store opened: directory={}, segments={}, records={}, runs={}, segmentSizeMb={} in {}ms",
+                directory.toAbsolutePath(), segments.size(), requestIndex.size(), runIndex.size(),
+                config.getSegmentSizeMb(), System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void save(ModerationResult result) {
+        Record record = encode(result);
+        synchronized (this) {
+            if (requestIndex.containsKey(result.getRequestId())) {
+                throw duplicate(result.getRequestId());
+            }
+            append(record);
+        }
+    }
+
+    /**
+     * Kiểm tra duplicate và roll segment cho cả batch trước khi ghi: batch lỗi thì không record nào được ghi
+     */
+    @Override
+    public void saveAll(List<ModerationResult> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+        List<Record> records = new ArrayList<>(results.size());
+        long batchBytes = 0;
+        for (ModerationResult result : results) {
+            Record record = encode(result);
+            records.add(record);
+            batchBytes += record.length;
+        }
+        if (batchBytes > MAX_SEGMENT_BYTES) {
+            throw new DataIntegrityViolationException("Batch of " + batchBytes + " bytes exceeds max segment size");
+        }
+
+        synchronized (this) {
+            Set<String> batchIds = new HashSet<>();
+            for (ModerationResult result : results) {
+                if (requestIndex.containsKey(result.getRequestId()) || !batchIds.add(result.getRequestId())) {
+                    throw duplicate(result.getRequestId());
+                }
+            }
+            // Cả batch nằm trong một segment: roll lỗi (disk đầy...) xảy ra trước record đầu tiên
+            if (active == null || active.remaining() < batchBytes) {
+                roll((int) batchBytes);
+            }
+            for (Record record : records) {
+                append(record);
+            }
+        }
+    }
+
+    @Override
+    public boolean existsByRequestId(String requestId) {
+        return requestIndex.containsKey(requestId);
+    }
+
+    @Override
+    public Optional<ModerationResult> findByRequestId(String requestId) {
+        Long location = requestIndex.get(requestId);
+        if (location == null) {
+            return Optional.empty();
+        }
+        return Optional.of(read(segments.get(segmentOf(location)).buffer(), offsetOf(location), true));
+    }
+
+    @Override
+    public void forEachRequestId(Consumer<String> action) {
+        requestIndex.keySet().forEach(action);
+    }
+
+    @Override
+    public long countByRunId(String runId) {
+        RunSpan span = runIndex.get(runId);
+        return span != null ? span.count : 0;
+    }
+
+    /**
+     * Record ghi theo thứ tự hoàn thành request, sort lại theo timestamp (stable)
+     */
+    @Override
+    public List<ModerationResult> findByRunIdOrderByTimestampAsc(String runId) {
+        List<ModerationResult> results = new ArrayList<>();
+        scan(runId, true, results::add);
+        results.sort(Comparator.comparing(ModerationResult::getTimestamp));
+        return results;
+    }
+
+    @Override
+    public void scanRun(String runId, Consumer<ModerationResult> action) {
+        scan(runId, false, action);
+    }
+
+    /**
+     * Log không sort theo timestamp: trang đầu tiên dựng index (timestamp, id, vị trí record) đã sort của run
+     * bằng một lượt scan header, các trang sau tìm cursor bằng binary search và chỉ đọc các record trong trang.
+     * Index được cache cho KEYSET_CACHE_RUNS run gần nhất, dựng lại khi run có thêm record.
+     */
+    @Override
+    public void scanRunPage(String runId, LocalDateTime afterTimestamp, Long afterId, int limit,
+                            boolean includeBodies, Consumer<ModerationResult> action) {
+        RunSpan span = runIndex.get(runId);
+        if (span == null) {
+            return;
+        }
+
+        RunKeyset keyset = keyset(runId, span);
+        int from = afterTimestamp == null ? 0
+                : keyset.indexAfter(toNanos(afterTimestamp), afterId != null ? afterId : Long.MIN_VALUE);
+        int to = (int) Math.min(keyset.size(), (long) from + limit);
+        for (int i = from; i < to; i++) {
+            long location = keyset.locations[i];
+            action.accept(read(segments.get(segmentOf(location)).buffer(), offsetOf(location), includeBodies));
+        }
+    }
+
+    /**
+     * Một lượt scan header của run; percentile exact bằng cách sort mảng latency (8 byte / record)
+     */
+    @Override
+    public RunSummary summarizeRun(String runId) {
+        RunSpan span = runIndex.get(runId);
+        if (span == null) {
+            return null;
+        }
+
+        long[] latencies = new long[(int) span.count];
+        int[] size = new int[1];
+        long[] success = new long[1];
+        LocalDateTime[] bounds = new LocalDateTime[2];
+        scan(runId, false, result -> {
+            if (size[0] == latencies.length) {
+                return; // record append sau lúc lấy span.count
+            }
+            latencies[size[0]++] = result.getLatencyMs();
+            if (Boolean.TRUE.equals(result.getSuccess())) {
+                success[0]++;
+            }
+            if (bounds[0] == null || result.getTimestamp().isBefore(bounds[0])) {
+                bounds[0] = result.getTimestamp();
+            }
+            if (bounds[1] == null || result.getTimestamp().isAfter(bounds[1])) {
+                bounds[1] = result.getTimestamp();
+            }
+        });
+
+        int total = size[0];
+        if (total == 0) {
+            return null;
+        }
+        Arrays.sort(latencies, 0, total);
+        long sum = 0;
+        for (int i = 0; i < total; i++) {
+            sum += latencies[i];
+        }
+
+        return RunSummary.builder()
+                .totalRequests(total)
+                .successCount(success[0])
+                .minLatencyMs(latencies[0])
+                .maxLatencyMs(latencies[total - 1])
+                .avgLatencyMs((double) sum / total)
+                .p50LatencyMs(latencies[RunSummary.rank(50, total) - 1])
+                .p95LatencyMs(latencies[RunSummary.rank(95, total) - 1])
+                .p99LatencyMs(latencies[RunSummary.rank(99, total) - 1])
+                .firstTimestamp(bounds[0])
+                .lastTimestamp(bounds[1])
+                .build();
+    }
+
+    @Override
+    public List<Long> findProviderLatenciesByRunIds(Collection<String> runIds) {
+        List<Long> latencies = new ArrayList<>();
+        for (String runId : runIds) {
+            scan(runId, false, result -> {
+                if (Boolean.TRUE.equals(result.getSuccess()) && !Boolean.TRUE.equals(result.getCached())) {
+                    latencies.add(result.getLatencyMs());
+                }
+            });
+        }
+        return latencies;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        for (MappedSegment segment : segments) {
+            try {
+                segment.force();
+                segment.close();
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("Failed to close segment {}: {}", segment.path(), e.getMessage());
+            }
+        }
+        log.info("Mapped log result store closed: {} records in {} segments", requestIndex.size(), segments.size());
+    }
+
+    private RunKeyset keyset(String runId, RunSpan span) {
+        long count = span.count;
+        synchronized (keysetCache) {
+            RunKeyset cached = keysetCache.get(runId);
+            if (cached != null && cached.count == count) {
+                return cached;
+            }
+        }
+
+        // Dựng ngoài lock: một lượt scan header của run
+        List<long[]> entries = new ArrayList<>((int) count);
+        scanLocations(runId, (buffer, offset, location) -> entries.add(new long[]{
+                buffer.getLong(offset + TIMESTAMP), buffer.getLong(offset + ID), location}));
+        entries.sort(Comparator.<long[]>comparingLong(entry -> entry[0]).thenComparingLong(entry -> entry[1]));
+        RunKeyset keyset = new RunKeyset(count, entries);
+
+        synchronized (keysetCache) {
+            keysetCache.put(runId, keyset);
+        }
+        return keyset;
+    }
+
+    private void scan(String runId, boolean includeBodies, Consumer<ModerationResult> action) {
+        scanLocations(runId, (buffer, offset, location) -> action.accept(read(buffer, offset, includeBodies)));
+    }
+
+    /**
+     * Duyệt tuần tự từ record đầu tiên của run tới hết segment cuối cùng có run,
+     * lọc theo hash rồi so byte runId
+     */
+    private void scanLocations(String runId, RecordVisitor visitor) {
+        RunSpan span = runIndex.get(runId);
+        if (span == null) {
+            return;
+        }
+
+        int hash = runId.hashCode();
+        byte[] runIdBytes = runId.getBytes(StandardCharsets.UTF_8);
+        int firstSegment = segmentOf(span.firstLocation);
+        int lastSegment = span.lastSegment;
+
+        for (int s = firstSegment; s <= lastSegment; s++) {
+            MappedSegment segment = segments.get(s);
+            ByteBuffer buffer = segment.buffer();
+            int limit = segment.limit();
+            int position = s == firstSegment ? offsetOf(span.firstLocation) : 0;
+
+            while (position < limit) {
+                if (buffer.getInt(position + RUN_HASH) == hash && runIdEquals(buffer, position, runIdBytes)) {
+                    visitor.visit(buffer, position, location(s, position));
+                }
+                position += buffer.getInt(position + LENGTH);
+            }
+        }
+    }
+
+    private void append(Record record) {
+        if (active == null || active.remaining() < record.length) {
+            roll(record.length);
+        }
+
+        int offset = active.limit();
+        record.writeTo(active.buffer(), offset);
+        active.publish(offset + record.length);
+        index(record.result.getRequestId(), record.result.getRunId(), location(active.index(), offset));
+    }
+
+    /**
+     * Mở segment mới (record lớn hơn segment-size thì segment vừa đủ record)
+     */
+    private void roll(int recordLength) {
+        if (active != null) {
+            active.force();
+        }
+
+        // recover() bảo đảm segment liên tục từ 0, nên index mới = số segment hiện có
+        int index = segments.size();
+        Path path = directory.resolve(segmentFileName(index));
+        try {
+            active = MappedSegment.create(index, path, Math.max(segmentBytes, recordLength));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create segment " + path, e);
+        }
+        segments.add(active);
+        log.debug("Rolled result log to segment {}", path);
+    }
+
+    private void index(String requestId, String runId, long location) {
+        requestIndex.put(requestId, location);
+        if (runId != null) {
+            RunSpan span = runIndex.computeIfAbsent(runId, id -> new RunSpan(location));
+            span.lastSegment = segmentOf(location);
+            span.count++;
+        }
+    }
+
+    /**
+     * Dựng lại index từ các segment có sẵn; record đầu tiên có length không hợp lệ đánh dấu hết dữ liệu.
+     * Index của segment lấy từ tên file (location của record trỏ theo index này): thiếu segment
+     * thì dừng khởi động thay vì đánh lệch index của các segment sau.
+     */
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingInt(MappedLogResultStore::segmentIndexOf))
+                    .toList();
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            if (segmentIndexOf(files.get(i)) != i) {
+                throw new IllegalStateException("Result log at " + directory + " is missing segment "
+                        + segmentFileName(i) + " (next segment found: " + files.get(i).getFileName() + ")");
+            }
+            boolean last = i == files.size() - 1;
+            MappedSegment segment = MappedSegment.open(i, files.get(i), last);
+            ByteBuffer buffer = segment.buffer();
+
+            int position = 0;
+            while (position + HEADER_BYTES <= segment.capacity()) {
+                int length = buffer.getInt(position + LENGTH);
+                if (length < HEADER_BYTES || length > segment.capacity() - position) {
+                    break;
+                }
+                RecordReader reader = new RecordReader(buffer, position + HEADER_BYTES);
+                String requestId = reader.string();
+                String runId = reader.string();
+                index(requestId, runId, location(i, position));
+                position += length;
+            }
+
+            segment.publish(position);
+            segments.add(segment);
+            if (last) {
+                active = segment;
+            }
+        }
+    }
+
+    private static String segmentFileName(int index) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    private static int segmentIndexOf(Path file) {
+        String name = file.getFileName().toString();
+        String digits = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Unexpected segment file name: " + file, e);
+        }
+    }
+
+    private Record encode(ModerationResult result) {
+        requireColumn(result.getRequestId(), "requestId");
+        requireColumn(result.getStatusCode(), "statusCode");
+        requireColumn(result.getLatencyMs(), "latencyMs");
+        requireColumn(result.getTimestamp(), "timestamp");
+        requireColumn(result.getAttempts(), "attempts");
+
+        if (result.getId() == null) {
+            result.setId(TimeOrderedIdGenerator.nextId());
+        }
+        return new Record(result,
+                utf8(result.getRequestId()),
+                utf8(result.getRunId()),
+                utf8(result.getProviderName()),
+                utf8(result.getRiskLevel()),
+                utf8(result.getErrorMessage()),
+                compressionEnabled ? StorageCodec.encode(result.getPayload()) : StorageCodec.stored(result.getPayload()),
+                compressionEnabled ? StorageCodec.encode(result.getResponseBody()) : StorageCodec.stored(result.getResponseBody()));
+    }
+
+    private static ModerationResult read(ByteBuffer buffer, int offset, boolean includeBodies) {
+        int flags = buffer.getInt(offset + FLAGS);
+        double confidence = buffer.getDouble(offset + CONFIDENCE);
+        long timestampNanos = buffer.getLong(offset + TIMESTAMP);
+
+        RecordReader reader = new RecordReader(buffer, offset + HEADER_BYTES);
+        ModerationResult.ModerationResultBuilder builder = ModerationResult.builder()
+                .id(buffer.getLong(offset + ID))
+                .timestamp(LocalDateTime.ofEpochSecond(Math.floorDiv(timestampNanos, 1_000_000_000L),
+                        (int) Math.floorMod(timestampNanos, 1_000_000_000L), ZoneOffset.UTC))
+                .latencyMs(buffer.getLong(offset + LATENCY))
+                .confidenceScore(Double.isNaN(confidence) ? null : confidence)
+                .statusCode(buffer.getInt(offset + STATUS_CODE))
+                .attempts(buffer.getInt(offset + ATTEMPTS))
+                .success((flags & SUCCESS_PRESENT) != 0 ? (flags & SUCCESS) != 0 : null)
+                .cached((flags & CACHED_PRESENT) != 0 ? (flags & CACHED) != 0 : null)
+                .requestId(reader.string())
+                .runId(reader.string())
+                .providerName(reader.string())
+                .riskLevel(reader.string())
+                .errorMessage(reader.string());
+
+        if (includeBodies) {
+            builder.payload(StorageCodec.decode(reader.bytes()))
+                    .responseBody(StorageCodec.decode(reader.bytes()));
+        }
+        return builder.build();
+    }
+
+    private static boolean runIdEquals(ByteBuffer buffer, int offset, byte[] runId) {
+        int position = offset + HEADER_BYTES;
+        int requestIdLength = buffer.getInt(position);
+        position += Integer.BYTES + Math.max(requestIdLength, 0);
+
+        if (buffer.getInt(position) != runId.length) {
+            return false;
+        }
+        position += Integer.BYTES;
+        for (int i = 0; i < runId.length; i++) {
+            if (buffer.get(position + i) != runId[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long toNanos(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano();
+    }
+
+    private static DuplicateKeyException duplicate(String requestId) {
+        return new DuplicateKeyException("Duplicate request ID: " + requestId);
+    }
+
+    private static void requireColumn(Object value, String column) {
+        if (value == null) {
+            throw new DataIntegrityViolationException("Column '" + column + "' must not be null");
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static long location(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    /**
+     * Vị trí bắt đầu của run trong log; chỉ được cập nhật bởi writer
+     */
+    private static final class RunSpan {
+
+        final long firstLocation;
+        volatile int lastSegment;
+        volatile long count;
+
+        RunSpan(long firstLocation) {
+            this.firstLocation = firstLocation;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        void visit(ByteBuffer buffer, int offset, long location);
+    }
+
+    /**
+     * Các record của một run sort theo (timestamp, id), dựng khi run có count record
+     */
+    private static final class RunKeyset {
+
+        final long count;
+        final long[] timestamps;
+        final long[] ids;
+        final long[] locations;
+
+        RunKeyset(long count, List<long[]> sortedEntries) {
+            this.count = count;
+            int size = sortedEntries.size();
+            this.timestamps = new long[size];
+            this.ids = new long[size];
+            this.locations = new long[size];
+            for (int i = 0; i < size; i++) {
+                long[] entry = sortedEntries.get(i);
+                timestamps[i] = entry[0];
+                ids[i] = entry[1];
+                locations[i] = entry[2];
+            }
+        }
+
+        int size() {
+            return locations.length;
+        }
+
+        /**
+         * Vị trí của record đầu tiên có (timestamp, id) > (timestamp, id) của cursor
+         */
+        int indexAfter(long timestamp, long id) {
+            int low = 0;
+            int high = locations.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] < timestamp || (timestamps[mid] == timestamp && ids[mid] <= id)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Record đã encode sẵn (ngoài lock), writer chỉ copy vào segment
+     */
+    private static final class Record {
+
+        final ModerationResult result;
+        final byte[][] fields;
+        final int length;
+
+        Record(ModerationResult result, byte[]... fields) {
+            this.result = result;
+            this.fields = fields;
+            int total = HEADER_BYTES;
+            for (byte[] field : fields) {
+                total += Integer.BYTES + (field != null ? field.length : 0);
+            }
+            this.length = total;
+        }
+
+        void writeTo(ByteBuffer buffer, int offset) {
+            ModerationResult r = result;
+            LocalDateTime timestamp = r.getTimestamp();
+            int flags = 0;
+            if (r.getSuccess() != null) {
+                flags |= SUCCESS_PRESENT | (r.getSuccess() ? SUCCESS : 0);
+            }
+            if (r.getCached() != null) {
+                flags |= CACHED_PRESENT | (r.getCached() ? CACHED : 0);
+            }
+
+            buffer.putInt(offset + RUN_HASH, r.getRunId() != null ? r.getRunId().hashCode() : 0);
+            buffer.putLong(offset + ID, r.getId());
+            buffer.putLong(offset + TIMESTAMP, toNanos(timestamp));
+            buffer.putLong(offset + LATENCY, r.getLatencyMs());
+            buffer.putDouble(offset + CONFIDENCE, r.getConfidenceScore() != null ? r.getConfidenceScore() : Double.NaN);
+            buffer.putInt(offset + STATUS_CODE, r.getStatusCode());
+            buffer.putInt(offset + ATTEMPTS, r.getAttempts());
+            buffer.putInt(offset + FLAGS, flags);
+
+            int position = offset + HEADER_BYTES;
+            for (byte[] field : fields) {
+                if (field == null) {
+                    buffer.putInt(position, -1);
+                    position += Integer.BYTES;
+                    continue;
+                }
+                buffer.putInt(position, field.length);
+                buffer.put(position + Integer.BYTES, field);
+                position += Integer.BYTES + field.length;
+            }
+
+            // Length ghi sau cùng: record chỉ được coi là tồn tại khi đã ghi đủ
+            buffer.putInt(offset + LENGTH, length);
+        }
+    }
+
+    /**
+     * Đọc tuần tự các field độ dài thay đổi của một record
+     */
+    private static final class RecordReader {
+
+        private final ByteBuffer buffer;
+        private int position;
+
+        RecordReader(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        byte[] bytes() {
+            int length = buffer.getInt(position);
+            position += Integer.BYTES;
+            if (length < 0) {
+                return null;
+            }
+            byte[] value = new byte[length];
+            buffer.get(position, value);
+            position += length;
+            return value;
+        }
+
+        String string() {
+            byte[] value = bytes();
+            return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.moderation.store;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Một segment file của MappedLogResultStore, map toàn bộ vào bộ nhớ.
+ *
+ * Chỉ segment cuối được ghi (dưới lock của store). Reader đọc bằng absolute get tới limit:
+ * limit là volatile và chỉ tăng sau khi record đã ghi xong, nên reader không thấy record dở dang.
+ */
+final class MappedSegment {
+
+    private final int index;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private volatile int limit;
+
+    private MappedSegment(int index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.index = index;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Tạo segment mới, file được cấp phát đủ capacity (phần chưa ghi toàn byte 0)
+     */
+    static MappedSegment create(int index, Path path, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new MappedSegment(index, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+    }
+
+    /**
+     * Mở segment có sẵn; limit = 0 cho tới khi store recover xong
+     */
+    static MappedSegment open(int index, Path path, boolean writable) throws IOException {
+        FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Segment too large: " + path);
+        }
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        return new MappedSegment(index, path, channel, channel.map(mode, 0, size));
+    }
+
+    int index() {
+        return index;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    MappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    int remaining() {
+        return buffer.capacity() - limit;
+    }
+
+    void publish(int newLimit) {
+        limit = newLimit;
+    }
+
+    /**
+     * Đẩy các page đã ghi xuống file (process crash không mất dữ liệu đã publish,
+     * force chỉ cần cho trường hợp mất điện / crash OS)
+     */
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+}
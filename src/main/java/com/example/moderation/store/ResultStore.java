@@ -0,0 +1,68 @@
+package com.example.moderation.store;
+
+import com.example.moderation.entity.ModerationResult;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Nơi lưu ModerationResult, dùng bởi ContentModerationService (qua ResultWriteBehindSink) và MetricsService.
+ *
+ * Backend chọn bằng persistence.store:
+ *   jpa        - Spring Data JPA (mặc định)
+ *   mapped-log - record nhị phân append vào segment file memory-mapped (MappedLogResultStore)
+ */
+public interface ResultStore {
+
+    void save(ModerationResult result);
+
+    /**
+     * Ghi một batch. Batch có request ID trùng thì ném DataIntegrityViolationException
+     */
+    void saveAll(List<ModerationResult> results);
+
+    boolean existsByRequestId(String requestId);
+
+    Optional<ModerationResult> findByRequestId(String requestId);
+
+    /**
+     * Duyệt toàn bộ request ID đã lưu (seed RequestIdIndex)
+     */
+    void forEachRequestId(Consumer<String> action);
+
+    long countByRunId(String runId);
+
+    List<ModerationResult> findByRunIdOrderByTimestampAsc(String runId);
+
+    /**
+     * Duyệt các kết quả của một run, không load payload / responseBody (luôn null).
+     * Thứ tự không đảm bảo theo timestamp.
+     */
+    void scanRun(String runId, Consumer<ModerationResult> action);
+
+    /**
+     * Một trang (keyset pagination) các kết quả của run theo thứ tự (timestamp, id):
+     * tối đa limit kết quả có (timestamp, id) > (afterTimestamp, afterId), từ đầu run nếu afterTimestamp null.
+     * Kết quả được đưa cho action lần lượt khi đọc, không gom cả trang vào bộ nhớ.
+     *
+     * @param includeBodies false thì không đọc payload / responseBody (luôn null)
+     */
+    void scanRunPage(String runId, LocalDateTime afterTimestamp, Long afterId, int limit,
+                     boolean includeBodies, Consumer<ModerationResult> action);
+
+    /**
+     * Count, success, min / max / avg / p50 / p95 / p99 latency và khoảng thời gian của một run
+     * trong một lượt đọc, không đọc payload / responseBody.
+     *
+     * @return null nếu run không có kết quả
+     */
+    RunSummary summarizeRun(String runId);
+
+    /**
+     * Latency của các request thành công, không qua cache, trong các run (replay latency cho mock)
+     */
+    List<Long> findProviderLatenciesByRunIds(Collection<String> runIds);
+}
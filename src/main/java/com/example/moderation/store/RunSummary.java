@@ -0,0 +1,33 @@
+package com.example.moderation.store;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tổng hợp các kết quả đã lưu của một run (ResultStore.summarizeRun), latency tính bằng ms.
+ * Percentile là giá trị exact: phần tử thứ ceil(p / 100 * n) theo latency tăng dần.
+ */
+@Value
+@Builder
+public class RunSummary {
+
+    long totalRequests;
+    long successCount;
+    long minLatencyMs;
+    long maxLatencyMs;
+    double avgLatencyMs;
+    long p50LatencyMs;
+    long p95LatencyMs;
+    long p99LatencyMs;
+    LocalDateTime firstTimestamp;
+    LocalDateTime lastTimestamp;
+
+    /**
+     * Rank (1-based) của percentile trong n phần tử đã sort, cùng quy ước với LatencyHistogram
+     */
+    static int rank(int percentile, long total) {
+        return (int) Math.max(1, (percentile * total + 99) / 100);
+    }
+}
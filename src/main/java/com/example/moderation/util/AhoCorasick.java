@@ -0,0 +1,259 @@
+package com.example.moderation.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton (immutable, thread-safe) để tìm nhiều term trong một lần duyệt text.
+ *
+ * Mỗi term thuộc một category (tối đa 64 category); match() trả về bitmask các category tìm thấy.
+ * So khớp không phân biệt hoa thường, fold từng ký tự nên không tạo bản sao lowercase của text
+ * và không cấp phát object nào trong lúc match.
+ */
+public final class AhoCorasick {
+
+    private static final int ASCII = 128;
+
+    private final List<String> categories;
+    private final boolean wholeWords;
+    private final int termCount;
+
+    // Transition của mỗi node: keys sắp xếp tăng dần (binary search), targets tương ứng
+    private final char[][] keys;
+    private final int[][] targets;
+    // Transition của root cho ký tự ASCII (đa số bước match quay về root)
+    private final int[] rootAscii;
+
+    private final int[] fail;
+    private final long[] ownMask;
+    private final int[] termLength;
+    private final int[] dictLink;
+    private final long[] outputMask;
+
+    private AhoCorasick(List<String> categories, boolean wholeWords, int termCount,
+                        List<TreeMap<Character, Integer>> trie, long[] ownMask, int[] termLength) {
+        this.categories = List.copyOf(categories);
+        this.wholeWords = wholeWords;
+        this.termCount = termCount;
+
+        int size = trie.size();
+        this.keys = new char[size][];
+        this.targets = new int[size][];
+        for (int node = 0; node < size; node++) {
+            TreeMap<Character, Integer> edges = trie.get(node);
+            keys[node] = new char[edges.size()];
+            targets[node] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                keys[node][i] = edge.getKey();
+                targets[node][i] = edge.getValue();
+                i++;
+            }
+        }
+
+        this.rootAscii = new int[ASCII];
+        Arrays.fill(rootAscii, 0);
+        for (Map.Entry<Character, Integer> edge : trie.get(0).entrySet()) {
+            if (edge.getKey() < ASCII) {
+                rootAscii[edge.getKey()] = edge.getValue();
+            }
+        }
+
+        this.ownMask = ownMask;
+        this.termLength = termLength;
+        this.fail = new int[size];
+        this.dictLink = new int[size];
+        this.outputMask = new long[size];
+        buildLinks();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return bitmask các category có term xuất hiện trong text (bit i = categories().get(i))
+     */
+    public long match(CharSequence text) {
+        long mask = 0;
+        int state = 0;
+        int length = text.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            state = step(state, c);
+
+            if (!wholeWords) {
+                mask |= outputMask[state];
+                continue;
+            }
+
+            // Whole-word: kiểm tra biên từ cho từng term kết thúc tại vị trí i
+            for (int node = ownMask[state] != 0 ? state : dictLink[state]; node > 0; node = dictLink[node]) {
+                int start = i - termLength[node] + 1;
+                if ((start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1)))
+                        && (i + 1 == length || !Character.isLetterOrDigit(text.charAt(i + 1)))) {
+                    mask |= ownMask[node];
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Tên các category trong bitmask (theo thứ tự khai báo)
+     */
+    public List<String> categoriesOf(long mask) {
+        List<String> result = new ArrayList<>(Long.bitCount(mask));
+        for (int i = 0; i < categories.size(); i++) {
+            if ((mask & (1L << i)) != 0) {
+                result.add(categories.get(i));
+            }
+        }
+        return result;
+    }
+
+    public List<String> categories() {
+        return categories;
+    }
+
+    public int termCount() {
+        return termCount;
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            int next = transition(state, c);
+            if (next >= 0) {
+                return next;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = fail[state];
+        }
+    }
+
+    private int transition(int state, char c) {
+        if (state == 0 && c < ASCII) {
+            int next = rootAscii[c];
+            return next != 0 ? next : -1;
+        }
+        int index = Arrays.binarySearch(keys[state], c);
+        return index >= 0 ? targets[state][index] : -1;
+    }
+
+    /**
+     * BFS từ root: fail link, dictionary link (node gần nhất trên chuỗi fail có term) và output mask gộp
+     */
+    private void buildLinks() {
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        dictLink[0] = -1;
+        outputMask[0] = ownMask[0];
+        for (int child : targets[0]) {
+            fail[child] = 0;
+            dictLink[child] = -1;
+            outputMask[child] = ownMask[child];
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < keys[node].length; i++) {
+                char c = keys[node][i];
+                int child = targets[node][i];
+
+                int f = fail[node];
+                int next;
+                while ((next = transition(f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next >= 0 ? next : 0;
+                dictLink[child] = ownMask[fail[child]] != 0 ? fail[child] : dictLink[fail[child]];
+                outputMask[child] = ownMask[child] | outputMask[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Builder: thêm term theo category rồi compile thành automaton
+     */
+    public static final class Builder {
+
+        private final List<String> categories = new ArrayList<>();
+        private final List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        private final List<Long> masks = new ArrayList<>();
+        private final List<Integer> lengths = new ArrayList<>();
+        private boolean wholeWords;
+        private int termCount;
+
+        private Builder() {
+            newNode();
+        }
+
+        /**
+         * Chỉ match khi term đứng riêng thành từ (không match "kill" trong "skill")
+         */
+        public Builder wholeWords(boolean wholeWords) {
+            this.wholeWords = wholeWords;
+            return this;
+        }
+
+        public Builder add(String category, String term) {
+            if (term == null || term.isBlank()) {
+                return this;
+            }
+
+            int categoryIndex = categories.indexOf(category);
+            if (categoryIndex < 0) {
+                if (categories.size() == Long.SIZE) {
+                    throw new IllegalArgumentException("At most " + Long.SIZE + " categories are supported");
+                }
+                categories.add(category);
+                categoryIndex = categories.size() - 1;
+            }
+
+            String normalized = term.strip();
+            int node = 0;
+            for (int i = 0; i < normalized.length(); i++) {
+                char c = Character.toLowerCase(normalized.charAt(i));
+                Integer next = trie.get(node).get(c);
+                if (next == null) {
+                    next = newNode();
+                    trie.get(node).put(c, next);
+                }
+                node = next;
+            }
+
+            masks.set(node, masks.get(node) | (1L << categoryIndex));
+            lengths.set(node, normalized.length());
+            termCount++;
+            return this;
+        }
+
+        public Builder addAll(String category, Iterable<String> terms) {
+            for (String term : terms) {
+                add(category, term);
+            }
+            return this;
+        }
+
+        public AhoCorasick build() {
+            long[] ownMask = masks.stream().mapToLong(Long::longValue).toArray();
+            int[] termLength = lengths.stream().mapToInt(Integer::intValue).toArray();
+            return new AhoCorasick(categories, wholeWords, termCount, trie, ownMask, termLength);
+        }
+
+        private int newNode() {
+            trie.add(new TreeMap<>());
+            masks.add(0L);
+            lengths.add(0);
+            return trie.size() - 1;
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.example.moderation.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Histogram latency lock-free, bucket log-linear kiểu HdrHistogram.
+ *
+ * Value nhỏ hơn 2^subBucketBits được đếm chính xác; từ đó trở lên mỗi khoảng [2^k, 2^(k+1))
+ * chia thành 2^(subBucketBits-1) bucket đều nhau, nên sai số tương đối tối đa 2^-(subBucketBits-1)
+ * (subBucketBits = 8: < 0.8%). Bộ nhớ cố định, không phụ thuộc số mẫu.
+ *
+ * record() chỉ là một incrementAndGet trên AtomicLongArray; hai histogram cùng layout
+ * merge bằng cách cộng từng bucket.
+ *
+ * encode(): giống compressed encoding của HdrHistogram - count từng bucket dạng ZigZag varint,
+ * chuỗi bucket rỗng ghi thành một số âm, rồi nén Deflate. Dùng để lưu vào TestRun và
+ * để gửi / merge histogram giữa các node.
+ */
+public final class LatencyHistogram {
+
+    private static final byte ENCODING_V1 = 0x01;
+    /** subBucketBits (1 byte) + highestTrackableValue (varint) */
+    private static final int LAYOUT_HEADER_BYTES = 1 + 10;
+    private static final int MAX_VARLONG_BYTES = 10;
+
+    private final int subBucketBits;
+    private final int subBucketCount;
+    private final int subBucketHalfCount;
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+
+    /**
+     * @param highestTrackableValue Value lớn hơn được đếm vào bucket cuối
+     * @param subBucketBits Độ phân giải (2 - 16)
+     */
+    public LatencyHistogram(long highestTrackableValue, int subBucketBits) {
+        if (subBucketBits < 2 || subBucketBits > 16) {
+            throw new IllegalArgumentException("subBucketBits must be in [2, 16]");
+        }
+        if (highestTrackableValue < 1) {
+            throw new IllegalArgumentException("highestTrackableValue must be >= 1");
+        }
+
+        this.subBucketBits = subBucketBits;
+        this.subBucketCount = 1 << subBucketBits;
+        this.subBucketHalfCount = subBucketCount >> 1;
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(indexOf(highestTrackableValue) + 1);
+    }
+
+    public void record(long value) {
+        counts.incrementAndGet(indexOf(clamp(value)));
+    }
+
+    public void record(long value, long count) {
+        counts.addAndGet(indexOf(clamp(value)), count);
+    }
+
+    /**
+     * Cộng toàn bộ mẫu của histogram khác vào histogram này.
+     * Khác layout thì mỗi bucket được ghi lại theo value đại diện (sai số thêm tối đa một bucket).
+     */
+    public void merge(LatencyHistogram other) {
+        boolean sameLayout = other.subBucketBits == subBucketBits && other.counts.length() <= counts.length();
+        for (int i = 0; i < other.counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count == 0) {
+                continue;
+            }
+            if (sameLayout) {
+                counts.addAndGet(i, count);
+            } else {
+                record(other.highestEquivalentValue(i), count);
+            }
+        }
+    }
+
+    public long totalCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Value tại percentile (0 - 100), cùng quy ước rank với sort thông thường:
+     * phần tử thứ ceil(p / 100 * n). Trả về cận trên của bucket chứa phần tử đó.
+     *
+     * @return 0 nếu histogram rỗng
+     */
+    public long valueAtPercentile(double percentile) {
+        long total = totalCount();
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= rank) {
+                return highestEquivalentValue(i);
+            }
+        }
+        return highestTrackableValue;
+    }
+
+    /**
+     * Phân phối percentile kiểu HdrHistogram: mỗi nửa khoảng còn lại tới 100% (0-50, 50-75, 75-87.5, ...)
+     * được chia thành ticksPerHalfDistance điểm, nên đuôi phân phối có nhiều điểm hơn.
+     * Điểm cuối luôn là percentile 100.
+     */
+    public List<PercentileValue> percentileDistribution(int ticksPerHalfDistance) {
+        if (ticksPerHalfDistance < 1) {
+            throw new IllegalArgumentException("ticksPerHalfDistance must be >= 1");
+        }
+
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        List<PercentileValue> points = new ArrayList<>();
+        if (total == 0) {
+            return points;
+        }
+
+        double percentile = 0;
+        long cumulative = 0;
+        int index = -1;
+        while (true) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+            while (cumulative < rank) {
+                cumulative += snapshot[++index];
+            }
+            points.add(new PercentileValue(percentile, highestEquivalentValue(index), cumulative));
+
+            if (cumulative >= total) {
+                if (percentile < 100) {
+                    points.add(new PercentileValue(100, highestEquivalentValue(index), total));
+                }
+                return points;
+            }
+
+            long halfDistance = 1L << ((int) (Math.log(100.0 / (100.0 - percentile)) / Math.log(2)) + 1);
+            percentile += 100.0 / (ticksPerHalfDistance * halfDistance);
+        }
+    }
+
+    /**
+     * Histogram rỗng cùng layout
+     */
+    public LatencyHistogram emptyCopy() {
+        return new LatencyHistogram(highestTrackableValue, subBucketBits);
+    }
+
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = emptyCopy();
+        copy.merge(this);
+        return copy;
+    }
+
+    public byte[] encode() {
+        long[] snapshot = snapshot();
+        int length = snapshot.length;
+        while (length > 0 && snapshot[length - 1] == 0) {
+            length--;
+        }
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(64 + length);
+        raw.write(subBucketBits);
+        writeVarLong(raw, highestTrackableValue);
+        writeVarLong(raw, length);
+        for (int i = 0; i < length; i++) {
+            if (snapshot[i] != 0) {
+                writeVarLong(raw, zigZag(snapshot[i]));
+                continue;
+            }
+            int zeros = 1;
+            while (i + zeros < length && snapshot[i + zeros] == 0) {
+                zeros++;
+            }
+            writeVarLong(raw, zigZag(-zeros));
+            i += zeros - 1;
+        }
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(raw.toByteArray());
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.size() / 2 + 16);
+            out.write(ENCODING_V1);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static LatencyHistogram decode(byte[] data) {
+        if (data == null || data.length == 0 || data[0] != ENCODING_V1) {
+            throw new IllegalArgumentException("Unsupported histogram encoding");
+        }
+
+        // Giới hạn kích thước sau khi giải nén theo layout trong header, tránh deflate bomb làm hết heap
+        Inflater inflater = new Inflater(true);
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(data.length * 4);
+        long maxDecodedBytes = -1;
+        try {
+            inflater.setInput(data, 1, data.length - 1);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated histogram encoding");
+                }
+                raw.write(buffer, 0, count);
+
+                if (maxDecodedBytes < 0 && (raw.size() >= LAYOUT_HEADER_BYTES || inflater.finished())) {
+                    maxDecodedBytes = maxDecodedBytes(raw.toByteArray());
+                }
+                if (maxDecodedBytes >= 0 && raw.size() > maxDecodedBytes) {
+                    throw new IllegalArgumentException("Histogram encoding exceeds its declared layout");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupted histogram encoding", e);
+        } finally {
+            inflater.end();
+        }
+
+        Reader reader = new Reader(raw.toByteArray());
+        int subBucketBits = reader.readByte();
+        LatencyHistogram histogram = new LatencyHistogram(reader.readVarLong(), subBucketBits);
+        long length = reader.readVarLong();
+        if (length > histogram.counts.length()) {
+            throw new IllegalArgumentException("Corrupted histogram encoding");
+        }
+
+        int index = 0;
+        while (index < length) {
+            long value = unZigZag(reader.readVarLong());
+            if (value < 0) {
+                if (-value > length - index) {
+                    throw new IllegalArgumentException("Corrupted histogram encoding");
+                }
+                index += (int) -value;
+            } else {
+                histogram.counts.set(index++, value);
+            }
+        }
+        return histogram;
+    }
+
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    public int getSubBucketBits() {
+        return subBucketBits;
+    }
+
+    int bucketCount() {
+        return counts.length();
+    }
+
+    long countAt(int index) {
+        return counts.get(index);
+    }
+
+    int indexOf(long value) {
+        return indexOf(value, subBucketBits);
+    }
+
+    private static int indexOf(long value, int subBucketBits) {
+        int subBucketCount = 1 << subBucketBits;
+        if (value < subBucketCount) {
+            return (int) value;
+        }
+        // value trong [2^msb, 2^(msb+1)), giữ subBucketBits bit cao nhất
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - (subBucketBits - 1);
+        int subBucket = (int) (value >>> shift);
+        int subBucketHalfCount = subBucketCount >> 1;
+        return subBucketCount + (shift - 1) * subBucketHalfCount + (subBucket - subBucketHalfCount);
+    }
+
+    /**
+     * Kích thước tối đa của encoding chưa nén với layout ghi trong header:
+     * header + length + mỗi bucket tối đa một varint
+     */
+    private static long maxDecodedBytes(byte[] header) {
+        Reader reader = new Reader(header);
+        int subBucketBits = reader.readByte();
+        long highestTrackableValue = reader.readVarLong();
+        if (subBucketBits < 2 || subBucketBits > 16 || highestTrackableValue < 1) {
+            throw new IllegalArgumentException("Corrupted histogram encoding");
+        }
+        long bucketCount = indexOf(highestTrackableValue, subBucketBits) + 1L;
+        return LAYOUT_HEADER_BYTES + MAX_VARLONG_BYTES + bucketCount * MAX_VARLONG_BYTES;
+    }
+
+    long lowestEquivalentValue(int index) {
+        if (index < subBucketCount) {
+            return index;
+        }
+        int offset = index - subBucketCount;
+        int shift = offset / subBucketHalfCount + 1;
+        long subBucket = offset % subBucketHalfCount + subBucketHalfCount;
+        return subBucket << shift;
+    }
+
+    long highestEquivalentValue(int index) {
+        if (index < subBucketCount) {
+            return index;
+        }
+        int shift = (index - subBucketCount) / subBucketHalfCount + 1;
+        return lowestEquivalentValue(index) + (1L << shift) - 1;
+    }
+
+    private long clamp(long value) {
+        return Math.max(0, Math.min(value, highestTrackableValue));
+    }
+
+    private long[] snapshot() {
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Một điểm của phân phối: value (cận trên bucket) và số mẫu <= value
+     */
+    public record PercentileValue(double percentile, long value, long count) {
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int readByte() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Truncated histogram encoding");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Corrupted histogram encoding");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.moderation.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codec nén cho các cột text lớn (payload, response_body).
+ *
+ * Format: byte đầu là header
+ *   0x01 - raw Deflate (BEST_SPEED) với preset dictionary PRESET_DICTIONARY_V1
+ *   0x00 - UTF-8 không nén (value ngắn hoặc nén không có lợi)
+ * Dữ liệu cũ (TEXT ghi trước khi có codec) không có header: byte đầu là ký tự in được,
+ * nên được đọc lại nguyên dạng UTF-8.
+ *
+ * Dictionary chứa các key / value hay gặp trong request và response của provider,
+ * giúp nén tốt cả value ngắn (vài trăm byte) mà Deflate thường không nén được bao nhiêu.
+ */
+public final class StorageCodec {
+
+    static final byte STORED = 0x00;
+    static final byte DEFLATE_DICT_V1 = 0x01;
+
+    /**
+     * Value ngắn hơn ngưỡng này được lưu không nén
+     */
+    private static final int MIN_COMPRESS_BYTES = 64;
+
+    /**
+     * Chuỗi hay gặp nhất nằm cuối dictionary (khoảng cách back-reference ngắn hơn)
+     */
+    private static final byte[] PRESET_DICTIONARY_V1 = String.join("",
+            // DeepCleer response
+            "{\"code\":1100,\"message\":\"Success\",\"requestId\":\"",
+            "\",\"riskLevel\":\"REVIEW\",\"riskLevel\":\"REJECT\",\"riskLabel1\":\"normal\",\"riskLabel2\":\"\",\"riskLabel3\":\"\",",
+            "\"riskDescription\":\"normal\",\"riskDetail\":{\"matchedLists\":[{\"name\":\"\",\"words\":[{\"position\":[",
+            "],\"word\":\"\"}]}]},\"tokenLabels\":{\"UGC_account_risk\":{}},\"auxInfo\":{\"filteredText\":\"\",\"contactResult\":[",
+            "{\"contactString\":\"\",\"contactType\":2}]},\"allLabels\":[{\"probability\":0.",
+            ",\"riskDescription\":\"\",\"riskLabel1\":\"\",\"riskLabel2\":\"\",\"riskLabel3\":\"\",\"riskLevel\":\"REJECT\"}],",
+            "\"businessLabels\":[],\"finalResult\":1,\"resultType\":0,\"disposal\":{}}",
+            // Fan-out / prefilter / mock
+            "{\"fanOut\":{\"mode\":\"QUORUM\",\"attempts\":[{\"provider\":\"deepcleer\",\"status\":\"SUCCESS\",\"latencyMs\":",
+            "{\"source\":\"prefilter\",\"dictionaryVersion\":",
+            "{\n  \"mockMode\": true,\n  \"riskLevel\": \"LOW\",\n  \"confidence\": 0.95,\n  \"labels\": [\n    \"CLEAN\"\n  ]\n}",
+            // Request payload
+            "{\"id\":\"req-\",\"text\":\"\",\"runId\":\"run-\"}",
+            "\"riskLevel\":\"PASS\",\"riskLabel1\":\"normal\",\"code\":1100,\"message\":\"Success\",\"requestId\":\"")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final ThreadLocal<Deflater> DEFLATERS =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    private StorageCodec() {
+    }
+
+    public static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length < MIN_COMPRESS_BYTES) {
+            return stored(utf8);
+        }
+
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setDictionary(PRESET_DICTIONARY_V1);
+        deflater.setInput(utf8);
+        deflater.finish();
+
+        // Header + output tối đa bằng input (không có lợi thì lưu không nén)
+        byte[] out = new byte[utf8.length + 1];
+        out[0] = DEFLATE_DICT_V1;
+        int length = 1;
+        while (!deflater.finished() && length < out.length) {
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        if (!deflater.finished()) {
+            return stored(utf8);
+        }
+        return Arrays.copyOf(out, length);
+    }
+
+    /**
+     * Ghi không nén (vẫn có header để phân biệt với dữ liệu cũ)
+     */
+    public static byte[] stored(String value) {
+        return value == null ? null : stored(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String decode(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length == 0) {
+            return "";
+        }
+
+        return switch (data[0]) {
+            case STORED -> new String(data, 1, data.length - 1, StandardCharsets.UTF_8);
+            case DEFLATE_DICT_V1 -> inflate(data);
+            // Dữ liệu TEXT cũ (chưa qua codec)
+            default -> new String(data, StandardCharsets.UTF_8);
+        };
+    }
+
+    private static String inflate(byte[] data) {
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        // Raw Deflate không có header báo dictionary: set trước khi inflate
+        inflater.setDictionary(PRESET_DICTIONARY_V1);
+        inflater.setInput(data, 1, data.length - 1);
+
+        byte[] buffer = BUFFERS.get();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+        try {
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && inflater.needsInput()) {
+                    throw new IllegalStateException("Truncated compressed value");
+                }
+                out.write(buffer, 0, count);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted compressed value", e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] stored(byte[] utf8) {
+        byte[] out = new byte[utf8.length + 1];
+        out[0] = STORED;
+        System.arraycopy(utf8, 0, out, 1, utf8.length);
+        return out;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.moderation.util;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * HashSet chia thành nhiều stripe, mỗi stripe có lock riêng.
+ * Các thread thao tác trên key thuộc stripe khác nhau không tranh chấp lock.
+ */
+public class StripedHashSet<T> {
+
+    private final Set<T>[] stripes;
+    private final int mask;
+
+    @SuppressWarnings("unchecked")
+    public StripedHashSet(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new Set[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new HashSet<>();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return true nếu key chưa có và đã được thêm, false nếu đã tồn tại
+     */
+    public boolean add(T key) {
+        Set<T> stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.add(key);
+        }
+    }
+
+    public boolean contains(T key) {
+        Set<T> stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.contains(key);
+        }
+    }
+
+    public boolean remove(T key) {
+        Set<T> stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.remove(key);
+        }
+    }
+
+    public int size() {
+        int total = 0;
+        for (Set<T> stripe : stripes) {
+            synchronized (stripe) {
+                total += stripe.size();
+            }
+        }
+        return total;
+    }
+
+    private Set<T> stripeFor(T key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & mask];
+    }
+}
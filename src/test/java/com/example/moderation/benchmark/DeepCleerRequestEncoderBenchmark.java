@@ -0,0 +1,93 @@
+package com.example.moderation.benchmark;
+
+import com.example.moderation.provider.deepcleer.DeepCleerRequest;
+import com.example.moderation.provider.deepcleer.DeepCleerRequestEncoder;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialize request DeepCleer: encoder envelope encode sẵn so với DeepCleerRequest + Gson
+ * (path cũ: build object graph, toJson, getBytes). Chạy kèm GC profiler để xem gc.alloc.rate.norm (byte/op).
+ *
+ * Chạy: mvn test-compile, sau đó chạy main() của class này với test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeepCleerRequestEncoderBenchmark {
+
+    private static final String ACCESS_KEY = "3G1pY1HgAfJiNxp54wjd";
+    private static final String APP_ID = "zim_1165137824";
+    private static final String EVENT_ID = "article";
+
+    @Param({"100", "2000"})
+    public int textLength;
+
+    private final Gson gson = new Gson();
+    private DeepCleerRequestEncoder encoder;
+    private Map<String, Object> options;
+    private String text;
+
+    @Setup
+    public void setup() {
+        encoder = new DeepCleerRequestEncoder(ACCESS_KEY, APP_ID, EVENT_ID, gson);
+        options = Map.of("userId", "user-12345");
+
+        // Text hỗn hợp ASCII / tiếng Việt, có ký tự cần escape
+        String sample = "Nội dung bình luận \"test\" số ";
+        StringBuilder builder = new StringBuilder(textLength + sample.length());
+        while (builder.length() < textLength) {
+            builder.append(sample).append(builder.length()).append('\n');
+        }
+        text = builder.substring(0, textLength);
+    }
+
+    @Benchmark
+    public byte[] gson() {
+        DeepCleerRequest request = DeepCleerRequest.builder()
+                .accessKey(ACCESS_KEY)
+                .appId(APP_ID)
+                .eventId(EVENT_ID)
+                .type("TEXTRISK")
+                .data(DeepCleerRequest.DataField.builder()
+                        .text(text)
+                        .tokenId((String) options.getOrDefault("userId", "anonymous_user"))
+                        .build())
+                .build();
+        return gson.toJson(request).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encoder() {
+        return encoder.encode(text, options);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DeepCleerRequestEncoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.moderation.benchmark;
+
+import com.example.moderation.util.AhoCorasick;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput của pre-filter: Aho-Corasick so với toLowerCase + String.contains từng keyword
+ * (cách MockProvider cũ quét keyword).
+ *
+ * Chạy: mvn test-compile, sau đó chạy main() của class này với test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreFilterBenchmark {
+
+    private static final String[] WORDS = {
+            "hello", "message", "comment", "today", "great", "product", "service", "thanks", "please", "order"
+    };
+
+    @Param({"10", "1000"})
+    public int termCount;
+
+    @Param({"40", "400"})
+    public int textLength;
+
+    private List<String> terms;
+    private AhoCorasick automaton;
+    private String[] texts;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+
+        terms = new ArrayList<>(termCount);
+        AhoCorasick.Builder builder = AhoCorasick.builder().wholeWords(true);
+        for (int i = 0; i < termCount; i++) {
+            String term = "term" + i + (char) ('a' + random.nextInt(26));
+            terms.add(term);
+            builder.add("CATEGORY" + (i % 8), term);
+        }
+        automaton = builder.build();
+
+        // 1/10 text chứa một term, còn lại là text sạch
+        texts = new String[1024];
+        for (int i = 0; i < texts.length; i++) {
+            StringBuilder text = new StringBuilder(textLength + 16);
+            while (text.length() < textLength) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            if (i % 10 == 0) {
+                text.append(terms.get(random.nextInt(terms.size())).toUpperCase());
+            }
+            texts[i] = text.toString();
+        }
+    }
+
+    @Benchmark
+    public long ahoCorasick() {
+        return automaton.match(nextText());
+    }
+
+    @Benchmark
+    public boolean lowerCaseContains() {
+        String lower = nextText().toLowerCase();
+        for (String term : terms) {
+            if (lower.contains(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String nextText() {
+        next = (next + 1) & (texts.length - 1);
+        return texts[next];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PreFilterBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
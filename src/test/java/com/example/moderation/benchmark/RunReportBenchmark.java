@@ -0,0 +1,180 @@
+package com.example.moderation.benchmark;
+
+import com.example.moderation.store.JpaResultStore;
+import com.example.moderation.util.StorageCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency của report cho một run lớn trên SQLite (bảng moderation_results có payload / response_body nén):
+ *   - entityLoadReport: đường cũ - load toàn bộ row của run hai lần (kèm decode payload / response_body),
+ *     sort latency cho percentile, cộng 5 query aggregate riêng
+ *   - singlePassReport: JpaResultStore.RUN_SUMMARY_SQL trên covering index idx_run_latency
+ *
+ * Chạy: mvn test-compile, sau đó chạy main() của class này với test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunReportBenchmark {
+
+    private static final String RUN_ID = "run-large";
+
+    private static final String[] AGGREGATE_QUERIES = {
+            "SELECT MIN(latency_ms) FROM moderation_results WHERE run_id = ?",
+            "SELECT MAX(latency_ms) FROM moderation_results WHERE run_id = ?",
+            "SELECT AVG(latency_ms) FROM moderation_results WHERE run_id = ?",
+            "SELECT COUNT(*) FROM moderation_results WHERE run_id = ? AND success = 1",
+            "SELECT COUNT(*) FROM moderation_results WHERE run_id = ? AND success = 0"
+    };
+
+    /**
+     * Số row của run được report; bảng có thêm cùng số row của một run khác
+     */
+    @Param({"100000"})
+    public int runSize;
+
+    private Path dbFile;
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        dbFile = Files.createTempFile("run-report-bench", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE moderation_results (id INTEGER PRIMARY KEY, request_id VARCHAR(255) NOT NULL, "
+                    + "run_id VARCHAR(255), payload BLOB, response_body BLOB, status_code INTEGER NOT NULL, "
+                    + "latency_ms BIGINT NOT NULL, timestamp TIMESTAMP NOT NULL, attempts INTEGER NOT NULL, "
+                    + "success BOOLEAN, risk_level VARCHAR(255), provider_name VARCHAR(255))");
+            statement.execute("CREATE INDEX idx_run_id ON moderation_results(run_id)");
+            statement.execute("CREATE INDEX idx_run_latency ON moderation_results(run_id, latency_ms, success, timestamp)");
+        }
+
+        byte[] payload = StorageCodec.encode("{\"id\":\"req-000123\",\"text\":\"Add me on qq12345 for a discount, "
+                + "sản phẩm này rất tốt, tôi sẽ mua lại\",\"runId\":\"" + RUN_ID + "\"}");
+        byte[] response = StorageCodec.encode(StorageCodecBenchmark.RESPONSE);
+        Random random = new Random(42);
+        long start = System.currentTimeMillis();
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO moderation_results (id, request_id, "
+                + "run_id, payload, response_body, status_code, latency_ms, timestamp, attempts, success, risk_level, "
+                + "provider_name) VALUES (?, ?, ?, ?, ?, 200, ?, ?, 1, ?, 'PASS', 'mock')")) {
+            for (int i = 0; i < runSize * 2; i++) {
+                insert.setLong(1, i);
+                insert.setString(2, "req-" + i);
+                insert.setString(3, i % 2 == 0 ? RUN_ID : "run-other");
+                insert.setBytes(4, payload);
+                insert.setBytes(5, response);
+                insert.setLong(6, (long) Math.exp(Math.log(200) + random.nextGaussian()));
+                insert.setTimestamp(7, new Timestamp(start + i));
+                insert.setBoolean(8, random.nextInt(100) < 95);
+                insert.addBatch();
+                if (i % 1000 == 999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        connection.close();
+        Files.deleteIfExists(dbFile);
+    }
+
+    /**
+     * Đường cũ: calculateMetrics (load entity + aggregate query) rồi findByRunId lần nữa để lấy size()
+     */
+    @Benchmark
+    public long entityLoadReport() throws SQLException {
+        long[] latencies = loadRun();
+        Arrays.sort(latencies);
+        long p99 = latencies[(int) Math.ceil(0.99 * latencies.length) - 1];
+
+        long aggregates = 0;
+        for (String query : AGGREGATE_QUERIES) {
+            try (PreparedStatement statement = connection.prepareStatement(query)) {
+                statement.setString(1, RUN_ID);
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    aggregates += rs.getLong(1);
+                }
+            }
+        }
+        return p99 + aggregates + loadRun().length;
+    }
+
+    /**
+     * Đường mới: một query window function, không đọc payload / response_body
+     */
+    @Benchmark
+    public long singlePassReport() throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(JpaResultStore.RUN_SUMMARY_SQL)) {
+            statement.setString(1, RUN_ID);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getLong("total_requests") + rs.getLong("p99_latency_ms");
+            }
+        }
+    }
+
+    private long[] loadRun() throws SQLException {
+        long[] latencies = new long[runSize];
+        int size = 0;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT * FROM moderation_results WHERE run_id = ?")) {
+            statement.setString(1, RUN_ID);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    // CompressedTextConverter decode khi load entity
+                    StorageCodec.decode(rs.getBytes("payload"));
+                    StorageCodec.decode(rs.getBytes("response_body"));
+                    latencies[size++] = rs.getLong("latency_ms");
+                }
+            }
+        }
+        return latencies;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RunReportBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
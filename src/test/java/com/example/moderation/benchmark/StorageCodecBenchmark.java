@@ -0,0 +1,159 @@
+package com.example.moderation.benchmark;
+
+import com.example.moderation.util.StorageCodec;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storage codec cho payload / response_body: kích thước (in ra trước khi chạy) và throughput ghi
+ * vào SQLite của format cũ (TEXT pretty-printed) so với blob nén, theo batch 100 row / transaction.
+ *
+ * Chạy: mvn test-compile, sau đó chạy main() của class này với test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageCodecBenchmark {
+
+    private static final int BATCH = 100;
+
+    /**
+     * Response DeepCleer điển hình (body gốc)
+     */
+    static final String RESPONSE = "{\"code\":1100,\"message\":\"Success\",\"requestId\":\"a8b3c1f0e2d94b7a9f3e\","
+            + "\"riskLevel\":\"REJECT\",\"riskLabel1\":\"ad\",\"riskLabel2\":\"contact\",\"riskLabel3\":\"qq\","
+            + "\"riskDescription\":\"Ads: contact\",\"riskDetail\":{\"matchedLists\":[{\"name\":\"Ads\","
+            + "\"words\":[{\"position\":[12,19],\"word\":\"qq12345\"}]}]},\"tokenLabels\":{\"UGC_account_risk\":{}},"
+            + "\"auxInfo\":{\"filteredText\":\"Add me on ****** for a discount\",\"contactResult\":[{\"contactString\":"
+            + "\"qq12345\",\"contactType\":2}]},\"allLabels\":[{\"probability\":0.93,\"riskDescription\":\"Ads: contact\","
+            + "\"riskDetail\":{},\"riskLabel1\":\"ad\",\"riskLabel2\":\"contact\",\"riskLabel3\":\"qq\",\"riskLevel\":\"REJECT\"}],"
+            + "\"businessLabels\":[],\"finalResult\":1,\"resultType\":0}";
+
+    private Path dbFile;
+    private Connection connection;
+    private PreparedStatement insertText;
+    private PreparedStatement insertBlob;
+
+    private String prettyPayload;
+    private String prettyResponse;
+    private String compactPayload;
+    private long sequence;
+
+    @Setup
+    public void setup() throws IOException, SQLException {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("id", "req-000123");
+        request.put("text", "Add me on qq12345 for a discount, sản phẩm này rất tốt, tôi sẽ mua lại");
+        request.put("runId", "run-2024-01-15-a");
+
+        // Format cũ: Gson pretty-printing cho cả payload và response
+        Gson pretty = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
+        prettyPayload = pretty.toJson(request);
+        prettyResponse = pretty.toJson(new Gson().fromJson(RESPONSE, Map.class));
+        compactPayload = new Gson().toJson(request);
+
+        dbFile = Files.createTempFile("storage-codec-bench", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE text_results (id INTEGER PRIMARY KEY, payload TEXT, response_body TEXT)");
+            statement.execute("CREATE TABLE blob_results (id INTEGER PRIMARY KEY, payload BLOB, response_body BLOB)");
+        }
+        connection.commit();
+        insertText = connection.prepareStatement("INSERT INTO text_results (id, payload, response_body) VALUES (?, ?, ?)");
+        insertBlob = connection.prepareStatement("INSERT INTO blob_results (id, payload, response_body) VALUES (?, ?, ?)");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        connection.close();
+        Files.deleteIfExists(dbFile);
+    }
+
+    @Benchmark
+    public byte[] encodeResponse() {
+        return StorageCodec.encode(RESPONSE);
+    }
+
+    @Benchmark
+    public String decodeResponse() {
+        return StorageCodec.decode(StorageCodec.encode(RESPONSE));
+    }
+
+    /**
+     * Format cũ: 100 row TEXT pretty-printed / transaction
+     */
+    @Benchmark
+    public void insertPrettyText() throws SQLException {
+        for (int i = 0; i < BATCH; i++) {
+            insertText.setLong(1, ++sequence);
+            insertText.setString(2, prettyPayload);
+            insertText.setString(3, prettyResponse);
+            insertText.addBatch();
+        }
+        insertText.executeBatch();
+        connection.commit();
+    }
+
+    /**
+     * Format mới: 100 row blob nén / transaction (thời gian nén tính trong benchmark)
+     */
+    @Benchmark
+    public void insertCompressedBlob() throws SQLException {
+        for (int i = 0; i < BATCH; i++) {
+            insertBlob.setLong(1, ++sequence);
+            insertBlob.setBytes(2, StorageCodec.encode(compactPayload));
+            insertBlob.setBytes(3, StorageCodec.encode(RESPONSE));
+            insertBlob.addBatch();
+        }
+        insertBlob.executeBatch();
+        connection.commit();
+    }
+
+    public static void main(String[] args) throws Exception {
+        StorageCodecBenchmark sizes = new StorageCodecBenchmark();
+        sizes.setup();
+        System.out.printf("payload:  pretty %d bytes -> compact+codec %d bytes%n",
+                sizes.prettyPayload.getBytes(StandardCharsets.UTF_8).length,
+                StorageCodec.encode(sizes.compactPayload).length);
+        System.out.printf("response: pretty %d bytes -> raw+codec %d bytes%n",
+                sizes.prettyResponse.getBytes(StandardCharsets.UTF_8).length,
+                StorageCodec.encode(RESPONSE).length);
+        sizes.tearDown();
+
+        new Runner(new OptionsBuilder()
+                .include(StorageCodecBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
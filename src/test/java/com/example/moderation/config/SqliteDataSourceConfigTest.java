@@ -0,0 +1,97 @@
+package com.example.moderation.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SqliteDataSourceConfig (WAL + routing reader / writer theo transaction readOnly)
+ */
+class SqliteDataSourceConfigTest {
+
+    @TempDir
+    Path directory;
+
+    private HikariDataSource writer;
+    private HikariDataSource reader;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    @BeforeEach
+    void setUp() {
+        DataSourceProperties dataSourceProperties = new DataSourceProperties();
+        dataSourceProperties.setUrl("jdbc:sqlite:" + directory.resolve("test.db"));
+        PersistenceConfig persistenceConfig = new PersistenceConfig();
+
+        SqliteDataSourceConfig config = new SqliteDataSourceConfig();
+        writer = config.sqliteWriterDataSource(dataSourceProperties, persistenceConfig);
+        reader = config.sqliteReaderDataSource(dataSourceProperties, persistenceConfig);
+        DataSource dataSource = config.dataSource(writer, reader, dataSourceProperties, persistenceConfig);
+
+        jdbc = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        writeTransaction.executeWithoutResult(status -> {
+            jdbc.execute("CREATE TABLE item (id INTEGER PRIMARY KEY, name TEXT)");
+            jdbc.update("INSERT INTO item (id, name) VALUES (1, 'first')");
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        reader.close();
+        writer.close();
+    }
+
+    @Test
+    void testWalEnabled() {
+        assertEquals("wal", jdbc.queryForObject("PRAGMA journal_mode", String.class));
+        assertEquals("wal", readOnlyTransaction.execute(status ->
+                jdbc.queryForObject("PRAGMA journal_mode", String.class)));
+    }
+
+    @Test
+    void testReadOnlyTransactionUsesReaderPool() {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            assertEquals("first", jdbc.queryForObject("SELECT name FROM item WHERE id = 1", String.class));
+            assertEquals(1, reader.getHikariPoolMXBean().getActiveConnections());
+            assertEquals(0, writer.getHikariPoolMXBean().getActiveConnections());
+
+            assertThrows(DataAccessException.class,
+                    () -> jdbc.update("INSERT INTO item (id, name) VALUES (2, 'second')"));
+        });
+        assertEquals(0, reader.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    void testWriteTransactionUsesSingleWriterConnection() {
+        assertEquals(1, writer.getMaximumPoolSize());
+
+        writeTransaction.executeWithoutResult(status -> {
+            jdbc.update("INSERT INTO item (id, name) VALUES (2, 'second')");
+            assertEquals(1, writer.getHikariPoolMXBean().getActiveConnections());
+            assertEquals(0, reader.getHikariPoolMXBean().getActiveConnections());
+        });
+
+        // Reader thấy dữ liệu writer đã commit
+        int count = readOnlyTransaction.execute(status ->
+                jdbc.queryForObject("SELECT COUNT(*) FROM item", Integer.class));
+        assertEquals(2, count);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.moderation.controller;
+
+import com.example.moderation.dto.HistogramMergeRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for MetricsController (validation của histogram merge)
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MetricsControllerIntegrationTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void testMergeRejectsUnboundedDistributionTicks() {
+        HistogramMergeRequest request = HistogramMergeRequest.builder()
+                .histograms(List.of())
+                .ticksPerHalfDistance(1_000_000)
+                .build();
+
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                "/api/v1/metrics/histograms/merge", request, String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void testMergeWithinTickBound() {
+        HistogramMergeRequest request = HistogramMergeRequest.builder()
+                .histograms(List.of())
+                .ticksPerHalfDistance(5)
+                .build();
+
+        ResponseEntity<Map> response = restTemplate.postForEntity(
+                "/api/v1/metrics/histograms/merge", request, Map.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(0, ((Number) response.getBody().get("totalCount")).intValue());
+    }
+}
@@ -8,10 +8,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.TestPropertySource;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
@@ -165,4 +169,32 @@ class ModerationControllerIntegrationTest {
         // Verify all saved
         assertEquals(5, resultRepository.count());
     }
+
+    @Test
+    void testModerateStreamEndpoint() {
+        String first = UUID.randomUUID().toString();
+        String second = UUID.randomUUID().toString();
+        String body = "{\"id\":\"" + first + "\",\"text\":\"Clean message\"}\n"
+                + "{not json\n"
+                + "{\"id\":\"" + second + "\",\"text\":\"SPAM message\"}\n";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                "/api/v1/moderate/stream?concurrency=2",
+                new HttpEntity<>(body, headers),
+                String.class
+        );
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        List<String> lines = Arrays.stream(response.getBody().split("\n"))
+                .filter(line -> !line.isBlank())
+                .toList();
+        assertEquals(3, lines.size());
+        assertTrue(lines.stream().anyMatch(line -> line.contains(first) && line.contains("\"success\":true")));
+        assertTrue(lines.stream().anyMatch(line -> line.contains(second) && line.contains("\"success\":true")));
+        assertTrue(lines.stream().anyMatch(line -> line.contains("Dòng 2: ")));
+        assertEquals(2, resultRepository.count());
+    }
 }
@@ -0,0 +1,71 @@
+package com.example.moderation.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TimeOrderedIdGenerator
+ */
+class TimeOrderedIdGeneratorTest {
+
+    @Test
+    void testMonotonicBeyondSequenceCapacity() {
+        // Nhiều hơn 4096 ID trong vài millisecond: phải mượn millisecond kế tiếp mà vẫn tăng dần
+        int count = 5 * (1 << TimeOrderedIdGenerator.SEQUENCE_BITS);
+        long startMs = System.currentTimeMillis();
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = TimeOrderedIdGenerator.nextId();
+        }
+        long endMs = System.currentTimeMillis();
+
+        for (int i = 1; i < count; i++) {
+            assertTrue(ids[i] > ids[i - 1], "ID không tăng tại vị trí " + i);
+        }
+
+        long firstMs = (ids[0] >>> TimeOrderedIdGenerator.SEQUENCE_BITS) + TimeOrderedIdGenerator.EPOCH_MS;
+        long lastMs = (ids[count - 1] >>> TimeOrderedIdGenerator.SEQUENCE_BITS) + TimeOrderedIdGenerator.EPOCH_MS;
+        assertTrue(firstMs >= startMs, "Phần thời gian không được chậm hơn đồng hồ");
+        // Mượn tối đa count / 4096 millisecond so với đồng hồ
+        assertTrue(lastMs <= endMs + count / (1 << TimeOrderedIdGenerator.SEQUENCE_BITS),
+                "Phần thời gian vượt quá số millisecond được mượn");
+    }
+
+    @Test
+    void testUniqueAcrossThreads() throws Exception {
+        int threads = 4;
+        int perThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> futures = executor.invokeAll(Collections.nCopies(threads, () -> {
+                long[] ids = new long[perThread];
+                for (int i = 0; i < perThread; i++) {
+                    ids[i] = TimeOrderedIdGenerator.nextId();
+                }
+                return ids;
+            }));
+
+            Set<Long> all = new HashSet<>();
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get();
+                for (int i = 1; i < ids.length; i++) {
+                    assertTrue(ids[i] > ids[i - 1]);
+                }
+                Arrays.stream(ids).forEach(all::add);
+            }
+            assertEquals(threads * perThread, all.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
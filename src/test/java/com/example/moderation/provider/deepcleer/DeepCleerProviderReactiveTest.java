@@ -0,0 +1,152 @@
+package com.example.moderation.provider.deepcleer;
+
+import com.example.moderation.provider.ModerationException;
+import com.example.moderation.provider.ModerationResult;
+import com.google.gson.Gson;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DeepCleerProvider.moderateTextReactive với ExchangeFunction giả lập DeepCleer API
+ * (retry, circuit breaker, error code của DeepCleer)
+ */
+class DeepCleerProviderReactiveTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private static final String PASS_BODY = """
+            {"code":1100,"message":"Success","requestId":"req-1","riskLevel":"PASS",
+             "riskLabel1":"normal","riskLabel2":"","riskLabel3":"","riskDescription":"",
+             "allLabels":[],"businessLabels":[],"finalResult":1,"resultType":0}
+            """;
+
+    private static final String QPS_LIMIT_BODY = """
+            {"code":1901,"message":"QPS limit exceeded","requestId":"req-1"}
+            """;
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    void testRetryThenSuccess() {
+        DeepCleerProvider provider = provider(3, 10, responses(
+                error(HttpStatus.SERVICE_UNAVAILABLE), error(HttpStatus.SERVICE_UNAVAILABLE), ok(PASS_BODY)));
+
+        ModerationResult result = provider.moderateTextReactive("hello", Map.of()).block(TIMEOUT);
+
+        assertNotNull(result);
+        assertEquals("deepcleer", result.getProviderName());
+        assertEquals("LOW", result.getRiskLevel());
+        assertEquals(3, calls.get(), "2 lần lỗi được retry");
+        assertTrue(provider.isHealthy());
+    }
+
+    @Test
+    void testRetryExhaustedFails() {
+        DeepCleerProvider provider = provider(2, 10, responses(
+                error(HttpStatus.SERVICE_UNAVAILABLE), error(HttpStatus.SERVICE_UNAVAILABLE), ok(PASS_BODY)));
+
+        ModerationException error = assertThrows(ModerationException.class,
+                () -> provider.moderateTextReactive("hello", Map.of()).block(TIMEOUT));
+
+        assertEquals("deepcleer", error.getProviderName());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testOpenCircuitBreakerSkipsApi() {
+        // Window 2 call, retry 1 lần: 2 request lỗi mở circuit breaker
+        DeepCleerProvider provider = provider(1, 10, responses(error(HttpStatus.INTERNAL_SERVER_ERROR)));
+        for (int i = 0; i < 2; i++) {
+            assertThrows(ModerationException.class,
+                    () -> provider.moderateTextReactive("hello", Map.of()).block(TIMEOUT));
+        }
+        assertFalse(provider.isHealthy());
+        int callsBeforeOpen = calls.get();
+
+        ModerationException error = assertThrows(ModerationException.class,
+                () -> provider.moderateTextReactive("hello", Map.of()).block(TIMEOUT));
+
+        assertInstanceOf(CallNotPermittedException.class, error.getCause());
+        assertEquals("deepcleer", error.getProviderName());
+        assertEquals(callsBeforeOpen, calls.get(), "Circuit breaker mở: không gọi API");
+    }
+
+    @Test
+    void testErrorCodeSurvivesToModerationException() {
+        DeepCleerProvider provider = provider(3, 10, responses(ok(QPS_LIMIT_BODY)));
+
+        ModerationException error = assertThrows(ModerationException.class,
+                () -> provider.moderateTextReactive("hello", Map.of()).block(TIMEOUT));
+
+        assertEquals("deepcleer", error.getProviderName());
+        assertEquals(1901, error.getErrorCode(), "Rate limiter cần error code 1901");
+        assertTrue(error.getMessage().contains("QPS limit exceeded"));
+    }
+
+    private DeepCleerProvider provider(int maxAttempts, long backoffMs, ExchangeFunction exchange) {
+        DeepCleerConfig config = new DeepCleerConfig();
+        config.setAccessKey("access-key");
+        config.setAppId("app");
+        config.setEventId("article");
+        config.setBaseUrl("http://deepcleer.test");
+        config.setTextModerationEndpoint("/text/v4");
+        config.setReadTimeoutMs(1000);
+        config.setEnabled(true);
+
+        DeepCleerConfig.RetryConfig retry = new DeepCleerConfig.RetryConfig();
+        retry.setMaxAttempts(maxAttempts);
+        retry.setBackoffDelayMs(backoffMs);
+        config.setRetry(retry);
+
+        DeepCleerConfig.CircuitBreakerConfig circuitBreaker = new DeepCleerConfig.CircuitBreakerConfig();
+        circuitBreaker.setSlidingWindowSize(2);
+        circuitBreaker.setFailureRateThreshold(50);
+        config.setCircuitBreaker(circuitBreaker);
+
+        Gson gson = new Gson();
+        return new DeepCleerProvider(config, WebClient.builder().exchangeFunction(exchange), gson, gson);
+    }
+
+    /**
+     * Trả lần lượt các reply; hết danh sách thì lặp lại reply cuối.
+     * Mỗi lần gọi tạo ClientResponse mới vì body chỉ đọc được một lần.
+     */
+    private ExchangeFunction responses(Reply... replies) {
+        Deque<Reply> queue = new ArrayDeque<>(List.of(replies));
+        return request -> {
+            calls.incrementAndGet();
+            Reply reply = queue.size() > 1 ? queue.poll() : queue.peek();
+            // DeepCleer trả Content-Type: text/plain dù body là JSON
+            return Mono.just(ClientResponse.create(reply.status())
+                    .header(HttpHeaders.CONTENT_TYPE, "text/plain")
+                    .body(reply.body())
+                    .build());
+        };
+    }
+
+    private static Reply ok(String body) {
+        return new Reply(HttpStatus.OK, body);
+    }
+
+    private static Reply error(HttpStatus status) {
+        return new Reply(status, "upstream error");
+    }
+
+    private record Reply(HttpStatus status, String body) {
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.moderation.provider.deepcleer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DeepCleerRequestEncoder: output phải tương đương Gson serialize DeepCleerRequest
+ */
+class DeepCleerRequestEncoderTest {
+
+    private final Gson gson = new Gson();
+    private final DeepCleerRequestEncoder encoder = new DeepCleerRequestEncoder("access-key", "app", "article", gson);
+
+    @Test
+    void testDefaultRequestMatchesGson() {
+        String text = "Xin chào \"world\" \\ \n\t\u0001 <b>&'   😀";
+
+        assertEquivalent(DeepCleerRequest.builder()
+                        .accessKey("access-key").appId("app").eventId("article").type("TEXTRISK")
+                        .data(DeepCleerRequest.DataField.builder().text(text).tokenId("anonymous_user").build())
+                        .build(),
+                encoder.encode(text, null));
+    }
+
+    @Test
+    void testOptionalFieldsAndCustomType() {
+        Map<String, Object> options = new HashMap<>();
+        options.put("userId", "user-1");
+        options.put("ip", "10.0.0.1");
+        options.put("nickname", "Nhân");
+        options.put("type", "FRAUD");
+        options.put("extra", Map.of("topic", "news"));
+
+        assertEquivalent(DeepCleerRequest.builder()
+                        .accessKey("access-key").appId("app").eventId("article").type("FRAUD")
+                        .data(DeepCleerRequest.DataField.builder()
+                                .text("hello").tokenId("user-1").ip("10.0.0.1").nickname("Nhân")
+                                .extra(Map.of("topic", "news"))
+                                .build())
+                        .build(),
+                encoder.encode("hello", options));
+    }
+
+    @Test
+    void testBufferReusedAcrossCalls() {
+        byte[] longBody = encoder.encode("x".repeat(100_000), null);
+        byte[] shortBody = encoder.encode("short", null);
+
+        assertTrue(longBody.length > 100_000);
+        assertEquals("short", JsonParser.parseString(new String(shortBody, StandardCharsets.UTF_8))
+                .getAsJsonObject().getAsJsonObject("data").get("text").getAsString());
+    }
+
+    private void assertEquivalent(DeepCleerRequest expected, byte[] actual) {
+        assertEquals(JsonParser.parseString(gson.toJson(expected)),
+                JsonParser.parseString(new String(actual, StandardCharsets.UTF_8)));
+    }
+}
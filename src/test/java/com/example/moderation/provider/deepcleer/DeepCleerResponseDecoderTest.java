@@ -0,0 +1,73 @@
+package com.example.moderation.provider.deepcleer;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DeepCleerResponseDecoder và DeepCleerDetails
+ */
+class DeepCleerResponseDecoderTest {
+
+    private static final String REJECT_BODY = """
+            {"code":1100,"message":"Success","requestId":"req-1","riskLevel":"REJECT",
+             "riskLabel1":"ad","riskLabel2":"contact","riskLabel3":"","riskDescription":"Ads",
+             "riskDetail":{"matchedLists":[{"name":"Ads","words":[{"position":[0,2],"word":"qq"}]}]},
+             "tokenLabels":{"UGC_account_risk":{}},
+             "auxInfo":{"filteredText":"**12345","contactResult":[{"contactString":"qq12345","contactType":2}]},
+             "allLabels":[{"probability":0.52,"riskLevel":"REVIEW","riskLabel1":"ad"},
+                          {"probability":0.93,"riskLevel":"REJECT","riskLabel1":"contact"}],
+             "businessLabels":[],"finalResult":1,"resultType":0}
+            """;
+
+    @Test
+    void testDecodesDecisionFields() throws IOException {
+        byte[] body = REJECT_BODY.getBytes(StandardCharsets.UTF_8);
+        DeepCleerDecision decision = DeepCleerResponseDecoder.decode(body);
+
+        assertEquals(1100, decision.getCode());
+        assertEquals("REJECT", decision.getRiskLevel());
+        assertEquals("ad", decision.getRiskLabel1());
+        assertEquals("", decision.getRiskLabel3());
+        assertEquals(0.93, decision.getMaxProbability());
+        assertEquals(2, decision.getAllLabelsCount());
+        assertEquals(1, decision.getFinalResult());
+        assertSame(body, decision.getRawBody());
+    }
+
+    @Test
+    void testErrorResponse() throws IOException {
+        DeepCleerDecision decision = DeepCleerResponseDecoder.decode(
+                "{\"code\":1901,\"message\":\"QPS limit\",\"requestId\":null}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(1901, decision.getCode());
+        assertNull(decision.getRequestId());
+        assertNull(decision.getMaxProbability());
+    }
+
+    @Test
+    void testMalformedBody() {
+        assertThrows(IOException.class, () -> DeepCleerResponseDecoder.decode("not json".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testDetailsDecodedLazily() throws IOException {
+        DeepCleerDetails details = new DeepCleerDetails(
+                DeepCleerResponseDecoder.decode(REJECT_BODY.getBytes(StandardCharsets.UTF_8)), new Gson());
+
+        assertEquals("req-1", details.get("requestId"));
+        assertEquals(2, details.get("allLabelsCount"));
+        assertFalse(details.isDecoded());
+
+        Object allLabels = details.get("allLabels");
+        assertTrue(details.isDecoded());
+        assertEquals(2, ((List<?>) allLabels).size());
+        assertNotNull(details.get("auxInfo"));
+        assertNotNull(details.get("riskDetail"));
+    }
+}
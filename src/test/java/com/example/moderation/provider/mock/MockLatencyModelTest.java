@@ -0,0 +1,136 @@
+package com.example.moderation.provider.mock;
+
+import com.example.moderation.config.PersistenceConfig;
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.store.MappedLogResultStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MockLatencyModel
+ */
+class MockLatencyModelTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedLogResultStore store;
+    private final MockSimulationConfig config = new MockSimulationConfig();
+
+    @BeforeEach
+    void setUp() {
+        PersistenceConfig persistenceConfig = new PersistenceConfig();
+        persistenceConfig.getMappedLog().setDirectory(directory.toString());
+        persistenceConfig.getMappedLog().setSegmentSizeMb(1);
+        store = new MappedLogResultStore(persistenceConfig, new SimpleMeterRegistry(), false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void testUniformWithinBounds() {
+        config.setDistribution("uniform");
+        config.setMinLatencyMs(20L);
+        config.setMaxLatencyMs(40L);
+        MockLatencyModel model = new MockLatencyModel(config, store);
+
+        for (int i = 0; i < 10_000; i++) {
+            long sample = model.sampleMs();
+            assertTrue(sample >= 20 && sample < 40, "Out of range: " + sample);
+        }
+    }
+
+    @Test
+    void testLogNormalMedianAndCap() {
+        config.setDistribution("log-normal");
+        config.setMedianLatencyMs(80.0);
+        config.setSigma(0.5);
+        config.setMaxLatencyMs(100L);
+        MockLatencyModel model = new MockLatencyModel(config, store);
+
+        long[] samples = new long[20_001];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = model.sampleMs();
+        }
+        Arrays.sort(samples);
+
+        long median = samples[samples.length / 2];
+        assertTrue(median >= 72 && median <= 88, "Median too far from 80: " + median);
+        assertTrue(samples[samples.length - 1] <= 1000, "Capped at max-latency-ms x 10");
+        assertTrue(samples[(int) (samples.length * 0.99)] > 200, "Heavy tail expected");
+    }
+
+    @Test
+    void testReplaySamplesStoredProviderLatencies() {
+        store.save(result("req-1", "run-x", 7, true, false));
+        store.save(result("req-2", "run-x", 9, true, false));
+        store.save(result("req-3", "run-x", 500, false, false)); // lỗi: không replay
+        store.save(result("req-4", "run-x", 1, true, true));     // cache hit: không replay
+
+        config.setDistribution("replay");
+        config.setReplayRunIds(List.of("run-x"));
+        MockLatencyModel model = new MockLatencyModel(config, store);
+        model.loadReplaySamples();
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(Set.of(7L, 9L).contains(model.sampleMs()));
+        }
+    }
+
+    @Test
+    void testReplayFallsBackToUniform() {
+        config.setDistribution("replay");
+        config.setMinLatencyMs(20L);
+        config.setMaxLatencyMs(40L);
+
+        // Chưa load (ứng dụng chưa sẵn sàng)
+        MockLatencyModel notLoaded = new MockLatencyModel(config, store);
+        assertUniform(notLoaded);
+
+        // Không có replay-run-ids
+        MockLatencyModel noRuns = new MockLatencyModel(config, store);
+        noRuns.loadReplaySamples();
+        assertUniform(noRuns);
+
+        // Run không có dữ liệu
+        config.setReplayRunIds(List.of("run-empty"));
+        MockLatencyModel emptyRun = new MockLatencyModel(config, store);
+        emptyRun.loadReplaySamples();
+        assertUniform(emptyRun);
+    }
+
+    private static void assertUniform(MockLatencyModel model) {
+        for (int i = 0; i < 1000; i++) {
+            long sample = model.sampleMs();
+            assertTrue(sample >= 20 && sample < 40, "Out of range: " + sample);
+        }
+    }
+
+    private static ModerationResult result(String requestId, String runId, long latencyMs,
+                                           boolean success, boolean cached) {
+        return ModerationResult.builder()
+                .requestId(requestId)
+                .runId(runId)
+                .statusCode(success ? 200 : 500)
+                .latencyMs(latencyMs)
+                .timestamp(LocalDateTime.now())
+                .attempts(1)
+                .success(success)
+                .cached(cached)
+                .build();
+    }
+}
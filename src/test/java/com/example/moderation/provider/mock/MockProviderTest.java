@@ -0,0 +1,113 @@
+package com.example.moderation.provider.mock;
+
+import com.example.moderation.provider.ModerationException;
+import com.example.moderation.provider.ModerationResult;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MockProvider (inject lỗi, hoàn thành ngoài timer thread)
+ */
+class MockProviderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MockSimulationConfig config = new MockSimulationConfig();
+    private MockProvider provider;
+
+    @AfterEach
+    void tearDown() {
+        if (provider != null) {
+            provider.shutdown();
+        }
+    }
+
+    @Test
+    void testResultByKeyword() {
+        provider = provider(Map.of());
+
+        ModerationResult spam = provider.moderateText("this is a SCAM offer", Map.of());
+        assertEquals("HIGH", spam.getRiskLevel());
+        assertEquals(List.of("SPAM"), spam.getLabels());
+        assertTrue(spam.getLatencyMs() >= 5);
+
+        assertEquals("LOW", provider.moderateText("hello", Map.of()).getRiskLevel());
+    }
+
+    @Test
+    void testErrorRateInjection() {
+        provider = provider(Map.of(1901, 1.0));
+
+        ModerationException error = assertThrows(ModerationException.class,
+                () -> provider.moderateText("hello", Map.of()));
+        assertEquals(1901, error.getErrorCode());
+        assertEquals(1.0, meterRegistry.get("moderation.mock.injected.errors").tag("code", "1901").counter().count());
+    }
+
+    @Test
+    void testErrorRateIsApproximatelyRespected() {
+        provider = provider(Map.of(1903, 0.2));
+
+        List<CompletableFuture<ModerationResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            futures.add(provider.moderateTextAsync("hello", Map.of(), null));
+        }
+        long failed = futures.stream().filter(future -> {
+            try {
+                future.join();
+                return false;
+            } catch (CompletionException e) {
+                return e.getCause() instanceof ModerationException moderation && moderation.getErrorCode() == 1903;
+            }
+        }).count();
+
+        assertTrue(failed > 300 && failed < 500, "Expected ~20% failures: " + failed);
+    }
+
+    @Test
+    void testBatchErrorAppliesToWholeBatch() {
+        provider = provider(Map.of(1901, 1.0));
+
+        List<CompletableFuture<ModerationResult>> futures =
+                provider.moderateTextBatchAsync(List.of("a", "b", "c"), Map.of(), null);
+
+        for (CompletableFuture<ModerationResult> future : futures) {
+            CompletionException error = assertThrows(CompletionException.class, future::join);
+            assertEquals(1901, ((ModerationException) error.getCause()).getErrorCode());
+        }
+    }
+
+    @Test
+    void testCompletionRunsOffTimerThread() throws Exception {
+        provider = provider(Map.of());
+
+        CompletableFuture<String> thread = provider.moderateTextAsync("hello", Map.of(), null)
+                .thenApply(result -> Thread.currentThread().getName());
+        List<CompletableFuture<String>> batchThreads = provider.moderateTextBatchAsync(List.of("a", "b"), Map.of(), null)
+                .stream()
+                .map(future -> future.thenApply(result -> Thread.currentThread().getName()))
+                .toList();
+
+        assertTrue(thread.get(5, TimeUnit.SECONDS).startsWith("mock-provider-complete-"));
+        for (CompletableFuture<String> batchThread : batchThreads) {
+            assertTrue(batchThread.get(5, TimeUnit.SECONDS).startsWith("mock-provider-complete-"));
+        }
+    }
+
+    private MockProvider provider(Map<Integer, Double> errorRates) {
+        config.setMinLatencyMs(5L);
+        config.setMaxLatencyMs(10L);
+        config.setErrorRates(errorRates);
+        return new MockProvider(new Gson(), config, new MockLatencyModel(config, null), meterRegistry);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.moderation.service;
+
+import com.example.moderation.provider.ModerationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AdaptiveConcurrencyLimiter
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new AdaptiveConcurrencyLimiter(meterRegistry, true, 2, 1, 10, 10, 1000, 2.0, 0.5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        limiter.shutdown();
+    }
+
+    @Test
+    void testCancelIsForwardedAndNotCountedAsFailure() {
+        CompletableFuture<String> underlying = new CompletableFuture<>();
+        CompletableFuture<String> result = limiter.executeAsync("p", () -> underlying);
+        assertEquals(1.0, inFlight());
+
+        assertTrue(result.cancel(true));
+
+        assertTrue(underlying.isCancelled(), "Cancel phải tới được call thật");
+        assertEquals(0.0, inFlight());
+        assertEquals(2.0, limiter.currentLimit("p"), "Call bị cancel không phải mẫu AIMD");
+    }
+
+    @Test
+    void testPermitHeldUntilUnderlyingCallEnds() {
+        // Call blocking: cancel không dừng được call đang chạy
+        CompletableFuture<String> underlying = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return false;
+            }
+        };
+        CompletableFuture<String> result = limiter.executeAsync("p", () -> underlying);
+        result.cancel(true);
+
+        assertTrue(result.isCancelled());
+        assertEquals(1.0, inFlight(), "Permit chỉ được trả khi call thật kết thúc");
+
+        underlying.complete("done");
+        assertEquals(0.0, inFlight());
+    }
+
+    @Test
+    void testQueuedCallStartsWhenPermitReleased() {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        limiter.executeAsync("p", () -> first);
+        limiter.executeAsync("p", () -> second);
+
+        CompletableFuture<String> queued = limiter.executeAsync("p", () -> CompletableFuture.completedFuture("third"));
+        assertFalse(queued.isDone());
+
+        first.complete("first");
+        assertEquals("third", queued.join());
+    }
+
+    @Test
+    void testCancelWhileQueuedReturnsPermit() {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        limiter.executeAsync("p", () -> first);
+        limiter.executeAsync("p", () -> second);
+
+        boolean[] started = new boolean[1];
+        CompletableFuture<String> queued = limiter.executeAsync("p", () -> {
+            started[0] = true;
+            return CompletableFuture.completedFuture("queued");
+        });
+        assertEquals(1.0, queueLength());
+        assertTrue(queued.cancel(true));
+        assertEquals(0.0, queueLength(), "Waiter bị cancel phải rời queue");
+
+        first.complete("first");
+        second.complete("second");
+
+        assertFalse(started[0], "Call bị cancel khi còn chờ không được chạy");
+        assertEquals(0.0, inFlight());
+    }
+
+    @Test
+    void testCancelAfterPermitHandedOverReturnsPermit() {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        limiter.executeAsync("p", () -> first);
+        limiter.executeAsync("p", () -> second);
+
+        CompletableFuture<String> queuedCall = new CompletableFuture<>();
+        CompletableFuture<String> queued = limiter.executeAsync("p", () -> queuedCall);
+        first.complete("first");
+        assertEquals(2.0, inFlight(), "Permit đã được trao cho call đang chờ");
+
+        queued.cancel(true);
+        assertTrue(queuedCall.isCancelled(), "Cancel phải tới được call đã bắt đầu");
+        second.complete("second");
+
+        assertEquals(0.0, inFlight());
+        assertEquals(2.0, limiter.currentLimit("p"));
+    }
+
+    @Test
+    void testFailuresWithoutRttSampleDecreaseLimit() throws InterruptedException {
+        limiter.shutdown();
+        limiter = new AdaptiveConcurrencyLimiter(meterRegistry, true, 20, 1, 50, 10, 1000, 2.0, 0.5);
+
+        for (int i = 0; i < 3; i++) {
+            CompletableFuture<String> call = new CompletableFuture<>();
+            CompletableFuture<String> result = limiter.executeAsync("failing", () -> call);
+            Thread.sleep(2);
+            call.completeExceptionally(new ModerationException("failing", null, "down"));
+            assertTrue(result.isCompletedExceptionally());
+        }
+
+        assertTrue(limiter.currentLimit("failing") < 20, "Limit phải giảm khi provider lỗi ngay từ đầu");
+    }
+
+    @Test
+    void testSynchronousFailureReturnsFailedFuture() {
+        CompletableFuture<String> result = limiter.executeAsync("p", () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(0.0, inFlight());
+    }
+
+    private double queueLength() {
+        return meterRegistry.get("moderation.concurrency.queue").tag("provider", "p").gauge().value();
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("moderation.concurrency.inflight").tag("provider", "p").gauge().value();
+    }
+}
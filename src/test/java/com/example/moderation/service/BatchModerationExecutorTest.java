@@ -0,0 +1,212 @@
+package com.example.moderation.service;
+
+import com.example.moderation.dto.ModerationRequest;
+import com.example.moderation.dto.ModerationResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BatchModerationExecutor (thứ tự, giới hạn concurrency, cancel trả permit)
+ */
+class BatchModerationExecutorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testResponsesKeepRequestOrder() {
+        // Item đầu chậm nhất: hoàn thành theo thứ tự ngược với request
+        StubModerationService service = new StubModerationService(request -> {
+            sleep(50 - Integer.parseInt(request.getId().substring(4)) * 5L);
+            return response(request);
+        });
+        BatchModerationExecutor batch = new BatchModerationExecutor(service, executor, registry);
+
+        List<ModerationResponse> responses = batch.moderateAll(requests(10), 10);
+
+        assertEquals(10, responses.size());
+        for (int i = 0; i < responses.size(); i++) {
+            assertEquals("req-" + i, responses.get(i).getRequestId());
+        }
+        assertEquals(0.0, inFlight());
+    }
+
+    @Test
+    void testConcurrencyCap() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        StubModerationService service = new StubModerationService(request -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(10);
+            running.decrementAndGet();
+            return response(request);
+        });
+        BatchModerationExecutor batch = new BatchModerationExecutor(service, executor, registry);
+
+        List<ModerationResponse> responses = batch.moderateAll(requests(30), 3);
+
+        assertEquals(30, responses.size());
+        assertTrue(maxRunning.get() <= 3, "Tối đa 3 item chạy đồng thời, thực tế " + maxRunning.get());
+        assertEquals(0.0, inFlight());
+        assertEquals(0.0, registry.get("moderation.batch.active").gauge().value());
+    }
+
+    @Test
+    void testCancelBeforeStartReturnsPermit() throws Exception {
+        // Executor 1 thread đang bận: item mới nằm trong queue
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        CountDownLatch blocker = new CountDownLatch(1);
+        single.execute(() -> await(blocker));
+        try {
+            AtomicInteger calls = new AtomicInteger();
+            StubModerationService service = new StubModerationService(request -> {
+                calls.incrementAndGet();
+                return response(request);
+            });
+            BatchModerationExecutor batch = new BatchModerationExecutor(service, single, registry);
+            Semaphore permits = new Semaphore(2);
+
+            CompletableFuture<ModerationResponse> future = batch.submit(requests(1).get(0), permits);
+            assertEquals(1.0, inFlight());
+            assertEquals(1, permits.availablePermits());
+
+            assertTrue(future.cancel(false));
+
+            assertEquals(0.0, inFlight(), "Item bị cancel trước khi chạy không còn tính là in-flight");
+            assertEquals(2, permits.availablePermits(), "Permit được trả lại");
+
+            blocker.countDown();
+            single.shutdown();
+            assertTrue(single.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals(0, calls.get(), "Task đã cancel không gọi provider");
+            assertEquals(0.0, inFlight(), "Không trả permit hai lần");
+            assertEquals(2, permits.availablePermits());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCancelWhileRunningKeepsPermitUntilDone() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        StubModerationService service = new StubModerationService(request -> {
+            started.countDown();
+            await(finish);
+            return response(request);
+        });
+        BatchModerationExecutor batch = new BatchModerationExecutor(service, executor, registry);
+        Semaphore permits = new Semaphore(1);
+
+        CompletableFuture<ModerationResponse> future = batch.submit(requests(1).get(0), permits);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        future.cancel(false);
+
+        assertEquals(0, permits.availablePermits(), "Item vẫn đang chạy: chưa trả permit");
+        assertEquals(1.0, inFlight());
+
+        finish.countDown();
+        assertTrue(permits.tryAcquire(5, TimeUnit.SECONDS));
+        assertEquals(0.0, inFlight());
+    }
+
+    @Test
+    void testFailedItemCancelsQueuedItems() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        StubModerationService service = new StubModerationService(request -> {
+            calls.incrementAndGet();
+            if (request.getId().equals("req-0")) {
+                throw new IllegalStateException("boom");
+            }
+            sleep(20);
+            return response(request);
+        });
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            BatchModerationExecutor batch = new BatchModerationExecutor(service, single, registry);
+
+            assertThrows(RuntimeException.class, () -> batch.moderateAll(requests(5), 5));
+
+            single.shutdown();
+            assertTrue(single.awaitTermination(5, TimeUnit.SECONDS));
+            // Item kế tiếp có thể đã được worker lấy trước khi kịp cancel
+            assertTrue(calls.get() < 5, "Các item còn trong queue bị cancel, không chạy");
+            assertEquals(0.0, inFlight());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    private double inFlight() {
+        return registry.get("moderation.batch.inflight").gauge().value();
+    }
+
+    private static List<ModerationRequest> requests(int count) {
+        List<ModerationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(ModerationRequest.builder().id("req-" + i).text("text " + i).build());
+        }
+        return requests;
+    }
+
+    private static ModerationResponse response(ModerationRequest request) {
+        return ModerationResponse.builder()
+                .requestId(request.getId())
+                .riskLevel("LOW")
+                .success(true)
+                .build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * ContentModerationService chỉ với moderateContent, các dependency không được dùng
+     */
+    private static class StubModerationService extends ContentModerationService {
+
+        private final Function<ModerationRequest, ModerationResponse> handler;
+
+        StubModerationService(Function<ModerationRequest, ModerationResponse> handler) {
+            super(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+            this.handler = handler;
+        }
+
+        @Override
+        public ModerationResponse moderateContent(ModerationRequest request) {
+            return handler.apply(request);
+        }
+    }
+}
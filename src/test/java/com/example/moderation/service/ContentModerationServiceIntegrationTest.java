@@ -9,8 +9,11 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.UUID;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -31,6 +34,9 @@ class ContentModerationServiceIntegrationTest {
     @Autowired
     private ModerationResultRepository resultRepository;
 
+    @Autowired
+    private RequestIdIndex requestIdIndex;
+
     @AfterEach
     void cleanup() {
         // Clean up test data after each test
@@ -174,4 +180,25 @@ class ContentModerationServiceIntegrationTest {
         assertNotNull(response.getLatencyMs());
         assertNotNull(response.getSuccess());
     }
+
+    @Test
+    void testCancelledReactiveRequestReleasesId() throws InterruptedException {
+        ModerationRequest request = ModerationRequest.builder()
+                .id(UUID.randomUUID().toString())
+                .text("Cancelled message " + UUID.randomUUID())
+                .runId("cancel-test")
+                .build();
+
+        // Mock provider trả lời sau >= 50ms: request bị cancel (như async timeout) khi ID đã được nhận
+        ModerationResponse response = moderationService.moderateContentReactive(request)
+                .timeout(Duration.ofMillis(25))
+                .onErrorResume(TimeoutException.class, e -> Mono.empty())
+                .block();
+        assertNull(response);
+
+        Thread.sleep(300);
+        assertFalse(resultRepository.existsByRequestId(request.getId()), "Request bị cancel không lưu kết quả");
+        assertTrue(requestIdIndex.tryAccept(request.getId()), "Retry với cùng ID không được bị coi là duplicate");
+        requestIdIndex.release(request.getId());
+    }
 }
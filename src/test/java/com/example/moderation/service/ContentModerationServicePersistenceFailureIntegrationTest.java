@@ -0,0 +1,156 @@
+package com.example.moderation.service;
+
+import com.example.moderation.dto.ModerationRequest;
+import com.example.moderation.dto.ModerationResponse;
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.repository.ModerationResultRepository;
+import com.example.moderation.store.JpaResultStore;
+import com.example.moderation.store.ResultStore;
+import com.example.moderation.store.RunSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for ContentModerationService khi store không ghi được kết quả (write-behind tắt)
+ */
+@SpringBootTest
+class ContentModerationServicePersistenceFailureIntegrationTest {
+
+    private static final String FAILING_PREFIX = "fail-";
+
+    @Autowired
+    private ContentModerationService moderationService;
+
+    @Autowired
+    private RunAggregates runAggregates;
+
+    @Autowired
+    private RequestIdIndex requestIdIndex;
+
+    @Autowired
+    private ModerationResultRepository resultRepository;
+
+    @Test
+    void testFailedSaveCountsRequestOnceAndReleasesId() {
+        String runId = "persist-fail-" + UUID.randomUUID();
+        ModerationRequest request = ModerationRequest.builder()
+                .id(FAILING_PREFIX + UUID.randomUUID())
+                .text("Hello, this is a clean message")
+                .runId(runId)
+                .build();
+
+        ModerationResponse response = moderationService.moderateContent(request);
+
+        assertFalse(response.getSuccess());
+        assertNotNull(response.getErrorMessage());
+        assertFalse(resultRepository.existsByRequestId(request.getId()));
+        assertEquals(1, runAggregates.find(runId).getCount(), "Request chỉ được đếm một lần trong aggregate");
+        assertTrue(requestIdIndex.tryAccept(request.getId()), "ID không được lưu phải được release để retry");
+        requestIdIndex.release(request.getId());
+    }
+
+    @Test
+    void testFailedSaveOnReactivePath() {
+        String runId = "persist-fail-" + UUID.randomUUID();
+        ModerationRequest request = ModerationRequest.builder()
+                .id(FAILING_PREFIX + UUID.randomUUID())
+                .text("Hello, this is a clean message")
+                .runId(runId)
+                .build();
+
+        ModerationResponse response = moderationService.moderateContentReactive(request).block();
+
+        assertFalse(response.getSuccess());
+        assertEquals(1, runAggregates.find(runId).getCount());
+    }
+
+    /**
+     * Store ném lỗi khi ghi các row có request ID bắt đầu bằng "fail-", còn lại chuyển cho JpaResultStore
+     */
+    @TestConfiguration
+    static class FailingStoreConfig {
+
+        @Bean
+        @Primary
+        ResultStore failingResultStore(JpaResultStore delegate) {
+            return new ResultStore() {
+                @Override
+                public void save(ModerationResult result) {
+                    failIfMarked(result);
+                    delegate.save(result);
+                }
+
+                @Override
+                public void saveAll(List<ModerationResult> results) {
+                    results.forEach(this::failIfMarked);
+                    delegate.saveAll(results);
+                }
+
+                private void failIfMarked(ModerationResult result) {
+                    if (result.getRequestId().startsWith(FAILING_PREFIX)) {
+                        throw new IllegalStateException("database is locked");
+                    }
+                }
+
+                @Override
+                public boolean existsByRequestId(String requestId) {
+                    return delegate.existsByRequestId(requestId);
+                }
+
+                @Override
+                public Optional<ModerationResult> findByRequestId(String requestId) {
+                    return delegate.findByRequestId(requestId);
+                }
+
+                @Override
+                public void forEachRequestId(Consumer<String> action) {
+                    delegate.forEachRequestId(action);
+                }
+
+                @Override
+                public long countByRunId(String runId) {
+                    return delegate.countByRunId(runId);
+                }
+
+                @Override
+                public List<ModerationResult> findByRunIdOrderByTimestampAsc(String runId) {
+                    return delegate.findByRunIdOrderByTimestampAsc(runId);
+                }
+
+                @Override
+                public void scanRun(String runId, Consumer<ModerationResult> action) {
+                    delegate.scanRun(runId, action);
+                }
+
+                @Override
+                public void scanRunPage(String runId, LocalDateTime afterTimestamp, Long afterId, int limit,
+                                        boolean includeBodies, Consumer<ModerationResult> action) {
+                    delegate.scanRunPage(runId, afterTimestamp, afterId, limit, includeBodies, action);
+                }
+
+                @Override
+                public RunSummary summarizeRun(String runId) {
+                    return delegate.summarizeRun(runId);
+                }
+
+                @Override
+                public List<Long> findProviderLatenciesByRunIds(Collection<String> runIds) {
+                    return delegate.findProviderLatenciesByRunIds(runIds);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.moderation.service;
+
+import com.example.moderation.dto.ModerationRequest;
+import com.example.moderation.dto.ModerationResponse;
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.provider.ModerationProvider;
+import com.example.moderation.provider.ProviderConfig;
+import com.example.moderation.repository.ModerationResultRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for ContentModerationService với LocalPreFilter bật: term HIGH-risk được quyết định local
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "content-moderation.active-provider=counting",
+        "content-moderation.prefilter.enabled=true",
+        "content-moderation.prefilter.confirm-remote=false"
+})
+class ContentModerationServicePreFilterIntegrationTest {
+
+    @Autowired
+    private ContentModerationService moderationService;
+
+    @Autowired
+    private ModerationResultRepository resultRepository;
+
+    @Autowired
+    private CountingProvider countingProvider;
+
+    @BeforeEach
+    void setUp() {
+        countingProvider.calls.set(0);
+    }
+
+    @AfterEach
+    void cleanup() {
+        resultRepository.deleteAll();
+    }
+
+    @Test
+    void testHighRiskTermSkipsProvider() {
+        ModerationRequest request = ModerationRequest.builder()
+                .id(UUID.randomUUID().toString())
+                .text("Click this phishing link now")
+                .build();
+
+        ModerationResponse response = moderationService.moderateContent(request);
+
+        assertTrue(response.getSuccess());
+        assertEquals("HIGH", response.getRiskLevel());
+        assertEquals(0, countingProvider.calls.get(), "Pre-filter quyết định: không gọi provider");
+
+        ModerationResult saved = resultRepository.findByRequestId(request.getId()).orElseThrow();
+        assertEquals(LocalPreFilter.PROVIDER_NAME, saved.getProviderName());
+        assertEquals("HIGH", saved.getRiskLevel());
+    }
+
+    @Test
+    void testReactiveHighRiskTermSkipsProvider() {
+        ModerationRequest request = ModerationRequest.builder()
+                .id(UUID.randomUUID().toString())
+                .text("Selling a weapon here")
+                .build();
+
+        ModerationResponse response = moderationService.moderateContentReactive(request).block();
+
+        assertNotNull(response);
+        assertEquals("HIGH", response.getRiskLevel());
+        assertEquals(0, countingProvider.calls.get());
+    }
+
+    @Test
+    void testCleanTextCallsProvider() {
+        ModerationRequest request = ModerationRequest.builder()
+                .id(UUID.randomUUID().toString())
+                .text("Hello, this is a normal message")
+                .build();
+
+        ModerationResponse response = moderationService.moderateContent(request);
+
+        assertTrue(response.getSuccess());
+        assertEquals("LOW", response.getRiskLevel());
+        assertEquals(1, countingProvider.calls.get());
+        assertEquals("counting", resultRepository.findByRequestId(request.getId()).orElseThrow().getProviderName());
+    }
+
+    @TestConfiguration
+    static class CountingProviderConfig {
+
+        @Bean
+        CountingProvider countingProvider() {
+            return new CountingProvider();
+        }
+    }
+
+    /**
+     * Provider đếm số lần được gọi, luôn trả LOW
+     */
+    static class CountingProvider implements ModerationProvider {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public String getProviderName() {
+            return "counting";
+        }
+
+        @Override
+        public com.example.moderation.provider.ModerationResult moderateText(String text, Map<String, Object> options) {
+            calls.incrementAndGet();
+            return com.example.moderation.provider.ModerationResult.builder()
+                    .providerName("counting")
+                    .riskLevel("LOW")
+                    .confidenceScore(0.9)
+                    .rawResponse("{}")
+                    .latencyMs(1L)
+                    .build();
+        }
+
+        @Override
+        public boolean isHealthy() {
+            return true;
+        }
+
+        @Override
+        public ProviderConfig getConfig() {
+            return ProviderConfig.builder().providerName("counting").enabled(true).build();
+        }
+    }
+}
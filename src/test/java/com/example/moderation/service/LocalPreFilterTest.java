@@ -0,0 +1,181 @@
+package com.example.moderation.service;
+
+import com.example.moderation.config.PreFilterConfig;
+import com.example.moderation.provider.ModerationResult;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LocalPreFilter (quyết định local, hot reload terms-file, xác nhận remote)
+ */
+class LocalPreFilterTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PreFilterConfig config;
+    private LocalPreFilter preFilter;
+
+    @BeforeEach
+    void setUp() {
+        config = new PreFilterConfig();
+        config.setEnabled(true);
+        Map<String, List<String>> terms = new LinkedHashMap<>();
+        terms.put("SPAM", List.of("scam", "phishing"));
+        terms.put("VIOLENCE", List.of("weapon"));
+        config.setTerms(terms);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (preFilter != null) {
+            preFilter.shutdown();
+        }
+    }
+
+    @Test
+    void testHighRiskTermDecidedLocally() {
+        preFilter = new LocalPreFilter(config, registry, new Gson());
+
+        ModerationResult result = preFilter.evaluate("This is a phishing link with a weapon");
+
+        assertNotNull(result);
+        assertEquals(LocalPreFilter.PROVIDER_NAME, result.getProviderName());
+        assertEquals("HIGH", result.getRiskLevel());
+        assertEquals(0.99, result.getConfidenceScore());
+        assertTrue(result.getLabels().containsAll(List.of("SPAM", "VIOLENCE")));
+        assertEquals(1L, result.getDetails().get("dictionaryVersion"));
+        assertTrue(result.getRawResponse().contains("\"source\":\"prefilter\""));
+        assertEquals(1.0, registry.get("moderation.prefilter.hits").counter().count());
+    }
+
+    @Test
+    void testCleanTextGoesToProvider() {
+        preFilter = new LocalPreFilter(config, registry, new Gson());
+
+        assertNull(preFilter.evaluate("Hello, this is a normal message"));
+        assertNull(preFilter.evaluate("scammer"), "whole-words: không match một phần của từ");
+        assertEquals(2.0, registry.get("moderation.prefilter.misses").counter().count());
+    }
+
+    @Test
+    void testDisabledPreFilterDecidesNothing() {
+        config.setEnabled(false);
+        preFilter = new LocalPreFilter(config, registry, new Gson());
+
+        assertNull(preFilter.evaluate("phishing"));
+        assertFalse(preFilter.isConfirmEnabled());
+    }
+
+    @Test
+    void testHotReloadSwapsDictionaryUnderLoad() throws Exception {
+        Path termsFile = directory.resolve("terms.txt");
+        Files.writeString(termsFile, "ILLEGAL:smuggle\n", StandardCharsets.UTF_8);
+        config.setTermsFile(termsFile.toString());
+        config.setReloadIntervalMs(20L);
+        preFilter = new LocalPreFilter(config, registry, new Gson());
+        assertNotNull(preFilter.evaluate("smuggle"));
+        assertNull(preFilter.evaluate("counterfeit"));
+
+        // Các thread đọc liên tục trong lúc reload: term trong config luôn match, không có lỗi
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(readers.submit(() -> {
+                long evaluations = 0;
+                while (running.get()) {
+                    ModerationResult result = preFilter.evaluate("a scam message");
+                    if (result == null || !result.getLabels().contains("SPAM")) {
+                        throw new AssertionError("Term của config bị mất trong lúc reload");
+                    }
+                    evaluations++;
+                }
+                return evaluations;
+            }));
+        }
+
+        try {
+            Files.writeString(termsFile, "# thay dictionary\nILLEGAL:counterfeit\n", StandardCharsets.UTF_8);
+            // mtime có thể có độ phân giải 1s trên một số filesystem
+            Files.setLastModifiedTime(termsFile, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (preFilter.evaluate("counterfeit") == null) {
+                assertTrue(System.currentTimeMillis() < deadline, "Dictionary mới chưa được load");
+                Thread.sleep(10);
+            }
+        } finally {
+            running.set(false);
+            readers.shutdown();
+        }
+
+        for (Future<Long> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS) > 0);
+        }
+        assertTrue(readers.awaitTermination(5, TimeUnit.SECONDS));
+        assertNull(preFilter.evaluate("smuggle"), "Term cũ của file bị bỏ");
+        // Có thể reload hai lần nếu lần đọc rơi giữa lúc ghi file và đổi mtime
+        assertTrue((Long) preFilter.evaluate("counterfeit").getDetails().get("dictionaryVersion") >= 2);
+    }
+
+    @Test
+    void testUnreadableTermsFileKeepsDictionary() throws Exception {
+        Path termsFile = directory.resolve("terms.txt");
+        Files.writeString(termsFile, "ILLEGAL:smuggle\n", StandardCharsets.UTF_8);
+        config.setTermsFile(termsFile.toString());
+        config.setReloadIntervalMs(60_000L);
+        preFilter = new LocalPreFilter(config, registry, new Gson());
+
+        Files.delete(termsFile);
+        preFilter.reload();
+
+        assertNotNull(preFilter.evaluate("smuggle"), "Giữ automaton cũ khi file lỗi");
+        assertEquals(1L, preFilter.evaluate("smuggle").getDetails().get("dictionaryVersion"));
+    }
+
+    @Test
+    void testConfirmationRecordsAgreementAndDisagreement() {
+        config.setConfirmRemote(true);
+        preFilter = new LocalPreFilter(config, registry, new Gson());
+        assertTrue(preFilter.isConfirmEnabled());
+
+        preFilter.recordConfirmation("mock", ModerationResult.builder().riskLevel("HIGH").build(), null);
+        preFilter.recordConfirmation("mock", ModerationResult.builder().riskLevel("HIGH").build(), null);
+        preFilter.recordConfirmation("mock", ModerationResult.builder().riskLevel("LOW").build(), null);
+        preFilter.recordConfirmation("mock", null, new IllegalStateException("timeout"));
+
+        assertEquals(2.0, confirmations("agree"));
+        assertEquals(1.0, confirmations("disagree"));
+        assertEquals(1.0, confirmations("error"));
+    }
+
+    private double confirmations(String outcome) {
+        return registry.get("moderation.prefilter.confirmations")
+                .tag("provider", "mock")
+                .tag("outcome", outcome)
+                .counter()
+                .count();
+    }
+}
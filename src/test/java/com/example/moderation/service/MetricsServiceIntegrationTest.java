@@ -0,0 +1,136 @@
+package com.example.moderation.service;
+
+import com.example.moderation.dto.PerformanceMetrics;
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.entity.TestRun;
+import com.example.moderation.repository.ModerationResultRepository;
+import com.example.moderation.repository.TestRunRepository;
+import com.example.moderation.store.ResultStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for MetricsService với TestRun đã persist (sau restart, không có aggregate trong bộ nhớ)
+ */
+@SpringBootTest
+class MetricsServiceIntegrationTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 15, 10, 0);
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Autowired
+    private TestRunRepository testRunRepository;
+
+    @Autowired
+    private ResultStore resultStore;
+
+    @Autowired
+    private ModerationResultRepository resultRepository;
+
+    private final String runId = "metrics-" + UUID.randomUUID();
+
+    @AfterEach
+    void cleanup() {
+        resultRepository.deleteAll(resultRepository.findByRunId(runId));
+        testRunRepository.findByRunId(runId).ifPresent(testRunRepository::delete);
+    }
+
+    @Test
+    void testStaleRunningTestRunIsRebuiltFromStore() {
+        saveResults(3);
+        // Persist cuối cùng trước khi process dừng chỉ thấy 1 kết quả
+        testRunRepository.save(testRun("RUNNING", 1));
+
+        PerformanceMetrics metrics = metricsService.calculateMetrics(runId);
+
+        assertEquals(3, metrics.getTotalRequests());
+        assertEquals(30L, metrics.getMaxLatency());
+    }
+
+    @Test
+    void testUpToDateTestRunIsUsedAsIs() {
+        saveResults(3);
+        testRunRepository.save(testRun("RUNNING", 3));
+
+        assertEquals(99L, metricsService.calculateMetrics(runId).getMaxLatency(), "Đọc thẳng từ TestRun");
+    }
+
+    @Test
+    void testCompletedTestRunIsUsedAsIs() {
+        saveResults(3);
+        testRunRepository.save(testRun("COMPLETED", 2));
+
+        assertEquals(2, metricsService.calculateMetrics(runId).getTotalRequests());
+    }
+
+    @Test
+    void testRunWithoutTestRunIsSummarizedFromStore() {
+        // Run cũ: không có aggregate trong bộ nhớ lẫn TestRun, chỉ còn kết quả trong ResultStore
+        saveResults(4);
+
+        PerformanceMetrics metrics = metricsService.calculateMetrics(runId);
+
+        assertNotNull(metrics);
+        assertEquals(runId, metrics.getRunId());
+        assertEquals(4, metrics.getTotalRequests());
+        assertEquals(4, metrics.getSuccessCount());
+        assertEquals(10L, metrics.getMinLatency());
+        assertEquals(40L, metrics.getMaxLatency());
+        assertEquals(25L, metrics.getAvgLatency());
+        assertEquals(20L, metrics.getP50Latency());
+        assertEquals(40L, metrics.getP95Latency());
+        assertEquals(3000L, metrics.getDurationMs());
+    }
+
+    @Test
+    void testUnknownRunHasNoMetrics() {
+        assertNull(metricsService.calculateMetrics(runId));
+    }
+
+    private void saveResults(int count) {
+        List<ModerationResult> results = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            results.add(ModerationResult.builder()
+                    .requestId(runId + "-req-" + i)
+                    .runId(runId)
+                    .statusCode(200)
+                    .latencyMs(i * 10L)
+                    .timestamp(BASE.plusSeconds(i))
+                    .attempts(1)
+                    .success(true)
+                    .providerName("mock")
+                    .build());
+        }
+        resultStore.saveAll(results);
+    }
+
+    private TestRun testRun(String status, int totalRequests) {
+        return TestRun.builder()
+                .runId(runId)
+                .status(status)
+                .startTime(BASE)
+                .endTime(BASE.plusSeconds(totalRequests))
+                .totalRequests(totalRequests)
+                .successCount(totalRequests)
+                .failCount(0)
+                .avgLatencyMs(99L)
+                .minLatencyMs(99L)
+                .maxLatencyMs(99L)
+                .p50LatencyMs(99L)
+                .p95LatencyMs(99L)
+                .p99LatencyMs(99L)
+                .throughputRps(1.0)
+                .build();
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.moderation.service;
+
+import com.example.moderation.config.RateLimitConfig;
+import com.example.moderation.provider.ModerationException;
+import com.example.moderation.provider.ModerationProvider;
+import com.example.moderation.provider.ModerationProviderFactory;
+import com.example.moderation.provider.ModerationResult;
+import com.example.moderation.provider.ProviderConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MicroBatchDispatcher
+ */
+class MicroBatchDispatcherTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final BatchStub batchProvider = new BatchStub();
+    private final SingleStub singleProvider = new SingleStub();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ProviderRateLimiter rateLimiter = new ProviderRateLimiter(rateLimitConfig(), meterRegistry);
+    private MicroBatchDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testSizeTriggerFlushesFullBatch() {
+        dispatcher = dispatcher(true, 3, 60_000);
+
+        dispatcher.submit("batch", "a");
+        dispatcher.submit("batch", "b");
+        assertTrue(batchProvider.batches.isEmpty());
+
+        dispatcher.submit("batch", "c");
+        assertEquals(List.of(List.of("a", "b", "c")), batchProvider.texts());
+
+        dispatcher.submit("batch", "d");
+        assertEquals(1, batchProvider.batches.size(), "Batch mới chỉ được gửi khi đầy hoặc hết linger");
+    }
+
+    @Test
+    void testLingerTriggerFlushesPartialBatch() throws InterruptedException {
+        dispatcher = dispatcher(true, 10, 20);
+
+        dispatcher.submit("batch", "a");
+        dispatcher.submit("batch", "b");
+        assertTrue(batchProvider.batches.isEmpty());
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (batchProvider.batches.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(List.of(List.of("a", "b")), batchProvider.texts());
+        assertEquals(1.0, meterRegistry.get("moderation.microbatch.batches").tag("provider", "batch").counter().count());
+    }
+
+    @Test
+    void testPerTextResultsAndErrorsMapBackToCallers() {
+        dispatcher = dispatcher(true, 3, 60_000);
+
+        CompletableFuture<ModerationResult> a = dispatcher.submit("batch", "a");
+        CompletableFuture<ModerationResult> b = dispatcher.submit("batch", "b");
+        CompletableFuture<ModerationResult> c = dispatcher.submit("batch", "c");
+
+        List<CompletableFuture<ModerationResult>> results = batchProvider.batches.get(0).results();
+        results.get(2).complete(result("c"));
+        results.get(1).completeExceptionally(new ModerationException("batch", 1902, "invalid text"));
+        results.get(0).complete(result("a"));
+
+        assertEquals("a", a.join().getRawResponse());
+        assertEquals("c", c.join().getRawResponse());
+        CompletionException error = assertThrows(CompletionException.class, b::join);
+        assertTrue(error.getCause() instanceof ModerationException);
+        assertEquals(1902, ((ModerationException) error.getCause()).getErrorCode());
+    }
+
+    @Test
+    void testBatchFailsOnlyWhenEveryTextFails() {
+        dispatcher = dispatcher(true, 2, 60_000);
+
+        dispatcher.submit("batch", "a");
+        dispatcher.submit("batch", "b");
+        List<CompletableFuture<ModerationResult>> first = batchProvider.batches.get(0).results();
+        first.get(0).completeExceptionally(new ModerationException("batch", 1901, "QPS exceeded"));
+        first.get(1).complete(result("b"));
+        assertEquals(100.0, rateLimiter.currentRate("batch"), "Một text lỗi không phải lỗi của cả batch");
+
+        dispatcher.submit("batch", "c");
+        dispatcher.submit("batch", "d");
+        batchProvider.batches.get(1).results()
+                .forEach(result -> result.completeExceptionally(new ModerationException("batch", 1901, "QPS exceeded")));
+        assertEquals(50.0, rateLimiter.currentRate("batch"), "Cả batch lỗi 1901 phải giảm QPS");
+    }
+
+    @Test
+    void testWholeBatchFailureFailsEveryItem() {
+        dispatcher = dispatcher(true, 2, 60_000);
+        batchProvider.failNext = true;
+
+        CompletableFuture<ModerationResult> a = dispatcher.submit("batch", "a");
+        CompletableFuture<ModerationResult> b = dispatcher.submit("batch", "b");
+
+        assertTrue(a.isCompletedExceptionally());
+        assertTrue(b.isCompletedExceptionally());
+    }
+
+    @Test
+    void testProviderWithoutBatchApiFallsBackToSingleCalls() throws Exception {
+        dispatcher = dispatcher(true, 3, 60_000);
+        assertTrue(dispatcher.isEnabledFor("batch"));
+        assertFalse(dispatcher.isEnabledFor("single"), "Provider không có API batch không đi qua dispatcher");
+        assertFalse(dispatcher(false, 3, 60_000).isEnabledFor("batch"));
+
+        // Batch SPI mặc định: các call đơn lẻ song song, kết quả theo thứ tự text
+        List<CompletableFuture<ModerationResult>> results =
+                singleProvider.moderateTextBatchAsync(List.of("a", "b", "c"), Map.of(), executor);
+
+        assertEquals(List.of("a", "b", "c"), results.stream().map(f -> f.join().getRawResponse()).toList());
+        assertTrue(singleProvider.allParallel, "Các call đơn lẻ phải chạy song song");
+    }
+
+    private MicroBatchDispatcher dispatcher(boolean enabled, int maxBatchSize, long lingerMs) {
+        ModerationProviderFactory providerFactory =
+                new ModerationProviderFactory(List.of(batchProvider, singleProvider), executor);
+        return new MicroBatchDispatcher(providerFactory,
+                rateLimiter,
+                new AdaptiveConcurrencyLimiter(meterRegistry, false, 20, 1, 100, 10, 100, 2.0, 0.9),
+                new ProviderLatencyTracker(), meterRegistry,
+                enabled, Set.of("batch", "single"), maxBatchSize, lingerMs);
+    }
+
+    private static RateLimitConfig rateLimitConfig() {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setProviders(Map.of("batch", 100.0));
+        config.setBurst(100);
+        return config;
+    }
+
+    private static ModerationResult result(String text) {
+        return ModerationResult.builder().providerName("batch").riskLevel("LOW").rawResponse(text).build();
+    }
+
+    private record Batch(List<String> texts, List<CompletableFuture<ModerationResult>> results) {
+    }
+
+    private static class BatchStub extends StubProvider {
+
+        private final List<Batch> batches = new CopyOnWriteArrayList<>();
+        private volatile boolean failNext;
+
+        BatchStub() {
+            super("batch");
+        }
+
+        @Override
+        public boolean supportsBatch() {
+            return true;
+        }
+
+        @Override
+        public List<CompletableFuture<ModerationResult>> moderateTextBatchAsync(List<String> texts,
+                                                                              Map<String, Object> options,
+                                                                              Executor blockingExecutor) {
+            if (failNext) {
+                throw new ModerationException("batch", 500, "batch endpoint down");
+            }
+            List<CompletableFuture<ModerationResult>> results = texts.stream()
+                    .map(text -> new CompletableFuture<ModerationResult>())
+                    .toList();
+            batches.add(new Batch(texts, results));
+            return results;
+        }
+
+        List<List<String>> texts() {
+            return batches.stream().map(Batch::texts).toList();
+        }
+    }
+
+    private static class SingleStub extends StubProvider {
+
+        private final CountDownLatch started = new CountDownLatch(3);
+        private volatile boolean allParallel = true;
+
+        SingleStub() {
+            super("single");
+        }
+
+        @Override
+        public ModerationResult moderateText(String text, Map<String, Object> options) {
+            started.countDown();
+            try {
+                // Chỉ mở khi cả 3 call cùng chạy
+                if (!started.await(2, TimeUnit.SECONDS)) {
+                    allParallel = false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result(text);
+        }
+    }
+
+    private abstract static class StubProvider implements ModerationProvider {
+
+        private final String name;
+
+        StubProvider(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getProviderName() {
+            return name;
+        }
+
+        @Override
+        public ModerationResult moderateText(String text, Map<String, Object> options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isHealthy() {
+            return true;
+        }
+
+        @Override
+        public ProviderConfig getConfig() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.moderation.service;
+
+import com.example.moderation.provider.ModerationResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ModerationResultCache (TTL, LRU theo segment, chuẩn hóa key)
+ */
+class ModerationResultCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void testEntryExpiresOnRead() throws Exception {
+        ModerationResultCache cache = new ModerationResultCache(registry, true, 1000, 0);
+        cache.put("mock", "hello", result("LOW"));
+
+        Thread.sleep(5);
+
+        assertNull(cache.get("mock", "hello"));
+        assertEquals(0, cache.size(), "Entry hết hạn bị xóa lúc đọc");
+        assertEquals(1.0, counter("moderation.cache.evictions"));
+        assertEquals(1.0, counter("moderation.cache.misses"));
+        assertEquals(0.0, counter("moderation.cache.hits"));
+    }
+
+    @Test
+    void testEntryWithinTtlIsHit() {
+        ModerationResultCache cache = new ModerationResultCache(registry, true, 1000, 300);
+        ModerationResult result = result("HIGH");
+        cache.put("mock", "hello", result);
+
+        assertSame(result, cache.get("mock", "hello"));
+        assertNull(cache.get("deepcleer", "hello"), "Key gồm cả provider");
+        assertEquals(1.0, counter("moderation.cache.hits"));
+        assertEquals(1.0, counter("moderation.cache.misses"));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEvictedPerSegment() {
+        // 16 segment x 2 entry
+        ModerationResultCache cache = new ModerationResultCache(registry, true, 32, 300);
+        List<String> texts = textsInSameSegment(3);
+        String first = texts.get(0);
+        String second = texts.get(1);
+        String third = texts.get(2);
+
+        cache.put("mock", first, result("LOW"));
+        cache.put("mock", second, result("LOW"));
+        assertNotNull(cache.get("mock", first), "Đọc first để second thành LRU");
+        cache.put("mock", third, result("LOW"));
+
+        assertEquals(1.0, counter("moderation.cache.evictions"));
+        assertEquals(2, cache.size());
+        assertNull(cache.get("mock", second));
+        assertNotNull(cache.get("mock", first));
+        assertNotNull(cache.get("mock", third));
+    }
+
+    @Test
+    void testOtherSegmentsAreNotEvicted() {
+        ModerationResultCache cache = new ModerationResultCache(registry, true, 32, 300);
+        for (String text : textsInSameSegment(2)) {
+            cache.put("mock", text, result("LOW"));
+        }
+        String other = textInOtherSegment(textsInSameSegment(1).get(0));
+        cache.put("mock", other, result("LOW"));
+
+        assertEquals(0.0, counter("moderation.cache.evictions"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void testEquivalentTextsShareKey() {
+        String composed = "Xin chào  các bạn";
+        // Dạng NFD (dấu rời, \u0300 \u0301 \u0323) cùng khoảng trắng thừa
+        String decomposed = "  Xin cha\u0300o\tca\u0301c\n ba\u0323n ";
+
+        assertNotEquals(composed, decomposed);
+        assertEquals(ModerationResultCache.keyOf("mock", composed), ModerationResultCache.keyOf("mock", decomposed));
+        assertNotEquals(ModerationResultCache.keyOf("mock", composed),
+                ModerationResultCache.keyOf("mock", composed.toUpperCase()), "Không lowercase");
+
+        ModerationResultCache cache = new ModerationResultCache(registry, true, 1000, 300);
+        ModerationResult result = result("MEDIUM");
+        cache.put("mock", composed, result);
+
+        assertSame(result, cache.get("mock", decomposed));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testDisabledCacheStoresNothing() {
+        ModerationResultCache cache = new ModerationResultCache(registry, false, 1000, 300);
+        cache.put("mock", "hello", result("LOW"));
+
+        assertNull(cache.get("mock", "hello"));
+        assertEquals(0, cache.size());
+        assertEquals(0.0, counter("moderation.cache.misses"));
+    }
+
+    private static List<String> textsInSameSegment(int count) {
+        List<String> texts = new ArrayList<>();
+        int segment = ModerationResultCache.segmentIndex(ModerationResultCache.keyOf("mock", "text-0"));
+        for (int i = 0; texts.size() < count; i++) {
+            String text = "text-" + i;
+            if (ModerationResultCache.segmentIndex(ModerationResultCache.keyOf("mock", text)) == segment) {
+                texts.add(text);
+            }
+        }
+        return texts;
+    }
+
+    private static String textInOtherSegment(String text) {
+        int segment = ModerationResultCache.segmentIndex(ModerationResultCache.keyOf("mock", text));
+        for (int i = 0; ; i++) {
+            String other = "other-" + i;
+            if (ModerationResultCache.segmentIndex(ModerationResultCache.keyOf("mock", other)) != segment) {
+                return other;
+            }
+        }
+    }
+
+    private double counter(String name) {
+        return registry.get(name).counter().count();
+    }
+
+    private static ModerationResult result(String riskLevel) {
+        return ModerationResult.builder()
+                .providerName("mock")
+                .riskLevel(riskLevel)
+                .confidenceScore(0.9)
+                .build();
+    }
+}
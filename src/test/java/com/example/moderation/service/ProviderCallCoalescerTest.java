@@ -0,0 +1,243 @@
+package com.example.moderation.service;
+
+import com.example.moderation.provider.ModerationException;
+import com.example.moderation.provider.ModerationResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ProviderCallCoalescer (single-flight đồng bộ / bất đồng bộ)
+ */
+class ProviderCallCoalescerTest {
+
+    private static final int CALLERS = 8;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ProviderCallCoalescer coalescer = new ProviderCallCoalescer(registry, true);
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testConcurrentIdenticalCallsHitProviderOnce() throws Exception {
+        AtomicInteger providerCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ModerationResult shared = result();
+
+        List<Future<ModerationResult>> callers = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            callers.add(executor.submit(() -> coalescer.execute("mock", "same text", () -> {
+                providerCalls.incrementAndGet();
+                await(release);
+                return shared;
+            })));
+        }
+        awaitFollowers(CALLERS - 1);
+        release.countDown();
+
+        for (Future<ModerationResult> caller : callers) {
+            assertSame(shared, caller.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, providerCalls.get());
+        assertEquals(1.0, registry.get("moderation.coalescer.leaders").counter().count());
+        assertEquals(0.0, inFlight(), "Key bị xóa sau khi call thành công");
+    }
+
+    @Test
+    void testDifferentTextsAreNotCoalesced() {
+        AtomicInteger providerCalls = new AtomicInteger();
+
+        coalescer.execute("mock", "text a", () -> {
+            providerCalls.incrementAndGet();
+            return result();
+        });
+        coalescer.execute("deepcleer", "text a", () -> {
+            providerCalls.incrementAndGet();
+            return result();
+        });
+
+        assertEquals(2, providerCalls.get());
+    }
+
+    @Test
+    void testErrorReachesAllWaiters() throws Exception {
+        AtomicInteger providerCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ModerationException failure = new ModerationException("mock", 1901, "QPS limit exceeded");
+
+        List<Future<ModerationResult>> callers = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            callers.add(executor.submit(() -> coalescer.execute("mock", "same text", () -> {
+                providerCalls.incrementAndGet();
+                await(release);
+                throw failure;
+            })));
+        }
+        awaitFollowers(CALLERS - 1);
+        release.countDown();
+
+        for (Future<ModerationResult> caller : callers) {
+            ExecutionException error = assertThrows(ExecutionException.class, () -> caller.get(5, TimeUnit.SECONDS));
+            assertSame(failure, error.getCause(), "Follower nhận đúng exception của leader");
+        }
+        assertEquals(1, providerCalls.get());
+        assertEquals(0.0, inFlight(), "Key bị xóa sau khi call lỗi");
+
+        // Call tiếp theo không dùng lại kết quả lỗi
+        assertNotNull(coalescer.execute("mock", "same text", ProviderCallCoalescerTest::result));
+    }
+
+    @Test
+    void testAsyncFollowersShareCall() {
+        AtomicInteger providerCalls = new AtomicInteger();
+        CompletableFuture<ModerationResult> source = new CompletableFuture<>();
+
+        List<CompletableFuture<ModerationResult>> callers = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            callers.add(coalescer.executeAsync("mock", "same text", () -> {
+                providerCalls.incrementAndGet();
+                return source;
+            }));
+        }
+        assertEquals(1.0, inFlight());
+
+        ModerationResult shared = result();
+        source.complete(shared);
+
+        for (CompletableFuture<ModerationResult> caller : callers) {
+            assertSame(shared, caller.join());
+        }
+        assertEquals(1, providerCalls.get());
+        assertEquals(0.0, inFlight());
+    }
+
+    @Test
+    void testAsyncErrorReachesAllWaiters() {
+        CompletableFuture<ModerationResult> source = new CompletableFuture<>();
+        List<CompletableFuture<ModerationResult>> callers = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            callers.add(coalescer.executeAsync("mock", "same text", () -> source));
+        }
+
+        ModerationException failure = new ModerationException("mock", 1901, "QPS limit exceeded");
+        source.completeExceptionally(failure);
+
+        for (CompletableFuture<ModerationResult> caller : callers) {
+            CompletionException error = assertThrows(CompletionException.class, caller::join);
+            assertSame(failure, error.getCause());
+        }
+        assertEquals(0.0, inFlight());
+    }
+
+    @Test
+    void testCallerCancelDoesNotAffectOthers() {
+        CompletableFuture<ModerationResult> source = new CompletableFuture<>();
+        CompletableFuture<ModerationResult> leader = coalescer.executeAsync("mock", "same text", () -> source);
+        CompletableFuture<ModerationResult> follower = coalescer.executeAsync("mock", "same text", () -> source);
+
+        leader.cancel(true);
+
+        assertFalse(source.isCancelled(), "Call dùng chung vẫn chạy cho follower");
+        ModerationResult shared = result();
+        source.complete(shared);
+        assertSame(shared, follower.join());
+        assertEquals(0.0, inFlight());
+    }
+
+    @Test
+    void testCancelledCallRemovesKey() {
+        CompletableFuture<ModerationResult> source = new CompletableFuture<>();
+        CompletableFuture<ModerationResult> leader = coalescer.executeAsync("mock", "same text", () -> source);
+        CompletableFuture<ModerationResult> follower = coalescer.executeAsync("mock", "same text", () -> source);
+
+        source.cancel(true);
+
+        for (CompletableFuture<ModerationResult> caller : List.of(leader, follower)) {
+            CompletionException error = assertThrows(CompletionException.class, caller::join);
+            assertInstanceOf(CancellationException.class, error.getCause());
+        }
+        assertEquals(0.0, inFlight(), "Key bị xóa sau khi call bị cancel");
+
+        // Caller mới bắt đầu call mới thay vì nhận lại call đã cancel
+        AtomicInteger providerCalls = new AtomicInteger();
+        coalescer.executeAsync("mock", "same text", () -> {
+            providerCalls.incrementAndGet();
+            return CompletableFuture.completedFuture(result());
+        }).join();
+        assertEquals(1, providerCalls.get());
+    }
+
+    @Test
+    void testSyncCancelledCallRemovesKey() {
+        assertThrows(CancellationException.class, () -> coalescer.execute("mock", "same text", () -> {
+            throw new CancellationException("cancelled");
+        }));
+        assertEquals(0.0, inFlight());
+    }
+
+    @Test
+    void testDisabledCoalescerCallsEveryTime() {
+        ProviderCallCoalescer disabled = new ProviderCallCoalescer(new SimpleMeterRegistry(), false);
+        AtomicInteger providerCalls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            disabled.execute("mock", "same text", () -> {
+                providerCalls.incrementAndGet();
+                return result();
+            });
+        }
+
+        assertEquals(3, providerCalls.get());
+    }
+
+    private void awaitFollowers(int followers) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (coalescedCount() < followers) {
+            assertTrue(System.currentTimeMillis() < deadline, "Follower chưa join call đang chạy");
+            Thread.sleep(5);
+        }
+    }
+
+    private double coalescedCount() {
+        var counter = registry.find("moderation.coalescer.coalesced").counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private double inFlight() {
+        return registry.get("moderation.coalescer.inflight").gauge().value();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ModerationResult result() {
+        return ModerationResult.builder()
+                .providerName("mock")
+                .riskLevel("LOW")
+                .build();
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.moderation.service;
+
+import com.example.moderation.provider.ModerationException;
+import com.example.moderation.provider.ModerationProvider;
+import com.example.moderation.provider.ModerationProviderFactory;
+import com.example.moderation.provider.ModerationResult;
+import com.example.moderation.provider.ProviderConfig;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ProviderFanOut
+ */
+class ProviderFanOutTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ModerationProviderFactory providerFactory = new ModerationProviderFactory(
+            List.of(new StubProvider("alpha"), new StubProvider("beta"), new StubProvider("gamma"),
+                    new StubProvider("mock")),
+            executor);
+    private final Map<String, CompletableFuture<ModerationResult>> calls = new LinkedHashMap<>();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testEnabledFanOutRequiresProviderList() {
+        assertThrows(IllegalStateException.class, () -> fanOut("first-wins", Set.of(), 0));
+        assertFalse(fanOut("none", Set.of(), 0).isEnabled());
+    }
+
+    @Test
+    void testOnlyConfiguredProvidersAreCalled() {
+        fanOut("first-wins", Set.of("alpha", "beta"), 0).execute(this::call);
+
+        assertEquals(List.of("alpha", "beta"), List.copyOf(calls.keySet()));
+    }
+
+    @Test
+    void testFirstWinsTakesFastestAndCancelsOthers() {
+        CompletableFuture<ModerationResult> decision = fanOut("first-wins", Set.of("alpha", "beta", "gamma"), 0)
+                .execute(this::call);
+
+        calls.get("beta").complete(result("beta", "LOW", 0.6));
+
+        ModerationResult result = decision.join();
+        assertEquals("beta", result.getProviderName());
+        assertEquals("LOW", result.getRiskLevel());
+        assertTrue(calls.get("alpha").isCancelled());
+        assertTrue(calls.get("gamma").isCancelled());
+    }
+
+    @Test
+    void testFirstWinsSkipsFailedProvider() {
+        CompletableFuture<ModerationResult> decision = fanOut("first-wins", Set.of("alpha", "beta"), 0)
+                .execute(this::call);
+
+        calls.get("alpha").completeExceptionally(new ModerationException("alpha", 500, "down"));
+        assertFalse(decision.isDone());
+
+        calls.get("beta").complete(result("beta", "MEDIUM", 0.7));
+        assertEquals("beta", decision.join().getProviderName());
+    }
+
+    @Test
+    void testQuorumTakesMostSevereAndCancelsSlowest() {
+        CompletableFuture<ModerationResult> decision = fanOut("quorum", Set.of("alpha", "beta", "gamma"), 0)
+                .execute(this::call);
+
+        calls.get("alpha").complete(result("alpha", "LOW", 0.9));
+        assertFalse(decision.isDone(), "Quorum mặc định là đa số (2/3)");
+
+        calls.get("gamma").complete(result("gamma", "HIGH", 0.8));
+
+        ModerationResult result = decision.join();
+        assertEquals("HIGH", result.getRiskLevel());
+        assertEquals("alpha+gamma", result.getProviderName());
+        assertTrue(calls.get("beta").isCancelled());
+    }
+
+    @Test
+    void testAllProvidersFailed() {
+        CompletableFuture<ModerationResult> decision = fanOut("quorum", Set.of("alpha", "beta"), 0)
+                .execute(this::call);
+
+        calls.get("alpha").completeExceptionally(new ModerationException("alpha", 500, "down"));
+        calls.get("beta").completeExceptionally(new ModerationException("beta", 500, "down"));
+
+        CompletionException error = assertThrows(CompletionException.class, decision::join);
+        assertTrue(error.getCause() instanceof ModerationException);
+    }
+
+    private ProviderFanOut fanOut(String mode, Set<String> providers, int quorum) {
+        return new ProviderFanOut(providerFactory, new SimpleMeterRegistry(), new Gson(), mode, providers, quorum);
+    }
+
+    private CompletableFuture<ModerationResult> call(String providerName) {
+        CompletableFuture<ModerationResult> future = new CompletableFuture<>();
+        calls.put(providerName, future);
+        return future;
+    }
+
+    private static ModerationResult result(String providerName, String riskLevel, double confidence) {
+        return ModerationResult.builder()
+                .providerName(providerName)
+                .riskLevel(riskLevel)
+                .confidenceScore(confidence)
+                .build();
+    }
+
+    private record StubProvider(String name) implements ModerationProvider {
+
+        @Override
+        public String getProviderName() {
+            return name;
+        }
+
+        @Override
+        public ModerationResult moderateText(String text, Map<String, Object> options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isHealthy() {
+            return true;
+        }
+
+        @Override
+        public ProviderConfig getConfig() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.moderation.service;
+
+import com.example.moderation.provider.ModerationResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ProviderHedger
+ */
+class ProviderHedgerTest {
+
+    private static final long DELAY_MS = 30;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<CompletableFuture<ModerationResult>> calls = new CopyOnWriteArrayList<>();
+    private ProviderHedger hedger;
+
+    @AfterEach
+    void tearDown() {
+        if (hedger != null) {
+            hedger.shutdown();
+        }
+    }
+
+    @Test
+    void testHedgeSentAfterDelayAndWinnerCancelsPrimary() throws InterruptedException {
+        hedger = hedger(100);
+
+        long start = System.nanoTime();
+        CompletableFuture<ModerationResult> result = hedger.execute("p", this::call);
+        assertEquals(1, calls.size());
+
+        awaitCalls(2);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsedMs >= DELAY_MS - 5, "Hedge gửi sau " + elapsedMs + "ms");
+
+        calls.get(1).complete(result("hedge"));
+
+        assertEquals("hedge", result.join().getRawResponse());
+        // Hedge có thể hoàn thành trước khi timer thread đăng ký callback: cancel chạy trên timer thread
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!calls.get(0).isDone() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(calls.get(0).isCancelled(), "Call chính thua phải bị cancel");
+        assertEquals(1.0, count("moderation.hedge.sent"));
+        assertEquals(1.0, count("moderation.hedge.wins"));
+    }
+
+    @Test
+    void testPrimaryWinCancelsHedge() throws InterruptedException {
+        hedger = hedger(100);
+
+        CompletableFuture<ModerationResult> result = hedger.execute("p", this::call);
+        awaitCalls(2);
+        calls.get(0).complete(result("primary"));
+
+        assertEquals("primary", result.join().getRawResponse());
+        assertTrue(calls.get(1).isCancelled(), "Hedge thua phải bị cancel");
+        assertEquals(0.0, count("moderation.hedge.wins"));
+    }
+
+    @Test
+    void testPrimaryFinishingWhileHedgeIsCreatedCancelsHedge() throws InterruptedException {
+        hedger = hedger(100);
+
+        CompletableFuture<ModerationResult> result = hedger.execute("p", () -> {
+            if (!calls.isEmpty()) {
+                // Call chính trả lời đúng lúc hedge đang được tạo
+                calls.get(0).complete(result("primary"));
+            }
+            return call();
+        });
+        awaitCalls(2);
+
+        assertEquals("primary", result.join().getRawResponse());
+        assertTrue(calls.get(1).isCancelled(), "Hedge mà call chính không thấy phải bị cancel");
+    }
+
+    @Test
+    void testNoHedgeWhenPrimaryAnswersBeforeDelay() throws InterruptedException {
+        hedger = hedger(100);
+
+        CompletableFuture<ModerationResult> result = hedger.execute("p",
+                () -> CompletableFuture.completedFuture(result("primary")));
+        Thread.sleep(DELAY_MS * 3);
+
+        assertEquals("primary", result.join().getRawResponse());
+        assertEquals(0.0, count("moderation.hedge.sent"));
+    }
+
+    @Test
+    void testBudgetStopsHedges() throws InterruptedException {
+        // 50% budget: mỗi call chính nạp 50 credit, mỗi hedge cần 100
+        hedger = hedger(50);
+
+        hedger.execute("p", this::call);
+        Thread.sleep(DELAY_MS * 3);
+        assertEquals(1, calls.size(), "Chưa đủ credit cho hedge");
+        assertEquals(1.0, count("moderation.hedge.budget.exhausted"));
+
+        hedger.execute("p", this::call);
+        awaitCalls(3);
+        assertEquals(1.0, count("moderation.hedge.sent"));
+
+        hedger.execute("p", this::call);
+        Thread.sleep(DELAY_MS * 3);
+        assertEquals(4, calls.size(), "Credit đã dùng hết cho hedge trước");
+        assertEquals(2.0, count("moderation.hedge.budget.exhausted"));
+    }
+
+    @Test
+    void testProviderNotHedgedCallsDirectly() throws InterruptedException {
+        hedger = hedger(100);
+
+        hedger.execute("other", this::call);
+        Thread.sleep(DELAY_MS * 3);
+
+        assertEquals(1, calls.size());
+        assertFalse(hedger.isEnabledFor("other"));
+    }
+
+    private ProviderHedger hedger(int budgetPercent) {
+        return new ProviderHedger(new ProviderLatencyTracker(), meterRegistry, true, Set.of("p"),
+                DELAY_MS, 1, budgetPercent);
+    }
+
+    private CompletableFuture<ModerationResult> call() {
+        CompletableFuture<ModerationResult> future = new CompletableFuture<>();
+        calls.add(future);
+        return future;
+    }
+
+    private void awaitCalls(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (calls.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(2);
+        }
+        assertEquals(count, calls.size());
+    }
+
+    private double count(String name) {
+        Counter counter = meterRegistry.find(name).tag("provider", "p").counter();
+        return counter != null ? counter.count() : 0.0;
+    }
+
+    private static ModerationResult result(String rawResponse) {
+        return ModerationResult.builder().providerName("p").riskLevel("LOW").rawResponse(rawResponse).build();
+    }
+}
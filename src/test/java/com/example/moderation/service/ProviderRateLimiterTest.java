@@ -0,0 +1,178 @@
+package com.example.moderation.service;
+
+import com.example.moderation.config.RateLimitConfig;
+import com.example.moderation.provider.ModerationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ProviderRateLimiter (token bucket + adaptive back-off khi provider trả 1901)
+ */
+class ProviderRateLimiterTest {
+
+    private RateLimitConfig config;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        config = new RateLimitConfig();
+        config.setProviders(Map.of("p", 100.0));
+        config.setBurst(2);
+        config.setMaxWaitMs(0L);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testBurstThenRejectBeyondMaxWait() {
+        config.setProviders(Map.of("p", 1.0));
+        ProviderRateLimiter limiter = new ProviderRateLimiter(config, meterRegistry);
+
+        assertEquals("a", limiter.execute("p", () -> "a"));
+        assertEquals("b", limiter.execute("p", () -> "b"));
+        assertTrue(limiter.remainingBudget("p") < 0.5);
+
+        assertThrows(ModerationException.class, () -> limiter.execute("p", () -> "c"));
+        assertEquals(1.0, meterRegistry.get("moderation.ratelimit.rejections").tag("provider", "p").counter().count());
+
+        CompletableFuture<String> rejected = limiter.executeAsync("p", () -> CompletableFuture.completedFuture("d"));
+        assertTrue(rejected.isCompletedExceptionally());
+    }
+
+    @Test
+    void testWaitForTokenWithinMaxWait() {
+        config.setMaxWaitMs(1000L);
+        config.setBurst(1);
+        config.setProviders(Map.of("p", 20.0));
+        ProviderRateLimiter limiter = new ProviderRateLimiter(config, meterRegistry);
+
+        limiter.execute("p", () -> "first");
+        long start = System.nanoTime();
+        assertEquals("second", limiter.executeAsync("p", () -> CompletableFuture.completedFuture("second")).join());
+        long waitedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(waitedMs >= 30, "Token kế tiếp chỉ có sau ~50ms ở 20 QPS, đã chờ " + waitedMs + "ms");
+    }
+
+    @Test
+    void testCancelBeforeDelayRefundsTokenAndSkipsCall() throws InterruptedException {
+        config.setMaxWaitMs(5000L);
+        config.setBurst(1);
+        config.setProviders(Map.of("p", 5.0));
+        ProviderRateLimiter limiter = new ProviderRateLimiter(config, meterRegistry);
+
+        limiter.execute("p", () -> "first");
+        boolean[] started = new boolean[1];
+        CompletableFuture<String> delayed = limiter.executeAsync("p", () -> {
+            started[0] = true;
+            return CompletableFuture.completedFuture("delayed");
+        });
+        assertTrue(delayed.cancel(true));
+
+        Thread.sleep(300);
+        assertFalse(started[0], "Call bị cancel khi còn chờ token không được chạy");
+        // Token đặt trước đã được trả: bucket lại gần đầy sau ~200ms ở 5 QPS
+        assertTrue(limiter.remainingBudget("p") > 0.9, "budget " + limiter.remainingBudget("p"));
+    }
+
+    @Test
+    void testCancelAfterDelayReachesRunningCall() throws InterruptedException {
+        config.setMaxWaitMs(5000L);
+        config.setBurst(1);
+        config.setProviders(Map.of("p", 20.0));
+        ProviderRateLimiter limiter = new ProviderRateLimiter(config, meterRegistry);
+
+        limiter.execute("p", () -> "first");
+        CompletableFuture<String> running = new CompletableFuture<>();
+        CompletableFuture<String> delayed = limiter.executeAsync("p", () -> running);
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (limiter.remainingBudget("p") > 0.5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(100); // call đã bắt đầu sau ~50ms
+        delayed.cancel(true);
+
+        assertTrue(running.isCancelled(), "Cancel phải tới được call đang chạy");
+    }
+
+    @Test
+    void testUnlimitedProviderNeverWaits() {
+        ProviderRateLimiter limiter = new ProviderRateLimiter(config, meterRegistry);
+
+        for (int i = 0; i < 1000; i++) {
+            limiter.execute("free", () -> "ok");
+        }
+        assertEquals(0.0, limiter.currentRate("free"));
+        assertEquals(1.0, limiter.remainingBudget("free"));
+    }
+
+    @Test
+    void testSynchronousFailureReturnsFailedFuture() {
+        ProviderRateLimiter limiter = new ProviderRateLimiter(config, meterRegistry);
+
+        CompletableFuture<String> result = limiter.executeAsync("p", () -> {
+            throw new ModerationException("p", 1901, "QPS exceeded");
+        });
+
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertTrue(error.getCause() instanceof ModerationException);
+        assertEquals(50.0, limiter.currentRate("p"), "1901 ném đồng bộ vẫn phải giảm QPS");
+    }
+
+    @Test
+    void testThrottleCodeHalvesRateOncePerCooldown() {
+        config.setBurst(100);
+        ProviderRateLimiter limiter = new ProviderRateLimiter(config, meterRegistry);
+
+        for (int i = 0; i < 3; i++) {
+            CompletableFuture<String> result = limiter.executeAsync("p",
+                    () -> CompletableFuture.failedFuture(new ModerationException("p", 1901, "QPS exceeded")));
+            assertTrue(result.isCompletedExceptionally());
+        }
+
+        assertEquals(50.0, limiter.currentRate("p"), "Các 1901 trong cooldown chỉ giảm một lần");
+        assertEquals(3.0, meterRegistry.get("moderation.ratelimit.throttled").tag("provider", "p").counter().count());
+
+        // Error code khác không phải tín hiệu vượt quota
+        limiter.executeAsync("p", () -> CompletableFuture.failedFuture(new ModerationException("p", 500, "down")));
+        assertEquals(50.0, limiter.currentRate("p"));
+    }
+
+    @Test
+    void testRateRecoversAfterCooldown() throws InterruptedException {
+        config.setBurst(100);
+        config.getAdaptive().setCooldownMs(20L);
+        config.getAdaptive().setRecoveryPerSecond(10.0);
+        ProviderRateLimiter limiter = new ProviderRateLimiter(config, meterRegistry);
+
+        assertThrows(ModerationException.class, () -> limiter.execute("p", () -> {
+            throw new ModerationException("p", 1901, "QPS exceeded");
+        }));
+        assertEquals(50.0, limiter.currentRate("p"));
+
+        Thread.sleep(150);
+        limiter.remainingBudget("p"); // refill
+
+        assertEquals(100.0, limiter.currentRate("p"), "QPS hồi phục nhưng không vượt QPS cấu hình");
+    }
+
+    @Test
+    void testUnlimitedProviderCappedByObservedThroughputWhenThrottled() {
+        config.getAdaptive().setCooldownMs(0L);
+        ProviderRateLimiter limiter = new ProviderRateLimiter(config, meterRegistry);
+
+        assertThrows(ModerationException.class, () -> limiter.execute("free", () -> {
+            throw new ModerationException("free", 1901, "QPS exceeded");
+        }));
+
+        double rate = limiter.currentRate("free");
+        assertTrue(rate > 0, "Provider không giới hạn phải bị giới hạn tạm thời sau 1901");
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.moderation.service;
+
+import com.example.moderation.config.RateLimitConfig;
+import com.example.moderation.config.RoutingConfig;
+import com.example.moderation.provider.ModerationProvider;
+import com.example.moderation.provider.ModerationProviderFactory;
+import com.example.moderation.provider.ModerationResult;
+import com.example.moderation.provider.ProviderConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ProviderRouter (trọng số theo EWMA latency / tỉ lệ lỗi / rate budget, provider bị loại, metrics)
+ */
+class ProviderRouterTest {
+
+    private static final int REQUESTS = 5000;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ProviderLatencyTracker latencyTracker = new ProviderLatencyTracker();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final StubProvider fast = new StubProvider("fast");
+    private final StubProvider slow = new StubProvider("slow");
+
+    private RoutingConfig routingConfig;
+    private RateLimitConfig rateLimitConfig;
+
+    @BeforeEach
+    void setUp() {
+        routingConfig = new RoutingConfig();
+        routingConfig.setEnabled(true);
+        routingConfig.setRefreshMs(0L);  // tính lại trọng số mỗi request
+        Map<String, Double> weights = new LinkedHashMap<>();
+        weights.put("fast", 50.0);
+        weights.put("slow", 50.0);
+        routingConfig.setWeights(weights);
+
+        rateLimitConfig = new RateLimitConfig();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testEqualHealthSplitsByConfiguredWeight() {
+        recordLatency("fast", 100, 20);
+        recordLatency("slow", 100, 20);
+        ProviderRouter router = router();
+
+        Map<String, Integer> counts = route(router);
+
+        assertEquals(weight("fast"), weight("slow"), 1e-9);
+        assertEquals(0.5, share(counts, "slow"), 0.05);
+    }
+
+    @Test
+    void testLatencyDegradationShiftsWeight() {
+        recordLatency("fast", 100, 20);
+        recordLatency("slow", 100, 20);
+        ProviderRouter router = router();
+        router.choose();
+        double before = weight("slow");
+
+        // slow chậm gấp 4: trọng số còn 1/4 trọng số của fast
+        recordLatency("slow", 400, 50);
+        Map<String, Integer> counts = route(router);
+
+        assertTrue(weight("slow") < before);
+        assertEquals(0.25, weight("slow") / weight("fast"), 0.02);
+        assertEquals(0.2, share(counts, "slow"), 0.05);
+    }
+
+    @Test
+    void testErrorRateShiftsWeightDownToFloor() {
+        recordLatency("fast", 100, 20);
+        recordLatency("slow", 100, 20);
+        for (int i = 0; i < 100; i++) {
+            latencyTracker.recordFailure("slow", 100);
+        }
+        ProviderRouter router = router();
+
+        Map<String, Integer> counts = route(router);
+
+        // Tỉ lệ lỗi ~100%: chỉ còn sàn min-weight-percent (1% tổng) để số liệu phục hồi được
+        assertEquals(0.01, weight("slow") / weight("fast"), 0.005);
+        assertTrue(share(counts, "slow") < 0.03);
+        assertTrue(counts.getOrDefault("slow", 0) > 0, "Sàn trọng số vẫn cho một ít traffic");
+    }
+
+    @Test
+    void testUnhealthyProviderIsSkipped() {
+        recordLatency("fast", 100, 20);
+        recordLatency("slow", 50, 20);
+        slow.healthy.set(false);
+        ProviderRouter router = router();
+
+        Map<String, Integer> counts = route(router);
+
+        assertEquals(0.0, weight("slow"));
+        assertEquals(REQUESTS, counts.getOrDefault("fast", 0));
+
+        // Circuit breaker đóng lại: provider quay lại bảng route ở lần refresh sau
+        slow.healthy.set(true);
+        counts = route(router);
+        assertTrue(weight("slow") > 0);
+        assertTrue(counts.getOrDefault("slow", 0) > 0);
+    }
+
+    @Test
+    void testMissingProviderIsSkipped() {
+        routingConfig.getWeights().put("unknown", 50.0);
+        ProviderRouter router = router();
+
+        Map<String, Integer> counts = route(router);
+
+        assertEquals(0.0, weight("unknown"));
+        assertFalse(counts.containsKey("unknown"));
+    }
+
+    @Test
+    void testOutOfBudgetProviderIsDeprioritized() {
+        Map<String, Double> qps = new HashMap<>();
+        qps.put("slow", 1.0);
+        rateLimitConfig.setProviders(qps);
+        ProviderRateLimiter rateLimiter = new ProviderRateLimiter(rateLimitConfig, registry);
+        recordLatency("fast", 100, 20);
+        recordLatency("slow", 100, 20);
+
+        // Dùng hết token (burst = QPS = 1): budget còn lại ~0, hệ số budget giữ ở mức sàn 0.1
+        rateLimiter.execute("slow", () -> null);
+        ProviderRouter router = router(rateLimiter);
+        router.choose();
+        assertEquals(0.1, weight("slow") / weight("fast"), 0.01);
+
+        // Token hồi dần (1/s) trong lúc route nên share có thể nhích lên một chút
+        Map<String, Integer> counts = route(router);
+        assertTrue(share(counts, "slow") < 0.2);
+    }
+
+    @Test
+    void testRoutingMetrics() {
+        recordLatency("fast", 100, 20);
+        recordLatency("slow", 300, 20);
+        latencyTracker.recordFailure("slow", 300);
+        ProviderRouter router = router();
+
+        Map<String, Integer> counts = route(router);
+
+        assertEquals(counts.get("fast"), (int) decisions("fast"));
+        assertEquals(counts.get("slow"), (int) decisions("slow"));
+        assertEquals(REQUESTS, (int) (decisions("fast") + decisions("slow")));
+        assertEquals(100.0, registry.get("moderation.routing.latency.ewma").tag("provider", "fast").gauge().value());
+        assertEquals(latencyTracker.errorRate("slow"),
+                registry.get("moderation.routing.error.rate").tag("provider", "slow").gauge().value());
+        assertTrue(registry.get("moderation.routing.error.rate").tag("provider", "slow").gauge().value() > 0);
+        assertTrue(weight("fast") > weight("slow"));
+    }
+
+    @Test
+    void testDefaultsToActiveProviderWithoutWeights() {
+        routingConfig.setWeights(new LinkedHashMap<>());
+        ProviderRouter router = router();
+
+        assertEquals("fast", router.choose());
+        assertEquals(1.0, decisions("fast"));
+    }
+
+    private ProviderRouter router() {
+        return router(new ProviderRateLimiter(rateLimitConfig, registry));
+    }
+
+    private ProviderRouter router(ProviderRateLimiter rateLimiter) {
+        ModerationProviderFactory factory = new ModerationProviderFactory(List.of(fast, slow), executor);
+        return new ProviderRouter(routingConfig, factory, latencyTracker, rateLimiter, registry, "fast");
+    }
+
+    private void recordLatency(String providerName, long latencyMs, int samples) {
+        for (int i = 0; i < samples; i++) {
+            latencyTracker.record(providerName, latencyMs);
+        }
+    }
+
+    private static Map<String, Integer> route(ProviderRouter router) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            counts.merge(router.choose(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static double share(Map<String, Integer> counts, String providerName) {
+        return counts.getOrDefault(providerName, 0) / (double) REQUESTS;
+    }
+
+    private double weight(String providerName) {
+        return registry.get("moderation.routing.weight").tag("provider", providerName).gauge().value();
+    }
+
+    private double decisions(String providerName) {
+        var counter = registry.find("moderation.routing.decisions").tag("provider", providerName).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private record StubProvider(String name, AtomicBoolean healthy) implements ModerationProvider {
+
+        StubProvider(String name) {
+            this(name, new AtomicBoolean(true));
+        }
+
+        @Override
+        public String getProviderName() {
+            return name;
+        }
+
+        @Override
+        public ModerationResult moderateText(String text, Map<String, Object> options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isHealthy() {
+            return healthy.get();
+        }
+
+        @Override
+        public ProviderConfig getConfig() {
+            return null;
+        }
+    }
+}
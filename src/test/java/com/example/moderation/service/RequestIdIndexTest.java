@@ -0,0 +1,93 @@
+package com.example.moderation.service;
+
+import com.example.moderation.config.PersistenceConfig;
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.store.MappedLogResultStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RequestIdIndex
+ */
+class RequestIdIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MappedLogResultStore store;
+    private RequestIdIndex index;
+
+    @BeforeEach
+    void setUp() {
+        PersistenceConfig config = new PersistenceConfig();
+        config.getMappedLog().setDirectory(directory.toString());
+        config.getMappedLog().setSegmentSizeMb(1);
+        store = new MappedLogResultStore(config, meterRegistry, false);
+        store.save(result("seeded"));
+
+        index = new RequestIdIndex(store, meterRegistry, 10_000, 0.01, 4);
+        index.seedFromDatabase();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void testInFlightDuplicateRejected() {
+        assertTrue(index.tryAccept("req-1"));
+        assertFalse(index.tryAccept("req-1"));
+        assertEquals(1.0, acceptedSize());
+    }
+
+    @Test
+    void testPersistedIdLeavesSetButStaysDuplicate() {
+        assertTrue(index.tryAccept("req-1"));
+        store.save(result("req-1"));
+        index.persisted("req-1");
+
+        assertEquals(0.0, acceptedSize());
+        assertFalse(index.tryAccept("req-1"), "Bloom filter positive + DB lookup vẫn phát hiện duplicate");
+        assertEquals(0.0, acceptedSize(), "ID đã có trong store không được giữ lại trong set");
+    }
+
+    @Test
+    void testSeededIdRejectedWithoutGrowingSet() {
+        assertFalse(index.tryAccept("seeded"));
+        assertEquals(0.0, acceptedSize());
+    }
+
+    @Test
+    void testReleasedIdCanBeRetried() {
+        assertTrue(index.tryAccept("req-1"));
+        index.release("req-1");
+
+        assertTrue(index.tryAccept("req-1"));
+    }
+
+    private double acceptedSize() {
+        return meterRegistry.get("moderation.request_id_index.accepted.size").gauge().value();
+    }
+
+    private static ModerationResult result(String requestId) {
+        return ModerationResult.builder()
+                .requestId(requestId)
+                .runId("run-a")
+                .statusCode(200)
+                .latencyMs(10L)
+                .timestamp(LocalDateTime.now())
+                .attempts(1)
+                .success(true)
+                .build();
+    }
+}
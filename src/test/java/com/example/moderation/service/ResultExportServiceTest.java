@@ -0,0 +1,155 @@
+package com.example.moderation.service;
+
+import com.example.moderation.config.PersistenceConfig;
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.store.MappedLogResultStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ResultExportService (NDJSON export qua keyset pagination)
+ */
+class ResultExportServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 15, 10, 0);
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MappedLogResultStore store;
+    private ResultExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        PersistenceConfig config = new PersistenceConfig();
+        config.getMappedLog().setDirectory(directory.toString());
+        config.getMappedLog().setSegmentSizeMb(1);
+        store = new MappedLogResultStore(config, new SimpleMeterRegistry(), true);
+
+        exportService = new ResultExportService(store, objectMapper, new SimpleMeterRegistry());
+        // Trang nhỏ để mọi test đi qua nhiều trang, cắt giữa các row cùng timestamp
+        ReflectionTestUtils.setField(exportService, "pageSize", 2);
+
+        // Ghi ngược thứ tự thời gian, mỗi timestamp 3 row
+        for (int i = 8; i >= 0; i--) {
+            store.save(result("req-" + i, BASE.plusSeconds(i / 3)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void testExportAllRowsInKeysetOrder() throws IOException {
+        List<JsonNode> rows = export(exportService.resolveFields(null), null, null, Long.MAX_VALUE);
+
+        assertEquals(9, rows.size());
+        assertEquals(9, rows.stream().map(row -> row.get("requestId").asText()).distinct().count());
+        for (int i = 1; i < rows.size(); i++) {
+            String previousTimestamp = rows.get(i - 1).get("timestamp").asText();
+            String timestamp = rows.get(i).get("timestamp").asText();
+            int cmp = previousTimestamp.compareTo(timestamp);
+            assertTrue(cmp < 0 || (cmp == 0 && rows.get(i - 1).get("id").asLong() < rows.get(i).get("id").asLong()));
+        }
+    }
+
+    @Test
+    void testResumeFromCursorOnEqualTimestamp() throws IOException {
+        List<JsonNode> all = export(exportService.resolveFields(null), null, null, Long.MAX_VALUE);
+        JsonNode cursor = all.get(3); // row giữa của timestamp thứ 2
+
+        List<JsonNode> rest = export(exportService.resolveFields(null),
+                LocalDateTime.parse(cursor.get("timestamp").asText()), cursor.get("id").asLong(), Long.MAX_VALUE);
+
+        assertEquals(all.subList(4, all.size()), rest);
+    }
+
+    @Test
+    void testLimit() throws IOException {
+        List<JsonNode> rows = export(exportService.resolveFields(null), null, null, 5);
+
+        assertEquals(5, rows.size());
+        assertEquals(export(exportService.resolveFields(null), null, null, Long.MAX_VALUE).subList(0, 5), rows);
+    }
+
+    @Test
+    void testHeavyFieldsExcludedByDefault() throws IOException {
+        Set<String> defaults = exportService.resolveFields(null);
+        assertFalse(defaults.contains("payload"));
+        assertFalse(defaults.contains("responseBody"));
+
+        JsonNode light = export(defaults, null, null, 1).get(0);
+        assertFalse(light.has("payload"));
+        assertFalse(light.has("responseBody"));
+        assertEquals("LOW", light.get("riskLevel").asText());
+
+        JsonNode heavy = export(exportService.resolveFields(List.of("all")), null, null, 1).get(0);
+        assertEquals("{\"code\":1100}", heavy.get("responseBody").asText());
+        assertEquals("{\"text\":\"" + heavy.get("requestId").asText() + "\"}", heavy.get("payload").asText());
+    }
+
+    @Test
+    void testSelectedFieldsAlwaysIncludeCursor() throws IOException {
+        JsonNode row = export(exportService.resolveFields(List.of("latencyMs")), null, null, 1).get(0);
+
+        assertEquals(List.of("id", "latencyMs", "timestamp"), fieldNames(row));
+        assertThrows(IllegalArgumentException.class, () -> exportService.resolveFields(List.of("unknown")));
+    }
+
+    private List<JsonNode> export(Set<String> fields, LocalDateTime afterTimestamp, Long afterId, long limit)
+            throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long written = exportService.exportRun("run-a", fields, afterTimestamp, afterId, limit, output);
+
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                rows.add(objectMapper.readTree(line));
+            }
+        }
+        assertEquals(written, rows.size());
+        return rows;
+    }
+
+    private static List<String> fieldNames(JsonNode row) {
+        List<String> names = new ArrayList<>();
+        row.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    private static ModerationResult result(String requestId, LocalDateTime timestamp) {
+        return ModerationResult.builder()
+                .requestId(requestId)
+                .runId("run-a")
+                .payload("{\"text\":\"" + requestId + "\"}")
+                .responseBody("{\"code\":1100}")
+                .statusCode(200)
+                .latencyMs(10L)
+                .timestamp(timestamp)
+                .attempts(1)
+                .success(true)
+                .riskLevel("LOW")
+                .providerName("mock")
+                .build();
+    }
+}
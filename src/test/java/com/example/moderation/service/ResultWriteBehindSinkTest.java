@@ -0,0 +1,271 @@
+package com.example.moderation.service;
+
+import com.example.moderation.config.PersistenceConfig;
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.store.ResultStore;
+import com.example.moderation.store.RunSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ResultWriteBehindSink
+ */
+class ResultWriteBehindSinkTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RecordingStore store = new RecordingStore();
+    private final PersistenceConfig persistenceConfig = new PersistenceConfig();
+    private RequestIdIndex requestIdIndex;
+    private ResultWriteBehindSink sink;
+
+    @BeforeEach
+    void setUp() {
+        PersistenceConfig.WriteBehindConfig config = persistenceConfig.getWriteBehind();
+        config.setEnabled(true);
+        config.setBatchSize(5);
+        config.setFlushIntervalMs(20L);
+        config.setOfferTimeoutMs(10L);
+        config.setShutdownTimeoutMs(5000L);
+
+        requestIdIndex = new RequestIdIndex(store, meterRegistry, 10_000, 0.01, 4);
+        requestIdIndex.seedFromDatabase();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.saveAllGate.countDown();
+        if (sink != null) {
+            sink.shutdown();
+        }
+    }
+
+    @Test
+    void testRowsFlushedInBatches() throws InterruptedException {
+        startSink();
+
+        for (int i = 0; i < 12; i++) {
+            submit("req-" + i);
+        }
+        awaitSaved(12);
+
+        assertTrue(store.batchSizes.stream().allMatch(size -> size <= 5), "batch sizes " + store.batchSizes);
+        assertTrue(store.singleSaveThreads.isEmpty());
+        assertEquals(12.0, counter("moderation.persistence.rows.flushed"));
+        assertEquals(0.0, acceptedSize(), "ID đã ghi phải rời set in-flight");
+    }
+
+    @Test
+    void testCallerRunsWhenQueueFull() throws InterruptedException {
+        persistenceConfig.getWriteBehind().setQueueCapacity(2);
+        persistenceConfig.getWriteBehind().setBatchSize(1);
+        store.blockSaveAll();
+        startSink();
+
+        // Writer giữ row đầu và bị chặn trong saveAll; 2 row tiếp theo lấp đầy queue
+        submit("req-0");
+        assertTrue(store.saveAllEntered.await(2, TimeUnit.SECONDS));
+        submit("req-1");
+        submit("req-2");
+
+        submit("req-3");
+
+        assertEquals(1.0, counter("moderation.persistence.caller.runs"));
+        assertEquals(List.of(Thread.currentThread().getName()), store.singleSaveThreads);
+        assertTrue(store.savedIds.contains("req-3"));
+
+        store.saveAllGate.countDown();
+        awaitSaved(4);
+    }
+
+    @Test
+    void testFailedBatchRetriedRowByRow() {
+        store.failSaveAll = true;
+        store.failingRows.add("bad");
+        startSink();
+
+        submit("good-1");
+        submit("bad");
+        submit("good-2");
+        sink.shutdown();
+
+        assertEquals(Set.of("good-1", "good-2"), Set.copyOf(store.savedIds));
+        assertEquals(2.0, counter("moderation.persistence.rows.flushed"));
+        assertEquals(1.0, counter("moderation.persistence.rows.failed"));
+        assertEquals(0.0, acceptedSize());
+        assertTrue(requestIdIndex.tryAccept("bad"), "ID ghi lỗi phải được release để client retry");
+    }
+
+    @Test
+    void testShutdownDrainsQueue() {
+        persistenceConfig.getWriteBehind().setBatchSize(1000);
+        persistenceConfig.getWriteBehind().setFlushIntervalMs(100L);
+        startSink();
+
+        for (int i = 0; i < 10; i++) {
+            submit("req-" + i);
+        }
+        sink.shutdown();
+
+        assertEquals(10, store.savedIds.size(), "Mọi row đã submit phải được ghi trước khi shutdown trả về");
+    }
+
+    @Test
+    void testShutdownFlushesRemainingRowsWhenWriterIsStuck() throws InterruptedException {
+        persistenceConfig.getWriteBehind().setBatchSize(1);
+        persistenceConfig.getWriteBehind().setShutdownTimeoutMs(50L);
+        store.blockSaveAll();
+        startSink();
+
+        submit("stuck");
+        assertTrue(store.saveAllEntered.await(2, TimeUnit.SECONDS));
+        submit("req-1");
+        submit("req-2");
+
+        // saveAll của shutdown cũng bị chặn bởi gate: mở gate từ thread khác sau timeout
+        new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            store.saveAllGate.countDown();
+        }).start();
+        sink.shutdown();
+
+        assertTrue(store.savedIds.containsAll(List.of("req-1", "req-2")));
+    }
+
+    private void startSink() {
+        sink = new ResultWriteBehindSink(store, requestIdIndex, persistenceConfig, meterRegistry);
+        sink.start();
+    }
+
+    private void submit(String requestId) {
+        assertTrue(requestIdIndex.tryAccept(requestId));
+        sink.submit(ModerationResult.builder()
+                .requestId(requestId)
+                .runId("run-a")
+                .timestamp(LocalDateTime.now())
+                .success(true)
+                .build());
+    }
+
+    private void awaitSaved(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (store.savedIds.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, store.savedIds.size());
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private double acceptedSize() {
+        return meterRegistry.get("moderation.request_id_index.accepted.size").gauge().value();
+    }
+
+    /**
+     * ResultStore ghi lại các lần save / saveAll, có thể làm lỗi hoặc chặn saveAll
+     */
+    private static class RecordingStore implements ResultStore {
+
+        private final List<String> savedIds = new CopyOnWriteArrayList<>();
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final List<String> singleSaveThreads = new CopyOnWriteArrayList<>();
+        private final Set<String> failingRows = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch saveAllEntered = new CountDownLatch(1);
+        private volatile CountDownLatch saveAllGate = new CountDownLatch(0);
+        private volatile boolean failSaveAll;
+
+        void blockSaveAll() {
+            saveAllGate = new CountDownLatch(1);
+        }
+
+        @Override
+        public void save(ModerationResult result) {
+            singleSaveThreads.add(Thread.currentThread().getName());
+            if (failingRows.contains(result.getRequestId())) {
+                throw new IllegalStateException("constraint violation");
+            }
+            savedIds.add(result.getRequestId());
+        }
+
+        @Override
+        public void saveAll(List<ModerationResult> results) {
+            saveAllEntered.countDown();
+            try {
+                saveAllGate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failSaveAll) {
+                throw new IllegalStateException("batch insert failed");
+            }
+            batchSizes.add(results.size());
+            results.forEach(result -> savedIds.add(result.getRequestId()));
+        }
+
+        @Override
+        public boolean existsByRequestId(String requestId) {
+            return savedIds.contains(requestId);
+        }
+
+        @Override
+        public Optional<ModerationResult> findByRequestId(String requestId) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void forEachRequestId(Consumer<String> action) {
+            savedIds.forEach(action);
+        }
+
+        @Override
+        public long countByRunId(String runId) {
+            return savedIds.size();
+        }
+
+        @Override
+        public List<ModerationResult> findByRunIdOrderByTimestampAsc(String runId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void scanRun(String runId, Consumer<ModerationResult> action) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void scanRunPage(String runId, LocalDateTime afterTimestamp, Long afterId, int limit,
+                                boolean includeBodies, Consumer<ModerationResult> action) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public RunSummary summarizeRun(String runId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Long> findProviderLatenciesByRunIds(Collection<String> runIds) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.moderation.service;
+
+import com.example.moderation.config.PersistenceConfig;
+import com.example.moderation.dto.PerformanceMetrics;
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.store.MappedLogResultStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RunAggregates (record, dựng lại từ store, persist / evict)
+ */
+class RunAggregatesTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 15, 10, 0);
+
+    @TempDir
+    Path directory;
+
+    private MappedLogResultStore store;
+    private RunAggregates aggregates;
+    private int sequence;
+
+    @BeforeEach
+    void setUp() {
+        PersistenceConfig config = new PersistenceConfig();
+        config.getMappedLog().setDirectory(directory.toString());
+        config.getMappedLog().setSegmentSizeMb(1);
+        store = new MappedLogResultStore(config, new SimpleMeterRegistry(), false);
+        aggregates = new RunAggregates(store, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void testRecordMaintainsMetrics() {
+        aggregates.record(result("run-a", 10, true), 10_500);
+        aggregates.record(result("run-a", 30, false), 30_000);
+
+        PerformanceMetrics metrics = aggregates.find("run-a").toMetrics();
+        assertEquals(2, metrics.getTotalRequests());
+        assertEquals(1, metrics.getSuccessCount());
+        assertEquals(1, metrics.getFailCount());
+        assertEquals(10L, metrics.getMinLatency());
+        assertEquals(30L, metrics.getMaxLatency());
+        assertNull(aggregates.find("run-b"));
+    }
+
+    @Test
+    void testLoadRebuildsFromStore() {
+        for (int i = 1; i <= 5; i++) {
+            store.save(result("run-a", i * 10, i != 3));
+        }
+
+        RunAggregate aggregate = aggregates.load("run-a");
+
+        assertNotNull(aggregate);
+        assertEquals(5, aggregate.getCount());
+        assertEquals(4, aggregate.toMetrics().getSuccessCount());
+        assertSame(aggregate, aggregates.find("run-a"));
+        assertNull(aggregates.load("run-unknown"));
+        assertNull(aggregates.find("run-unknown"), "Run không có kết quả không được giữ trong bộ nhớ");
+    }
+
+    @Test
+    void testRecordAfterRestartContinuesFromStore() {
+        store.save(result("run-a", 10, true));
+        store.save(result("run-a", 20, true));
+
+        // Row mới được record trước khi submit xuống store: không bị đếm hai lần
+        ModerationResult next = result("run-a", 30, true);
+        aggregates.record(next, 30_000);
+        store.save(next);
+
+        assertEquals(3, aggregates.find("run-a").getCount());
+    }
+
+    @Test
+    void testPersistEvictCycle() {
+        aggregates.record(result("run-a", 10, true), 10_000);
+        RunAggregate aggregate = aggregates.find("run-a");
+        assertTrue(aggregate.isDirty());
+
+        aggregates.evictIdle(-1);
+        assertSame(aggregate, aggregates.find("run-a"), "Aggregate chưa persist không bị evict");
+
+        aggregate.markPersisted(aggregate.getCount());
+        assertFalse(aggregate.isDirty());
+        aggregates.record(result("run-a", 20, true), 20_000);
+        assertTrue(aggregate.isDirty(), "Kết quả mới sau khi persist");
+
+        aggregate.markPersisted(aggregate.getCount());
+        aggregates.evictIdle(60_000);
+        assertSame(aggregate, aggregates.find("run-a"), "Chưa idle đủ lâu");
+
+        aggregates.evictIdle(-1);
+        assertNull(aggregates.find("run-a"));
+    }
+
+    @Test
+    void testConcurrentRecordsDuringRebuild() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            store.save(result("run-a", 10, true));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                List<ModerationResult> batch = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    batch.add(result("run-a", 20, true));
+                }
+                futures.add(executor.submit(() -> batch.forEach(result -> {
+                    aggregates.record(result, 20_000);
+                    store.save(result);
+                })));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1400, aggregates.find("run-a").getCount());
+    }
+
+    private ModerationResult result(String runId, long latencyMs, boolean success) {
+        int id = sequence++;
+        return ModerationResult.builder()
+                .requestId("req-" + id)
+                .runId(runId)
+                .statusCode(success ? 200 : 500)
+                .latencyMs(latencyMs)
+                .timestamp(BASE.plusSeconds(id))
+                .attempts(1)
+                .success(success)
+                .providerName("mock")
+                .build();
+    }
+}
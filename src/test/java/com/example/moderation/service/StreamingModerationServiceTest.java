@@ -0,0 +1,220 @@
+package com.example.moderation.service;
+
+import com.example.moderation.dto.ModerationRequest;
+import com.example.moderation.dto.ModerationResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for StreamingModerationService (NDJSON vào / ra, dòng lỗi, client ngắt kết nối)
+ */
+class StreamingModerationServiceTest {
+
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger providerCalls = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testNdjsonRoundTrip() throws Exception {
+        StreamingModerationService service = service(objectMapper, StreamingModerationServiceTest::response);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            input.append(objectMapper.writeValueAsString(request("req-" + i))).append('\n');
+        }
+        input.append("\n   \n");  // dòng trống bị bỏ qua
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long lines = service.moderateStream(in(input.toString()), output, 4);
+
+        assertEquals(20, lines);
+        List<ModerationResponse> responses = parse(output);
+        assertEquals(20, responses.size());
+        Set<String> ids = responses.stream().map(ModerationResponse::getRequestId).collect(Collectors.toSet());
+        for (int i = 0; i < 20; i++) {
+            assertTrue(ids.contains("req-" + i));
+        }
+        assertTrue(responses.stream().allMatch(ModerationResponse::getSuccess));
+        assertEquals(20.0, counter("moderation.stream.items"));
+        assertEquals(20, providerCalls.get());
+    }
+
+    @Test
+    void testInvalidLineMidStreamDoesNotStopStream() throws Exception {
+        StreamingModerationService service = service(objectMapper, StreamingModerationServiceTest::response);
+        String input = objectMapper.writeValueAsString(request("req-1")) + "\n"
+                + "{not json\n"
+                + "{\"id\":\"req-3\",\"text\":\"\"}\n"
+                + objectMapper.writeValueAsString(request("req-4")) + "\n";
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long lines = service.moderateStream(in(input), output, 1);
+
+        assertEquals(4, lines);
+        List<ModerationResponse> responses = parse(output);
+        assertEquals(4, responses.size());
+
+        List<String> errors = responses.stream()
+                .filter(response -> !response.getSuccess())
+                .map(ModerationResponse::getErrorMessage)
+                .sorted()
+                .toList();
+        assertEquals(2, errors.size());
+        assertTrue(errors.get(0).startsWith("Dòng 2: "), errors.get(0));
+        assertTrue(errors.get(1).startsWith("Dòng 3: "), errors.get(1));
+        assertTrue(errors.get(1).contains("Text không được để trống"), errors.get(1));
+
+        Set<String> moderated = responses.stream()
+                .filter(ModerationResponse::getSuccess)
+                .map(ModerationResponse::getRequestId)
+                .collect(Collectors.toSet());
+        assertEquals(Set.of("req-1", "req-4"), moderated);
+        assertEquals(2.0, counter("moderation.stream.invalid.lines"));
+        assertEquals(2, providerCalls.get(), "Dòng lỗi không gọi provider");
+    }
+
+    @Test
+    void testSerializationErrorOnlyAffectsItsRow() throws Exception {
+        // confidenceScore âm không serialize được: chỉ dòng của item đó bị thay bằng dòng lỗi
+        ObjectMapper failingMapper = new ObjectMapper().registerModule(new SimpleModule()
+                .addSerializer(Double.class, new StdSerializer<>(Double.class) {
+                    @Override
+                    public void serialize(Double value, JsonGenerator gen, SerializerProvider provider)
+                            throws IOException {
+                        if (value < 0) {
+                            throw JsonMappingException.from(gen, "negative score");
+                        }
+                        gen.writeNumber(value);
+                    }
+                }));
+        StreamingModerationService service = service(failingMapper, request -> {
+            ModerationResponse response = response(request);
+            if (request.getId().equals("req-bad")) {
+                response.setConfidenceScore(-1.0);
+            }
+            return response;
+        });
+        String input = objectMapper.writeValueAsString(request("req-1")) + "\n"
+                + objectMapper.writeValueAsString(request("req-bad")) + "\n"
+                + objectMapper.writeValueAsString(request("req-3")) + "\n";
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        service.moderateStream(in(input), output, 1);
+
+        Map<String, ModerationResponse> responses = parse(output).stream()
+                .collect(Collectors.toMap(ModerationResponse::getRequestId, Function.identity()));
+        assertEquals(3, responses.size());
+        assertTrue(responses.get("req-1").getSuccess());
+        assertTrue(responses.get("req-3").getSuccess());
+        assertFalse(responses.get("req-bad").getSuccess());
+        assertTrue(responses.get("req-bad").getErrorMessage().contains("negative score"));
+        assertEquals(1.0, counter("moderation.stream.serialization.errors"));
+    }
+
+    @Test
+    void testClientDisconnectStopsReading() throws Exception {
+        StreamingModerationService service = service(objectMapper, StreamingModerationServiceTest::response);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            input.append(objectMapper.writeValueAsString(request("req-" + i))).append('\n');
+        }
+        AtomicInteger writeAttempts = new AtomicInteger();
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                writeAttempts.incrementAndGet();
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                write(0);
+            }
+        };
+
+        long lines = service.moderateStream(in(input.toString()), disconnected, 2);
+
+        assertTrue(lines < 1000, "Ngừng đọc input sau khi client ngắt kết nối, đã đọc " + lines);
+        assertTrue(providerCalls.get() < 1000);
+        assertTrue(writeAttempts.get() <= 2, "Không ghi tiếp sau lỗi I/O (ngoài item đang chạy)");
+        assertEquals(0.0, registry.get("moderation.batch.inflight").gauge().value(), "Item đang chạy đã xong");
+    }
+
+    private StreamingModerationService service(ObjectMapper mapper,
+                                               Function<ModerationRequest, ModerationResponse> handler) {
+        ContentModerationService moderationService = new ContentModerationService(
+                null, null, null, null, null, null, null, null, null, null, null, null, null, null, null) {
+            @Override
+            public ModerationResponse moderateContent(ModerationRequest request) {
+                providerCalls.incrementAndGet();
+                return handler.apply(request);
+            }
+        };
+        BatchModerationExecutor batchExecutor = new BatchModerationExecutor(moderationService, executor, registry);
+        return new StreamingModerationService(batchExecutor, mapper, VALIDATOR, registry);
+    }
+
+    private List<ModerationResponse> parse(ByteArrayOutputStream output) throws IOException {
+        List<ModerationResponse> responses = new ArrayList<>();
+        for (String line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                responses.add(objectMapper.readValue(line, ModerationResponse.class));
+            }
+        }
+        return responses;
+    }
+
+    private double counter(String name) {
+        return registry.get(name).counter().count();
+    }
+
+    private static ByteArrayInputStream in(String input) {
+        return new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ModerationRequest request(String id) {
+        return ModerationRequest.builder().id(id).text("text of " + id).build();
+    }
+
+    private static ModerationResponse response(ModerationRequest request) {
+        return ModerationResponse.builder()
+                .requestId(request.getId())
+                .riskLevel("LOW")
+                .confidenceScore(0.9)
+                .success(true)
+                .build();
+    }
+}
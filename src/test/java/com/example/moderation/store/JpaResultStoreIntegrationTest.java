@@ -0,0 +1,173 @@
+package com.example.moderation.store;
+
+import com.example.moderation.entity.ModerationResult;
+import com.example.moderation.repository.ModerationResultRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for JpaResultStore keyset pagination (scanRunPage) và report một lượt SQL (summarizeRun)
+ */
+@SpringBootTest
+class JpaResultStoreIntegrationTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 15, 10, 0);
+
+    @Autowired
+    private JpaResultStore resultStore;
+
+    @Autowired
+    private ModerationResultRepository resultRepository;
+
+    private final String runId = "jpa-page-" + UUID.randomUUID();
+
+    @AfterEach
+    void cleanup() {
+        resultRepository.deleteAll(resultRepository.findByRunId(runId));
+    }
+
+    @Test
+    void testResumeCursorOnEqualTimestamps() {
+        // 3 timestamp, mỗi timestamp 3 row: trang 2 row luôn cắt giữa các row cùng timestamp
+        List<ModerationResult> saved = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            saved.add(result("req-" + i, BASE.plusSeconds(i / 3)));
+        }
+        resultStore.saveAll(saved);
+
+        List<ModerationResult> all = new ArrayList<>();
+        LocalDateTime afterTimestamp = null;
+        Long afterId = null;
+        List<ModerationResult> page;
+        do {
+            page = new ArrayList<>();
+            resultStore.scanRunPage(runId, afterTimestamp, afterId, 2, false, page::add);
+            all.addAll(page);
+            if (!page.isEmpty()) {
+                afterTimestamp = page.get(page.size() - 1).getTimestamp();
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == 2);
+
+        assertEquals(9, all.size());
+        assertEquals(9, all.stream().map(ModerationResult::getRequestId).distinct().count());
+        for (int i = 1; i < all.size(); i++) {
+            ModerationResult previous = all.get(i - 1);
+            ModerationResult current = all.get(i);
+            assertTrue(previous.getTimestamp().isBefore(current.getTimestamp())
+                    || (previous.getTimestamp().equals(current.getTimestamp()) && previous.getId() < current.getId()));
+        }
+    }
+
+    @Test
+    void testLimitAndHeavyFields() {
+        List<ModerationResult> saved = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            saved.add(result("req-" + i, BASE.plusSeconds(i)));
+        }
+        resultStore.saveAll(saved);
+
+        List<ModerationResult> light = new ArrayList<>();
+        resultStore.scanRunPage(runId, null, null, 3, false, light::add);
+        assertEquals(3, light.size());
+        assertEquals(runId + "-req-0", light.get(0).getRequestId());
+        assertNull(light.get(0).getPayload());
+        assertNull(light.get(0).getResponseBody());
+        assertEquals("LOW", light.get(0).getRiskLevel());
+
+        List<ModerationResult> heavy = new ArrayList<>();
+        resultStore.scanRunPage(runId, null, null, 1, true, heavy::add);
+        assertEquals(1, heavy.size());
+        assertEquals("{\"text\":\"req-0\"}", heavy.get(0).getPayload());
+        assertEquals("{\"code\":1100}", heavy.get(0).getResponseBody());
+    }
+
+    @Test
+    void testSummarizeSingleRow() {
+        assertSummaryMatchesSort(new long[]{42});
+    }
+
+    @Test
+    void testSummarizeOddCount() {
+        assertSummaryMatchesSort(new long[]{70, 10, 50, 30, 90, 20, 80, 40, 60});
+    }
+
+    @Test
+    void testSummarizeEvenCount() {
+        // n = 20: rank p50 = 10, p95 = 19, p99 = 20 - phân biệt ceil với round/floor
+        long[] latencies = new long[20];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = (i * 7L) % 20 * 5 + 5;
+        }
+        assertSummaryMatchesSort(latencies);
+    }
+
+    @Test
+    void testSummarizeTiedLatencies() {
+        assertSummaryMatchesSort(new long[]{10, 10, 10, 20, 20, 20, 20, 30, 30, 100, 100});
+    }
+
+    @Test
+    void testSummarizeUnknownRunReturnsNull() {
+        assertNull(resultStore.summarizeRun(runId));
+    }
+
+    private void assertSummaryMatchesSort(long[] latencies) {
+        List<ModerationResult> saved = new ArrayList<>();
+        for (int i = 0; i < latencies.length; i++) {
+            ModerationResult result = result("req-" + i, BASE.plusSeconds(i));
+            result.setLatencyMs(latencies[i]);
+            result.setSuccess(i % 3 != 0);
+            saved.add(result);
+        }
+        resultStore.saveAll(saved);
+
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+
+        RunSummary summary = resultStore.summarizeRun(runId);
+
+        assertNotNull(summary);
+        assertEquals(n, summary.getTotalRequests());
+        assertEquals(saved.stream().filter(ModerationResult::getSuccess).count(), summary.getSuccessCount());
+        assertEquals(sorted[0], summary.getMinLatencyMs());
+        assertEquals(sorted[n - 1], summary.getMaxLatencyMs());
+        assertEquals(Arrays.stream(sorted).average().orElseThrow(), summary.getAvgLatencyMs(), 1e-9);
+        assertEquals(sorted[ceilRank(50, n) - 1], summary.getP50LatencyMs(), "p50, n=" + n);
+        assertEquals(sorted[ceilRank(95, n) - 1], summary.getP95LatencyMs(), "p95, n=" + n);
+        assertEquals(sorted[ceilRank(99, n) - 1], summary.getP99LatencyMs(), "p99, n=" + n);
+        assertEquals(BASE, summary.getFirstTimestamp());
+        assertEquals(BASE.plusSeconds(n - 1), summary.getLastTimestamp());
+    }
+
+    private static int ceilRank(int percentile, int n) {
+        return Math.max(1, (int) Math.ceil(percentile * n / 100.0));
+    }
+
+    private ModerationResult result(String requestId, LocalDateTime timestamp) {
+        return ModerationResult.builder()
+                .requestId(runId + "-" + requestId)
+                .runId(runId)
+                .payload("{\"text\":\"" + requestId + "\"}")
+                .responseBody("{\"code\":1100}")
+                .statusCode(200)
+                .latencyMs(10L)
+                .timestamp(timestamp)
+                .attempts(1)
+                .success(true)
+                .riskLevel("LOW")
+                .providerName("mock")
+                .build();
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.moderation.store;
+
+import com.example.moderation.config.PersistenceConfig;
+import com.example.moderation.entity.ModerationResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MappedLogResultStore
+ */
+class MappedLogResultStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedLogResultStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void testSaveAndFind() {
+        store = open(1);
+        ModerationResult result = result("req-1", "run-a", 42);
+        result.setPayload("{\"id\":\"req-1\",\"text\":\"" + "Xin chào ".repeat(20) + "\"}");
+        result.setErrorMessage(null);
+        result.setConfidenceScore(null);
+        store.save(result);
+
+        ModerationResult found = store.findByRequestId("req-1").orElseThrow();
+        assertNotNull(found.getId());
+        assertEquals(result.getPayload(), found.getPayload());
+        assertEquals("{\"code\":1100}", found.getResponseBody());
+        assertEquals(42L, found.getLatencyMs());
+        assertEquals(result.getTimestamp(), found.getTimestamp());
+        assertTrue(found.getSuccess());
+        assertNull(found.getCached());
+        assertNull(found.getConfidenceScore());
+        assertNull(found.getErrorMessage());
+        assertTrue(store.existsByRequestId("req-1"));
+        assertFalse(store.existsByRequestId("req-2"));
+    }
+
+    @Test
+    void testScanRunAcrossSegments() {
+        store = open(1);
+        // Segment 1MB, record ~16KB (body ngẫu nhiên, gần như không nén được): run trải qua nhiều segment
+        StringBuilder random = new StringBuilder();
+        Random rnd = new Random(42);
+        for (int i = 0; i < 16 * 1024; i++) {
+            random.append((char) ('!' + rnd.nextInt(90)));
+        }
+        String body = random.toString();
+        for (int i = 0; i < 200; i++) {
+            ModerationResult result = result("req-" + i, i % 2 == 0 ? "run-a" : "run-b", i);
+            result.setResponseBody(body);
+            store.save(result);
+        }
+
+        List<ModerationResult> scanned = new ArrayList<>();
+        store.scanRun("run-a", scanned::add);
+
+        assertEquals(100, scanned.size());
+        assertEquals(100, store.countByRunId("run-a"));
+        assertTrue(scanned.stream().allMatch(r -> "run-a".equals(r.getRunId()) && r.getResponseBody() == null));
+        assertEquals(body, store.findByRunIdOrderByTimestampAsc("run-b").get(0).getResponseBody());
+        assertEquals(0, store.countByRunId("run-c"));
+        assertTrue(directory.toFile().list().length > 1);
+    }
+
+    @Test
+    void testRecoverAfterReopen() {
+        store = open(1);
+        store.save(result("req-1", "run-a", 10));
+        store.saveAll(List.of(result("req-2", "run-a", 20), result("req-3", "run-b", 30)));
+        store.close();
+
+        store = open(1);
+        assertEquals(2, store.countByRunId("run-a"));
+        assertEquals(List.of(10L, 20L), store.findProviderLatenciesByRunIds(List.of("run-a")));
+        store.save(result("req-4", "run-a", 40));
+        assertEquals(3, store.findByRunIdOrderByTimestampAsc("run-a").size());
+    }
+
+    @Test
+    void testDuplicateRequestIdRejectsWholeBatch() {
+        store = open(1);
+        store.save(result("req-1", "run-a", 10));
+
+        assertThrows(DataIntegrityViolationException.class, () -> store.save(result("req-1", "run-a", 10)));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> store.saveAll(List.of(result("req-2", "run-a", 20), result("req-1", "run-a", 10))));
+        assertFalse(store.existsByRequestId("req-2"));
+    }
+
+    @Test
+    void testSummarizeRun() {
+        store = open(1);
+        for (int i = 1; i <= 200; i++) {
+            ModerationResult result = result("req-" + i, "run-a", 201 - i);
+            result.setSuccess(i % 10 != 0);
+            store.save(result);
+        }
+        store.save(result("req-other", "run-b", 5000));
+
+        RunSummary summary = store.summarizeRun("run-a");
+
+        assertEquals(200, summary.getTotalRequests());
+        assertEquals(180, summary.getSuccessCount());
+        assertEquals(1, summary.getMinLatencyMs());
+        assertEquals(200, summary.getMaxLatencyMs());
+        assertEquals(100.5, summary.getAvgLatencyMs(), 1e-9);
+        assertEquals(100, summary.getP50LatencyMs());
+        assertEquals(190, summary.getP95LatencyMs());
+        assertEquals(198, summary.getP99LatencyMs());
+        assertFalse(summary.getLastTimestamp().isBefore(summary.getFirstTimestamp()));
+        assertNull(store.summarizeRun("run-c"));
+    }
+
+    @Test
+    void testScanRunPageKeysetOrder() {
+        store = open(1);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 15, 10, 0);
+        // Ghi ngược thứ tự thời gian, mỗi timestamp có 2 record
+        for (int i = 9; i >= 0; i--) {
+            ModerationResult result = result("req-" + i, "run-a", i);
+            result.setTimestamp(base.plusSeconds(i / 2));
+            store.save(result);
+        }
+
+        List<ModerationResult> all = new ArrayList<>();
+        LocalDateTime afterTimestamp = null;
+        Long afterId = null;
+        List<ModerationResult> page;
+        do {
+            page = new ArrayList<>();
+            store.scanRunPage("run-a", afterTimestamp, afterId, 3, false, page::add);
+            all.addAll(page);
+            if (!page.isEmpty()) {
+                afterTimestamp = page.get(page.size() - 1).getTimestamp();
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == 3);
+
+        assertEquals(10, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            ModerationResult previous = all.get(i - 1);
+            ModerationResult current = all.get(i);
+            assertTrue(previous.getTimestamp().isBefore(current.getTimestamp())
+                    || (previous.getTimestamp().equals(current.getTimestamp()) && previous.getId() < current.getId()));
+        }
+        assertNull(all.get(0).getResponseBody());
+
+        List<ModerationResult> withBodies = new ArrayList<>();
+        store.scanRunPage("run-a", null, null, 1, true, withBodies::add);
+        assertEquals("{\"code\":1100}", withBodies.get(0).getResponseBody());
+    }
+
+    @Test
+    void testScanRunPageSeesRecordsAppendedBetweenPages() {
+        store = open(1);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 15, 10, 0);
+        for (int i = 0; i < 4; i++) {
+            ModerationResult result = result("req-" + i, "run-a", i);
+            result.setTimestamp(base.plusSeconds(i));
+            store.save(result);
+        }
+
+        List<ModerationResult> first = new ArrayList<>();
+        store.scanRunPage("run-a", null, null, 2, false, first::add);
+        assertEquals(List.of("req-0", "req-1"), first.stream().map(ModerationResult::getRequestId).toList());
+
+        ModerationResult late = result("req-late", "run-a", 9);
+        late.setTimestamp(base.plusSeconds(10));
+        store.save(late);
+
+        List<ModerationResult> rest = new ArrayList<>();
+        ModerationResult cursor = first.get(1);
+        store.scanRunPage("run-a", cursor.getTimestamp(), cursor.getId(), 10, false, rest::add);
+        assertEquals(List.of("req-2", "req-3", "req-late"), rest.stream().map(ModerationResult::getRequestId).toList());
+    }
+
+    @Test
+    void testReopenContinuesSegmentNumbering() throws Exception {
+        store = open(1, false);
+        store.save(large("req-0", 600_000));
+        store.save(large("req-1", 600_000));
+        store.close();
+
+        store = open(1, false);
+        store.save(large("req-2", 600_000));
+
+        assertTrue(Files.exists(directory.resolve("segment-00000002.log")));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(600_000 + 2, store.findByRequestId("req-" + i).orElseThrow().getPayload().length());
+        }
+    }
+
+    @Test
+    void testRecoverFailsOnMissingSegment() throws Exception {
+        store = open(1, false);
+        for (int i = 0; i < 3; i++) {
+            store.save(large("req-" + i, 600_000));
+        }
+        store.close();
+        store = null;
+        Files.delete(directory.resolve("segment-00000001.log"));
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> open(1, false));
+        assertTrue(error.getMessage().contains("segment-00000001.log"), error.getMessage());
+        assertTrue(Files.exists(directory.resolve("segment-00000002.log")), "Không ghi đè segment có sẵn");
+    }
+
+    @Test
+    void testRecoverFailsOnUnexpectedSegmentName() throws Exception {
+        Files.createFile(directory.resolve("segment-latest.log"));
+
+        assertThrows(IllegalStateException.class, () -> open(1, false));
+    }
+
+    @Test
+    void testSaveAllRollFailureWritesNothing() throws Exception {
+        store = open(1, false);
+        // Segment 0 còn khoảng 22KB: record đầu của batch vừa, record thứ hai thì phải roll
+        store.save(large("req-fill", (1 << 20) - 22_000));
+        List<ModerationResult> batch = List.of(large("req-a", 15_000), large("req-b", 15_000));
+
+        // Không tạo được segment kế tiếp
+        Path blocker = Files.createDirectory(directory.resolve("segment-00000001.log"));
+        assertThrows(UncheckedIOException.class, () -> store.saveAll(batch));
+
+        assertFalse(store.existsByRequestId("req-a"), "Batch lỗi thì không record nào được ghi");
+        assertFalse(store.existsByRequestId("req-b"));
+        assertEquals(1, store.countByRunId("run-a"));
+
+        Files.delete(blocker);
+        store.saveAll(batch);
+        assertTrue(store.existsByRequestId("req-a"));
+        assertTrue(store.existsByRequestId("req-b"));
+
+        store.close();
+        store = open(1, false);
+        assertEquals(3, store.countByRunId("run-a"));
+    }
+
+    @Test
+    void testSaveAllEmptyBatch() {
+        store = open(1, false);
+        store.saveAll(List.of());
+
+        assertEquals(0, store.countByRunId("run-a"));
+        assertFalse(Files.exists(directory.resolve("segment-00000000.log")));
+    }
+
+    private MappedLogResultStore open(int segmentSizeMb) {
+        return open(segmentSizeMb, true);
+    }
+
+    private MappedLogResultStore open(int segmentSizeMb, boolean compression) {
+        PersistenceConfig config = new PersistenceConfig();
+        config.getMappedLog().setDirectory(directory.toString());
+        config.getMappedLog().setSegmentSizeMb(segmentSizeMb);
+        return new MappedLogResultStore(config, new SimpleMeterRegistry(), compression);
+    }
+
+    /**
+     * Record khoảng payloadChars byte (lưu không nén)
+     */
+    private static ModerationResult large(String requestId, int payloadChars) {
+        ModerationResult result = result(requestId, "run-a", 10);
+        result.setPayload("\"" + "x".repeat(payloadChars) + "\"");
+        return result;
+    }
+
+    private static ModerationResult result(String requestId, String runId, long latencyMs) {
+        return ModerationResult.builder()
+                .requestId(requestId)
+                .runId(runId)
+                .responseBody("{\"code\":1100}")
+                .statusCode(200)
+                .latencyMs(latencyMs)
+                .timestamp(LocalDateTime.now())
+                .attempts(1)
+                .success(true)
+                .riskLevel("PASS")
+                .confidenceScore(0.9)
+                .providerName("mock")
+                .errorMessage("none")
+                .build();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.moderation.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AhoCorasick
+ */
+class AhoCorasickTest {
+
+    private final AhoCorasick automaton = AhoCorasick.builder()
+            .addAll("SPAM", List.of("scam", "phishing"))
+            .addAll("VIOLENCE", List.of("kill", "weapon"))
+            .add("SEXUAL", "xxx")
+            .build();
+
+    @Test
+    void testMatchesAllCategoriesCaseInsensitive() {
+        long mask = automaton.match("This SCAM sells a Weapon");
+
+        assertEquals(List.of("SPAM", "VIOLENCE"), automaton.categoriesOf(mask));
+    }
+
+    @Test
+    void testNoMatch() {
+        assertEquals(0, automaton.match("Hello, this is a clean message"));
+        assertEquals(0, automaton.match(""));
+    }
+
+    @Test
+    void testOverlappingTermsUseFailLinks() {
+        AhoCorasick overlapping = AhoCorasick.builder()
+                .add("A", "he")
+                .add("B", "she")
+                .add("C", "hers")
+                .build();
+
+        long mask = overlapping.match("ushers");
+
+        assertEquals(List.of("A", "B", "C"), overlapping.categoriesOf(mask));
+    }
+
+    @Test
+    void testWholeWordsSkipsTermsInsideWords() {
+        AhoCorasick wholeWords = AhoCorasick.builder()
+                .wholeWords(true)
+                .add("VIOLENCE", "kill")
+                .build();
+
+        assertEquals(0, wholeWords.match("learn a new skill"));
+        assertNotEquals(0, wholeWords.match("I will kill it"));
+        assertNotEquals(0, wholeWords.match("kill!"));
+        // Substring mode (mặc định) vẫn match
+        assertNotEquals(0, automaton.match("learn a new skill"));
+    }
+
+    @Test
+    void testNonAsciiTerms() {
+        AhoCorasick vietnamese = AhoCorasick.builder()
+                .add("SPAM", "lừa đảo")
+                .build();
+
+        assertNotEquals(0, vietnamese.match("Cảnh báo LỪA ĐẢO qua điện thoại"));
+        assertEquals(0, vietnamese.match("Tin nhắn bình thường"));
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.moderation.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LatencyHistogram
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void testSmallValuesExact() {
+        LatencyHistogram histogram = new LatencyHistogram(3_600_000, 8);
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(100, histogram.totalCount());
+        assertEquals(50, histogram.valueAtPercentile(50));
+        assertEquals(95, histogram.valueAtPercentile(95));
+        assertEquals(100, histogram.valueAtPercentile(100));
+        assertEquals(1, histogram.valueAtPercentile(0));
+    }
+
+    @Test
+    void testPercentilesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram(3_600_000, 8);
+        Random random = new Random(7);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(Math.log(200) + random.nextGaussian());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long estimate = histogram.valueAtPercentile(percentile);
+            assertTrue(estimate >= exact && estimate <= exact * 1.008 + 1,
+                    "p" + percentile + ": exact=" + exact + ", estimate=" + estimate);
+        }
+    }
+
+    @Test
+    void testBucketBoundariesContiguous() {
+        LatencyHistogram histogram = new LatencyHistogram(1L << 40, 8);
+        for (int i = 1; i < histogram.bucketCount(); i++) {
+            assertEquals(histogram.highestEquivalentValue(i - 1) + 1, histogram.lowestEquivalentValue(i));
+            assertEquals(i, histogram.indexOf(histogram.lowestEquivalentValue(i)));
+            assertEquals(i, histogram.indexOf(histogram.highestEquivalentValue(i)));
+        }
+    }
+
+    @Test
+    void testMerge() {
+        LatencyHistogram first = new LatencyHistogram(3_600_000, 8);
+        LatencyHistogram second = new LatencyHistogram(3_600_000, 8);
+        for (int i = 0; i < 90; i++) {
+            first.record(10);
+        }
+        for (int i = 0; i < 10; i++) {
+            second.record(5000);
+        }
+
+        first.merge(second);
+
+        assertEquals(100, first.totalCount());
+        assertEquals(10, first.valueAtPercentile(90));
+        assertTrue(first.valueAtPercentile(91) >= 5000);
+    }
+
+    @Test
+    void testValuesClamped() {
+        LatencyHistogram histogram = new LatencyHistogram(1000, 8);
+        histogram.record(-5);
+        histogram.record(1_000_000);
+
+        assertEquals(2, histogram.totalCount());
+        assertEquals(0, histogram.valueAtPercentile(50));
+        assertTrue(histogram.valueAtPercentile(100) >= 1000);
+    }
+
+    @Test
+    void testEncodeDecodeRoundTrip() {
+        LatencyHistogram histogram = new LatencyHistogram(3_600_000_000L, 10);
+        Random random = new Random(11);
+        for (int i = 0; i < 50_000; i++) {
+            histogram.record((long) Math.exp(Math.log(150_000) + random.nextGaussian()));
+        }
+
+        byte[] encoded = histogram.encode();
+        LatencyHistogram decoded = LatencyHistogram.decode(encoded);
+
+        assertTrue(encoded.length < 8 * histogram.bucketCount() / 10, "encoded size " + encoded.length);
+        assertEquals(histogram.bucketCount(), decoded.bucketCount());
+        for (int i = 0; i < histogram.bucketCount(); i++) {
+            assertEquals(histogram.countAt(i), decoded.countAt(i));
+        }
+        assertThrows(IllegalArgumentException.class, () -> LatencyHistogram.decode(new byte[]{0x01, 0x05}));
+    }
+
+    @Test
+    void testDecodeRejectsDeflateBomb() {
+        // Header hợp lệ (subBucketBits = 8, highest = 1000) theo sau là 64 MB byte 0: nén còn ~64 KB
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        deflater.setInput(new byte[]{8, (byte) 0xE8, 0x07, 0x00});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0x01);
+        byte[] zeros = new byte[1 << 20];
+        byte[] buffer = new byte[8192];
+        for (int i = 0; i < 64; i++) {
+            while (!deflater.needsInput()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            deflater.setInput(zeros);
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        byte[] bomb = out.toByteArray();
+        assertTrue(bomb.length < 1 << 20, "bomb size " + bomb.length);
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> LatencyHistogram.decode(bomb));
+        assertTrue(error.getMessage().contains("exceeds"), error.getMessage());
+    }
+
+    @Test
+    void testPercentileDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram(3_600_000, 8);
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+
+        List<LatencyHistogram.PercentileValue> distribution = histogram.percentileDistribution(5);
+
+        assertEquals(0.0, distribution.get(0).percentile());
+        LatencyHistogram.PercentileValue last = distribution.get(distribution.size() - 1);
+        assertEquals(100.0, last.percentile());
+        assertEquals(1000, last.count());
+        for (int i = 1; i < distribution.size(); i++) {
+            assertTrue(distribution.get(i).percentile() > distribution.get(i - 1).percentile());
+            assertTrue(distribution.get(i).value() >= distribution.get(i - 1).value());
+        }
+        assertEquals(histogram.valueAtPercentile(50), distribution.get(5).value());
+    }
+}
+
@@ -0,0 +1,51 @@
+package com.example.moderation.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for StorageCodec
+ */
+class StorageCodecTest {
+
+    private static final String RESPONSE = "{\"code\":1100,\"message\":\"Success\",\"requestId\":\"a8b3c1f0e2d94b7a\","
+            + "\"riskLevel\":\"PASS\",\"riskLabel1\":\"normal\",\"riskLabel2\":\"\",\"riskLabel3\":\"\","
+            + "\"riskDescription\":\"normal\",\"riskDetail\":{},\"allLabels\":[],\"businessLabels\":[],"
+            + "\"finalResult\":1,\"resultType\":0,\"text\":\"Xin chào thế giới\"}";
+
+    @Test
+    void testRoundTripCompressed() {
+        byte[] encoded = StorageCodec.encode(RESPONSE);
+
+        assertEquals(StorageCodec.DEFLATE_DICT_V1, encoded[0]);
+        assertTrue(encoded.length < RESPONSE.getBytes(StandardCharsets.UTF_8).length / 2);
+        assertEquals(RESPONSE, StorageCodec.decode(encoded));
+    }
+
+    @Test
+    void testShortValueStored() {
+        byte[] encoded = StorageCodec.encode("short");
+
+        assertEquals(StorageCodec.STORED, encoded[0]);
+        assertEquals("short", StorageCodec.decode(encoded));
+        assertEquals("", StorageCodec.decode(StorageCodec.encode("")));
+        assertNull(StorageCodec.decode(StorageCodec.encode(null)));
+    }
+
+    @Test
+    void testLargeValue() {
+        String large = RESPONSE.repeat(500);
+
+        assertEquals(large, StorageCodec.decode(StorageCodec.encode(large)));
+    }
+
+    @Test
+    void testLegacyTextReadAsIs() {
+        String legacy = "{\n  \"code\": 1100\n}";
+
+        assertEquals(legacy, StorageCodec.decode(legacy.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.moderation.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for StripedHashSet
+ */
+class StripedHashSetTest {
+
+    @Test
+    void testAddIsExclusive() {
+        StripedHashSet<String> set = new StripedHashSet<>(16);
+
+        assertTrue(set.add("a"));
+        assertFalse(set.add("a"));
+        assertTrue(set.contains("a"));
+        assertTrue(set.remove("a"));
+        assertFalse(set.contains("a"));
+        assertFalse(set.remove("a"));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    void testSizeAcrossStripes() {
+        StripedHashSet<String> set = new StripedHashSet<>(5);
+        for (int i = 0; i < 1000; i++) {
+            set.add("req-" + i);
+        }
+
+        assertEquals(1000, set.size());
+    }
+
+    @Test
+    void testConcurrentAddAcceptsEachKeyOnce() throws Exception {
+        StripedHashSet<String> set = new StripedHashSet<>(8);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> accepted = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                accepted.add(executor.submit(() -> {
+                    int count = 0;
+                    for (int i = 0; i < 10_000; i++) {
+                        if (set.add("req-" + i)) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+
+            int total = 0;
+            for (Future<Integer> future : accepted) {
+                total += future.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(10_000, total);
+            assertEquals(10_000, set.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}